@@ -39,11 +39,20 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.InputStreamReader;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.TreeMap;
 import java.util.SortedMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import loci.common.Constants;
 import loci.common.DataTools;
@@ -72,6 +81,8 @@ import loci.formats.Memoizer;
 import loci.formats.MetadataTools;
 import loci.formats.MinMaxCalculator;
 import loci.formats.MissingLibraryException;
+import loci.formats.ReaderPool;
+import loci.formats.ReaderWrapper;
 import loci.formats.codec.Codec;
 import loci.formats.codec.CodecOptions;
 import loci.formats.codec.CompressionType;
@@ -139,6 +150,7 @@ public final class ImageConverter {
   private Byte fillColor = null;
   private boolean precompressed = false;
   private boolean tryPrecompressed = false;
+  private int threads = 1;
 
   private Double compressionQuality = null;
 
@@ -146,7 +158,11 @@ public final class ImageConverter {
 
   private IFormatReader reader;
   private MinMaxCalculator minMax;
-  private DimensionSwapper dimSwapper;
+  private PyramidLevelStore pyramidLevels;
+
+  // readers and threads used to read and compress tiles when threads > 1
+  private ExecutorService tileExecutor;
+  private ReaderPool tileReaders;
 
   private HashMap<String, Integer> nextOutputIndex = new HashMap<String, Integer>();
   private boolean firstTile = true;
@@ -258,6 +274,16 @@ public final class ImageConverter {
           }
           catch (NumberFormatException e) { }
         }
+        else if (args[i].equals("-threads")) {
+          try {
+            threads = Integer.parseInt(args[++i]);
+            if (threads <= 0) {
+              LOGGER.error("Invalid thread count: {}", threads);
+              return false;
+            }
+          }
+          catch (NumberFormatException e) { }
+        }
         else if (args[i].equals("-pyramid-resolutions")) {
           try {
             pyramidResolutions = Integer.parseInt(args[++i]);
@@ -361,7 +387,7 @@ public final class ImageConverter {
       "    [-option key value] [-novalid] [-validate] [-tilex tileSizeX]", 
       "    [-tiley tileSizeY] [-pyramid-scale scale]", 
       "    [-swap dimensionsOrderString] [-fill color]",
-      "    [-precompressed] [-quality compressionQuality]",
+      "    [-precompressed] [-quality compressionQuality] [-threads count]",
       "    [-pyramid-resolutions numResolutionLevels] in_file out_file",
       "",
       "            -version: print the library version and exit",
@@ -411,6 +437,8 @@ public final class ImageConverter {
       "                      Do not use -crop, -fill, or -autoscale, or pyramid generation options",
       "                      with this option.",
       "            -quality: double quality value for JPEG compression (0-1)",
+      "            -threads: number of threads used to read and compress tiles",
+      "                      or strips (default 1)",
       "",
       "The extension of the output file specifies the file format to use",
       "for the conversion. The list of available formats and extensions is:",
@@ -507,12 +535,8 @@ public final class ImageConverter {
 
     long start = System.currentTimeMillis();
     LOGGER.info(in);
-    reader = new ImageReader();
-    if (swapOrder != null) {
-      reader = dimSwapper = new DimensionSwapper(reader);
-    }
+    reader = createReader();
     if (stitch) {
-      reader = new FileStitcher(reader);
       Location f = new Location(in);
       String pat = null;
       if (!f.exists()) {
@@ -523,29 +547,13 @@ public final class ImageConverter {
       }
       if (pat != null) in = pat;
     }
-    if (separate) reader = new ChannelSeparator(reader);
-    if (merge) reader = new ChannelMerger(reader);
-    if (fill) reader = new ChannelFiller(reader);
-    if (useMemoizer) {
-      if (cacheDir != null) {
-        reader = new Memoizer(reader, 0, new File(cacheDir));
-      }
-      else {
-        reader = new Memoizer(reader, 0);
-      }
-    }
     minMax = null;
     if (autoscale) {
       reader = new MinMaxCalculator(reader);
       minMax = (MinMaxCalculator) reader;
     }
 
-    reader.setMetadataOptions(options);
-    reader.setGroupFiles(group);
-    reader.setMetadataFiltered(true);
-    reader.setOriginalMetadataPopulated(originalMetadata);
-    reader.setFlattenedResolutions(flat);
-    reader.setFillColor(fillColor);
+    configureReader(reader);
     OMEXMLService service = null;
     try {
       ServiceFactory factory = new ServiceFactory();
@@ -566,9 +574,7 @@ public final class ImageConverter {
       LOGGER.info("Implicitly using compression = {}", compression);
     }
 
-    if (swapOrder != null) {
-       dimSwapper.swapDimensions(swapOrder);
-    }
+    swapDimensions(reader);
 
     MetadataStore store = reader.getMetadataStore();
 
@@ -703,6 +709,9 @@ public final class ImageConverter {
     if (writer instanceof TiffWriter) {
       ((TiffWriter) writer).setBigTiff(bigtiff);
       ((TiffWriter) writer).setCanDetectBigTiff(!nobigtiff);
+      if (threads > 1) {
+        ((TiffWriter) writer).setCompressionExecutor(getTileExecutor());
+      }
     }
     else if (writer instanceof DicomWriter) {
       ((DicomWriter) writer).setBigTiff(bigtiff);
@@ -712,6 +721,9 @@ public final class ImageConverter {
       if (w instanceof TiffWriter) {
         ((TiffWriter) w).setBigTiff(bigtiff);
         ((TiffWriter) w).setCanDetectBigTiff(!nobigtiff);
+        if (threads > 1) {
+          ((TiffWriter) w).setCompressionExecutor(getTileExecutor());
+        }
       }
       else if (w instanceof DicomWriter) {
         ((DicomWriter) w).setBigTiff(bigtiff);
@@ -744,6 +756,15 @@ public final class ImageConverter {
       nextOutputIndex.clear();
       boolean generatePyramid = pyramidResolutions > reader.getResolutionCount();
       int resolutionCount = generatePyramid ? pyramidResolutions : reader.getResolutionCount();
+      closePyramidLevels();
+      if (generatePyramid && reader.getResolutionCount() == 1 && !dimensionsSet) {
+        int type = reader.getPixelType();
+        pyramidLevels = new PyramidLevelStore(pyramidResolutions, pyramidScale,
+          reader.getSizeX(), reader.getSizeY(),
+          FormatTools.getBytesPerPixel(type), reader.getRGBChannelCount(),
+          reader.isInterleaved(), reader.isLittleEndian(),
+          FormatTools.isFloatingPoint(type));
+      }
       for (int res=0; res<resolutionCount; res++) {
         if (!generatePyramid) {
           reader.setResolution(res);
@@ -884,8 +905,10 @@ public final class ImageConverter {
           count++;
         }
       }
+      closePyramidLevels();
     }
     writer.close();
+    closeTileReaders();
     long end = System.currentTimeMillis();
     LOGGER.info("[done]");
 
@@ -1001,6 +1024,15 @@ public final class ImageConverter {
       tryPrecompressed = false;
     }
 
+    if (threads > 1 && !precompressed && !autoscale &&
+      currentFile.indexOf(FormatTools.TILE_NUM) < 0 &&
+      currentFile.indexOf(FormatTools.TILE_X) < 0 &&
+      currentFile.indexOf(FormatTools.TILE_Y) < 0)
+    {
+      return convertTilesInParallel(writer, baseWriter, index, outputIndex,
+        w, h, nXTiles, nYTiles);
+    }
+
     Long m = null;
     for (int y=0; y<nYTiles; y++) {
       for (int x=0; x<nXTiles; x++) {
@@ -1235,10 +1267,225 @@ public final class ImageConverter {
     }
   }
 
+  /**
+   * Convert the specified plane as a set of tiles, using multiple threads.
+   * Tiles are read (and compressed, if the writer allows it) concurrently,
+   * but are always written in order by the calling thread.
+   * @param writer the {@link loci.formats.IFormatWriter} to use for writing the plane
+   * @param baseWriter the format-specific writer wrapped by <code>writer</code>
+   * @param index the index of the plane to convert in the input file
+   * @param outputIndex the index of the plane to convert in the output file
+   * @param w the width of each tile
+   * @param h the height of each tile
+   * @param nXTiles the number of tiles in each row
+   * @param nYTiles the number of tiles in each column
+   * @return the time at which conversion started, in milliseconds
+   * @throws FormatException
+   * @throws IOException
+   */
+  private long convertTilesInParallel(IFormatWriter writer,
+    final IFormatWriter baseWriter, final int index, int outputIndex,
+    int w, int h, int nXTiles, int nYTiles)
+    throws FormatException, IOException
+  {
+    final int readerSeries = reader.getSeries();
+    final int resolution = writer.getResolution();
+    int tileCount = nXTiles * nYTiles;
+
+    applyLUT(writer);
+
+    ExecutorService executor = getTileExecutor();
+    Deque<Future<ConvertedTile>> pending =
+      new ArrayDeque<Future<ConvertedTile>>();
+    Long m = null;
+    int next = 0;
+    try {
+      while (next < tileCount || !pending.isEmpty()) {
+        // keep at most two tiles per thread in memory
+        while (next < tileCount && pending.size() < threads * 2) {
+          int x = next % nXTiles;
+          int y = next / nXTiles;
+          next++;
+
+          final int tileX = xCoordinate + x * w;
+          final int tileY = yCoordinate + y * h;
+          final int outputX = x * w;
+          final int outputY = y * h;
+          final int tileWidth = x < nXTiles - 1 ? w : width - (w * x);
+          final int tileHeight = y < nYTiles - 1 ? h : height - (h * y);
+
+          pending.add(executor.submit(new Callable<ConvertedTile>() {
+            @Override
+            public ConvertedTile call() throws Exception {
+              IFormatReader tileReader = tileReaders.borrowReader();
+              byte[] buf = null;
+              try {
+                tileReader.setSeries(readerSeries);
+                buf = getTile(tileReader, resolution, index,
+                  tileX, tileY, tileWidth, tileHeight);
+              }
+              finally {
+                tileReaders.returnReader(tileReader);
+              }
+              byte[] compressed = compressTile(baseWriter, buf,
+                outputX, outputY, tileWidth, tileHeight);
+              if (compressed != null) {
+                return new ConvertedTile(compressed, true,
+                  outputX, outputY, tileWidth, tileHeight);
+              }
+              return new ConvertedTile(buf, false,
+                outputX, outputY, tileWidth, tileHeight);
+            }
+          }));
+        }
+
+        ConvertedTile tile = pending.removeFirst().get();
+        if (m == null) {
+          m = System.currentTimeMillis();
+        }
+        if (tile.compressed) {
+          writer.saveCompressedBytes(outputIndex, tile.buf,
+            tile.x, tile.y, tile.width, tile.height);
+        }
+        else {
+          writer.saveBytes(outputIndex, tile.buf,
+            tile.x, tile.y, tile.width, tile.height);
+        }
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof FormatException) {
+        throw (FormatException) cause;
+      }
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new FormatException(cause);
+    }
+    finally {
+      for (Future<ConvertedTile> f : pending) {
+        f.cancel(true);
+      }
+    }
+    return m;
+  }
+
+  private ExecutorService getTileExecutor() {
+    if (tileExecutor == null) {
+      // pooled readers are copied from a single initialized reader,
+      // so the input file is only parsed once more for all threads
+      tileReaders = new ReaderPool(in, threads, -1) {
+        @Override
+        protected IFormatReader createReader() {
+          IFormatReader r = ImageConverter.this.createReader();
+          configureReader(r);
+          return r;
+        }
+
+        @Override
+        protected void initializeReader(IFormatReader r)
+          throws FormatException, IOException
+        {
+          super.initializeReader(r);
+          swapDimensions(r);
+        }
+      };
+      tileExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "bfconvert-tile");
+          t.setDaemon(true);
+          return t;
+        }
+      });
+    }
+    return tileExecutor;
+  }
+
+  /**
+   * Compress the given tile without writing it, if the writer supports it.
+   * @return the compressed tile, or null if the tile must be passed
+   *         to saveBytes instead
+   */
+  private byte[] compressTile(IFormatWriter baseWriter, byte[] buf,
+    int x, int y, int w, int h)
+    throws FormatException, IOException
+  {
+    if (baseWriter instanceof TiffWriter) {
+      return ((TiffWriter) baseWriter).compressTile(buf, x, y, w, h);
+    }
+    if (baseWriter instanceof DicomWriter) {
+      return ((DicomWriter) baseWriter).compressTile(buf, x, y, w, h);
+    }
+    return null;
+  }
+
+  private void closeTileReaders() throws IOException {
+    if (tileExecutor != null) {
+      tileExecutor.shutdownNow();
+      tileExecutor = null;
+      tileReaders.close();
+      tileReaders = null;
+    }
+  }
+
+  /**
+   * Create the stack of readers used to read the input file,
+   * according to the command line options.
+   * The metadata store and {@link MinMaxCalculator} are not set up here.
+   */
+  private IFormatReader createReader() {
+    IFormatReader r = new ImageReader();
+    if (swapOrder != null) r = new DimensionSwapper(r);
+    if (stitch) r = new FileStitcher(r);
+    if (separate) r = new ChannelSeparator(r);
+    if (merge) r = new ChannelMerger(r);
+    if (fill) r = new ChannelFiller(r);
+    if (useMemoizer) {
+      if (cacheDir != null) {
+        r = new Memoizer(r, 0, new File(cacheDir));
+      }
+      else {
+        r = new Memoizer(r, 0);
+      }
+    }
+    return r;
+  }
+
+  private void configureReader(IFormatReader r) {
+    r.setMetadataOptions(options);
+    r.setGroupFiles(group);
+    r.setMetadataFiltered(true);
+    r.setOriginalMetadataPopulated(originalMetadata);
+    r.setFlattenedResolutions(flat);
+    r.setFillColor(fillColor);
+  }
+
+  private void swapDimensions(IFormatReader r)
+    throws FormatException, IOException
+  {
+    if (swapOrder != null && r instanceof ReaderWrapper) {
+      DimensionSwapper swapper = (DimensionSwapper)
+        ((ReaderWrapper) r).unwrap(DimensionSwapper.class, null);
+      if (swapper != null) {
+        swapper.swapDimensions(swapOrder);
+      }
+    }
+  }
+
   private byte[] getTile(IFormatReader reader, int resolution,
     int no, int x, int y, int w, int h)
     throws FormatException, IOException
   {
+    byte[] tile = null;
     if (resolution < reader.getResolutionCount()) {
       reader.setResolution(resolution);
       int optimalWidth = reader.getOptimalTileWidth();
@@ -1247,21 +1494,38 @@ public final class ImageConverter {
         return reader.openCompressedBytes(no, x / optimalWidth, y / optimalHeight);
       }
       tryPrecompressed = false;
-      return reader.openBytes(no, x, y, w, h);
+      tile = reader.openBytes(no, x, y, w, h);
     }
-    if (tryPrecompressed) {
+    else if (tryPrecompressed) {
       throw new UnsupportedOperationException("Cannot generate resolutions with precompressed tiles");
     }
-    reader.setResolution(0);
-    IImageScaler scaler = new SimpleImageScaler();
-    int scale = (int) Math.pow(pyramidScale, resolution);
-    byte[] tile =
-      reader.openBytes(no, x * scale, y * scale, w * scale, h * scale);
-    int type = reader.getPixelType();
-    return scaler.downsample(tile, w * scale, h * scale, scale,
-      FormatTools.getBytesPerPixel(type), reader.isLittleEndian(),
-      FormatTools.isFloatingPoint(type), reader.getRGBChannelCount(),
-      reader.isInterleaved());
+    else if (pyramidLevels != null && pyramidLevels.contains(resolution)) {
+      // read from the previous resolution's downsampled tiles
+      tile = pyramidLevels.read(resolution, no, x, y, w, h);
+    }
+    else {
+      reader.setResolution(0);
+      IImageScaler scaler = new SimpleImageScaler();
+      int scale = (int) Math.pow(pyramidScale, resolution);
+      byte[] fullTile =
+        reader.openBytes(no, x * scale, y * scale, w * scale, h * scale);
+      int type = reader.getPixelType();
+      tile = scaler.downsample(fullTile, w * scale, h * scale, scale,
+        FormatTools.getBytesPerPixel(type), reader.isLittleEndian(),
+        FormatTools.isFloatingPoint(type), reader.getRGBChannelCount(),
+        reader.isInterleaved());
+    }
+    if (pyramidLevels != null) {
+      pyramidLevels.store(resolution, no, tile, x, y, w, h);
+    }
+    return tile;
+  }
+
+  private void closePyramidLevels() throws IOException {
+    if (pyramidLevels != null) {
+      pyramidLevels.close();
+      pyramidLevels = null;
+    }
   }
 
   private boolean isTiledWriter(IFormatWriter writer, String outputFile)
@@ -1357,4 +1621,24 @@ public final class ImageConverter {
     System.exit(0);
   }
 
+  // -- Helper classes --
+
+  /** A tile that has been read, and possibly compressed, for writing. */
+  private static class ConvertedTile {
+    final byte[] buf;
+    final boolean compressed;
+    final int x, y, width, height;
+
+    ConvertedTile(byte[] buf, boolean compressed,
+      int x, int y, int width, int height)
+    {
+      this.buf = buf;
+      this.compressed = compressed;
+      this.x = x;
+      this.y = y;
+      this.width = width;
+      this.height = height;
+    }
+  }
+
 }
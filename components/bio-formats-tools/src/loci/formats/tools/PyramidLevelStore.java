@@ -0,0 +1,266 @@
+/*
+ * #%L
+ * Bio-Formats command line tools for reading and converting files
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats.tools;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import loci.common.image.IImageScaler;
+import loci.common.image.SimpleImageScaler;
+
+/**
+ * Temporary storage for generated pyramid resolutions.
+ *
+ * As each tile of a resolution is converted, it is downsampled by the
+ * pyramid scale and stored in a temporary file for the next resolution.
+ * The next resolution is then read from the temporary file, so the full
+ * resolution image is only read once, and each generated resolution is
+ * only downsampled from the resolution immediately above it.
+ *
+ * A resolution can only be stored if every tile of the resolution above
+ * it starts on a multiple of the scale; if not, that resolution is
+ * marked as unavailable and must be generated another way.
+ */
+class PyramidLevelStore implements Closeable {
+
+  // -- Fields --
+
+  private final int scale;
+  private final int bpp;
+  private final int channels;
+  private final boolean interleaved;
+  private final boolean littleEndian;
+  private final boolean floatingPoint;
+
+  private final int[] widths;
+  private final int[] heights;
+  private final File[] files;
+  private final RandomAccessFile[] levels;
+  private final boolean[] valid;
+
+  private final IImageScaler scaler = new SimpleImageScaler();
+
+  // -- Constructor --
+
+  /**
+   * Create storage for a pyramid with the given number of resolutions.
+   *
+   * @param resolutions total number of resolutions, including the full
+   *                    resolution which is never stored
+   * @param scale downsampling factor between consecutive resolutions
+   * @param sizeX width of the full resolution
+   * @param sizeY height of the full resolution
+   * @param bpp number of bytes per pixel
+   * @param channels number of channels stored in each plane
+   * @param interleaved true if channels are interleaved
+   * @param littleEndian true if pixels are little endian
+   * @param floatingPoint true if pixels are floating point
+   */
+  PyramidLevelStore(int resolutions, int scale, int sizeX, int sizeY,
+    int bpp, int channels, boolean interleaved, boolean littleEndian,
+    boolean floatingPoint)
+  {
+    this.scale = scale;
+    this.bpp = bpp;
+    this.channels = channels;
+    this.interleaved = interleaved;
+    this.littleEndian = littleEndian;
+    this.floatingPoint = floatingPoint;
+
+    widths = new int[resolutions];
+    heights = new int[resolutions];
+    files = new File[resolutions];
+    levels = new RandomAccessFile[resolutions];
+    valid = new boolean[resolutions];
+    widths[0] = sizeX;
+    heights[0] = sizeY;
+    for (int r=1; r<resolutions; r++) {
+      widths[r] = widths[r - 1] / scale;
+      heights[r] = heights[r - 1] / scale;
+      valid[r] = scale > 1 && widths[r] > 0 && heights[r] > 0;
+    }
+  }
+
+  // -- PyramidLevelStore API methods --
+
+  /**
+   * @return true if the given resolution has been stored and can be read
+   *         using {@link #read(int, int, int, int, int, int)}
+   */
+  synchronized boolean contains(int resolution) {
+    return resolution > 0 && resolution < valid.length && valid[resolution];
+  }
+
+  /**
+   * Downsample a tile from the given resolution and store it as part of
+   * the next resolution.  If the tile is not aligned to the scale, the
+   * next resolution is marked as unavailable.
+   *
+   * @param resolution the resolution from which the tile was read
+   * @param no the plane index
+   * @param tile the tile's pixels
+   * @param x the X coordinate of the tile in the given resolution
+   * @param y the Y coordinate of the tile in the given resolution
+   * @param w the width of the tile
+   * @param h the height of the tile
+   */
+  synchronized void store(int resolution, int no, byte[] tile, int x, int y, int w, int h)
+    throws IOException
+  {
+    int next = resolution + 1;
+    if (next >= valid.length || !valid[next]) {
+      return;
+    }
+    if ((x % scale) != 0 || (y % scale) != 0) {
+      valid[next] = false;
+      return;
+    }
+    // x and y are multiples of the scale, so the downsampled tile
+    // never extends past the edge of the next resolution
+    int nextWidth = w / scale;
+    int nextHeight = h / scale;
+    if (nextWidth == 0 || nextHeight == 0) {
+      return;
+    }
+    // the scaler stretches the tile if its size is not a multiple of the
+    // scale, so trim the tile first to keep the sampled pixels aligned
+    int trimmedWidth = nextWidth * scale;
+    int trimmedHeight = nextHeight * scale;
+    if (trimmedWidth != w || trimmedHeight != h) {
+      tile = trim(tile, w, h, trimmedWidth, trimmedHeight);
+    }
+    byte[] downsampled = scaler.downsample(tile, trimmedWidth, trimmedHeight,
+      scale, bpp, littleEndian, floatingPoint, channels, interleaved);
+    copy(next, no, downsampled, x / scale, y / scale,
+      nextWidth, nextHeight, true);
+  }
+
+  /**
+   * Read a tile from a stored resolution.
+   *
+   * @param resolution the resolution to read; must be stored
+   * @param no the plane index
+   * @param x the X coordinate of the tile
+   * @param y the Y coordinate of the tile
+   * @param w the width of the tile
+   * @param h the height of the tile
+   * @return the tile's pixels
+   */
+  synchronized byte[] read(int resolution, int no, int x, int y, int w, int h)
+    throws IOException
+  {
+    byte[] tile = new byte[w * h * bpp * channels];
+    copy(resolution, no, tile, x, y, w, h, false);
+    return tile;
+  }
+
+  // -- Closeable API methods --
+
+  @Override
+  public void close() throws IOException {
+    for (int r=0; r<levels.length; r++) {
+      if (levels[r] != null) {
+        levels[r].close();
+        levels[r] = null;
+      }
+      if (files[r] != null) {
+        files[r].delete();
+        files[r] = null;
+      }
+      valid[r] = false;
+    }
+  }
+
+  // -- Helper methods --
+
+  /**
+   * Copy a tile to or from the temporary file for the given resolution.
+   * Planes are stored in the same layout returned by openBytes, one after
+   * another in plane index order.
+   */
+  private void copy(int resolution, int no, byte[] tile, int x, int y,
+    int w, int h, boolean write)
+    throws IOException
+  {
+    RandomAccessFile level = getLevel(resolution);
+    int width = widths[resolution];
+    int height = heights[resolution];
+    int pixel = interleaved ? bpp * channels : bpp;
+    int planes = interleaved ? 1 : channels;
+    long rowLength = (long) width * pixel;
+    long channelLength = rowLength * height;
+    long planeOffset = no * channelLength * planes;
+    int tileRow = w * pixel;
+
+    for (int c=0; c<planes; c++) {
+      for (int row=0; row<h; row++) {
+        long offset = planeOffset + c * channelLength +
+          (y + row) * rowLength + (long) x * pixel;
+        int tileOffset = (c * h + row) * tileRow;
+        level.seek(offset);
+        if (write) {
+          level.write(tile, tileOffset, tileRow);
+        }
+        else {
+          level.readFully(tile, tileOffset, tileRow);
+        }
+      }
+    }
+  }
+
+  private RandomAccessFile getLevel(int resolution) throws IOException {
+    if (levels[resolution] == null) {
+      files[resolution] = File.createTempFile("bfconvert-resolution-", ".raw");
+      files[resolution].deleteOnExit();
+      levels[resolution] = new RandomAccessFile(files[resolution], "rw");
+    }
+    return levels[resolution];
+  }
+
+  /** Remove the right and bottom edges of a tile. */
+  private byte[] trim(byte[] tile, int w, int h, int newWidth, int newHeight) {
+    int pixel = interleaved ? bpp * channels : bpp;
+    int planes = interleaved ? 1 : channels;
+    byte[] trimmed = new byte[newWidth * newHeight * pixel * planes];
+    for (int c=0; c<planes; c++) {
+      for (int row=0; row<newHeight; row++) {
+        System.arraycopy(tile, (c * h + row) * w * pixel, trimmed,
+          (c * newHeight + row) * newWidth * pixel, newWidth * pixel);
+      }
+    }
+    return trimmed;
+  }
+
+}
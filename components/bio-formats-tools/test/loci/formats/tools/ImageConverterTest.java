@@ -42,12 +42,14 @@ import java.security.Permission;
 import java.util.ArrayList;
 import java.util.Arrays;
 
+import loci.common.image.SimpleImageScaler;
 import loci.common.services.ServiceFactory;
 import loci.formats.ClassList;
 import loci.formats.IFormatReader;
 import loci.formats.ImageReader;
 import loci.formats.ImageWriter;
 import loci.formats.FormatException;
+import loci.formats.FormatTools;
 import loci.formats.meta.IMetadata;
 import loci.formats.tools.ImageConverter;
 import loci.formats.in.ICSReader;
@@ -394,6 +396,166 @@ public class ImageConverterTest {
     }
   }
 
+  @DataProvider(name = "pyramids")
+  public Object[][] createPyramids() {
+    return new Object[][] {
+      {"sizeX=500&sizeY=300&sizeC=2&pixelType=uint16", 2, 0},
+      {"sizeX=500&sizeY=300&sizeC=2&pixelType=uint16", 2, 128},
+      {"sizeX=500&sizeY=300&sizeC=3&rgb=3&pixelType=uint8", 2, 64},
+      {"sizeX=500&sizeY=300&pixelType=float", 3, 96},
+      {"sizeX=500&sizeY=300&pixelType=uint8", 3, 64}
+    };
+  }
+
+  @Test(dataProvider = "pyramids")
+  public void testGeneratePyramid(String fake, int scale, int tileSize)
+    throws FormatException, IOException
+  {
+    outFile = getOutFile("pyramid.ome.tiff");
+    String input = "pyramid&" + fake + ".fake";
+    ArrayList<String> argsList = new ArrayList<String>();
+    argsList.add("-pyramid-resolutions");
+    argsList.add("3");
+    argsList.add("-pyramid-scale");
+    argsList.add(String.valueOf(scale));
+    if (tileSize > 0) {
+      argsList.add("-tilex");
+      argsList.add(String.valueOf(tileSize));
+      argsList.add("-tiley");
+      argsList.add(String.valueOf(tileSize));
+    }
+    argsList.add(input);
+    argsList.add(outFile.getAbsolutePath());
+    ImageConverter converter = new ImageConverter();
+    assertTrue(converter.testConvert(new ImageWriter(),
+      argsList.toArray(new String[argsList.size()])));
+    outFile.deleteOnExit();
+
+    // each generated resolution must match the full resolution
+    // downsampled directly to that resolution, sampling every
+    // (scale ^ resolution) pixels
+    SimpleImageScaler scaler = new SimpleImageScaler();
+    try (ImageReader source = new ImageReader();
+      ImageReader output = new ImageReader())
+    {
+      source.setId(input);
+      output.setFlattenedResolutions(false);
+      output.setId(outFile.getAbsolutePath());
+      assertEquals(output.getResolutionCount(), 3);
+      int type = source.getPixelType();
+      for (int r=0; r<output.getResolutionCount(); r++) {
+        output.setResolution(r);
+        int factor = (int) Math.pow(scale, r);
+        assertEquals(output.getSizeX(), source.getSizeX() / factor);
+        assertEquals(output.getSizeY(), source.getSizeY() / factor);
+        int sampledWidth = output.getSizeX() * factor;
+        int sampledHeight = output.getSizeY() * factor;
+        for (int p=0; p<source.getImageCount(); p++) {
+          byte[] sampled =
+            source.openBytes(p, 0, 0, sampledWidth, sampledHeight);
+          byte[] expected = scaler.downsample(sampled,
+            sampledWidth, sampledHeight, factor,
+            FormatTools.getBytesPerPixel(type), source.isLittleEndian(),
+            FormatTools.isFloatingPoint(type), source.getRGBChannelCount(),
+            source.isInterleaved());
+          assertEquals(output.openBytes(p), expected,
+            "resolution " + r + ", plane " + p);
+        }
+      }
+    }
+  }
+
+  @DataProvider(name = "threads")
+  public Object[][] createThreads() {
+    return new Object[][] {
+      {"sizeX=500&sizeY=300&sizeZ=2&pixelType=uint16", "Uncompressed"},
+      {"sizeX=500&sizeY=300&sizeZ=2&pixelType=uint16", "LZW"},
+      {"sizeX=500&sizeY=300&sizeC=3&rgb=3&pixelType=uint8", "zlib"},
+      {"sizeX=500&sizeY=300&sizeC=2&pixelType=float", "LZW"}
+    };
+  }
+
+  @Test(dataProvider = "threads")
+  public void testMultipleThreads(String fake, String compression)
+    throws FormatException, IOException
+  {
+    String input = "threads&" + fake + ".fake";
+    File serialFile = getOutFile("serial.ome.tiff");
+    File parallelFile = getOutFile("parallel.ome.tiff");
+    for (File f : new File[] {serialFile, parallelFile}) {
+      String threads = f == serialFile ? "1" : "4";
+      String[] args = {
+        "-threads", threads, "-compression", compression,
+        "-tilex", "128", "-tiley", "64", "-pyramid-resolutions", "2",
+        input, f.getAbsolutePath()
+      };
+      ImageConverter converter = new ImageConverter();
+      assertTrue(converter.testConvert(new ImageWriter(), args));
+      f.deleteOnExit();
+    }
+
+    try (ImageReader serial = new ImageReader();
+      ImageReader parallel = new ImageReader())
+    {
+      serial.setFlattenedResolutions(false);
+      serial.setId(serialFile.getAbsolutePath());
+      parallel.setFlattenedResolutions(false);
+      parallel.setId(parallelFile.getAbsolutePath());
+      assertEquals(parallel.getResolutionCount(), 2);
+      for (int r=0; r<serial.getResolutionCount(); r++) {
+        serial.setResolution(r);
+        parallel.setResolution(r);
+        assertEquals(parallel.getOptimalTileWidth(), 128);
+        for (int p=0; p<serial.getImageCount(); p++) {
+          assertEquals(parallel.openBytes(p), serial.openBytes(p),
+            "resolution " + r + ", plane " + p);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testMultipleThreadsWithCache()
+    throws FormatException, IOException
+  {
+    File input = getTempSubdir().resolve(
+      "cache&sizeX=500&sizeY=300&sizeZ=2&pixelType=uint16.fake").toFile();
+    input.createNewFile();
+    input.deleteOnExit();
+    File cacheDir = getTempSubdir().toFile();
+    File serialFile = getOutFile("serial.ome.tiff");
+    String[] serialArgs = {
+      "-tilex", "128", "-tiley", "64",
+      input.getAbsolutePath(), serialFile.getAbsolutePath()
+    };
+    assertTrue(new ImageConverter().testConvert(new ImageWriter(), serialArgs));
+    serialFile.deleteOnExit();
+
+    // the first conversion saves the memo file, the second loads it
+    for (int i=0; i<2; i++) {
+      File cachedFile = getOutFile("cached" + i + ".ome.tiff");
+      String[] args = {
+        "-threads", "2", "-cache", "-cache-dir", cacheDir.getAbsolutePath(),
+        "-tilex", "128", "-tiley", "64",
+        input.getAbsolutePath(), cachedFile.getAbsolutePath()
+      };
+      assertTrue(new ImageConverter().testConvert(new ImageWriter(), args));
+      cachedFile.deleteOnExit();
+
+      try (ImageReader serial = new ImageReader();
+        ImageReader cached = new ImageReader())
+      {
+        serial.setId(serialFile.getAbsolutePath());
+        cached.setId(cachedFile.getAbsolutePath());
+        assertEquals(cached.getImageCount(), serial.getImageCount());
+        for (int p=0; p<serial.getImageCount(); p++) {
+          assertEquals(cached.openBytes(p), serial.openBytes(p),
+            "conversion " + i + ", plane " + p);
+        }
+      }
+    }
+  }
+
   private Path getTempSubdir() throws IOException {
     Path subdir = Files.createTempDirectory(tempDir, "ImageConverterTest");
     subdir.toFile().deleteOnExit();
@@ -35,13 +35,16 @@ package loci.formats;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
 import java.util.Arrays;
 
+import loci.common.Constants;
 import loci.common.DataTools;
 import loci.common.Location;
 import loci.common.RandomAccessInputStream;
@@ -124,6 +127,17 @@ public abstract class FormatReader extends FormatHandler
   /** Default thumbnail width and height. */
   protected static final int THUMBNAIL_DIMENSION = 128;
 
+  /**
+   * Sequences removed from filtered metadata keys and values,
+   * to prevent XML parsing errors.
+   */
+  private static final String[] INVALID_SEQUENCES = {
+    "&lt;", "&gt;", "&amp;", "<", ">", "&"
+  };
+
+  /** Maximum length of metadata strings that share a single instance. */
+  private static final int MAX_CANONICAL_LENGTH = 64;
+
   // -- Fields --
 
   /** Current file. */
@@ -195,6 +209,34 @@ public abstract class FormatReader extends FormatHandler
   private ServiceFactory factory;
   private OMEXMLService service;
 
+  /**
+   * Already open stream for the file being identified by an
+   * {@link ImageReader}, and the name it was opened from.
+   * Used instead of opening the same file again for each reader.
+   */
+  private transient RandomAccessInputStream typeStream;
+  private transient String typeStreamId;
+
+  /**
+   * Canonical instances of the metadata keys and small values added while
+   * the current file is initialized, so that repeated keys and values
+   * (e.g. the same key in every series) share a single instance.
+   */
+  private transient Map<Object, Object> metadataValues;
+
+  /**
+   * Maximum number of entries in each original metadata table,
+   * or 0 for no limit.
+   */
+  private transient int metadataLimit;
+
+  /**
+   * Memory mapping of the file last read by
+   * {@link #readPlane(RandomAccessInputStream, int, int, int, int, int, int, int, byte[])},
+   * if memory-mapped reads are enabled.
+   */
+  private transient MappedFile mappedFile;
+
   // -- Constructors --
 
   /** Constructs a format reader with the given name and default suffix. */
@@ -207,6 +249,16 @@ public abstract class FormatReader extends FormatHandler
 
   // -- Internal FormatReader API methods --
 
+  /**
+   * Sets a stream that {@link #isThisType(String, boolean)} should examine
+   * whenever it is asked about the given file, instead of opening a new one.
+   * Pass null to stop using a shared stream.
+   */
+  void setTypeDetectionStream(String id, RandomAccessInputStream stream) {
+    typeStreamId = stream == null ? null : id;
+    typeStream = stream;
+  }
+
   /* @see IFormatReader#reopenFile() */
   @Override
   public void reopenFile() throws IOException {
@@ -256,6 +308,14 @@ public abstract class FormatReader extends FormatHandler
         ((DynamicMetadataOptions) options).loadOptions(optionsFile, getAvailableOptions());
       }
     }
+
+    metadataLimit = 0;
+    MetadataOptions options = getMetadataOptions();
+    if (options instanceof DynamicMetadataOptions) {
+      metadataLimit = ((DynamicMetadataOptions) options).getInteger(
+        DynamicMetadataOptions.ORIGINAL_METADATA_LIMIT_KEY,
+        DynamicMetadataOptions.ORIGINAL_METADATA_LIMIT_DEFAULT);
+    }
   }
 
   /** Returns the list of available metadata options. */
@@ -263,6 +323,9 @@ public abstract class FormatReader extends FormatHandler
     ArrayList<String> optionsList = new ArrayList<String>();
     optionsList.add(DynamicMetadataOptions.METADATA_LEVEL_KEY);
     optionsList.add(DynamicMetadataOptions.READER_VALIDATE_KEY);
+    optionsList.add(DynamicMetadataOptions.ORIGINAL_METADATA_LIMIT_KEY);
+    optionsList.add(DynamicMetadataOptions.READER_MMAP_KEY);
+    optionsList.add(DynamicMetadataOptions.READER_INDEX_DIRECTORY_KEY);
     return optionsList;
   }
   
@@ -309,33 +372,31 @@ public abstract class FormatReader extends FormatHandler
       if (string && val.length() > maxLen) return;
 
       // remove all non-printable characters
-      key = DataTools.sanitize(key);
-      if (string) val = DataTools.sanitize(val);
+      key = sanitize(key);
+      if (string) val = sanitize(val);
 
       // verify key contains at least one alphabetic character
-      if (!key.matches(".*[a-zA-Z].*")) return;
+      if (!isValidKey(key)) return;
 
       // remove &lt;, &gt; and &amp; to prevent XML parsing errors
-      String[] invalidSequences = new String[] {
-        "&lt;", "&gt;", "&amp;", "<", ">", "&"
-      };
-      for (int i=0; i<invalidSequences.length; i++) {
-        if (key.indexOf(invalidSequences[i]) >= 0) {
-          key = key.replaceAll(invalidSequences[i], "");
-        }
-        if (string && val.indexOf(invalidSequences[i]) >= 0) {
-          val = val.replaceAll(invalidSequences[i], "");
-        }
-      }
+      key = removeInvalidSequences(key);
+      if (string) val = removeInvalidSequences(val);
 
       // verify key & value are not empty
       if (key.length() == 0) return;
-      if (string && val.trim().length() == 0) return;
+      if (string && isBlank(val)) return;
 
       if (string) value = val;
     }
 
-    meta.put(key, val == null ? value : val);
+    if (metadataLimit > 0 && meta.size() >= metadataLimit &&
+      !meta.containsKey(key))
+    {
+      return;
+    }
+
+    meta.put((String) canonicalize(key),
+      canonicalize(val == null ? value : val));
   }
 
   /** Adds an entry to the global metadata table. */
@@ -561,6 +622,11 @@ public abstract class FormatReader extends FormatHandler
   {
     int c = getRGBChannelCount();
     int bpp = FormatTools.getBytesPerPixel(getPixelType());
+    if (isMappingEnabled() && readMappedPlane(s, x, y, w, h, scanlinePad,
+      imageWidth, imageHeight, c, bpp, buf))
+    {
+      return buf;
+    }
     if (x == 0 && y == 0 && w == imageWidth && h == imageHeight &&
       scanlinePad == 0)
     {
@@ -617,6 +683,67 @@ public abstract class FormatReader extends FormatHandler
     return buf;
   }
 
+  /**
+   * Reads a raw plane from disk, keeping only the upper-left pixel of each
+   * scale x scale block.  Only the sampled rows are read.
+   *
+   * @see IFormatReader#openBytes(int, byte[], int, int, int, int, int)
+   */
+  protected byte[] readScaledPlane(RandomAccessInputStream s, int x, int y,
+    int w, int h, int scale, byte[] buf) throws IOException
+  {
+    if (scale == 1) {
+      return readPlane(s, x, y, w, h, buf);
+    }
+    int c = getRGBChannelCount();
+    int bpp = FormatTools.getBytesPerPixel(getPixelType());
+    int scaledWidth = FormatTools.getScaledSize(w, scale);
+    int scaledHeight = FormatTools.getScaledSize(h, scale);
+    long imageWidth = getSizeX();
+    long start = s.getFilePointer();
+
+    // with interleaved data, each pixel holds all channels
+    int pixel = isInterleaved() ? c * bpp : bpp;
+    int planes = isInterleaved() ? 1 : c;
+    byte[] row = new byte[((scaledWidth - 1) * scale + 1) * pixel];
+    for (int channel=0; channel<planes; channel++) {
+      long channelStart = start + channel * imageWidth * getSizeY() * pixel;
+      for (int r=0; r<scaledHeight; r++) {
+        s.seek(channelStart + ((y + (long) r * scale) * imageWidth + x) * pixel);
+        s.read(row);
+        int offset = (channel * scaledHeight + r) * scaledWidth * pixel;
+        for (int col=0; col<scaledWidth; col++) {
+          System.arraycopy(row, col * scale * pixel,
+            buf, offset + col * pixel, pixel);
+        }
+      }
+    }
+    return buf;
+  }
+
+  /**
+   * Returns true if planes may be read through a memory mapping of the
+   * file, as set by {@link DynamicMetadataOptions#READER_MMAP_KEY}.
+   */
+  protected boolean isMappingEnabled() {
+    MetadataOptions options = getMetadataOptions();
+    return options instanceof DynamicMetadataOptions &&
+      ((DynamicMetadataOptions) options).getBoolean(
+      DynamicMetadataOptions.READER_MMAP_KEY,
+      DynamicMetadataOptions.READER_MMAP_DEFAULT);
+  }
+
+  /**
+   * Returns the name of the file read by the given stream, or null if it
+   * is not known.  Planes are only read through a memory mapping from
+   * streams whose file is known.  By default, {@link #in} is assumed to
+   * read the current file; readers that point {@link #in} at a different
+   * file should override this method.
+   */
+  protected String getStreamFile(RandomAccessInputStream s) {
+    return s == in ? currentId : null;
+  }
+
   /** Return a properly configured loci.formats.meta.FilterMetadata. */
   protected MetadataStore makeFilterMetadata() {
     return new FilterMetadata(getMetadataStore(), isMetadataFiltered());
@@ -652,6 +779,20 @@ public abstract class FormatReader extends FormatHandler
 
     // suffix matching was inconclusive; we need to analyze the file contents
     if (!open) return false; // not allowed to open any files
+    if (typeStream != null && name.equals(typeStreamId)) {
+      // another reader may have moved the stream or changed its byte order
+      // or character encoding
+      try {
+        typeStream.order(false);
+        typeStream.setEncoding(Constants.ENCODING);
+        typeStream.seek(0);
+        return isThisType(typeStream);
+      }
+      catch (IOException exc) {
+        LOGGER.debug("", exc);
+        return false;
+      }
+    }
     try (RandomAccessInputStream stream = new RandomAccessInputStream(name)) {
       return isThisType(stream);
     }
@@ -927,6 +1068,22 @@ public abstract class FormatReader extends FormatHandler
   public abstract byte[] openBytes(int no, byte[] buf, int x, int y,
     int w, int h) throws FormatException, IOException;
 
+  /* @see IFormatReader#openBytes(int, int, int, int, int, int) */
+  @Override
+  public byte[] openBytes(int no, int x, int y, int w, int h, int scale)
+    throws FormatException, IOException
+  {
+    return FormatTools.openScaledBytes(this, no, x, y, w, h, scale);
+  }
+
+  /* @see IFormatReader#openBytes(int, byte[], int, int, int, int, int) */
+  @Override
+  public byte[] openBytes(int no, byte[] buf, int x, int y, int w, int h,
+    int scale) throws FormatException, IOException
+  {
+    return FormatTools.openScaledBytes(this, no, buf, x, y, w, h, scale);
+  }
+
   /* @see IFormatReader#openPlane(int, int, int, int, int int) */
   @Override
   public Object openPlane(int no, int x, int y, int w, int h)
@@ -947,6 +1104,10 @@ public abstract class FormatReader extends FormatHandler
   @Override
   public void close(boolean fileOnly) throws IOException {
     if (in != null) in.close();
+    if (mappedFile != null) {
+      mappedFile.close();
+      mappedFile = null;
+    }
     if (!fileOnly) {
       in = null;
       currentId = null;
@@ -1477,7 +1638,13 @@ public abstract class FormatReader extends FormatHandler
     if (currentId == null || !new Location(id).getAbsolutePath().equals(
       new Location(currentId).getAbsolutePath()))
     {
-      initFile(id);
+      metadataValues = new HashMap<Object, Object>();
+      try {
+        initFile(id);
+      }
+      finally {
+        metadataValues = null;
+      }
 
       MetadataStore store = getMetadataStore();
       if (saveOriginalMetadata) {
@@ -1894,4 +2061,193 @@ public abstract class FormatReader extends FormatHandler
     id.indexOf("\n") > 0;
   }
 
+  /**
+   * Returns the canonical instance of the given metadata key or value, if
+   * the current file is being initialized.  Long strings are not shared, as
+   * they are unlikely to be repeated.
+   */
+  private Object canonicalize(Object value) {
+    if (metadataValues == null) return value;
+    if (value instanceof String) {
+      if (((String) value).length() > MAX_CANONICAL_LENGTH) return value;
+    }
+    else if (!(value instanceof Number)) {
+      return value;
+    }
+    Object canonical = metadataValues.putIfAbsent(value, value);
+    return canonical == null ? value : canonical;
+  }
+
+  /**
+   * Reads a raw plane from a memory mapping of the file read by the given
+   * stream, leaving the stream at the same position as
+   * {@link #readPlane(RandomAccessInputStream, int, int, int, int, int, int, int, byte[])}
+   * would.  Returns false, without reading anything, if the stream does not
+   * read a known local file or the plane extends past the end of the file.
+   */
+  private boolean readMappedPlane(RandomAccessInputStream s, int x, int y,
+    int w, int h, int scanlinePad, int imageWidth, int imageHeight, int c,
+    int bpp, byte[] buf)
+    throws IOException
+  {
+    MappedFile file = MappedFile.map(getStreamFile(s), s, mappedFile);
+    if (file != mappedFile) {
+      if (mappedFile != null) mappedFile.close();
+      mappedFile = file;
+    }
+    if (file == null) return false;
+
+    long start = s.getFilePointer();
+    long end = copyPlane(null, start, x, y, w, h, scanlinePad,
+      imageWidth, imageHeight, c, bpp, buf);
+    if (end > file.length()) return false;
+    copyPlane(file, start, x, y, w, h, scanlinePad,
+      imageWidth, imageHeight, c, bpp, buf);
+    s.seek(end);
+    return true;
+  }
+
+  /**
+   * Copies a raw plane starting at the given file offset, following the
+   * same layout as
+   * {@link #readPlane(RandomAccessInputStream, int, int, int, int, int, int, int, byte[])}.
+   * If file is null, nothing is copied.
+   *
+   * @return the file offset after the last byte of the plane
+   */
+  private long copyPlane(MappedFile file, long offset, int x, int y,
+    int w, int h, int scanlinePad, int imageWidth, int imageHeight, int c,
+    int bpp, byte[] buf)
+    throws IOException
+  {
+    if (x == 0 && y == 0 && w == imageWidth && h == imageHeight &&
+      scanlinePad == 0)
+    {
+      return copy(file, offset, buf, 0, buf.length);
+    }
+    else if (x == 0 && w == imageWidth && scanlinePad == 0) {
+      if (isInterleaved()) {
+        offset += (long) y * w * bpp * c;
+        return copy(file, offset, buf, 0, h * w * bpp * c);
+      }
+      int rowLen = w * bpp;
+      for (int channel=0; channel<c; channel++) {
+        offset += (long) y * rowLen;
+        offset = copy(file, offset, buf, channel * h * rowLen, h * rowLen);
+        if (channel < c - 1) {
+          offset += (long) (imageHeight - y - h) * rowLen;
+        }
+      }
+      return offset;
+    }
+    long scanlineWidth = imageWidth + scanlinePad;
+    if (isInterleaved()) {
+      int rowLen = w * bpp * c;
+      offset += y * scanlineWidth * bpp * c;
+      for (int row=0; row<h; row++) {
+        offset += (long) x * bpp * c;
+        offset = copy(file, offset, buf, row * rowLen, rowLen);
+        if (row < h - 1) {
+          offset += bpp * c * (scanlineWidth - w - x);
+        }
+      }
+      return offset;
+    }
+    int rowLen = w * bpp;
+    for (int channel=0; channel<c; channel++) {
+      offset += y * scanlineWidth * bpp;
+      for (int row=0; row<h; row++) {
+        offset += (long) x * bpp;
+        offset = copy(file, offset, buf, channel * h * rowLen + row * rowLen,
+          rowLen);
+        if (row < h - 1 || channel < c - 1) {
+          offset += bpp * (scanlineWidth - w - x);
+        }
+      }
+      if (channel < c - 1) {
+        offset += scanlineWidth * bpp * (imageHeight - y - h);
+      }
+    }
+    return offset;
+  }
+
+  /**
+   * Copies len bytes at the given file offset, if file is not null.
+   *
+   * @return the file offset after the last byte copied
+   */
+  private static long copy(MappedFile file, long offset, byte[] buf,
+    int off, int len)
+    throws IOException
+  {
+    if (file != null) file.read(offset, buf, off, len);
+    return offset + len;
+  }
+
+  /**
+   * Removes all control characters other than tab and newline, as
+   * {@link DataTools#sanitize(String)} does, without copying strings
+   * that do not contain any.
+   */
+  private static String sanitize(String s) {
+    int length = s.length();
+    int i = 0;
+    while (i < length && !isRemovedControl(s.charAt(i))) i++;
+    if (i == length) return s;
+
+    StringBuilder sb = new StringBuilder(length - 1);
+    sb.append(s, 0, i);
+    for (i++; i<length; i++) {
+      char c = s.charAt(i);
+      if (!isRemovedControl(c)) sb.append(c);
+    }
+    return sb.toString();
+  }
+
+  private static boolean isRemovedControl(char c) {
+    return c != '\t' && c != '\n' && Character.isISOControl(c);
+  }
+
+  /**
+   * Returns true if the given key contains at least one alphabetic character
+   * and no line terminators, as matching the key against the regular
+   * expression ".*[a-zA-Z].*" does.
+   */
+  private static boolean isValidKey(String key) {
+    boolean alphabetic = false;
+    for (int i=0; i<key.length(); i++) {
+      char c = key.charAt(i);
+      if (c == '\n' || c == '\r' || c == '\u0085' ||
+        c == '\u2028' || c == '\u2029')
+      {
+        return false;
+      }
+      if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+        alphabetic = true;
+      }
+    }
+    return alphabetic;
+  }
+
+  /** Removes &amp;lt;, &amp;gt; and &amp;amp;, then &lt;, &gt; and &amp;. */
+  private static String removeInvalidSequences(String s) {
+    if (s.indexOf('&') < 0 && s.indexOf('<') < 0 && s.indexOf('>') < 0) {
+      return s;
+    }
+    for (String sequence : INVALID_SEQUENCES) {
+      if (s.indexOf(sequence) >= 0) {
+        s = s.replace(sequence, "");
+      }
+    }
+    return s;
+  }
+
+  /** Returns true if the given string is empty once trimmed. */
+  private static boolean isBlank(String s) {
+    for (int i=0; i<s.length(); i++) {
+      if (s.charAt(i) > ' ') return false;
+    }
+    return true;
+  }
+
 }
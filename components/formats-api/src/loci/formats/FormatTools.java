@@ -48,8 +48,6 @@ import loci.common.Constants;
 import loci.common.DataTools;
 import loci.common.DateTools;
 import loci.common.RandomAccessInputStream;
-import loci.common.ReflectException;
-import loci.common.ReflectedUniverse;
 
 import loci.common.services.DependencyException;
 import loci.common.services.ServiceException;
@@ -1004,6 +1002,27 @@ public final class FormatTools {
     if (bufLength >= 0) checkBufferSize(r, bufLength, w, h);
   }
 
+  /**
+   * Convenience method for checking that the plane number, tile size,
+   * subsampling factor and buffer sizes are all valid for a call to
+   * {@link IFormatReader#openBytes(int, byte[], int, int, int, int, int)}.
+   * If 'bufLength' is less than 0, then the buffer length check is not
+   * performed.
+   */
+  public static void checkScaledPlaneParameters(IFormatReader r, int no,
+    int bufLength, int x, int y, int w, int h, int scale)
+    throws FormatException
+  {
+    if (scale < 1) {
+      throw new FormatException("Invalid scale: " + scale);
+    }
+    checkPlaneParameters(r, no, -1, x, y, w, h);
+    if (bufLength >= 0) {
+      checkBufferSize(r, bufLength, getScaledSize(w, scale),
+        getScaledSize(h, scale));
+    }
+  }
+
   /** Checks that the given plane number is valid for the given reader. */
   public static void checkPlaneNumber(IFormatReader r, int no)
     throws FormatException
@@ -1279,74 +1298,143 @@ public final class FormatTools {
   /**
    * Default implementation for {@link IFormatReader#openThumbBytes}.
    *
-   * At the moment, it uses {@link java.awt.image.BufferedImage} objects
-   * to resize thumbnails, so it is not safe for use in headless contexts.
-   * In the future, we may reimplement the image scaling logic purely with
-   * byte arrays, but handling every case would be substantial effort, so
-   * doing so is currently a low priority item.
+   * The thumbnail is computed from the smallest available resolution that
+   * is at least {@link IFormatReader#getThumbSizeX()} by
+   * {@link IFormatReader#getThumbSizeY()} pixels, and is downsampled using
+   * byte arrays only, so this is safe for use in headless contexts.
+   * The returned thumbnail has the same pixel type, byte order and
+   * interleaving as {@link IFormatReader#openBytes(int)}.
    */
   public static byte[] openThumbBytes(IFormatReader reader, int no)
     throws FormatException, IOException
   {
-    // NB: Dependency on AWT here is unfortunate, but very difficult to
-    // eliminate in general. We use reflection to limit class loading
-    // problems with AWT on Mac OS X.
-    ReflectedUniverse r = new ReflectedUniverse();
-    byte[][] bytes = null;
-    try {
-      r.exec("import loci.formats.gui.AWTImageTools");
-
-      int planeSize = getPlaneSize(reader);
-      byte[] plane = null;
-      if (planeSize < 0) {
-        int width = reader.getThumbSizeX() * 4;
-        int height = reader.getThumbSizeY() * 4;
-        int x = (reader.getSizeX() - width) / 2;
-        int y = (reader.getSizeY() - height) / 2;
-        plane = reader.openBytes(no, x, y, width, height);
-      }
-      else {
-        plane = reader.openBytes(no);
-      }
-
-      r.setVar("plane", plane);
-      r.setVar("reader", reader);
-      r.setVar("sizeX", reader.getSizeX());
-      r.setVar("sizeY", reader.getSizeY());
-      r.setVar("thumbSizeX", reader.getThumbSizeX());
-      r.setVar("thumbSizeY", reader.getThumbSizeY());
-      r.setVar("little", reader.isLittleEndian());
+    return ThumbnailTools.openThumbBytes(reader, no);
+  }
 
-      // always normalize floating point images, otherwise scaling will fail
-      r.setVar("normal", true);
-      r.exec("img = AWTImageTools.openImage(plane, reader, sizeX, sizeY, normal)");
-      r.exec("img = AWTImageTools.makeUnsigned(img)");
-      r.exec("thumb = AWTImageTools.scale(img, thumbSizeX, thumbSizeY, false)");
-      bytes = (byte[][]) r.exec("AWTImageTools.getPixelBytes(thumb, little)");
+  /**
+   * Default implementation for
+   * {@link IFormatReader#openBytes(int, int, int, int, int, int)}.
+   *
+   * A buffer of the subsampled size is allocated and filled by
+   * {@link IFormatReader#openBytes(int, byte[], int, int, int, int, int)}.
+   */
+  public static byte[] openScaledBytes(IFormatReader reader, int no,
+    int x, int y, int w, int h, int scale)
+    throws FormatException, IOException
+  {
+    checkScaledPlaneParameters(reader, no, -1, x, y, w, h, scale);
+    byte[] newBuffer;
+    try {
+      newBuffer = DataTools.allocate(getScaledSize(w, scale),
+        getScaledSize(h, scale), reader.getRGBChannelCount(),
+        getBytesPerPixel(reader.getPixelType()));
     }
-    catch (ReflectException exc) {
-      throw new FormatException(exc);
+    catch (IllegalArgumentException e) {
+      throw new FormatException("Image plane too large. Only 2GB of data can " +
+        "be extracted at one time.", e);
     }
+    return reader.openBytes(no, newBuffer, x, y, w, h, scale);
+  }
 
-    if (bytes.length == 1) return bytes[0];
-    int rgbChannelCount = reader.getRGBChannelCount();
-    byte[] rtn = new byte[rgbChannelCount * bytes[0].length];
+  /**
+   * Default implementation for
+   * {@link IFormatReader#openBytes(int, byte[], int, int, int, int, int)}.
+   *
+   * The region is read one block at a time, aligned to the reader's optimal
+   * tile size, and the upper-left pixel of each scale x scale block is kept,
+   * so that at most one tile is held in memory.  If the optimal tile height
+   * is smaller than the scale, only the sampled rows are read.
+   */
+  public static byte[] openScaledBytes(IFormatReader reader, int no,
+    byte[] buf, int x, int y, int w, int h, int scale)
+    throws FormatException, IOException
+  {
+    return openScaledBytes(reader, no, buf, x, y, w, h, scale,
+      reader.getOptimalTileWidth(), reader.getOptimalTileHeight());
+  }
 
-    if (!reader.isInterleaved()) {
-      for (int i=0; i<rgbChannelCount; i++) {
-        System.arraycopy(bytes[i], 0, rtn, bytes[0].length * i, bytes[i].length);
+  /**
+   * Reads a subsampled region as in
+   * {@link #openScaledBytes(IFormatReader, int, byte[], int, int, int, int, int)},
+   * using blocks of the given size instead of the reader's optimal tile size.
+   * A tile height of 1 reads only the sampled rows, so that the skipped rows
+   * of uncompressed data are never read.
+   */
+  public static byte[] openScaledBytes(IFormatReader reader, int no,
+    byte[] buf, int x, int y, int w, int h, int scale,
+    int tileWidth, int tileHeight)
+    throws FormatException, IOException
+  {
+    checkScaledPlaneParameters(reader, no, buf.length, x, y, w, h, scale);
+    if (scale == 1) {
+      return reader.openBytes(no, buf, x, y, w, h);
+    }
+
+    int scaledWidth = getScaledSize(w, scale);
+    int scaledHeight = getScaledSize(h, scale);
+    int bpp = getBytesPerPixel(reader.getPixelType());
+    int channels = reader.getRGBChannelCount();
+    boolean interleaved = reader.isInterleaved();
+
+    tileWidth = Math.max(1, tileWidth);
+    tileHeight = Math.max(1, tileHeight);
+    if (tileHeight < scale) {
+      // every sampled row is in a different tile, so read rows one at a time
+      tileHeight = 1;
+    }
+
+    byte[] tile = null;
+    for (int row=y - y % tileHeight; row<y+h; row+=tileHeight) {
+      // first and last sampled rows in this row of tiles
+      int firstRow = getScaledSize(Math.max(row, y) - y, scale);
+      int lastRow = (Math.min(row + tileHeight, y + h) - 1 - y) / scale;
+      if (firstRow > lastRow) {
+        continue;
       }
-    }
-    else {
-      int bpp = FormatTools.getBytesPerPixel(reader.getPixelType());
+      for (int col=x - x % tileWidth; col<x+w; col+=tileWidth) {
+        int firstCol = getScaledSize(Math.max(col, x) - x, scale);
+        int lastCol = (Math.min(col + tileWidth, x + w) - 1 - x) / scale;
+        if (firstCol > lastCol) {
+          continue;
+        }
 
-      for (int i=0; i<bytes[0].length; i+=bpp) {
-        for (int j=0; j<rgbChannelCount; j++) {
-          System.arraycopy(bytes[j], i, rtn, (i * rgbChannelCount) + j * bpp, bpp);
+        int tileX = x + firstCol * scale;
+        int tileY = y + firstRow * scale;
+        int tw = (lastCol - firstCol) * scale + 1;
+        int th = (lastRow - firstRow) * scale + 1;
+        int tileSize = tw * th * channels * bpp;
+        if (tile == null || tile.length != tileSize) {
+          tile = new byte[tileSize];
+        }
+        reader.openBytes(no, tile, tileX, tileY, tw, th);
+
+        for (int r=firstRow; r<=lastRow; r++) {
+          for (int c=firstCol; c<=lastCol; c++) {
+            int src = ((r - firstRow) * tw + (c - firstCol)) * scale;
+            int dest = r * scaledWidth + c;
+            if (interleaved) {
+              System.arraycopy(tile, src * channels * bpp,
+                buf, dest * channels * bpp, channels * bpp);
+            }
+            else {
+              for (int ch=0; ch<channels; ch++) {
+                System.arraycopy(tile, (ch * tw * th + src) * bpp,
+                  buf, (ch * scaledWidth * scaledHeight + dest) * bpp, bpp);
+              }
+            }
+          }
         }
       }
     }
-    return rtn;
+    return buf;
+  }
+
+  /**
+   * Returns the number of pixels along an axis of the given length after
+   * subsampling by the given factor.
+   */
+  public static int getScaledSize(int length, int scale) {
+    return (length + scale - 1) / scale;
   }
 
   /**
@@ -284,6 +284,54 @@ public interface IFormatReader extends IFormatHandler, IPyramidHandler, ICompres
   byte[] openBytes(int no, byte[] buf, int x, int y, int w, int h)
     throws FormatException, IOException;
 
+  /**
+   * Obtains a sub-image of the specified image plane, subsampled by the
+   * given factor in both X and Y.
+   *
+   * The default implementation in IFormatReader allocates a buffer and
+   * calls {@link #openBytes(int, byte[], int, int, int, int, int)}.
+   *
+   * @see #openBytes(int, byte[], int, int, int, int, int)
+   */
+  default byte[] openBytes(int no, int x, int y, int w, int h, int scale)
+    throws FormatException, IOException
+  {
+    return FormatTools.openScaledBytes(this, no, x, y, w, h, scale);
+  }
+
+  /**
+   * Obtains a sub-image of the specified image plane, subsampled by the
+   * given factor in both X and Y, into a pre-allocated byte array of
+   * (ceil(w / scale) * ceil(h / scale) * bytesPerPixel * RGB channel count).
+   *
+   * Pixel (i, j) of the result represents the scale x scale block of the
+   * full resolution plane whose upper-left corner is
+   * (x + i * scale, y + j * scale).  Depending upon the format, it is either
+   * the upper-left pixel of that block or a filtered value, e.g. from a
+   * lower JPEG 2000 resolution level.
+   *
+   * The default implementation in IFormatReader reads the region one tile
+   * at a time using {@link #openBytes(int, byte[], int, int, int, int)}.
+   *
+   * @param no the plane index within the current series.
+   * @param buf a pre-allocated buffer.
+   * @param x X coordinate of the upper-left corner of the sub-image
+   * @param y Y coordinate of the upper-left corner of the sub-image
+   * @param w width of the sub-image, at full resolution
+   * @param h height of the sub-image, at full resolution
+   * @param scale the subsampling factor; 1 is equivalent to
+   *   {@link #openBytes(int, byte[], int, int, int, int)}
+   * @return the pre-allocated buffer <code>buf</code> for convenience.
+   * @throws FormatException if there was a problem parsing the metadata of the
+   *   file.
+   * @throws IOException if there was a problem reading the file.
+   */
+  default byte[] openBytes(int no, byte[] buf, int x, int y, int w, int h,
+    int scale) throws FormatException, IOException
+  {
+    return FormatTools.openScaledBytes(this, no, buf, x, y, w, h, scale);
+  }
+
   /**
    * Obtains the specified image plane (or sub-image thereof) in the reader's
    * native data structure. For most readers this is a byte array; however,
@@ -32,16 +32,24 @@
 
 package loci.formats;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import loci.common.Constants;
 import loci.common.Location;
 import loci.common.RandomAccessInputStream;
 import loci.formats.codec.Codec;
@@ -68,11 +76,32 @@ public class ImageReader implements IFormatReader {
   private static final Logger LOGGER =
     LoggerFactory.getLogger(ImageReader.class);
 
+  /**
+   * Resource declaring the suffix information of the readers in readers.txt.
+   * Regenerate it with <code>java loci.formats.ImageReader &lt;file&gt;</code>
+   * after changing the suffixes of a reader.
+   */
+  private static final String READER_TYPES = "reader-types.txt";
+
   // -- Static fields --
 
   /** Default list of reader classes, for use with noargs constructor. */
   private static ClassList<IFormatReader> defaultClasses;
 
+  /**
+   * Suffix information for each reader class that has been instantiated
+   * at least once, shared by all ImageReaders so that later type detection
+   * can skip readers that cannot match without instantiating them.
+   */
+  private static final Map<Class<? extends IFormatReader>, TypeInfo>
+    TYPE_INFO = new ConcurrentHashMap<Class<? extends IFormatReader>, TypeInfo>();
+
+  /**
+   * Suffix information declared in reader-types.txt, keyed by class name,
+   * so that readers can be skipped before any instance has been created.
+   */
+  private static Map<String, TypeInfo> declaredTypes;
+
   // -- Static utility methods --
 
   public static ClassList<IFormatReader> getDefaultReaderClasses() {
@@ -90,11 +119,84 @@ public class ImageReader implements IFormatReader {
     return defaultClasses;
   }
 
+  /**
+   * Gets the type detection details of each reader class in the given list,
+   * in the format of reader-types.txt.  Only readers whose
+   * isThisType(String, boolean) is the suffix-based {@link FormatReader}
+   * implementation are included, unless a suffix is empty or contains
+   * whitespace or a comma.  Every reader class is instantiated.
+   */
+  public static List<String> getReaderTypes(ClassList<IFormatReader> classes) {
+    List<String> types = new ArrayList<String>();
+    for (Class<? extends IFormatReader> c : classes.getClasses()) {
+      IFormatReader reader;
+      try {
+        reader = c.getDeclaredConstructor().newInstance();
+      }
+      catch (ReflectiveOperationException exc) {
+        LOGGER.error("{} cannot be instantiated.", c.getName());
+        continue;
+      }
+      TypeInfo info = new TypeInfo(reader);
+      if (info.suffixOnly && info.canFormat()) {
+        types.add(info.format(c.getName()));
+      }
+    }
+    return types;
+  }
+
+  /**
+   * Writes reader-types.txt for the readers in readers.txt to the given file.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 1) {
+      System.out.println("Usage: java loci.formats.ImageReader <file>");
+      return;
+    }
+    try (PrintWriter out = new PrintWriter(args[0], Constants.ENCODING)) {
+      out.println("# Suffix information of the readers in readers.txt that");
+      out.println("# only check the file suffix in isThisType(String, boolean),");
+      out.println("# so that ImageReader can skip them without instantiating them.");
+      out.println("# Generated by 'java loci.formats.ImageReader <file>';");
+      out.println("# please do not edit.");
+      out.println("#");
+      out.println("# class suffixNecessary suffixSufficient suffixes");
+      for (String line : getReaderTypes(getDefaultReaderClasses())) {
+        out.println(line);
+      }
+    }
+  }
+
   // -- Fields --
 
-  /** List of supported file format readers. */
+  /** List of supported file format reader classes, in detection order. */
+  private Class<? extends IFormatReader>[] readerClasses;
+
+  /**
+   * Supported file format readers, in the same order as readerClasses.
+   * Each reader is only created when it is first needed.
+   */
   private IFormatReader[] readers;
 
+  /** Whether or not each reader class failed to instantiate. */
+  private boolean[] unusable;
+
+  // settings applied to every reader, including those created later;
+  // null if the corresponding setter has not been called
+  private MetadataOptions options;
+  private Boolean group;
+  private boolean fillColorSet;
+  private Byte fillColor;
+  private Boolean normalize;
+  private Boolean populateOriginalMetadata;
+  private Boolean filterMetadata;
+  private MetadataStore store;
+  private Boolean flattened;
+
+  /** Stream shared by all readers during type detection, if any. */
+  private RandomAccessInputStream typeStream;
+  private String typeStreamId;
+
   /**
    * Valid suffixes for this file format.
    * Populated the first time getSuffixes() is called.
@@ -126,26 +228,12 @@ public class ImageReader implements IFormatReader {
 
   /** Constructs a new ImageReader from the given list of reader classes. */
   public ImageReader(ClassList<IFormatReader> classList) {
-    // add readers to the list
-    List<IFormatReader> list = new ArrayList<IFormatReader>();
-    Class<? extends IFormatReader>[] c = classList.getClasses();
+    // readers are instantiated on demand; see getReader(int)
+    readerClasses = classList.getClasses();
+    readers = new IFormatReader[readerClasses.length];
+    unusable = new boolean[readerClasses.length];
     // assign the same options instance to all readers
-    MetadataOptions opt = new DynamicMetadataOptions();
-    for (int i=0; i<c.length; i++) {
-      IFormatReader reader = null;
-      try {
-        reader = c[i].getDeclaredConstructor().newInstance();
-        reader.setMetadataOptions(opt);
-      }
-      catch (ReflectiveOperationException exc) { }
-      if (reader == null) {
-        LOGGER.error("{} cannot be instantiated.", c[i].getName());
-        continue;
-      }
-      list.add(reader);
-    }
-    readers = new IFormatReader[list.size()];
-    list.toArray(readers);
+    options = new DynamicMetadataOptions();
   }
 
   // -- ImageReader API methods --
@@ -190,14 +278,23 @@ public class ImageReader implements IFormatReader {
       // initialize file
       boolean success = false;
       if (!invalid) {
-        for (int i=0; i<readers.length; i++) {
-          if (isThisType(readers[i], id, allowOpen)) {
-            current = i;
-            currentId = id;
-            success = true;
-            break;
+        RandomAccessInputStream stream =
+          openTypeDetectionStream(id, allowOpen && !fake && !omero);
+        try {
+          for (int i=0; i<readers.length; i++) {
+            if (cannotMatch(i, id, allowOpen)) continue;
+            IFormatReader reader = getReader(i);
+            if (reader != null && isThisType(reader, id, allowOpen)) {
+              current = i;
+              currentId = id;
+              success = true;
+              break;
+            }
           }
         }
+        finally {
+          closeTypeDetectionStream(stream);
+        }
       }
       if (!success) {
         throw new UnknownFormatException("Unknown file format: " + id);
@@ -214,17 +311,26 @@ public class ImageReader implements IFormatReader {
 
   /** Gets the file format reader instance matching the given class. */
   public IFormatReader getReader(Class<? extends IFormatReader> c) {
-    for (int i=0; i<readers.length; i++) {
-      if (readers[i].getClass().equals(c)) return readers[i];
+    for (int i=0; i<readerClasses.length; i++) {
+      if (readerClasses[i].equals(c)) {
+        IFormatReader reader = getReader(i);
+        if (reader != null) return reader;
+      }
     }
     return null;
   }
 
-  /** Gets all constituent file format readers. */
+  /**
+   * Gets all constituent file format readers.
+   * Any readers that have not been needed yet are instantiated.
+   */
   public IFormatReader[] getReaders() {
-    IFormatReader[] r = new IFormatReader[readers.length];
-    System.arraycopy(readers, 0, r, 0, readers.length);
-    return r;
+    List<IFormatReader> list = new ArrayList<IFormatReader>();
+    for (int i=0; i<readers.length; i++) {
+      IFormatReader reader = getReader(i);
+      if (reader != null) list.add(reader);
+    }
+    return list.toArray(new IFormatReader[list.size()]);
   }
 
   // -- IMetadataConfigurable API methods --
@@ -232,13 +338,13 @@ public class ImageReader implements IFormatReader {
   /* @see loci.formats.IMetadataConfigurable#getSupportedMetadataLevels() */
   @Override
   public Set<MetadataLevel> getSupportedMetadataLevels() {
-    return getReaders()[0].getSupportedMetadataLevels();
+    return getFirstReader().getSupportedMetadataLevels();
   }
 
   /* @see loci.formats.IMetadataConfigurable#getMetadataOptions() */
   @Override
   public MetadataOptions getMetadataOptions() {
-    return getReaders()[0].getMetadataOptions();
+    return getFirstReader().getMetadataOptions();
   }
 
   /**
@@ -246,8 +352,9 @@ public class ImageReader implements IFormatReader {
    */
   @Override
   public void setMetadataOptions(MetadataOptions options) {
+    this.options = options;
     for (IFormatReader reader : readers) {
-      reader.setMetadataOptions(options);
+      if (reader != null) reader.setMetadataOptions(options);
     }
   }
 
@@ -256,8 +363,18 @@ public class ImageReader implements IFormatReader {
   /* @see IFormatReader#isThisType(String, boolean) */
   @Override
   public boolean isThisType(String name, boolean open) {
-    for (int i=0; i<readers.length; i++) {
-      if (isThisType(readers[i], name, open)) return true;
+    RandomAccessInputStream stream = openTypeDetectionStream(name,
+      open && name != null && !name.toLowerCase().endsWith(".fake") &&
+      !isOmero(name));
+    try {
+      for (int i=0; i<readers.length; i++) {
+        if (cannotMatch(i, name, open)) continue;
+        IFormatReader reader = getReader(i);
+        if (reader != null && isThisType(reader, name, open)) return true;
+      }
+    }
+    finally {
+      closeTypeDetectionStream(stream);
     }
     return false;
   }
@@ -266,7 +383,8 @@ public class ImageReader implements IFormatReader {
   @Override
   public boolean isThisType(byte[] block) {
     for (int i=0; i<readers.length; i++) {
-      if (isThisType(readers[i], block)) return true;
+      IFormatReader reader = getReader(i);
+      if (reader != null && isThisType(reader, block)) return true;
     }
     return false;
   }
@@ -275,7 +393,8 @@ public class ImageReader implements IFormatReader {
   @Override
   public boolean isThisType(RandomAccessInputStream stream) throws IOException {
     for (int i=0; i<readers.length; i++) {
-      if (isThisType(readers[i], stream)) return true;
+      IFormatReader reader = getReader(i);
+      if (reader != null && isThisType(reader, stream)) return true;
     }
     return false;
   }
@@ -466,6 +585,22 @@ public class ImageReader implements IFormatReader {
     return getReader().openBytes(no, buf, x, y, w, h);
   }
 
+  /* @see IFormatReader#openBytes(int, int, int, int, int, int) */
+  @Override
+  public byte[] openBytes(int no, int x, int y, int w, int h, int scale)
+    throws FormatException, IOException
+  {
+    return getReader().openBytes(no, x, y, w, h, scale);
+  }
+
+  /* @see IFormatReader#openBytes(int, byte[], int, int, int, int, int) */
+  @Override
+  public byte[] openBytes(int no, byte[] buf, int x, int y, int w, int h,
+    int scale) throws FormatException, IOException
+  {
+    return getReader().openBytes(no, buf, x, y, w, h, scale);
+  }
+
   /* @see IFormatReader#openPlane(int, int, int, int, int) */
   @Override
   public Object openPlane(int no, int x, int y, int w, int h)
@@ -591,7 +726,9 @@ public class ImageReader implements IFormatReader {
   /* @see IFormatReader#close(boolean) */
   @Override
   public void close(boolean fileOnly) throws IOException {
-    for (int i=0; i<readers.length; i++) readers[i].close(fileOnly);
+    for (IFormatReader reader : readers) {
+      if (reader != null) reader.close(fileOnly);
+    }
     if (!fileOnly) currentId = null;
   }
 
@@ -599,14 +736,17 @@ public class ImageReader implements IFormatReader {
   @Override
   public void setGroupFiles(boolean group) {
     FormatTools.assertId(currentId, false, 2);
-    for (int i=0; i<readers.length; i++) readers[i].setGroupFiles(group);
+    this.group = group;
+    for (IFormatReader reader : readers) {
+      if (reader != null) reader.setGroupFiles(group);
+    }
   }
 
   /* @see IFormatReader#isGroupFiles() */
   @Override
   public boolean isGroupFiles() {
     // all readers should have same file grouping setting
-    return readers[0].isGroupFiles();
+    return getFirstReader().isGroupFiles();
   }
 
   /* @see IFormatReader#fileGroupOption(String) */
@@ -618,8 +758,10 @@ public class ImageReader implements IFormatReader {
   /* @see IFormatReader#setFillColor(Byte) */
   @Override
   public void setFillColor(Byte fill) {
+    fillColorSet = true;
+    fillColor = fill;
     for (IFormatReader r : readers) {
-      r.setFillColor(fill);
+      if (r != null) r.setFillColor(fill);
     }
   }
 
@@ -639,29 +781,33 @@ public class ImageReader implements IFormatReader {
   @Override
   public void setNormalized(boolean normalize) {
     FormatTools.assertId(currentId, false, 2);
-    for (int i=0; i<readers.length; i++) readers[i].setNormalized(normalize);
+    this.normalize = normalize;
+    for (IFormatReader reader : readers) {
+      if (reader != null) reader.setNormalized(normalize);
+    }
   }
 
   /* @see IFormatReader#isNormalized() */
   @Override
   public boolean isNormalized() {
     // NB: all readers should have the same normalization setting
-    return readers[0].isNormalized();
+    return getFirstReader().isNormalized();
   }
 
   /* @see IFormatReader#setOriginalMetadataPopulated(boolean) */
   @Override
   public void setOriginalMetadataPopulated(boolean populate) {
     FormatTools.assertId(currentId, false, 1);
-    for (int i=0; i<readers.length; i++) {
-      readers[i].setOriginalMetadataPopulated(populate);
+    populateOriginalMetadata = populate;
+    for (IFormatReader reader : readers) {
+      if (reader != null) reader.setOriginalMetadataPopulated(populate);
     }
   }
 
   /* @see IFormatReader#isOriginalMetadataPopulated() */
   @Override
   public boolean isOriginalMetadataPopulated() {
-    return readers[0].isOriginalMetadataPopulated();
+    return getFirstReader().isOriginalMetadataPopulated();
   }
 
   /* @see IFormatReader#getCurrentFile() */
@@ -675,21 +821,27 @@ public class ImageReader implements IFormatReader {
   @Override
   public void setMetadataFiltered(boolean filter) {
     FormatTools.assertId(currentId, false, 2);
-    for (int i=0; i<readers.length; i++) readers[i].setMetadataFiltered(filter);
+    filterMetadata = filter;
+    for (IFormatReader reader : readers) {
+      if (reader != null) reader.setMetadataFiltered(filter);
+    }
   }
 
   /* @see IFormatReader#isMetadataFiltered() */
   @Override
   public boolean isMetadataFiltered() {
     // NB: all readers should have the same metadata filtering setting
-    return readers[0].isMetadataFiltered();
+    return getFirstReader().isMetadataFiltered();
   }
 
   /* @see IFormatReader#setMetadataStore(MetadataStore) */
   @Override
   public void setMetadataStore(MetadataStore store) {
     FormatTools.assertId(currentId, false, 2);
-    for (int i=0; i<readers.length; i++) readers[i].setMetadataStore(store);
+    this.store = store;
+    for (IFormatReader reader : readers) {
+      if (reader != null) reader.setMetadataStore(store);
+    }
   }
 
   /* @see IFormatReader#getMetadataStore() */
@@ -806,14 +958,15 @@ public class ImageReader implements IFormatReader {
   @Override
   public boolean hasFlattenedResolutions() {
     // all readers should have the same flattened setting
-    return readers[0].hasFlattenedResolutions();
+    return getFirstReader().hasFlattenedResolutions();
   }
 
   /* @see IFormatReader#setFlattenedResolutions(boolean) */
   @Override
   public void setFlattenedResolutions(boolean flattened) {
+    this.flattened = flattened;
     for (IFormatReader reader : readers) {
-      reader.setFlattenedResolutions(flattened);
+      if (reader != null) reader.setFlattenedResolutions(flattened);
     }
   }
 
@@ -836,8 +989,8 @@ public class ImageReader implements IFormatReader {
   public String[] getSuffixes() {
     if (suffixes == null) {
       HashSet<String> suffixSet = new HashSet<String>();
-      for (int i=0; i<readers.length; i++) {
-        String[] suf = readers[i].getSuffixes();
+      for (IFormatReader reader : getReaders()) {
+        String[] suf = reader.getSuffixes();
         for (int j=0; j<suf.length; j++) suffixSet.add(suf[j]);
       }
       suffixes = new String[suffixSet.size()];
@@ -906,6 +1059,166 @@ public class ImageReader implements IFormatReader {
     return getReader().getTileCodecOptions(no, x, y);
   }
 
+  /**
+   * Gets the reader at the given index, instantiating it and applying the
+   * current settings if this is the first time it is needed.
+   * Returns null if the reader class cannot be instantiated.
+   */
+  private IFormatReader getReader(int index) {
+    if (readers[index] != null || unusable[index]) {
+      return readers[index];
+    }
+    Class<? extends IFormatReader> c = readerClasses[index];
+    IFormatReader reader = null;
+    try {
+      reader = c.getDeclaredConstructor().newInstance();
+    }
+    catch (ReflectiveOperationException exc) { }
+    if (reader == null) {
+      LOGGER.error("{} cannot be instantiated.", c.getName());
+      unusable[index] = true;
+      return null;
+    }
+    if (!TYPE_INFO.containsKey(c)) {
+      TYPE_INFO.put(c, new TypeInfo(reader));
+    }
+
+    reader.setMetadataOptions(options);
+    if (group != null) reader.setGroupFiles(group);
+    if (fillColorSet) reader.setFillColor(fillColor);
+    if (normalize != null) reader.setNormalized(normalize);
+    if (populateOriginalMetadata != null) {
+      reader.setOriginalMetadataPopulated(populateOriginalMetadata);
+    }
+    if (filterMetadata != null) reader.setMetadataFiltered(filterMetadata);
+    if (store != null) reader.setMetadataStore(store);
+    if (flattened != null) reader.setFlattenedResolutions(flattened);
+    if (typeStream != null && reader instanceof FormatReader) {
+      ((FormatReader) reader).setTypeDetectionStream(typeStreamId, typeStream);
+    }
+    readers[index] = reader;
+    return reader;
+  }
+
+  /** Gets the first reader that can be instantiated. */
+  private IFormatReader getFirstReader() {
+    for (int i=0; i<readers.length; i++) {
+      IFormatReader reader = getReader(i);
+      if (reader != null) return reader;
+    }
+    throw new IllegalStateException("No readers available");
+  }
+
+  /**
+   * Checks whether the reader at the given index has not been instantiated
+   * yet and is known not to match the given file, based on the suffix
+   * information recorded when its class was last instantiated.
+   */
+  private boolean cannotMatch(int index, String name, boolean open) {
+    if (readers[index] != null || name == null) {
+      return false;
+    }
+    TypeInfo info = TYPE_INFO.get(readerClasses[index]);
+    if (info == null) {
+      info = getDeclaredTypes().get(readerClasses[index].getName());
+    }
+    if (info == null || !info.suffixOnly) {
+      return false;
+    }
+    // mirrors the suffix checks in FormatReader.isThisType(String, boolean)
+    if (!info.suffixSufficient && !open) {
+      return true;
+    }
+    return info.suffixNecessary &&
+      !FormatHandler.checkSuffix(name, info.suffixes);
+  }
+
+  /** Gets the suffix information declared in reader-types.txt. */
+  private static synchronized Map<String, TypeInfo> getDeclaredTypes() {
+    if (declaredTypes != null) {
+      return declaredTypes;
+    }
+    declaredTypes = new HashMap<String, TypeInfo>();
+    InputStream stream = ImageReader.class.getResourceAsStream(READER_TYPES);
+    if (stream == null) {
+      LOGGER.debug("Could not find {}", READER_TYPES);
+      return declaredTypes;
+    }
+    try (BufferedReader in = new BufferedReader(
+      new InputStreamReader(stream, Constants.ENCODING)))
+    {
+      String line;
+      while ((line = in.readLine()) != null) {
+        int comment = line.indexOf('#');
+        if (comment >= 0) line = line.substring(0, comment);
+        line = line.trim();
+        if (line.isEmpty()) continue;
+        String[] tokens = line.split("\\s+");
+        if (tokens.length != 4) {
+          LOGGER.warn("Invalid line in {}: {}", READER_TYPES, line);
+          continue;
+        }
+        String[] suffixes = tokens[3].equals("-") ?
+          new String[0] : tokens[3].split(",");
+        declaredTypes.put(tokens[0], new TypeInfo(suffixes,
+          Boolean.parseBoolean(tokens[1]), Boolean.parseBoolean(tokens[2])));
+      }
+    }
+    catch (IOException e) {
+      LOGGER.warn("Could not read {}", READER_TYPES, e);
+    }
+    return declaredTypes;
+  }
+
+  /**
+   * Opens the given file once so that its contents can be examined by every
+   * reader during type detection, instead of each reader opening it again.
+   * Returns null if the file should not or cannot be opened; readers then
+   * open the file themselves as needed.
+   */
+  private RandomAccessInputStream openTypeDetectionStream(String id,
+    boolean open)
+  {
+    if (!open || new Location(id).isDirectory()) {
+      return null;
+    }
+    RandomAccessInputStream stream = null;
+    try {
+      stream = new RandomAccessInputStream(id);
+    }
+    catch (IOException e) {
+      LOGGER.debug("Could not open {} for type detection", id, e);
+      return null;
+    }
+    typeStream = stream;
+    typeStreamId = id;
+    for (IFormatReader reader : readers) {
+      if (reader instanceof FormatReader) {
+        ((FormatReader) reader).setTypeDetectionStream(id, stream);
+      }
+    }
+    return stream;
+  }
+
+  private void closeTypeDetectionStream(RandomAccessInputStream stream) {
+    if (stream == null) {
+      return;
+    }
+    typeStream = null;
+    typeStreamId = null;
+    for (IFormatReader reader : readers) {
+      if (reader instanceof FormatReader) {
+        ((FormatReader) reader).setTypeDetectionStream(null, null);
+      }
+    }
+    try {
+      stream.close();
+    }
+    catch (IOException e) {
+      LOGGER.debug("Could not close type detection stream", e);
+    }
+  }
+
   private boolean isThisType(IFormatReader reader, String name, boolean allowOpen) {
     try {
       return reader.isThisType(name, allowOpen);
@@ -945,4 +1258,70 @@ public class ImageReader implements IFormatReader {
     }
   }
 
+  // -- Helper classes --
+
+  /** Type detection details of a reader class. */
+  private static class TypeInfo {
+    /**
+     * Whether isThisType(String, boolean) is the FormatReader
+     * implementation, which only looks at the suffix unless the
+     * file must be opened.
+     */
+    final boolean suffixOnly;
+    final String[] suffixes;
+    final boolean suffixNecessary;
+    final boolean suffixSufficient;
+
+    TypeInfo(IFormatReader reader) {
+      boolean defaultCheck = false;
+      if (reader instanceof FormatReader) {
+        try {
+          defaultCheck = reader.getClass().getMethod("isThisType",
+            String.class, boolean.class).getDeclaringClass() ==
+            FormatReader.class;
+        }
+        catch (NoSuchMethodException e) {
+          LOGGER.debug("Could not check isThisType of {}", reader, e);
+        }
+      }
+      suffixOnly = defaultCheck;
+      suffixes = reader.getSuffixes();
+      if (defaultCheck) {
+        suffixNecessary = ((FormatReader) reader).suffixNecessary;
+        suffixSufficient = ((FormatReader) reader).suffixSufficient;
+      }
+      else {
+        suffixNecessary = false;
+        suffixSufficient = false;
+      }
+    }
+
+    /** Type detection details declared for a suffix-based reader. */
+    TypeInfo(String[] suffixes, boolean suffixNecessary,
+      boolean suffixSufficient)
+    {
+      suffixOnly = true;
+      this.suffixes = suffixes;
+      this.suffixNecessary = suffixNecessary;
+      this.suffixSufficient = suffixSufficient;
+    }
+
+    /** Checks whether every suffix can be written to reader-types.txt. */
+    boolean canFormat() {
+      for (String suffix : suffixes) {
+        if (suffix.isEmpty() || suffix.matches(".*[\\s,].*")) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /** Formats these details as a line of reader-types.txt. */
+    String format(String className) {
+      String list = suffixes.length == 0 ? "-" : String.join(",", suffixes);
+      return className + " " + suffixNecessary + " " + suffixSufficient +
+        " " + list;
+    }
+  }
+
 }
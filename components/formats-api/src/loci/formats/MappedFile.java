@@ -0,0 +1,164 @@
+/*
+ * #%L
+ * Top-level reader and writer APIs
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import loci.common.Location;
+import loci.common.RandomAccessInputStream;
+
+/**
+ * Read-only memory mapping of a local file, used by
+ * {@link FormatReader#readPlane} to copy pixel rows without going through a
+ * {@link RandomAccessInputStream}.  Files are mapped in windows of at most
+ * {@link #WINDOW_SIZE} bytes, so that files larger than 2 GB can be mapped;
+ * each window is only mapped when first read.
+ *
+ * Instances are not thread-safe.
+ */
+final class MappedFile implements Closeable {
+
+  // -- Constants --
+
+  /** Maximum size in bytes of each mapped window. */
+  static final long WINDOW_SIZE = 1L << 30;
+
+  // -- Fields --
+
+  private final String path;
+  private final long length;
+  private final long lastModified;
+  private final RandomAccessFile file;
+  private final ByteBuffer[] windows;
+
+  // -- Constructor --
+
+  private MappedFile(String path, File f) throws IOException {
+    this.path = path;
+    length = f.length();
+    lastModified = f.lastModified();
+    file = new RandomAccessFile(f, "r");
+    windows = new ByteBuffer[(int) ((length + WINDOW_SIZE - 1) / WINDOW_SIZE)];
+  }
+
+  // -- Utility methods --
+
+  /**
+   * Returns the given file if it is a regular local file with the same
+   * length as the given stream, or null otherwise.  Compressed and in-memory
+   * streams do not have the length of the file that they were opened from.
+   */
+  static File getFile(String id, RandomAccessInputStream s)
+    throws IOException
+  {
+    if (id == null || Location.getMappedFile(id) != null) return null;
+    File f = new File(Location.getMappedId(id));
+    if (!f.isFile() || f.length() != s.length()) return null;
+    return f;
+  }
+
+  /**
+   * Maps the given file, which the given stream reads, reusing the given
+   * mapping if it is still valid.  Returns null if the file is not a
+   * regular local file read directly by the stream.
+   */
+  static MappedFile map(String id, RandomAccessInputStream s,
+    MappedFile current)
+    throws IOException
+  {
+    File f = getFile(id, s);
+    if (f == null) return null;
+    String path = f.getAbsolutePath();
+    if (current != null && current.path.equals(path) &&
+      current.length == f.length() && current.lastModified == f.lastModified())
+    {
+      return current;
+    }
+    return new MappedFile(path, f);
+  }
+
+  // -- MappedFile API methods --
+
+  /** Gets the length of the mapped file. */
+  long length() {
+    return length;
+  }
+
+  /**
+   * Copies len bytes starting at the given file offset into buf.
+   * The caller is responsible for checking that the bytes are within
+   * the file.
+   */
+  void read(long offset, byte[] buf, int off, int len) throws IOException {
+    while (len > 0) {
+      int index = (int) (offset / WINDOW_SIZE);
+      int position = (int) (offset % WINDOW_SIZE);
+      ByteBuffer window = getWindow(index);
+      int n = Math.min(len, window.capacity() - position);
+      window.position(position);
+      window.get(buf, off, n);
+      offset += n;
+      off += n;
+      len -= n;
+    }
+  }
+
+  // -- Closeable API methods --
+
+  /**
+   * Closes the file.  Mapped windows remain valid until they are garbage
+   * collected.
+   */
+  @Override
+  public void close() throws IOException {
+    file.close();
+  }
+
+  // -- Helper methods --
+
+  private ByteBuffer getWindow(int index) throws IOException {
+    if (windows[index] == null) {
+      long start = index * WINDOW_SIZE;
+      long size = Math.min(WINDOW_SIZE, length - start);
+      windows[index] = file.getChannel().map(
+        FileChannel.MapMode.READ_ONLY, start, size);
+    }
+    return windows[index];
+  }
+
+}
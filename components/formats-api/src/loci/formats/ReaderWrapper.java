@@ -350,6 +350,27 @@ public abstract class ReaderWrapper implements IFormatReader {
     return reader.openBytes(no, buf, x, y, w, h);
   }
 
+  @Override
+  public byte[] openBytes(int no, int x, int y, int w, int h, int scale)
+    throws FormatException, IOException
+  {
+    FormatTools.checkScaledPlaneParameters(this, no, -1, x, y, w, h, scale);
+    byte[] buf = new byte[FormatTools.getScaledSize(w, scale) *
+      FormatTools.getScaledSize(h, scale) * getRGBChannelCount() *
+      FormatTools.getBytesPerPixel(getPixelType())];
+    return openBytes(no, buf, x, y, w, h, scale);
+  }
+
+  @Override
+  public byte[] openBytes(int no, byte[] buf, int x, int y, int w, int h,
+    int scale) throws FormatException, IOException
+  {
+    if (isPixelPassthrough()) {
+      return reader.openBytes(no, buf, x, y, w, h, scale);
+    }
+    return FormatTools.openScaledBytes(this, no, buf, x, y, w, h, scale);
+  }
+
   @Override
   public Object openPlane(int no, int x, int y, int w, int h)
     throws FormatException, IOException
@@ -704,6 +725,26 @@ public abstract class ReaderWrapper implements IFormatReader {
 
   // -- Helper methods --
 
+  /**
+   * Returns true if this wrapper does not override the region variants of
+   * openBytes, in which case subsampled regions can be read directly from
+   * the wrapped reader.  Otherwise, subsampled regions are assembled from
+   * this wrapper's own openBytes.
+   */
+  private boolean isPixelPassthrough() {
+    try {
+      Class<?> c = getClass();
+      return c.getMethod("openBytes", int.class, byte[].class, int.class,
+        int.class, int.class, int.class).getDeclaringClass() ==
+        ReaderWrapper.class &&
+        c.getMethod("openBytes", int.class, int.class, int.class, int.class,
+        int.class).getDeclaringClass() == ReaderWrapper.class;
+    }
+    catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
   private ReaderWrapper duplicateRecurse(
     Class<? extends IFormatReader> imageReaderClass) throws FormatException
   {
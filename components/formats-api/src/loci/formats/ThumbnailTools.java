@@ -0,0 +1,380 @@
+/*
+ * #%L
+ * Top-level reader and writer APIs
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats;
+
+import java.io.IOException;
+
+import loci.common.DataTools;
+
+/**
+ * Pure byte array implementation of {@link FormatTools#openThumbBytes}, with
+ * no dependency on AWT.
+ *
+ * The thumbnail is computed from the smallest resolution that is at least as
+ * large as the thumbnail, so for pyramids only a small image is decoded
+ * (unless {@link IFormatReader#hasFlattenedResolutions()} is set, in which
+ * case each resolution is a separate series).
+ * Planes of up to {@link #MAX_BLOCK_SIZE} bytes are read at once and
+ * downsampled by averaging the source pixels covered by each thumbnail pixel.
+ * Larger planes are read in bands of rows; if the reader's optimal tile height
+ * is smaller than the number of rows covered by each thumbnail row, only the
+ * middle row of each thumbnail row is read.  If the plane is tiled and each
+ * thumbnail pixel covers at least a whole tile, only the tile at the middle
+ * of each thumbnail pixel is read, so that the number of tiles decoded
+ * depends on the thumbnail size rather than the plane size.  Indexed images
+ * are downsampled by taking the middle pixel, so that no new indices are
+ * introduced.
+ *
+ * The pixel type, byte order and interleaving of the thumbnail match those
+ * of {@link IFormatReader#openBytes(int)}.
+ */
+final class ThumbnailTools {
+
+  // -- Constants --
+
+  /** Maximum number of bytes requested from the reader at once. */
+  static final int MAX_BLOCK_SIZE = 64 * 1024 * 1024;
+
+  // -- Constructor --
+
+  private ThumbnailTools() { }
+
+  // -- Utility methods --
+
+  /**
+   * Returns a thumbnail of the given plane in the reader's current series,
+   * of size {@link IFormatReader#getThumbSizeX()} by
+   * {@link IFormatReader#getThumbSizeY()}.
+   */
+  static byte[] openThumbBytes(IFormatReader reader, int no)
+    throws FormatException, IOException
+  {
+    int thumbSizeX = reader.getThumbSizeX();
+    int thumbSizeY = reader.getThumbSizeY();
+    int resolution = reader.getResolution();
+    int level = findResolution(reader, thumbSizeX, thumbSizeY);
+    if (level == resolution) {
+      return scale(reader, no, thumbSizeX, thumbSizeY);
+    }
+    reader.setResolution(level);
+    try {
+      return scale(reader, no, thumbSizeX, thumbSizeY);
+    }
+    finally {
+      reader.setResolution(resolution);
+    }
+  }
+
+  // -- Helper methods --
+
+  /**
+   * Returns the index of the smallest resolution that is at least as large
+   * as the thumbnail and has the same planes and pixel type as the
+   * current resolution.
+   */
+  private static int findResolution(IFormatReader reader,
+    int thumbSizeX, int thumbSizeY)
+  {
+    int resolution = reader.getResolution();
+    int count = reader.getResolutionCount();
+    if (count <= 1) {
+      return resolution;
+    }
+    int imageCount = reader.getImageCount();
+    int pixelType = reader.getPixelType();
+    int rgbChannels = reader.getRGBChannelCount();
+    boolean interleaved = reader.isInterleaved();
+
+    int best = resolution;
+    long bestSize = (long) reader.getSizeX() * reader.getSizeY();
+    try {
+      for (int r=resolution+1; r<count; r++) {
+        reader.setResolution(r);
+        long size = (long) reader.getSizeX() * reader.getSizeY();
+        if (reader.getSizeX() >= thumbSizeX &&
+          reader.getSizeY() >= thumbSizeY && size < bestSize &&
+          reader.getImageCount() == imageCount &&
+          reader.getPixelType() == pixelType &&
+          reader.getRGBChannelCount() == rgbChannels &&
+          reader.isInterleaved() == interleaved)
+        {
+          best = r;
+          bestSize = size;
+        }
+      }
+    }
+    finally {
+      reader.setResolution(resolution);
+    }
+    return best;
+  }
+
+  /**
+   * Downsamples the given plane at the reader's current resolution to the
+   * given size.
+   */
+  private static byte[] scale(IFormatReader reader, int no,
+    int thumbSizeX, int thumbSizeY)
+    throws FormatException, IOException
+  {
+    int sizeX = reader.getSizeX();
+    int sizeY = reader.getSizeY();
+    int pixelType = reader.getPixelType();
+    int bpp = FormatTools.getBytesPerPixel(pixelType);
+    int channels = reader.getRGBChannelCount();
+    boolean little = reader.isLittleEndian();
+    boolean interleaved = reader.isInterleaved();
+    boolean indexed = reader.isIndexed();
+
+    // source pixels [start, end) covered by each thumbnail column and row
+    int[] xStart = new int[thumbSizeX];
+    int[] xEnd = new int[thumbSizeX];
+    getRanges(sizeX, thumbSizeX, indexed, xStart, xEnd);
+
+    long pixelBytes = (long) channels * bpp;
+    long planeSize = sizeX * pixelBytes * sizeY;
+    int tileWidth = Math.max(1, reader.getOptimalTileWidth());
+    int tileHeight = Math.max(1, reader.getOptimalTileHeight());
+    boolean tiled = planeSize > MAX_BLOCK_SIZE && tileWidth < sizeX &&
+      sizeX / thumbSizeX >= tileWidth && sizeY / thumbSizeY >= tileHeight;
+    boolean sampled = planeSize > MAX_BLOCK_SIZE && !tiled &&
+      sizeY / thumbSizeY > tileHeight;
+
+    int[] yStart = new int[thumbSizeY];
+    int[] yEnd = new int[thumbSizeY];
+    getRanges(sizeY, thumbSizeY, indexed || sampled, yStart, yEnd);
+
+    if (tiled) {
+      // one tile per thumbnail pixel, read and averaged by itself
+      clipToTile(tileWidth, xStart, xEnd);
+      clipToTile(tileHeight, yStart, yEnd);
+      double[] sums = new double[thumbSizeX * thumbSizeY * channels];
+      byte[] buf = null;
+      for (int row=0; row<thumbSizeY; row++) {
+        int h = yEnd[row] - yStart[row];
+        for (int col=0; col<thumbSizeX; col++) {
+          int w = xEnd[col] - xStart[col];
+          buf = read(reader, no, buf, xStart[col], yStart[row], w, h);
+          accumulate(buf, xStart[col], yStart[row], w, h, pixelType, bpp,
+            channels, little, interleaved, xStart, xEnd, yStart, yEnd, sums);
+        }
+      }
+      return toThumbnail(sums, pixelType, bpp, channels, little, interleaved,
+        xStart, xEnd, yStart, yEnd);
+    }
+
+    // read blocks of whole rows where possible, otherwise single partial rows
+    int blockWidth = sizeX;
+    int blockHeight = sizeY;
+    if (planeSize > MAX_BLOCK_SIZE) {
+      long maxPixels = MAX_BLOCK_SIZE / pixelBytes;
+      if (sizeX > maxPixels) {
+        blockWidth = (int) maxPixels;
+        blockHeight = 1;
+      }
+      else {
+        blockHeight = (int) (maxPixels / sizeX);
+        if (blockHeight > tileHeight) {
+          blockHeight -= blockHeight % tileHeight;
+        }
+      }
+    }
+
+    double[] sums = new double[thumbSizeX * thumbSizeY * channels];
+    byte[] buf = null;
+    for (int x=0; x<sizeX; x+=blockWidth) {
+      int w = Math.min(blockWidth, sizeX - x);
+      if (sampled) {
+        for (int row=0; row<thumbSizeY; row++) {
+          buf = read(reader, no, buf, x, yStart[row], w, 1);
+          accumulate(buf, x, yStart[row], w, 1, pixelType, bpp, channels,
+            little, interleaved, xStart, xEnd, yStart, yEnd, sums);
+        }
+      }
+      else {
+        for (int y=0; y<sizeY; y+=blockHeight) {
+          int h = Math.min(blockHeight, sizeY - y);
+          buf = read(reader, no, buf, x, y, w, h);
+          accumulate(buf, x, y, w, h, pixelType, bpp, channels,
+            little, interleaved, xStart, xEnd, yStart, yEnd, sums);
+        }
+      }
+    }
+
+    return toThumbnail(sums, pixelType, bpp, channels, little, interleaved,
+      xStart, xEnd, yStart, yEnd);
+  }
+
+  /**
+   * Converts the sums of the source pixels covered by each thumbnail pixel
+   * into their averages.
+   */
+  private static byte[] toThumbnail(double[] sums, int pixelType, int bpp,
+    int channels, boolean little, boolean interleaved,
+    int[] xStart, int[] xEnd, int[] yStart, int[] yEnd)
+  {
+    int thumbSizeX = xStart.length;
+    int thumbSizeY = yStart.length;
+    byte[] thumb = new byte[thumbSizeX * thumbSizeY * channels * bpp];
+    for (int row=0; row<thumbSizeY; row++) {
+      int height = yEnd[row] - yStart[row];
+      for (int col=0; col<thumbSizeX; col++) {
+        double count = (double) height * (xEnd[col] - xStart[col]);
+        for (int c=0; c<channels; c++) {
+          double value = sums[(row * thumbSizeX + col) * channels + c] / count;
+          int index = interleaved ?
+            ((row * thumbSizeX + col) * channels + c) * bpp :
+            ((c * thumbSizeY + row) * thumbSizeX + col) * bpp;
+          setValue(thumb, index, bpp, little, pixelType, value);
+        }
+      }
+    }
+    return thumb;
+  }
+
+  /**
+   * Computes the range of source pixels covered by each thumbnail pixel.
+   * If <code>middle</code> is set, each range is reduced to its middle pixel.
+   */
+  private static void getRanges(int size, int thumbSize, boolean middle,
+    int[] start, int[] end)
+  {
+    for (int i=0; i<thumbSize; i++) {
+      start[i] = (int) ((long) i * size / thumbSize);
+      end[i] = Math.max(start[i] + 1, (int) ((long) (i + 1) * size / thumbSize));
+      end[i] = Math.min(end[i], size);
+      if (middle) {
+        start[i] = (start[i] + end[i] - 1) / 2;
+        end[i] = start[i] + 1;
+      }
+    }
+  }
+
+  /**
+   * Reduces each range to the part that lies in the same tile as the
+   * middle pixel of the range.
+   */
+  private static void clipToTile(int tileSize, int[] start, int[] end) {
+    for (int i=0; i<start.length; i++) {
+      int tile = (start[i] + end[i] - 1) / 2 / tileSize;
+      start[i] = Math.max(start[i], tile * tileSize);
+      end[i] = Math.min(end[i], (tile + 1) * tileSize);
+    }
+  }
+
+  /** Reads a block of the plane, reusing the given buffer if possible. */
+  private static byte[] read(IFormatReader reader, int no, byte[] buf,
+    int x, int y, int w, int h)
+    throws FormatException, IOException
+  {
+    int size = w * h * reader.getRGBChannelCount() *
+      FormatTools.getBytesPerPixel(reader.getPixelType());
+    if (buf != null && buf.length == size) {
+      return reader.openBytes(no, buf, x, y, w, h);
+    }
+    return reader.openBytes(no, x, y, w, h);
+  }
+
+  /**
+   * Adds the pixels of a block at (x, y) to the sums of the thumbnail pixels
+   * that cover them.
+   */
+  private static void accumulate(byte[] buf, int x, int y, int w, int h,
+    int pixelType, int bpp, int channels, boolean little, boolean interleaved,
+    int[] xStart, int[] xEnd, int[] yStart, int[] yEnd, double[] sums)
+  {
+    int thumbSizeX = xStart.length;
+    for (int row=0; row<yStart.length; row++) {
+      int y0 = Math.max(yStart[row], y);
+      int y1 = Math.min(yEnd[row], y + h);
+      for (int yy=y0; yy<y1; yy++) {
+        for (int col=0; col<thumbSizeX; col++) {
+          int x0 = Math.max(xStart[col], x);
+          int x1 = Math.min(xEnd[col], x + w);
+          int sum = (row * thumbSizeX + col) * channels;
+          for (int xx=x0; xx<x1; xx++) {
+            int pixel = (yy - y) * w + xx - x;
+            for (int c=0; c<channels; c++) {
+              int index = interleaved ? (pixel * channels + c) * bpp :
+                (c * w * h + pixel) * bpp;
+              sums[sum + c] += getValue(buf, index, bpp, little, pixelType);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /** Decodes the pixel at the given byte offset. */
+  private static double getValue(byte[] buf, int index, int bpp,
+    boolean little, int pixelType)
+  {
+    switch (pixelType) {
+      case FormatTools.INT8:
+        return buf[index];
+      case FormatTools.INT16:
+        return DataTools.bytesToShort(buf, index, bpp, little);
+      case FormatTools.UINT16:
+        return DataTools.bytesToShort(buf, index, bpp, little) & 0xffff;
+      case FormatTools.INT32:
+        return DataTools.bytesToInt(buf, index, bpp, little);
+      case FormatTools.UINT32:
+        return DataTools.bytesToInt(buf, index, bpp, little) & 0xffffffffL;
+      case FormatTools.FLOAT:
+        return DataTools.bytesToFloat(buf, index, bpp, little);
+      case FormatTools.DOUBLE:
+        return DataTools.bytesToDouble(buf, index, bpp, little);
+      default:
+        return buf[index] & 0xff;
+    }
+  }
+
+  /** Encodes the given value as a pixel at the given byte offset. */
+  private static void setValue(byte[] buf, int index, int bpp,
+    boolean little, int pixelType, double value)
+  {
+    long bits;
+    switch (pixelType) {
+      case FormatTools.FLOAT:
+        bits = Float.floatToIntBits((float) value);
+        break;
+      case FormatTools.DOUBLE:
+        bits = Double.doubleToLongBits(value);
+        break;
+      default:
+        bits = Math.round(value);
+    }
+    DataTools.unpackBytes(bits, buf, index, bpp, little);
+  }
+
+}
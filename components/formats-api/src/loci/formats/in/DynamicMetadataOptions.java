@@ -59,6 +59,29 @@ public class DynamicMetadataOptions implements MetadataOptions {
   public static final String READER_VALIDATE_KEY = "reader.validate.input";
   public static final boolean READER_VALIDATE_DEFAULT = false;
 
+  /**
+   * Maximum number of entries in each original metadata table
+   * (global or per series); 0 means no limit.
+   */
+  public static final String ORIGINAL_METADATA_LIMIT_KEY =
+    "metadata.original.limit";
+  public static final int ORIGINAL_METADATA_LIMIT_DEFAULT = 0;
+
+  /**
+   * Whether uncompressed planes in local files may be read through
+   * a memory mapping of the file instead of the reader's stream.
+   */
+  public static final String READER_MMAP_KEY = "reader.mmap";
+  public static final boolean READER_MMAP_DEFAULT = false;
+
+  /**
+   * Directory in which indexes of compressed pixel data (e.g. access points
+   * into gzip files) are saved, laid out as memo files are in a Memoizer
+   * directory; indexes are not saved if unset.
+   */
+  public static final String READER_INDEX_DIRECTORY_KEY =
+    "reader.index.directory";
+
   private Properties props;
 
   /**
@@ -0,0 +1,236 @@
+/*
+ * #%L
+ * Top-level reader and writer APIs
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats.utests;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Hashtable;
+import java.util.Random;
+
+import loci.common.DataTools;
+import loci.formats.CoreMetadata;
+import loci.formats.FormatException;
+import loci.formats.FormatReader;
+import loci.formats.in.DynamicMetadataOptions;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for {@link FormatReader#addGlobalMeta(String, Object)} and
+ * related methods.
+ */
+public class AddMetaTest {
+
+  private TestReader reader;
+
+  @BeforeMethod
+  public void setUp() {
+    reader = new TestReader();
+    reader.setMetadataFiltered(true);
+  }
+
+  @DataProvider(name = "entries")
+  public Object[][] createEntries() {
+    return new Object[][] {
+      {"Key", "value"},
+      {"  Key  ", " value "},
+      {"12345", "no letters"},
+      {"Key\n2", "line break in key"},
+      {"Key\u2028", "line separator in key"},
+      {"Key\t2", "tab\tand\nnewline"},
+      {"Key\u0000\u0007\u001f", "control\u0001\u0085characters"},
+      {"K&lt;e&gt;y", "a &amp; b <c> d & e"},
+      {"&amp;lt;", "&l&amp;t;"},
+      {"<>&", "value"},
+      {"Key", "   "},
+      {"Key", "&amp;"},
+      {"Key", 'c'},
+      {"Key", 42},
+      {"Key", 4.5},
+      {"Key", true},
+      {"Key", new int[] {1, 2}},
+    };
+  }
+
+  @Test(dataProvider = "entries")
+  public void testMatchesRegexFilter(String key, Object value) {
+    Hashtable<String, Object> expected = new Hashtable<String, Object>();
+    addFiltered(key, value, expected);
+    reader.addGlobalMeta(key, value);
+    assertEquals(reader.getTable(), expected);
+  }
+
+  @Test
+  public void testRandomEntriesMatchRegexFilter() {
+    Random random = new Random(7);
+    char[] alphabet = "aZ1 <>&;ltgmp\t\n\r\u0000\u0085 ".toCharArray();
+    Hashtable<String, Object> expected = new Hashtable<String, Object>();
+    for (int i=0; i<20000; i++) {
+      String key = randomString(random, alphabet);
+      String value = randomString(random, alphabet);
+      addFiltered(key, value, expected);
+      reader.addGlobalMeta(key, value);
+    }
+    assertEquals(reader.getTable(), expected);
+  }
+
+  @Test
+  public void testUnfiltered() {
+    reader.setMetadataFiltered(false);
+    reader.addGlobalMeta(" <Key>\n", "&lt;\u0000");
+    assertEquals(reader.getTable().get("<Key>"), "&lt;\u0000");
+  }
+
+  @Test
+  public void testSharedKeysAndValues() throws Exception {
+    reader.setId("test.fake");
+    String key0 = null, key1 = null;
+    for (String key : reader.getSeriesMetadata().keySet()) {
+      key0 = key;
+    }
+    reader.setSeries(1);
+    for (String key : reader.getSeriesMetadata().keySet()) {
+      key1 = key;
+    }
+    assertEquals(key0, "Exposure time");
+    assertSame(key0, key1);
+    reader.setSeries(0);
+    Object value0 = reader.getSeriesMetadataValue("Exposure time");
+    reader.setSeries(1);
+    assertSame(reader.getSeriesMetadataValue("Exposure time"), value0);
+  }
+
+  @Test
+  public void testLimit() throws Exception {
+    DynamicMetadataOptions options = new DynamicMetadataOptions();
+    options.setInteger(DynamicMetadataOptions.ORIGINAL_METADATA_LIMIT_KEY, 3);
+    reader.setMetadataOptions(options);
+    reader.setId("test.fake");
+    Hashtable<String, Object> global = reader.getGlobalMetadata();
+    assertEquals(global.size(), 3);
+    assertEquals(global.get("Key 0"), 0);
+    assertNull(global.get("Key 3"));
+    // existing keys can still be updated
+    assertEquals(global.get("Key 2"), "updated");
+  }
+
+  // -- Helper methods --
+
+  private static String randomString(Random random, char[] alphabet) {
+    char[] s = new char[random.nextInt(12)];
+    for (int i=0; i<s.length; i++) {
+      s[i] = alphabet[random.nextInt(alphabet.length)];
+    }
+    return new String(s);
+  }
+
+  /** Filters entries with the regular expressions formerly used. */
+  private static void addFiltered(String key, Object value,
+    Hashtable<String, Object> meta)
+  {
+    key = key.trim();
+    boolean string = value instanceof String || value instanceof Character;
+    String val = string ? String.valueOf(value) : null;
+    boolean simple = string || value instanceof Number ||
+      value instanceof Boolean;
+    if (!simple) return;
+    key = DataTools.sanitize(key);
+    if (string) val = DataTools.sanitize(val);
+    if (!key.matches(".*[a-zA-Z].*")) return;
+    String[] invalidSequences = new String[] {
+      "&lt;", "&gt;", "&amp;", "<", ">", "&"
+    };
+    for (int i=0; i<invalidSequences.length; i++) {
+      if (key.indexOf(invalidSequences[i]) >= 0) {
+        key = key.replaceAll(invalidSequences[i], "");
+      }
+      if (string && val.indexOf(invalidSequences[i]) >= 0) {
+        val = val.replaceAll(invalidSequences[i], "");
+      }
+    }
+    if (key.length() == 0) return;
+    if (string && val.trim().length() == 0) return;
+    meta.put(key, val == null ? value : val);
+  }
+
+  // -- Helper classes --
+
+  private static class TestReader extends FormatReader {
+
+    TestReader() {
+      super("Test", "fake");
+      metadata = new Hashtable<String, Object>();
+    }
+
+    @Override
+    public void addGlobalMeta(String key, Object value) {
+      super.addGlobalMeta(key, value);
+    }
+
+    Hashtable<String, Object> getTable() {
+      return metadata;
+    }
+
+    @Override
+    public byte[] openBytes(int no, byte[] buf, int x, int y, int w, int h)
+      throws FormatException, IOException
+    {
+      return buf;
+    }
+
+    @Override
+    protected void initFile(String id) throws FormatException, IOException {
+      super.initFile(id);
+      core.add(new CoreMetadata());
+      for (int s=0; s<core.size(); s++) {
+        setSeries(s);
+        addSeriesMeta(new StringBuilder("Exposure").append(" time").toString(),
+          new String("10 ms"));
+      }
+      setSeries(0);
+      for (int i=0; i<4; i++) {
+        addGlobalMeta("Key " + i, i);
+      }
+      addGlobalMeta("Key 2", "updated");
+    }
+
+  }
+
+}
@@ -0,0 +1,327 @@
+/*
+ * #%L
+ * Top-level reader and writer APIs
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats.utests;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+
+import loci.common.RandomAccessInputStream;
+import loci.formats.CoreMetadata;
+import loci.formats.FormatException;
+import loci.formats.FormatReader;
+import loci.formats.FormatTools;
+import loci.formats.in.DynamicMetadataOptions;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for memory-mapped reads in
+ * {@link FormatReader#readPlane(RandomAccessInputStream, int, int, int, int, int, int, int, byte[])}.
+ */
+public class MappedReadPlaneTest {
+
+  private static final int OFFSET = 7;
+
+  private File file;
+  private byte[] data;
+
+  /** Number of reads from the stream during the last call to read. */
+  private int streamReads;
+
+  @BeforeMethod
+  public void setUp() throws IOException {
+    file = File.createTempFile("MappedReadPlaneTest", ".raw");
+    data = new byte[64 * 1024];
+    new Random(3).nextBytes(data);
+    writeFile(data.length);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    file.delete();
+  }
+
+  @DataProvider(name = "planes")
+  public Object[][] createPlanes() {
+    return new Object[][] {
+      // interleaved, channels, pixel type, x, y, w, h, pad, width, height
+      {true, 1, FormatTools.UINT8, 0, 0, 32, 24, 0, 32, 24},
+      {true, 3, FormatTools.UINT16, 0, 0, 32, 24, 0, 32, 24},
+      {false, 3, FormatTools.UINT16, 0, 0, 32, 24, 0, 32, 24},
+      {true, 3, FormatTools.UINT8, 0, 5, 32, 10, 0, 32, 24},
+      {false, 3, FormatTools.FLOAT, 0, 5, 32, 10, 0, 32, 24},
+      {true, 1, FormatTools.UINT16, 3, 4, 10, 7, 0, 32, 24},
+      {true, 3, FormatTools.UINT8, 3, 4, 10, 7, 2, 32, 24},
+      {false, 2, FormatTools.INT16, 3, 4, 10, 7, 0, 32, 24},
+      {false, 3, FormatTools.UINT8, 3, 4, 10, 7, 3, 32, 24},
+      {false, 3, FormatTools.UINT8, 0, 0, 32, 24, 1, 32, 24},
+      {true, 1, FormatTools.UINT8, 31, 23, 1, 1, 0, 32, 24},
+    };
+  }
+
+  @Test(dataProvider = "planes")
+  public void testMatchesStream(boolean interleaved, int channels,
+    int pixelType, int x, int y, int w, int h, int pad, int width, int height)
+    throws IOException
+  {
+    assertSameRead(interleaved, channels, pixelType, x, y, w, h, pad,
+      width, height, true);
+  }
+
+  /**
+   * Reading past the end of the file fails or stops early; the mapped read
+   * must fall back to the stream and behave the same way.
+   */
+  @Test(dataProvider = "planes")
+  public void testTruncatedFile(boolean interleaved, int channels,
+    int pixelType, int x, int y, int w, int h, int pad, int width, int height)
+    throws IOException
+  {
+    int bpp = FormatTools.getBytesPerPixel(pixelType);
+    writeFile(OFFSET + (width + pad) * height * bpp * channels / 2);
+    assertSameRead(interleaved, channels, pixelType, x, y, w, h, pad,
+      width, height, false);
+  }
+
+  @Test
+  public void testByteArrayStream() throws IOException {
+    TestReader reader = new TestReader(true, 1, FormatTools.UINT8, 32, 24);
+    reader.setMapping(true);
+    byte[] plane = new byte[32 * 24];
+    try (RandomAccessInputStream s = new RandomAccessInputStream(data)) {
+      reader.readPlane(s, 0, 0, 32, 24, 0, 32, 24, plane);
+      assertEquals(s.getFilePointer(), plane.length);
+    }
+    for (int i=0; i<plane.length; i++) {
+      assertEquals(plane[i], data[i]);
+    }
+  }
+
+  @Test
+  public void testUnknownStream() throws IOException {
+    TestReader reader = new TestReader(true, 1, FormatTools.UINT8, 32, 24);
+    reader.setMapping(true);
+    byte[] plane = new byte[32 * 24];
+    try (CountingStream s = new CountingStream(file.getAbsolutePath())) {
+      reader.readPlane(s, 0, 0, 32, 24, 0, 32, 24, plane);
+      assertTrue(s.reads > 0);
+    }
+    for (int i=0; i<plane.length; i++) {
+      assertEquals(plane[i], data[i]);
+    }
+  }
+
+  @Test
+  public void testReadAfterClose() throws IOException {
+    TestReader reader = new TestReader(true, 1, FormatTools.UINT8, 32, 24);
+    reader.setMapping(true);
+    byte[] first = new byte[32 * 24];
+    read(reader, 0, 0, 32, 24, 0, 32, 24, first);
+    assertEquals(streamReads, 0);
+    reader.close(true);
+    byte[] second = new byte[first.length];
+    read(reader, 0, 0, 32, 24, 0, 32, 24, second);
+    assertEquals(streamReads, 0);
+    reader.close();
+    assertEquals(second, first);
+  }
+
+  // -- Helper methods --
+
+  private void writeFile(int length) throws IOException {
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(data, 0, length);
+    }
+  }
+
+  /**
+   * Checks that a mapped read matches a read from the stream.  If mapped
+   * is true, the mapped read must not have read anything from the stream.
+   */
+  private void assertSameRead(boolean interleaved, int channels,
+    int pixelType, int x, int y, int w, int h, int pad, int width, int height,
+    boolean mapped)
+    throws IOException
+  {
+    int bpp = FormatTools.getBytesPerPixel(pixelType);
+    int size = w * h * bpp * channels;
+
+    TestReader streamReader =
+      new TestReader(interleaved, channels, pixelType, width, height);
+    streamReader.setMapping(false);
+    byte[] expected = new byte[size];
+    Object expectedPointer =
+      read(streamReader, x, y, w, h, pad, width, height, expected);
+    int expectedReads = streamReads;
+
+    TestReader mappedReader =
+      new TestReader(interleaved, channels, pixelType, width, height);
+    mappedReader.setMapping(true);
+    byte[] actual = new byte[size];
+    Object actualPointer =
+      read(mappedReader, x, y, w, h, pad, width, height, actual);
+    mappedReader.close();
+    if (mapped) {
+      assertTrue(expectedReads > 0);
+      assertEquals(streamReads, 0);
+    }
+
+    assertEquals(actual, expected);
+    assertEquals(actualPointer, expectedPointer);
+  }
+
+  /**
+   * Reads a plane, returning the final file pointer or the class of the
+   * exception thrown by the read.
+   */
+  private Object read(TestReader reader, int x, int y, int w, int h, int pad,
+    int width, int height, byte[] buf)
+    throws IOException
+  {
+    CountingStream s = new CountingStream(file.getAbsolutePath());
+    reader.setStream(file.getAbsolutePath(), s);
+    try {
+      s.seek(OFFSET);
+      reader.readPlane(s, x, y, w, h, pad, width, height, buf);
+      return s.getFilePointer();
+    }
+    catch (IllegalArgumentException e) {
+      return e.getClass();
+    }
+    finally {
+      streamReads = s.reads;
+      reader.setStream(null, null);
+      s.close();
+    }
+  }
+
+  // -- Helper classes --
+
+  /** Stream that counts the reads of pixel data. */
+  private static class CountingStream extends RandomAccessInputStream {
+
+    int reads;
+
+    CountingStream(String file) throws IOException {
+      super(file);
+    }
+
+    @Override
+    public int read(byte[] b) throws IOException {
+      reads++;
+      return super.read(b);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      reads++;
+      return super.read(b, off, len);
+    }
+
+    @Override
+    public void readFully(byte[] b) throws IOException {
+      reads++;
+      super.readFully(b);
+    }
+
+    @Override
+    public void readFully(byte[] b, int off, int len) throws IOException {
+      reads++;
+      super.readFully(b, off, len);
+    }
+
+  }
+
+  private static class TestReader extends FormatReader {
+
+    TestReader(boolean interleaved, int channels, int pixelType,
+      int width, int height)
+    {
+      super("Test", "fake");
+      CoreMetadata m = new CoreMetadata();
+      m.sizeX = width;
+      m.sizeY = height;
+      m.sizeZ = 1;
+      m.sizeC = channels;
+      m.sizeT = 1;
+      m.imageCount = 1;
+      m.rgb = channels > 1;
+      m.interleaved = interleaved;
+      m.pixelType = pixelType;
+      m.dimensionOrder = "XYCZT";
+      core = new ArrayList<CoreMetadata>();
+      core.add(m);
+      currentId = "test.fake";
+    }
+
+    /** Sets the file being read, and the stream that reads it. */
+    void setStream(String id, RandomAccessInputStream s) {
+      currentId = id;
+      in = s;
+    }
+
+    void setMapping(boolean mapping) {
+      DynamicMetadataOptions options = new DynamicMetadataOptions();
+      options.setBoolean(DynamicMetadataOptions.READER_MMAP_KEY, mapping);
+      setMetadataOptions(options);
+    }
+
+    @Override
+    public byte[] readPlane(RandomAccessInputStream s, int x, int y,
+      int w, int h, int scanlinePad, int imageWidth, int imageHeight,
+      byte[] buf)
+      throws IOException
+    {
+      return super.readPlane(s, x, y, w, h, scanlinePad,
+        imageWidth, imageHeight, buf);
+    }
+
+    @Override
+    public byte[] openBytes(int no, byte[] buf, int x, int y, int w, int h)
+      throws FormatException, IOException
+    {
+      return buf;
+    }
+
+  }
+
+}
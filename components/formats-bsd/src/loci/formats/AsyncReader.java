@@ -0,0 +1,570 @@
+/*
+ * #%L
+ * BSD implementations of Bio-Formats readers and writers
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Non-blocking access to the pixels of a single dataset.
+ *
+ * Each call to {@link #openBytesAsync(int, int, int, int, int, int, int)}
+ * returns immediately with a {@link CompletableFuture}.  The plane is read
+ * on a background thread using a reader borrowed from a
+ * {@link ReaderPool}, so several requests can be read at once.
+ *
+ * Requests are also used to predict which data will be needed next.
+ * If the same region is read from a sequence of planes with a constant
+ * step along Z, C or T (e.g. time-lapse playback), the next planes in the
+ * sequence are read ahead of time.  If regions of the same plane are read
+ * with a constant offset in X and Y (e.g. panning across a slide), the
+ * next regions in that direction are read ahead of time.  The total size
+ * of data that has been read ahead, but not yet requested, is limited by
+ * {@link #getPrefetchBytes()}.  Requests that have already been read ahead
+ * are returned without reading the data again.
+ */
+public class AsyncReader implements Closeable {
+
+  // -- Constants --
+
+  /** Default maximum number of bytes to read ahead of requests. */
+  public static final long DEFAULT_PREFETCH_BYTES = 64 * 1024 * 1024;
+
+  /** Default number of steps of a detected access pattern to read ahead. */
+  public static final int DEFAULT_PREFETCH_DEPTH = 2;
+
+  private static final Logger LOGGER =
+    LoggerFactory.getLogger(AsyncReader.class);
+
+  // -- Fields --
+
+  private final ReaderPool pool;
+
+  private final boolean closePool;
+
+  private final ThreadPoolExecutor executor;
+
+  private final long prefetchBytes;
+
+  private volatile int prefetchDepth = DEFAULT_PREFETCH_DEPTH;
+
+  /** Requests that were read ahead and have not been requested yet. */
+  private final LinkedHashMap<Region, Prefetch> prefetched =
+    new LinkedHashMap<Region, Prefetch>();
+
+  /** Total size in bytes of the regions in {@link #prefetched}. */
+  private long prefetchedBytes = 0;
+
+  /** Dimensions of each series and resolution that has been read. */
+  private final Map<Long, Geometry> geometry = new HashMap<Long, Geometry>();
+
+  /** The last two regions requested, most recent first. */
+  private Region last, secondLast;
+
+  /** Used to run requests in the order they were made. */
+  private final AtomicLong sequence = new AtomicLong();
+
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong prefetches = new AtomicLong();
+  private final AtomicLong prefetchHits = new AtomicLong();
+  private final AtomicLong prefetchDiscards = new AtomicLong();
+
+  // -- Constructors --
+
+  /**
+   * Constructs an AsyncReader for the given file, with a new
+   * {@link ReaderPool} that is closed along with this reader.
+   *
+   * @param id the path passed to {@link IFormatReader#setId(String)}
+   */
+  public AsyncReader(String id) {
+    this(new ReaderPool(id), DEFAULT_PREFETCH_BYTES, true);
+  }
+
+  /**
+   * Constructs an AsyncReader that reads from the given pool.
+   *
+   * @param pool the pool from which readers are borrowed; it is not closed
+   *        by {@link #close()}
+   * @param prefetchBytes the maximum number of bytes to read ahead of
+   *        requests, or 0 to disable reading ahead
+   */
+  public AsyncReader(ReaderPool pool, long prefetchBytes) {
+    this(pool, prefetchBytes, false);
+  }
+
+  private AsyncReader(ReaderPool pool, long prefetchBytes, boolean closePool)
+  {
+    this.pool = pool;
+    this.prefetchBytes = prefetchBytes;
+    this.closePool = closePool;
+    final AtomicInteger threadCount = new AtomicInteger();
+    executor = new ThreadPoolExecutor(pool.getMaxSize(), pool.getMaxSize(),
+      0, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<Runnable>(),
+      new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r,
+            "AsyncReader-" + threadCount.incrementAndGet());
+          t.setDaemon(true);
+          return t;
+        }
+      });
+  }
+
+  // -- AsyncReader API methods --
+
+  /** Returns the pool from which readers are borrowed. */
+  public ReaderPool getPool() {
+    return pool;
+  }
+
+  /** Returns the maximum number of bytes that are read ahead of requests. */
+  public long getPrefetchBytes() {
+    return prefetchBytes;
+  }
+
+  /** Returns the number of steps of an access pattern that are read ahead. */
+  public int getPrefetchDepth() {
+    return prefetchDepth;
+  }
+
+  /**
+   * Sets the number of steps of a detected access pattern to read ahead,
+   * e.g. the number of time points after the current one.
+   */
+  public void setPrefetchDepth(int depth) {
+    if (depth < 0) {
+      throw new IllegalArgumentException("Invalid prefetch depth: " + depth);
+    }
+    prefetchDepth = depth;
+  }
+
+  /**
+   * Reads an entire plane in the background.
+   *
+   * @see #openBytesAsync(int, int, int, int, int, int, int)
+   */
+  public CompletableFuture<byte[]> openBytesAsync(int series, int no) {
+    return openBytesAsync(series, 0, no, 0, 0, -1, -1);
+  }
+
+  /**
+   * Reads a region of a plane in the background.
+   *
+   * @see #openBytesAsync(int, int, int, int, int, int, int)
+   */
+  public CompletableFuture<byte[]> openBytesAsync(int series, int no,
+    int x, int y, int w, int h)
+  {
+    return openBytesAsync(series, 0, no, x, y, w, h);
+  }
+
+  /**
+   * Reads a region of a plane in the background.
+   * The returned future completes with the same bytes as
+   * {@link IFormatReader#openBytes(int, int, int, int, int)} after calling
+   * {@link IFormatReader#setSeries(int)} and
+   * {@link IFormatReader#setResolution(int)}, or completes exceptionally
+   * with the {@link FormatException} or {@link IOException} thrown.
+   *
+   * @param series the series index
+   * @param resolution the resolution index within the series; must be 0
+   *        unless resolutions are not flattened
+   * @param no the plane index
+   * @param x the X coordinate of the upper-left corner of the region
+   * @param y the Y coordinate of the upper-left corner of the region
+   * @param w the width of the region, or -1 for the whole plane
+   * @param h the height of the region, or -1 for the whole plane
+   */
+  public CompletableFuture<byte[]> openBytesAsync(int series, int resolution,
+    int no, int x, int y, int w, int h)
+  {
+    requests.incrementAndGet();
+    Region region = new Region(series, resolution, no, x, y, w, h);
+    CompletableFuture<byte[]> future = null;
+    synchronized (this) {
+      Geometry g = geometry.get(region.imageKey());
+      if (g != null && w < 0 && h < 0) {
+        region = new Region(series, resolution, no, 0, 0, g.sizeX, g.sizeY);
+      }
+      Prefetch entry = prefetched.remove(region);
+      if (entry != null) {
+        prefetchedBytes -= entry.size;
+        future = entry.future;
+        if (future.isCompletedExceptionally()) {
+          // try again, in case the error was caused by reading ahead
+          future = null;
+        }
+        else {
+          prefetchHits.incrementAndGet();
+        }
+      }
+      secondLast = last;
+      last = region;
+      if (g != null) {
+        prefetch(g);
+      }
+    }
+    if (future == null) {
+      future = new CompletableFuture<byte[]>();
+      executor.execute(new Request(region, future, false));
+    }
+    return future;
+  }
+
+  /** Returns the number of calls to openBytesAsync. */
+  public long getRequestCount() {
+    return requests.get();
+  }
+
+  /** Returns the number of regions that were read ahead of requests. */
+  public long getPrefetchCount() {
+    return prefetches.get();
+  }
+
+  /** Returns the number of requests for regions that had been read ahead. */
+  public long getPrefetchHitCount() {
+    return prefetchHits.get();
+  }
+
+  /**
+   * Returns the number of regions that were read ahead, but discarded before
+   * being requested.
+   */
+  public long getPrefetchDiscardCount() {
+    return prefetchDiscards.get();
+  }
+
+  /**
+   * Stops reading in the background.  Requests that have not started are
+   * cancelled; requests that are being read are allowed to complete.
+   */
+  @Override
+  public void close() throws IOException {
+    executor.shutdown();
+    List<Runnable> pending = new ArrayList<Runnable>();
+    executor.getQueue().drainTo(pending);
+    for (Runnable r : pending) {
+      ((Request) r).future.cancel(false);
+    }
+    synchronized (this) {
+      prefetched.clear();
+      prefetchedBytes = 0;
+    }
+    if (closePool) {
+      pool.close();
+    }
+  }
+
+  // -- Helper methods --
+
+  /**
+   * Reads ahead along the pattern formed by the last two requests, if
+   * they are in the same series and resolution.
+   */
+  private void prefetch(Geometry g) {
+    if (secondLast == null || prefetchBytes <= 0 || prefetchDepth == 0 ||
+      last.series != secondLast.series ||
+      last.resolution != secondLast.resolution ||
+      last.w != secondLast.w || last.h != secondLast.h)
+    {
+      return;
+    }
+
+    if (last.no == secondLast.no) {
+      // panning across the plane
+      int dx = last.x - secondLast.x;
+      int dy = last.y - secondLast.y;
+      if (dx == 0 && dy == 0) {
+        return;
+      }
+      for (int i=1; i<=prefetchDepth; i++) {
+        int x = last.x + dx * i;
+        int y = last.y + dy * i;
+        if (x < 0 || y < 0 || x + last.w > g.sizeX || y + last.h > g.sizeY) {
+          break;
+        }
+        schedule(g, new Region(last.series, last.resolution, last.no,
+          x, y, last.w, last.h));
+      }
+    }
+    else if (last.x == secondLast.x && last.y == secondLast.y) {
+      // stepping through Z, C or T
+      int[] from = g.getZCTCoords(secondLast.no);
+      int[] to = g.getZCTCoords(last.no);
+      int[] step = new int[3];
+      int changed = 0;
+      for (int i=0; i<step.length; i++) {
+        step[i] = to[i] - from[i];
+        if (step[i] != 0) {
+          changed++;
+        }
+      }
+      if (changed != 1) {
+        return;
+      }
+      for (int i=1; i<=prefetchDepth; i++) {
+        int z = to[0] + step[0] * i;
+        int c = to[1] + step[1] * i;
+        int t = to[2] + step[2] * i;
+        if (z < 0 || c < 0 || t < 0 ||
+          z >= g.sizeZ || c >= g.effectiveSizeC || t >= g.sizeT)
+        {
+          break;
+        }
+        schedule(g, new Region(last.series, last.resolution,
+          g.getIndex(z, c, t), last.x, last.y, last.w, last.h));
+      }
+    }
+  }
+
+  /** Starts reading the given region ahead of time, if there is room. */
+  private void schedule(Geometry g, Region region) {
+    if (prefetched.containsKey(region)) {
+      return;
+    }
+    long size = g.size(region);
+    if (size > prefetchBytes) {
+      return;
+    }
+    // discard the oldest regions that were read ahead but never requested
+    Iterator<Prefetch> entries = prefetched.values().iterator();
+    while (prefetchedBytes + size > prefetchBytes && entries.hasNext()) {
+      Prefetch entry = entries.next();
+      entry.future.cancel(false);
+      prefetchedBytes -= entry.size;
+      prefetchDiscards.incrementAndGet();
+      entries.remove();
+    }
+    CompletableFuture<byte[]> future = new CompletableFuture<byte[]>();
+    prefetched.put(region, new Prefetch(future, size));
+    prefetchedBytes += size;
+    prefetches.incrementAndGet();
+    executor.execute(new Request(region, future, true));
+  }
+
+  /** Reads the given region using a pooled reader. */
+  private byte[] read(Region region)
+    throws FormatException, IOException, InterruptedException
+  {
+    IFormatReader reader = pool.borrowReader();
+    try {
+      reader.setSeries(region.series);
+      if (region.resolution > 0) {
+        reader.setResolution(region.resolution);
+      }
+      Long key = region.imageKey();
+      Geometry g;
+      synchronized (this) {
+        g = geometry.get(key);
+        if (g == null) {
+          g = new Geometry(reader);
+          geometry.put(key, g);
+        }
+      }
+      if (region.w < 0 && region.h < 0) {
+        return reader.openBytes(region.no);
+      }
+      return reader.openBytes(region.no,
+        region.x, region.y, region.w, region.h);
+    }
+    finally {
+      pool.returnReader(reader);
+    }
+  }
+
+  // -- Helper classes --
+
+  /**
+   * Task that reads a single region.  Requests made by the caller run
+   * before regions that are read ahead; otherwise tasks run in the order
+   * they were created.
+   */
+  private final class Request implements Runnable, Comparable<Request> {
+    private final Region region;
+    private final CompletableFuture<byte[]> future;
+    private final boolean prefetch;
+    private final long order = sequence.getAndIncrement();
+
+    Request(Region region, CompletableFuture<byte[]> future,
+      boolean prefetch)
+    {
+      this.region = region;
+      this.future = future;
+      this.prefetch = prefetch;
+    }
+
+    @Override
+    public void run() {
+      if (future.isDone()) {
+        return;
+      }
+      try {
+        future.complete(read(region));
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        future.completeExceptionally(e);
+      }
+      catch (Exception e) {
+        if (prefetch) {
+          LOGGER.debug("Could not read ahead {}", region, e);
+        }
+        future.completeExceptionally(e);
+      }
+    }
+
+    @Override
+    public int compareTo(Request r) {
+      if (prefetch != r.prefetch) {
+        return prefetch ? 1 : -1;
+      }
+      return Long.compare(order, r.order);
+    }
+  }
+
+  /**
+   * A region that was read ahead, with its size in bytes, which depends on
+   * the series and resolution the region belongs to.
+   */
+  private static final class Prefetch {
+    private final CompletableFuture<byte[]> future;
+    private final long size;
+
+    Prefetch(CompletableFuture<byte[]> future, long size) {
+      this.future = future;
+      this.size = size;
+    }
+  }
+
+  /** A region of a single plane. */
+  private static final class Region {
+    private final int series;
+    private final int resolution;
+    private final int no;
+    private final int x, y, w, h;
+
+    Region(int series, int resolution, int no, int x, int y, int w, int h) {
+      this.series = series;
+      this.resolution = resolution;
+      this.no = no;
+      this.x = x;
+      this.y = y;
+      this.w = w;
+      this.h = h;
+    }
+
+    Long imageKey() {
+      return ((long) series << 32) | resolution;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Region)) {
+        return false;
+      }
+      Region r = (Region) o;
+      return series == r.series && resolution == r.resolution &&
+        no == r.no && x == r.x && y == r.y && w == r.w && h == r.h;
+    }
+
+    @Override
+    public int hashCode() {
+      int hash = series;
+      hash = 31 * hash + resolution;
+      hash = 31 * hash + no;
+      hash = 31 * hash + x;
+      hash = 31 * hash + y;
+      hash = 31 * hash + w;
+      return 31 * hash + h;
+    }
+
+    @Override
+    public String toString() {
+      return "series " + series + ", resolution " + resolution + ", plane " +
+        no + ", " + w + "x" + h + " at (" + x + ", " + y + ")";
+    }
+  }
+
+  /** Dimensions of a single series and resolution. */
+  private static final class Geometry {
+    private final int sizeX, sizeY, sizeZ, effectiveSizeC, sizeT;
+    private final int imageCount;
+    private final String dimensionOrder;
+    private final int pixelBytes;
+
+    Geometry(IFormatReader reader) {
+      sizeX = reader.getSizeX();
+      sizeY = reader.getSizeY();
+      sizeZ = reader.getSizeZ();
+      effectiveSizeC = reader.getEffectiveSizeC();
+      sizeT = reader.getSizeT();
+      imageCount = reader.getImageCount();
+      dimensionOrder = reader.getDimensionOrder();
+      pixelBytes = reader.getRGBChannelCount() *
+        FormatTools.getBytesPerPixel(reader.getPixelType());
+    }
+
+    long size(Region region) {
+      return (long) region.w * region.h * pixelBytes;
+    }
+
+    int[] getZCTCoords(int no) {
+      return FormatTools.getZCTCoords(dimensionOrder,
+        sizeZ, effectiveSizeC, sizeT, imageCount, no);
+    }
+
+    int getIndex(int z, int c, int t) {
+      return FormatTools.getIndex(dimensionOrder,
+        sizeZ, effectiveSizeC, sizeT, imageCount, z, c, t);
+    }
+  }
+
+}
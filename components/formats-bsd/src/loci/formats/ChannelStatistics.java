@@ -0,0 +1,362 @@
+/*
+ * #%L
+ * BSD implementations of Bio-Formats readers and writers
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
+/**
+ * Accumulates the minimum, maximum, mean, standard deviation and optionally a
+ * histogram of the pixel values in one channel.
+ *
+ * Pixel data is scanned with a separate loop for each pixel type, so that
+ * values are never boxed or decoded one byte at a time.  Statistics computed
+ * from different parts of an image can be combined with
+ * {@link #add(ChannelStatistics)}.
+ */
+public class ChannelStatistics {
+
+  // -- Fields --
+
+  private long count;
+  private double min = Double.POSITIVE_INFINITY;
+  private double max = Double.NEGATIVE_INFINITY;
+  private double sum;
+  private double sumSquares;
+
+  /** Histogram counts, or null if no histogram is computed. */
+  private long[] histogram;
+  private double histogramMin, histogramMax;
+
+  // -- Constructors --
+
+  /** Constructs statistics without a histogram. */
+  public ChannelStatistics() {
+  }
+
+  /**
+   * Constructs statistics with a histogram of the given number of equally
+   * sized bins spanning [histogramMin, histogramMax].  Values outside the
+   * range are counted in the first or last bin.
+   */
+  public ChannelStatistics(int bins, double histogramMin,
+    double histogramMax)
+  {
+    if (bins < 1) {
+      throw new IllegalArgumentException("Invalid bin count: " + bins);
+    }
+    if (!(histogramMax >= histogramMin)) {
+      throw new IllegalArgumentException("Invalid histogram range: [" +
+        histogramMin + ", " + histogramMax + "]");
+    }
+    histogram = new long[bins];
+    this.histogramMin = histogramMin;
+    this.histogramMax = histogramMax;
+  }
+
+  /**
+   * Constructs statistics with a histogram of the given number of bins
+   * spanning every value of the given integer pixel type.
+   */
+  public ChannelStatistics(int bins, int pixelType) {
+    this(bins, FormatTools.defaultMinMax(pixelType)[0],
+      FormatTools.defaultMinMax(pixelType)[1]);
+    if (FormatTools.isFloatingPoint(pixelType)) {
+      throw new IllegalArgumentException(
+        "Histogram range required for floating point pixels");
+    }
+  }
+
+  /** Restores statistics that were previously computed. */
+  public ChannelStatistics(long count, double min, double max, double sum,
+    double sumSquares, long[] histogram, double histogramMin,
+    double histogramMax)
+  {
+    this.count = count;
+    this.min = min;
+    this.max = max;
+    this.sum = sum;
+    this.sumSquares = sumSquares;
+    this.histogram = histogram;
+    this.histogramMin = histogramMin;
+    this.histogramMax = histogramMax;
+  }
+
+  // -- Utility methods --
+
+  /**
+   * Adds the pixels in the given buffer to the statistics for each channel.
+   * The buffer holds one plane or tile of the given pixel type with
+   * {@code stats.length} channels, as returned by
+   * {@link IFormatReader#openBytes(int, byte[], int, int, int, int)}.
+   *
+   * @param stats the statistics to update for each channel in the buffer
+   * @param buf the pixel data
+   * @param len the number of bytes of pixel data in the buffer
+   * @param pixelType the pixel type, as defined in {@link FormatTools}
+   * @param little whether multi-byte values are little-endian
+   * @param interleaved whether channels are interleaved
+   */
+  public static void add(ChannelStatistics[] stats, byte[] buf, int len,
+    int pixelType, boolean little, boolean interleaved)
+  {
+    int channels = stats.length;
+    int bpp = FormatTools.getBytesPerPixel(pixelType);
+    int pixels = len / (bpp * channels);
+    for (int c=0; c<channels; c++) {
+      int start = interleaved ? c : c * pixels;
+      int stride = interleaved ? channels : 1;
+      stats[c].scan(buf, pixelType, little, start, stride, pixels);
+    }
+  }
+
+  // -- ChannelStatistics API methods --
+
+  /** Adds the values counted by the given statistics to these statistics. */
+  public void add(ChannelStatistics other) {
+    if (other.histogram != null) {
+      if (histogram == null || histogram.length != other.histogram.length ||
+        histogramMin != other.histogramMin ||
+        histogramMax != other.histogramMax)
+      {
+        throw new IllegalArgumentException("Histograms do not match");
+      }
+      for (int i=0; i<histogram.length; i++) {
+        histogram[i] += other.histogram[i];
+      }
+    }
+    count += other.count;
+    min = Math.min(min, other.min);
+    max = Math.max(max, other.max);
+    sum += other.sum;
+    sumSquares += other.sumSquares;
+  }
+
+  /** Gets the number of values counted, excluding NaN values. */
+  public long getCount() { return count; }
+
+  /**
+   * Gets the smallest value, or positive infinity if no values
+   * were counted.
+   */
+  public double getMinimum() { return min; }
+
+  /**
+   * Gets the largest value, or negative infinity if no values
+   * were counted.
+   */
+  public double getMaximum() { return max; }
+
+  /** Gets the sum of all values. */
+  public double getSum() { return sum; }
+
+  /** Gets the sum of the squares of all values. */
+  public double getSumOfSquares() { return sumSquares; }
+
+  /** Gets the mean value, or NaN if no values were counted. */
+  public double getMean() {
+    return count == 0 ? Double.NaN : sum / count;
+  }
+
+  /**
+   * Gets the population standard deviation, or NaN if no values
+   * were counted.
+   */
+  public double getStandardDeviation() {
+    if (count == 0) return Double.NaN;
+    double mean = sum / count;
+    return Math.sqrt(Math.max(0, sumSquares / count - mean * mean));
+  }
+
+  /** Gets a copy of the histogram counts, or null if there is no histogram. */
+  public long[] getHistogram() {
+    return histogram == null ? null : Arrays.copyOf(histogram, histogram.length);
+  }
+
+  /** Gets the lower bound of the histogram's first bin. */
+  public double getHistogramMinimum() { return histogramMin; }
+
+  /** Gets the upper bound of the histogram's last bin. */
+  public double getHistogramMaximum() { return histogramMax; }
+
+  // -- Helper methods --
+
+  /**
+   * Adds n values, starting at the given sample index and separated by the
+   * given number of samples, to the statistics.
+   */
+  private void scan(byte[] buf, int pixelType, boolean little, int start,
+    int stride, int n)
+  {
+    if (n <= 0) return;
+    ByteOrder order = little ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+    switch (pixelType) {
+      case FormatTools.INT8:
+      case FormatTools.UINT8:
+      case FormatTools.BIT:
+        scanBytes(buf, pixelType == FormatTools.INT8 ? -1 : 0xff,
+          start, stride, n);
+        break;
+      case FormatTools.INT16:
+      case FormatTools.UINT16:
+        scanShorts(ByteBuffer.wrap(buf).order(order).asShortBuffer(),
+          pixelType == FormatTools.INT16 ? -1 : 0xffff, start, stride, n);
+        break;
+      case FormatTools.INT32:
+      case FormatTools.UINT32:
+        scanInts(ByteBuffer.wrap(buf).order(order).asIntBuffer(),
+          pixelType == FormatTools.INT32 ? -1L : 0xffffffffL,
+          start, stride, n);
+        break;
+      case FormatTools.FLOAT:
+        scanFloats(ByteBuffer.wrap(buf).order(order).asFloatBuffer(),
+          start, stride, n);
+        break;
+      case FormatTools.DOUBLE:
+        scanDoubles(ByteBuffer.wrap(buf).order(order).asDoubleBuffer(),
+          start, stride, n);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown pixel type: " + pixelType);
+    }
+  }
+
+  private void scanBytes(byte[] buf, int mask, int start, int stride, int n) {
+    long lo = Long.MAX_VALUE, hi = Long.MIN_VALUE;
+    double s = 0, ss = 0;
+    int end = start + n * stride;
+    for (int i=start; i<end; i+=stride) {
+      long v = buf[i] & mask;
+      if (v < lo) lo = v;
+      if (v > hi) hi = v;
+      s += v;
+      ss += (double) v * v;
+      if (histogram != null) bin(v);
+    }
+    record(n, lo, hi, s, ss);
+  }
+
+  private void scanShorts(ShortBuffer buf, int mask, int start, int stride,
+    int n)
+  {
+    long lo = Long.MAX_VALUE, hi = Long.MIN_VALUE;
+    double s = 0, ss = 0;
+    int end = start + n * stride;
+    for (int i=start; i<end; i+=stride) {
+      long v = buf.get(i) & mask;
+      if (v < lo) lo = v;
+      if (v > hi) hi = v;
+      s += v;
+      ss += (double) v * v;
+      if (histogram != null) bin(v);
+    }
+    record(n, lo, hi, s, ss);
+  }
+
+  private void scanInts(IntBuffer buf, long mask, int start, int stride,
+    int n)
+  {
+    long lo = Long.MAX_VALUE, hi = Long.MIN_VALUE;
+    double s = 0, ss = 0;
+    int end = start + n * stride;
+    for (int i=start; i<end; i+=stride) {
+      long v = buf.get(i) & mask;
+      if (v < lo) lo = v;
+      if (v > hi) hi = v;
+      s += v;
+      ss += (double) v * v;
+      if (histogram != null) bin(v);
+    }
+    record(n, lo, hi, s, ss);
+  }
+
+  private void scanFloats(FloatBuffer buf, int start, int stride, int n) {
+    double lo = Double.POSITIVE_INFINITY, hi = Double.NEGATIVE_INFINITY;
+    double s = 0, ss = 0;
+    long valid = 0;
+    int end = start + n * stride;
+    for (int i=start; i<end; i+=stride) {
+      double v = buf.get(i);
+      if (v != v) continue; // NaN
+      if (v < lo) lo = v;
+      if (v > hi) hi = v;
+      s += v;
+      ss += v * v;
+      valid++;
+      if (histogram != null) bin(v);
+    }
+    record(valid, lo, hi, s, ss);
+  }
+
+  private void scanDoubles(DoubleBuffer buf, int start, int stride, int n) {
+    double lo = Double.POSITIVE_INFINITY, hi = Double.NEGATIVE_INFINITY;
+    double s = 0, ss = 0;
+    long valid = 0;
+    int end = start + n * stride;
+    for (int i=start; i<end; i+=stride) {
+      double v = buf.get(i);
+      if (v != v) continue; // NaN
+      if (v < lo) lo = v;
+      if (v > hi) hi = v;
+      s += v;
+      ss += v * v;
+      valid++;
+      if (histogram != null) bin(v);
+    }
+    record(valid, lo, hi, s, ss);
+  }
+
+  private void record(long n, double lo, double hi, double s, double ss) {
+    if (n == 0) return;
+    count += n;
+    if (lo < min) min = lo;
+    if (hi > max) max = hi;
+    sum += s;
+    sumSquares += ss;
+  }
+
+  private void bin(double v) {
+    int bins = histogram.length;
+    double width = histogramMax - histogramMin;
+    int b = width > 0 ? (int) ((v - histogramMin) / width * bins) : 0;
+    if (b < 0) b = 0;
+    else if (b >= bins) b = bins - 1;
+    histogram[b]++;
+  }
+
+}
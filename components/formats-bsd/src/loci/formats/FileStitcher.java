@@ -47,6 +47,8 @@ import loci.common.DataTools;
 import loci.common.Location;
 import loci.formats.codec.Codec;
 import loci.formats.codec.CodecOptions;
+import loci.formats.in.DynamicMetadataOptions;
+import loci.formats.in.MetadataLevel;
 import loci.formats.in.MetadataOptions;
 import loci.formats.meta.MetadataStore;
 
@@ -66,6 +68,12 @@ public class FileStitcher extends ReaderWrapper {
 
   private static final int MAX_READERS = 1000;
 
+  /**
+   * Number of readers kept open for a pattern of more than
+   * {@link #MAX_READERS} files when using a template.
+   */
+  private static final int TEMPLATE_READERS = 8;
+
   // -- Fields --
 
   /**
@@ -99,6 +107,12 @@ public class FileStitcher extends ReaderWrapper {
   private ExternalSeries[] externals;
   private ClassList<IFormatReader> classList;
 
+  /** Whether every file in a pattern is assumed to match the first file. */
+  private boolean template = false;
+
+  /** Directory in which to store memo files when using a template. */
+  private File templateMemoDirectory;
+
   // -- Constructors --
 
   /** Constructs a FileStitcher around a new image reader. */
@@ -174,6 +188,33 @@ public class FileStitcher extends ReaderWrapper {
     return !doNotChangePattern;
   }
 
+  /**
+   * Sets whether every file in a pattern is assumed to have the same format
+   * and layout as the first file.  If so, the other files are opened with
+   * the reader class chosen for the first file, skipping format detection,
+   * and with {@link MetadataLevel#MINIMUM}, since only the first file's
+   * metadata is used.  A few recently used files are kept open when there
+   * are too many files to keep a reader for each.
+   */
+  public void setUsingTemplate(boolean template) {
+    this.template = template;
+  }
+
+  /** Gets whether every file in a pattern is assumed to match the first. */
+  public boolean isUsingTemplate() { return template; }
+
+  /**
+   * Sets the directory in which to store memo files for each file in a
+   * pattern when using a template, so that files opened again are not
+   * parsed again.  A null directory (the default) disables memo files.
+   */
+  public void setTemplateMemoDirectory(File directory) {
+    templateMemoDirectory = directory;
+  }
+
+  /** Gets the directory in which memo files are stored with a template. */
+  public File getTemplateMemoDirectory() { return templateMemoDirectory; }
+
   /** Gets the reader appropriate for use with the given image plane. */
   public IFormatReader getReader(int no) throws FormatException, IOException {
     if (noStitch) return reader;
@@ -187,9 +228,9 @@ public class FileStitcher extends ReaderWrapper {
    */
   public DimensionSwapper getReader(int series, int no) {
     if (noStitch) return (DimensionSwapper) reader;
-    DimensionSwapper r = externals[getExternalSeries(series)].getReader(no);
+    // initializing the reader may replace it
     initReader(series, no);
-    return r;
+    return externals[getExternalSeries(series)].getReader(no);
   }
 
   /** Gets the local reader index for use with the given image plane. */
@@ -681,9 +722,7 @@ public class FileStitcher extends ReaderWrapper {
     super.setMetadataOptions(options);
     if (externals != null) {
       for (ExternalSeries s : externals) {
-        for (DimensionSwapper r : s.getReaders()) {
-          r.setMetadataOptions(options);
-        }
+        s.setMetadataOptions(options);
       }
     }
   }
@@ -1375,22 +1414,33 @@ public class FileStitcher extends ReaderWrapper {
   }
 
   protected void initReader(int sno, int fno) {
-    int external = getExternalSeries(sno);
-    DimensionSwapper r = externals[external].getReader(fno);
+    ExternalSeries external = externals[getExternalSeries(sno)];
+    DimensionSwapper r = external.getReader(fno);
     try {
-      if (r.getCurrentFile() == null) {
-        r.setGroupFiles(false);
+      boolean matches = true;
+      try {
+        openFile(sno, fno, r);
+        matches = external.matchesTemplate(fno, r);
       }
-      r.setId(externals[external].getFiles()[fno]);
-      r.setCoreIndex(reader.getCoreMetadataList().size() > 1 ? sno : 0);
-      String newOrder = ((DimensionSwapper) reader).getInputOrder();
-      if ((externals[external].getFiles().length > 1 || !r.isOrderCertain()) &&
-        (r.getRGBChannelCount() == 1 ||
-        newOrder.indexOf('C') == r.getDimensionOrder().indexOf('C')))
-      {
-        r.swapDimensions(newOrder);
+      catch (FormatException | IOException e) {
+        if (!external.isTemplateReader(r)) {
+          throw e;
+        }
+        LOGGER.debug("", e);
+        matches = false;
+      }
+      if (!matches && external.isTemplateReader(r)) {
+        // the file is not like the first file, so its format is detected
+        LOGGER.warn("{} cannot be read like {}; detecting its format",
+          external.getFiles()[fno], external.getFiles()[0]);
+        r = external.replaceReader(fno);
+        openFile(sno, fno, r);
+        matches = external.matchesTemplate(fno, r);
+      }
+      if (!matches) {
+        LOGGER.warn("{} does not match the layout of {}",
+          external.getFiles()[fno], external.getFiles()[0]);
       }
-      r.setOutputOrder(newOrder);
     }
     catch (FormatException e) {
       LOGGER.debug("", e);
@@ -1400,6 +1450,29 @@ public class FileStitcher extends ReaderWrapper {
     }
   }
 
+  /**
+   * Initializes the given reader with the given file, and matches its
+   * dimension order to that of the stitched file.
+   */
+  private void openFile(int sno, int fno, DimensionSwapper r)
+    throws FormatException, IOException
+  {
+    if (r.getCurrentFile() == null) {
+      r.setGroupFiles(false);
+    }
+    ExternalSeries external = externals[getExternalSeries(sno)];
+    r.setId(external.getFiles()[fno]);
+    r.setCoreIndex(reader.getCoreMetadataList().size() > 1 ? sno : 0);
+    String newOrder = ((DimensionSwapper) reader).getInputOrder();
+    if ((external.getFiles().length > 1 || !r.isOrderCertain()) &&
+      (r.getRGBChannelCount() == 1 ||
+      newOrder.indexOf('C') == r.getDimensionOrder().indexOf('C')))
+    {
+      r.swapDimensions(newOrder);
+    }
+    r.setOutputOrder(newOrder);
+  }
+
   // -- Helper classes --
 
   class ExternalSeries {
@@ -1411,24 +1484,51 @@ public class FileStitcher extends ReaderWrapper {
     private AxisGuesser ag;
     private int imagesPerFile;
 
+    /** Reader class and layout of the first file, when using a template. */
+    private Class<? extends IFormatReader> templateClass;
+    private int[] templateLayout;
+
+    /**
+     * Index of the file assigned to each reader, and when each reader was
+     * last used, if readers are shared between files.
+     */
+    private int[] assigned;
+    private long[] lastUsed;
+    private long useCount;
+
     public ExternalSeries(FilePattern pattern)
       throws FormatException, IOException
     {
       this.pattern = pattern;
       files = this.pattern.getFiles();
 
-      int nReaders = files.length > MAX_READERS ? 1 : files.length;
-      readers = new DimensionSwapper[nReaders];
-      for (int i=0; i<readers.length; i++) {
-        if (classList != null) {
-          readers[i] = new DimensionSwapper(new ImageReader(classList));
-        }
-        else readers[i] = new DimensionSwapper();
-        readers[i].setMetadataOptions(getMetadataOptions());
-        readers[i].setGroupFiles(false);
+      int nReaders = files.length;
+      if (files.length > MAX_READERS) {
+        nReaders = template ? TEMPLATE_READERS : 1;
       }
+      readers = new DimensionSwapper[nReaders];
+      readers[0] = createReader(false);
       readers[0].setId(files[0]);
 
+      if (template && files.length > 1) {
+        templateClass = readers[0].unwrap().getClass();
+        templateLayout = getLayout(readers[0]);
+        LOGGER.debug("Using {} for all files in {}",
+          templateClass.getName(), pattern.getPattern());
+      }
+      for (int i=1; i<readers.length; i++) {
+        readers[i] = createReader(templateClass != null);
+      }
+
+      if (readers.length < files.length && template) {
+        // the first file is used for much of the metadata, so its reader
+        // is never reassigned
+        assigned = new int[readers.length];
+        lastUsed = new long[readers.length];
+        Arrays.fill(assigned, -1);
+        assigned[0] = 0;
+      }
+
       ag = new AxisGuesser(this.pattern, readers[0].getDimensionOrder(),
         readers[0].getSizeZ(), readers[0].getSizeT(),
         readers[0].getSizeC(), readers[0].isOrderCertain());
@@ -1441,6 +1541,9 @@ public class FileStitcher extends ReaderWrapper {
     }
 
     public DimensionSwapper getReader(int fno) {
+      if (assigned != null) {
+        return readers[getReaderIndex(fno)];
+      }
       if (fno < readers.length) {
         return readers[fno];
       }
@@ -1471,10 +1574,54 @@ public class FileStitcher extends ReaderWrapper {
       return files;
     }
 
+    public void setMetadataOptions(MetadataOptions options) {
+      for (int i=0; i<readers.length; i++) {
+        if (isTemplateReader(readers[i])) {
+          readers[i].setMetadataOptions(new TemplateOptions(options));
+        }
+        else {
+          readers[i].setMetadataOptions(options);
+        }
+      }
+    }
+
     public int getImagesPerFile() {
       return imagesPerFile;
     }
 
+    /**
+     * Checks whether the given reader's file has the same layout as the
+     * first file.  This is always true if no template is used.
+     */
+    public boolean matchesTemplate(int fno, IFormatReader r) {
+      return fno == 0 || templateLayout == null ||
+        Arrays.equals(getLayout(r), templateLayout);
+    }
+
+    /**
+     * Checks whether the given reader uses the first file's reader class
+     * instead of detecting the format of its file.
+     */
+    public boolean isTemplateReader(DimensionSwapper r) {
+      return templateClass != null && !(r.getReader() instanceof ImageReader);
+    }
+
+    /**
+     * Replaces the reader used for the given file with one that detects
+     * the format of each file, for files that are not like the first file.
+     */
+    public DimensionSwapper replaceReader(int fno) {
+      int index = assigned != null ? getReaderIndex(fno) : fno;
+      try {
+        readers[index].close();
+      }
+      catch (IOException e) {
+        LOGGER.debug("Close failed", e);
+      }
+      readers[index] = createReader(false);
+      return readers[index];
+    }
+
     public void close() {
       close(false);
     }
@@ -1493,8 +1640,108 @@ public class FileStitcher extends ReaderWrapper {
           }
         }
       }
+      if (assigned != null && !fileOnly) {
+        Arrays.fill(assigned, -1);
+      }
+    }
+
+    /**
+     * Creates a reader for one file of the pattern.  If useTemplate is set,
+     * the reader uses the first file's reader class directly, and only
+     * reads the minimum metadata.
+     */
+    private DimensionSwapper createReader(boolean useTemplate) {
+      IFormatReader r = null;
+      if (useTemplate) {
+        try {
+          r = templateClass.getDeclaredConstructor().newInstance();
+          if (templateMemoDirectory != null) {
+            r = new Memoizer(r, 0, templateMemoDirectory);
+          }
+        }
+        catch (ReflectiveOperationException e) {
+          LOGGER.debug("Could not instantiate " + templateClass.getName(), e);
+        }
+      }
+      DimensionSwapper swapper;
+      if (r != null) {
+        swapper = new DimensionSwapper(r);
+        swapper.setMetadataOptions(new TemplateOptions(getMetadataOptions()));
+      }
+      else {
+        swapper = new DimensionSwapper(classList != null ?
+          new ImageReader(classList) : new ImageReader());
+        swapper.setMetadataOptions(getMetadataOptions());
+      }
+      swapper.setGroupFiles(false);
+      return swapper;
     }
 
+    private int[] getLayout(IFormatReader r) {
+      return new int[] {r.getSizeX(), r.getSizeY(), r.getPixelType(),
+        r.getImageCount(), r.getRGBChannelCount()};
+    }
+
+    /**
+     * Gets the index of the reader to use for the given file, reassigning
+     * the least recently used reader if no reader has the file open.
+     */
+    private int getReaderIndex(int fno) {
+      int index = -1;
+      for (int i=0; i<assigned.length; i++) {
+        if (assigned[i] == fno) {
+          index = i;
+          break;
+        }
+      }
+      if (index < 0) {
+        index = 1;
+        for (int i=2; i<assigned.length; i++) {
+          if (lastUsed[i] < lastUsed[index]) {
+            index = i;
+          }
+        }
+        assigned[index] = fno;
+      }
+      lastUsed[index] = ++useCount;
+      return index;
+    }
+
+  }
+
+  /**
+   * Options for the files after the first when using a template.  Only the
+   * minimum metadata is read; all other options are taken from the
+   * stitcher's options.
+   */
+  static class TemplateOptions extends DynamicMetadataOptions {
+    private final MetadataOptions options;
+
+    public TemplateOptions(MetadataOptions options) {
+      super(MetadataLevel.MINIMUM);
+      this.options = options;
+    }
+
+    @Override
+    public String get(String name) {
+      if (!METADATA_LEVEL_KEY.equals(name) &&
+        options instanceof DynamicMetadataOptions)
+      {
+        return ((DynamicMetadataOptions) options).get(name);
+      }
+      return super.get(name);
+    }
+
+    @Override
+    public String get(String name, String defaultValue) {
+      String value = get(name);
+      return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public boolean isValidate() {
+      return options.isValidate();
+    }
   }
 
 }
@@ -0,0 +1,638 @@
+/*
+ * #%L
+ * BSD implementations of Bio-Formats readers and writers
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import loci.common.Constants;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Directory of memo files that can be shared by many {@link Memoizer}
+ * instances, including instances in other JVMs or on other machines that
+ * mount the same directory.
+ *
+ * Memo files are named after a hash of the absolute path of the
+ * dataset, so the directory layout does not depend on the layout of the
+ * original files.  New memo files are written to a temporary file and
+ * then moved into place, so that a partially written memo file is never
+ * visible to other readers.
+ *
+ * When no valid memo file exists, the first {@link Memoizer} to initialize
+ * the dataset holds a lock on it until the new memo file has been saved.
+ * Other instances wait for the lock (for at most {@link #getLockTimeout()}
+ * milliseconds) and then load the saved memo file, instead of all
+ * initializing the same dataset at once.  Locks use
+ * {@link FileChannel#tryLock()}, so locking across machines depends on the
+ * file system supporting file locks.
+ *
+ * The total size of the memo files is kept below {@link #getMaximumBytes()}
+ * by deleting the memo files that were used least recently.  The last
+ * modification time of a memo file is updated each time it is loaded.
+ * Lock files are deleted along with their memo files, unless another thread
+ * or process is using them.
+ *
+ * @see Memoizer#setRepository(MemoRepository)
+ */
+public class MemoRepository {
+
+  // -- Constants --
+
+  /** Default maximum total size of the memo files, in bytes. */
+  public static final long DEFAULT_MAXIMUM_BYTES = 10L * 1024 * 1024 * 1024;
+
+  /**
+   * Default number of milliseconds to wait for another process to finish
+   * writing a memo file.
+   */
+  public static final long DEFAULT_LOCK_TIMEOUT = 10 * 60 * 1000;
+
+  /** Extension of memo files in the repository. */
+  public static final String MEMO_SUFFIX = ".bfmemo";
+
+  /** Extension of the files used to lock memo files. */
+  public static final String LOCK_SUFFIX = ".lock";
+
+  /**
+   * Age in milliseconds after which temporary files left behind by
+   * processes that stopped while saving a memo file are deleted.
+   */
+  private static final long STALE_TEMP_FILE_AGE = 24 * 60 * 60 * 1000;
+
+  /** Interval in milliseconds between attempts to acquire a file lock. */
+  private static final long LOCK_POLL_INTERVAL = 100;
+
+  private static final Logger LOGGER =
+    LoggerFactory.getLogger(MemoRepository.class);
+
+  /**
+   * Locks held by threads in this JVM, by memo file path.  File locks are
+   * held on behalf of the whole JVM, so threads must first hold the
+   * corresponding lock here.  Locks are removed once no thread holds or
+   * waits for them.
+   */
+  private static final Map<String, ThreadLock> THREAD_LOCKS =
+    new HashMap<String, ThreadLock>();
+
+  // -- Fields --
+
+  private final File directory;
+
+  private final long maximumBytes;
+
+  private final long lockTimeout;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong regenerations = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+  private final AtomicLong bytesRead = new AtomicLong();
+  private final AtomicLong bytesWritten = new AtomicLong();
+
+  // -- Constructors --
+
+  /**
+   * Constructs a repository in the given directory, limited to
+   * {@link #DEFAULT_MAXIMUM_BYTES} bytes.
+   *
+   * @param directory the directory in which memo files are stored; it is
+   *        created if it does not exist
+   */
+  public MemoRepository(File directory) {
+    this(directory, DEFAULT_MAXIMUM_BYTES, DEFAULT_LOCK_TIMEOUT);
+  }
+
+  /**
+   * Constructs a repository in the given directory.
+   *
+   * @param directory the directory in which memo files are stored; it is
+   *        created if it does not exist
+   * @param maximumBytes the maximum total size of the memo files, or a
+   *        negative number for no limit
+   * @param lockTimeout the maximum number of milliseconds to wait for
+   *        another process to finish writing a memo file
+   */
+  public MemoRepository(File directory, long maximumBytes, long lockTimeout) {
+    if (directory == null) {
+      throw new IllegalArgumentException("Directory cannot be null");
+    }
+    this.directory = directory.getAbsoluteFile();
+    this.maximumBytes = maximumBytes;
+    this.lockTimeout = lockTimeout;
+    this.directory.mkdirs();
+  }
+
+  // -- MemoRepository API methods --
+
+  /** Returns the directory in which memo files are stored. */
+  public File getDirectory() {
+    return directory;
+  }
+
+  /** Returns the maximum total size of the memo files in bytes. */
+  public long getMaximumBytes() {
+    return maximumBytes;
+  }
+
+  /** Returns the maximum number of milliseconds to wait for a lock. */
+  public long getLockTimeout() {
+    return lockTimeout;
+  }
+
+  /**
+   * Returns the memo file for the given dataset.  The file may not exist.
+   *
+   * @param id the path passed to {@link Memoizer#setId(String)}
+   * @return the memo file, or null if the repository directory is not
+   *         writable
+   */
+  public File getMemoFile(String id) {
+    if (!directory.isDirectory() || !directory.canWrite()) {
+      LOGGER.warn("skipping memo: directory not writeable - {}", directory);
+      return null;
+    }
+    String key = getKey(new File(id).getAbsolutePath());
+    File parent = new File(directory, key.substring(0, 2));
+    parent.mkdirs();
+    return new File(parent, key + MEMO_SUFFIX);
+  }
+
+  /**
+   * Acquires the lock for the given memo file, waiting for at most
+   * {@link #getLockTimeout()} milliseconds if another thread or process
+   * holds it.
+   *
+   * @param memoFile a file returned by {@link #getMemoFile(String)}
+   * @return the lock, which must be closed once the memo file has been
+   *         saved; if the lock could not be acquired before the timeout,
+   *         or if the current thread already holds it, a lock that does
+   *         not exclude anything is returned
+   */
+  public Lock lock(File memoFile) throws IOException {
+    ThreadLock threadLock = getThreadLock(memoFile);
+    if (threadLock.isHeldByCurrentThread()) {
+      // the lock already held by this thread excludes everyone else
+      LOGGER.debug("lock on {} is already held by this thread", memoFile);
+      releaseThreadLock(threadLock);
+      return new Lock(null, null, null);
+    }
+    long deadline = System.currentTimeMillis() + lockTimeout;
+    try {
+      if (!threadLock.tryLock(lockTimeout, TimeUnit.MILLISECONDS)) {
+        LOGGER.warn("timed out waiting for lock on {}", memoFile);
+        releaseThreadLock(threadLock);
+        return new Lock(null, null, null);
+      }
+    }
+    catch (InterruptedException e) {
+      releaseThreadLock(threadLock);
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for " + memoFile, e);
+    }
+
+    File lockFile = getLockFile(memoFile);
+    FileChannel channel = null;
+    boolean locked = false;
+    try {
+      channel = new RandomAccessFile(lockFile, "rw").getChannel();
+      while (true) {
+        FileLock fileLock = null;
+        try {
+          fileLock = channel.tryLock();
+        }
+        catch (OverlappingFileLockException e) {
+          // held by another thread that locked the same file through
+          // a different path, so wait for it as for another process
+        }
+        if (fileLock != null) {
+          if (!lockFile.exists()) {
+            // deleted by evict() after the channel was opened, so
+            // lock a new file that other processes will also see
+            fileLock.release();
+            channel.close();
+            channel = new RandomAccessFile(lockFile, "rw").getChannel();
+            continue;
+          }
+          locked = true;
+          return new Lock(threadLock, channel, fileLock);
+        }
+        if (System.currentTimeMillis() >= deadline) {
+          LOGGER.warn("timed out waiting for lock on {}", memoFile);
+          break;
+        }
+        Thread.sleep(LOCK_POLL_INTERVAL);
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for " + memoFile, e);
+    }
+    catch (IOException e) {
+      LOGGER.warn("could not lock {}", lockFile, e);
+    }
+    finally {
+      if (!locked) {
+        try {
+          if (channel != null) {
+            channel.close();
+          }
+        }
+        finally {
+          threadLock.unlock();
+          releaseThreadLock(threadLock);
+        }
+      }
+    }
+    return new Lock(null, null, null);
+  }
+
+  /**
+   * Moves a newly written memo file into place, replacing any existing
+   * memo file, and then deletes old memo files if the repository is
+   * larger than {@link #getMaximumBytes()}.
+   *
+   * @param tempFile the complete memo file, in the same directory as
+   *        {@code memoFile}
+   * @param memoFile a file returned by {@link #getMemoFile(String)}
+   */
+  public void publish(File tempFile, File memoFile) throws IOException {
+    long length = tempFile.length();
+    try {
+      Files.move(tempFile.toPath(), memoFile.toPath(),
+        StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+    catch (AtomicMoveNotSupportedException e) {
+      Files.move(tempFile.toPath(), memoFile.toPath(),
+        StandardCopyOption.REPLACE_EXISTING);
+    }
+    regenerations.incrementAndGet();
+    bytesWritten.addAndGet(length);
+    evict();
+  }
+
+  /**
+   * Records that the given memo file was loaded, marking it as recently
+   * used.
+   */
+  public void recordHit(File memoFile) {
+    hits.incrementAndGet();
+    bytesRead.addAndGet(memoFile.length());
+    if (!memoFile.setLastModified(System.currentTimeMillis())) {
+      LOGGER.debug("could not update last modified time of {}", memoFile);
+    }
+  }
+
+  /** Records that no valid memo file was found for a dataset. */
+  public void recordMiss() {
+    misses.incrementAndGet();
+  }
+
+  /**
+   * Deletes the least recently used memo files until the total size of the
+   * repository is no larger than {@link #getMaximumBytes()}.  Temporary
+   * files left behind by interrupted saves are also deleted, as are lock
+   * files whose memo file does not exist and that are not in use.
+   *
+   * @return the number of memo files that were deleted
+   */
+  public int evict() {
+    List<File> memoFiles = new ArrayList<File>();
+    List<File> lockFiles = new ArrayList<File>();
+    long total = 0;
+    long now = System.currentTimeMillis();
+    File[] dirs = directory.listFiles();
+    if (dirs == null) {
+      return 0;
+    }
+    for (File dir : dirs) {
+      File[] files = dir.listFiles();
+      if (files == null) {
+        continue;
+      }
+      for (File f : files) {
+        String name = f.getName();
+        if (name.endsWith(MEMO_SUFFIX)) {
+          memoFiles.add(f);
+          total += f.length();
+        }
+        else if (name.endsWith(LOCK_SUFFIX)) {
+          lockFiles.add(f);
+        }
+        else if (now - f.lastModified() > STALE_TEMP_FILE_AGE) {
+          LOGGER.debug("deleting stale temporary file {}", f);
+          f.delete();
+        }
+      }
+    }
+    int deleted = 0;
+    if (maximumBytes >= 0 && total > maximumBytes) {
+      deleted = evict(memoFiles, total);
+    }
+    for (File lockFile : lockFiles) {
+      if (!getLockedMemoFile(lockFile).exists()) {
+        deleteLockFile(lockFile);
+      }
+    }
+    return deleted;
+  }
+
+  /** Returns the total size in bytes of the memo files in the repository. */
+  public long getTotalBytes() {
+    long total = 0;
+    File[] dirs = directory.listFiles();
+    if (dirs != null) {
+      for (File dir : dirs) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+          continue;
+        }
+        for (File f : files) {
+          if (f.getName().endsWith(MEMO_SUFFIX)) {
+            total += f.length();
+          }
+        }
+      }
+    }
+    return total;
+  }
+
+  /** Returns the number of memo files loaded through this instance. */
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  /** Returns the number of datasets for which no valid memo was found. */
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  /** Returns the number of memo files saved through this instance. */
+  public long getRegenerationCount() {
+    return regenerations.get();
+  }
+
+  /** Returns the number of memo files deleted by {@link #evict()}. */
+  public long getEvictionCount() {
+    return evictions.get();
+  }
+
+  /** Returns the total size of the memo files that were loaded. */
+  public long getBytesRead() {
+    return bytesRead.get();
+  }
+
+  /** Returns the total size of the memo files that were saved. */
+  public long getBytesWritten() {
+    return bytesWritten.get();
+  }
+
+  // -- Helper methods --
+
+  /**
+   * Deletes the least recently used of the given memo files until their
+   * total size is no larger than {@link #getMaximumBytes()}.
+   */
+  private int evict(List<File> memoFiles, long total) {
+    final long[] lastModified = new long[memoFiles.size()];
+    Integer[] order = new Integer[memoFiles.size()];
+    for (int i=0; i<order.length; i++) {
+      lastModified[i] = memoFiles.get(i).lastModified();
+      order[i] = i;
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer a, Integer b) {
+        return Long.compare(lastModified[a], lastModified[b]);
+      }
+    });
+
+    int deleted = 0;
+    for (int i=0; i<order.length && total > maximumBytes; i++) {
+      File f = memoFiles.get(order[i]);
+      long length = f.length();
+      if (f.delete()) {
+        LOGGER.debug("evicted memo file {} ({} bytes)", f, length);
+        total -= length;
+        deleted++;
+      }
+    }
+    evictions.addAndGet(deleted);
+    return deleted;
+  }
+
+  private static File getLockFile(File memoFile) {
+    String name = memoFile.getName();
+    name = name.substring(0, name.length() - MEMO_SUFFIX.length());
+    return new File(memoFile.getParentFile(), name + LOCK_SUFFIX);
+  }
+
+  private static File getLockedMemoFile(File lockFile) {
+    String name = lockFile.getName();
+    name = name.substring(0, name.length() - LOCK_SUFFIX.length());
+    return new File(lockFile.getParentFile(), name + MEMO_SUFFIX);
+  }
+
+  /**
+   * Returns the lock used by threads in this JVM for the given memo file.
+   * {@link #releaseThreadLock(ThreadLock)} must be called once the lock is
+   * no longer held or waited for.
+   */
+  private static ThreadLock getThreadLock(File memoFile) {
+    String path = memoFile.getAbsolutePath();
+    synchronized (THREAD_LOCKS) {
+      ThreadLock threadLock = THREAD_LOCKS.get(path);
+      if (threadLock == null) {
+        threadLock = new ThreadLock(path);
+        THREAD_LOCKS.put(path, threadLock);
+      }
+      threadLock.references++;
+      return threadLock;
+    }
+  }
+
+  /** Removes the given lock once it is no longer used by any thread. */
+  private static void releaseThreadLock(ThreadLock threadLock) {
+    synchronized (THREAD_LOCKS) {
+      if (--threadLock.references == 0) {
+        THREAD_LOCKS.remove(threadLock.path);
+      }
+    }
+  }
+
+  /**
+   * Deletes the given lock file, unless another thread or process holds
+   * the lock.  The lock is held while the file is deleted, so that
+   * {@link #lock(File)} does not return a lock on the deleted file.
+   */
+  private void deleteLockFile(File lockFile) {
+    ThreadLock threadLock = getThreadLock(getLockedMemoFile(lockFile));
+    try {
+      // a lock held by this thread is in use too
+      if (threadLock.isHeldByCurrentThread() || !threadLock.tryLock()) {
+        return;
+      }
+      try (FileChannel channel =
+        new RandomAccessFile(lockFile, "rw").getChannel())
+      {
+        FileLock fileLock = channel.tryLock();
+        if (fileLock != null) {
+          try {
+            if (lockFile.delete()) {
+              LOGGER.debug("deleted lock file {}", lockFile);
+            }
+          }
+          finally {
+            fileLock.release();
+          }
+        }
+      }
+      catch (OverlappingFileLockException e) {
+        // locked through a different path to the same file
+      }
+      catch (IOException e) {
+        LOGGER.debug("could not delete lock file {}", lockFile, e);
+      }
+      finally {
+        threadLock.unlock();
+      }
+    }
+    finally {
+      releaseThreadLock(threadLock);
+    }
+  }
+
+  /** Returns the hexadecimal SHA-1 hash of the given path. */
+  private static String getKey(String path) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-1");
+      byte[] hash = digest.digest(path.getBytes(Constants.ENCODING));
+      StringBuilder key = new StringBuilder(hash.length * 2);
+      for (byte b : hash) {
+        key.append(Character.forDigit((b >> 4) & 0xf, 16));
+        key.append(Character.forDigit(b & 0xf, 16));
+      }
+      return key.toString();
+    }
+    catch (NoSuchAlgorithmException | IOException e) {
+      throw new IllegalStateException("Could not hash " + path, e);
+    }
+  }
+
+  // -- Helper classes --
+
+  /**
+   * Lock on a single memo file, held by one thread.  Closing the lock
+   * allows other threads and processes to load or save the memo file.
+   */
+  public static final class Lock implements Closeable {
+    private ThreadLock threadLock;
+    private final FileChannel channel;
+    private final FileLock fileLock;
+
+    private Lock(ThreadLock threadLock, FileChannel channel,
+      FileLock fileLock)
+    {
+      this.threadLock = threadLock;
+      this.channel = channel;
+      this.fileLock = fileLock;
+    }
+
+    /** Returns true if this lock excludes other threads and processes. */
+    public boolean isValid() {
+      return fileLock != null && fileLock.isValid();
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        if (fileLock != null) {
+          fileLock.release();
+        }
+      }
+      finally {
+        try {
+          if (channel != null) {
+            channel.close();
+          }
+        }
+        finally {
+          if (threadLock != null && threadLock.isHeldByCurrentThread()) {
+            threadLock.unlock();
+            releaseThreadLock(threadLock);
+            threadLock = null;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Lock on a single memo file, shared by the threads of this JVM, with
+   * the number of threads that hold or wait for it.
+   */
+  private static final class ThreadLock extends ReentrantLock {
+    private static final long serialVersionUID = 1L;
+
+    private final String path;
+
+    /** Number of uses, guarded by {@link #THREAD_LOCKS}. */
+    private int references;
+
+    private ThreadLock(String path) {
+      this.path = path;
+    }
+  }
+
+}
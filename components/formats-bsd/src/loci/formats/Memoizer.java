@@ -38,6 +38,24 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.lang.ArrayIndexOutOfBoundsException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.zip.CRC32;
 
 import loci.common.Constants;
 import loci.common.Location;
@@ -46,6 +64,7 @@ import loci.common.RandomAccessOutputStream;
 import loci.common.services.DependencyException;
 import loci.common.services.ServiceException;
 import loci.common.services.ServiceFactory;
+import loci.formats.meta.DummyMetadata;
 import loci.formats.meta.MetadataRetrieve;
 import loci.formats.meta.MetadataStore;
 import loci.formats.services.OMEXMLService;
@@ -58,8 +77,11 @@ import org.slf4j.LoggerFactory;
 
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.serializers.FieldSerializer;
+import com.esotericsoftware.kryo.serializers.MapSerializer;
 import com.esotericsoftware.kryo.util.DefaultInstantiatorStrategy;
 
 import org.objenesis.strategy.StdInstantiatorStrategy;
@@ -85,6 +107,10 @@ import org.objenesis.strategy.StdInstantiatorStrategy;
  *
  * In essence, the speed-up gained from memoization will happen only after the
  * first initialization of the reader for a particular file.
+ *
+ * Memo files for many datasets can also be kept in a {@link MemoRepository},
+ * which limits the total size of the memo files and prevents several
+ * processes from creating the same memo file at once.
  */
 public class Memoizer extends ReaderWrapper {
 
@@ -117,6 +143,21 @@ public class Memoizer extends ReaderWrapper {
     void close();
   }
 
+  /**
+   * {@link Deser} implementation using Kryo.
+   *
+   * The reader is saved in three sections.  The first contains the reader
+   * stack, including the core metadata and any tables used to locate
+   * pixel data, and is deserialized by {@link #loadReader()}.  The
+   * {@link MetadataStore} and the original metadata tables are saved in
+   * the second and third sections.  These are read into memory by
+   * {@link #loadReader()}, but only deserialized when the store or one
+   * of the tables is first used.  Each section is followed by its CRC-32
+   * checksum, so that a damaged section is detected while the memo file
+   * is loaded instead of when the section is first used.  A reader loaded
+   * from a memo file can still be copied with {@link #kryo}, as
+   * {@link ReaderPool} does; the copy holds the loaded sections.
+   */
   public static class KryoDeser implements Deser {
 
     final public Kryo kryo = new Kryo();
@@ -128,8 +169,29 @@ public class Memoizer extends ReaderWrapper {
       // see https://github.com/EsotericSoftware/kryo/wiki/Migration-to-v5#configuration-changes
       kryo.setRegistrationRequired(false);
       kryo.setReferences(true);
+
+      SectionSerializer sectionSerializer = new SectionSerializer();
+      kryo.addDefaultSerializer(MetadataStore.class, sectionSerializer);
+      kryo.addDefaultSerializer(Hashtable.class, sectionSerializer);
+
+      // Kryo handles every proxy class as an InvocationHandler
+      kryo.addDefaultSerializer(InvocationHandler.class,
+        new LazyStoreSerializer());
     }
 
+    /**
+     * Objects saved in separate sections while the reader is being saved,
+     * mapped to their index.  The metadata store has index 0, and original
+     * metadata tables have indexes starting from 1.
+     */
+    private IdentityHashMap<Object, Integer> sectionIndexes;
+
+    /** Sections of the memo file while the reader is being loaded. */
+    private MemoSections sections;
+
+    /** Memo file being loaded, deleted if a section fails to load. */
+    private File memoFile;
+
     FileInputStream fis;
     FileOutputStream fos;
     Input input;
@@ -146,6 +208,7 @@ public class Memoizer extends ReaderWrapper {
     public void loadStart(File memoFile) throws FileNotFoundException {
         fis = new FileInputStream(memoFile);
         input = new Input(fis);
+        this.memoFile = memoFile;
     }
 
     @Override
@@ -166,11 +229,35 @@ public class Memoizer extends ReaderWrapper {
     @Override
     public IFormatReader loadReader() {
         Class<?> c = kryo.readObject(input, Class.class);
-        return (IFormatReader) kryo.readObject(input, c);
+        sections = new MemoSections(memoFile);
+        try {
+          IFormatReader reader = (IFormatReader) kryo.readObject(input, c);
+          sections.setBytes(loadSection(), loadSection());
+          return reader;
+        }
+        finally {
+          sections = null;
+        }
+    }
+
+    /**
+     * Reads the bytes of a section and checks them against the checksum
+     * saved after them.
+     */
+    private byte[] loadSection() {
+      byte[] bytes = kryo.readObjectOrNull(input, byte[].class);
+      if (bytes != null) {
+        long checksum = kryo.readObject(input, Long.class);
+        if (checksum != checksum(bytes)) {
+          throw new KryoException("Memo section checksum mismatch");
+        }
+      }
+      return bytes;
     }
 
     @Override
     public void loadStop() {
+      memoFile = null;
       if (input != null) {
         input.close();
         input = null;
@@ -208,8 +295,137 @@ public class Memoizer extends ReaderWrapper {
 
     @Override
     public void saveReader(IFormatReader reader) {
-      kryo.writeObject(output, reader.getClass());
-      kryo.writeObject(output, reader);
+      MetadataStore store = reader.getMetadataStore();
+      ArrayList<Hashtable<String, Object>> tables =
+        new ArrayList<Hashtable<String, Object>>();
+      sectionIndexes = new IdentityHashMap<Object, Integer>();
+      if (store != null && Proxy.isProxyClass(store.getClass()) &&
+        Proxy.getInvocationHandler(store) instanceof LazyStore)
+      {
+        store = (MetadataStore) LazyStore.load(store);
+      }
+      if (store != null && !(store instanceof DummyMetadata)) {
+        sectionIndexes.put(store, 0);
+      }
+      else {
+        store = null;
+      }
+      addTable(tables, reader.getGlobalMetadata());
+      int series = reader.getSeries();
+      int resolution = reader.getResolution();
+      for (int s=0; s<reader.getSeriesCount(); s++) {
+        reader.setSeries(s);
+        for (int r=0; r<reader.getResolutionCount(); r++) {
+          reader.setResolution(r);
+          addTable(tables, reader.getSeriesMetadata());
+        }
+      }
+      reader.setSeries(series);
+      reader.setResolution(resolution);
+
+      try {
+        kryo.writeObject(output, reader.getClass());
+        kryo.writeObject(output, reader);
+      }
+      finally {
+        sectionIndexes = null;
+      }
+      saveSection(toBytes(store));
+      saveSection(toBytes(tables.isEmpty() ? null : tables));
+    }
+
+    private void saveSection(byte[] bytes) {
+      kryo.writeObjectOrNull(output, bytes, byte[].class);
+      if (bytes != null) {
+        kryo.writeObject(output, checksum(bytes));
+      }
+    }
+
+    private long checksum(byte[] bytes) {
+      CRC32 crc = new CRC32();
+      crc.update(bytes, 0, bytes.length);
+      return crc.getValue();
+    }
+
+    private void addTable(List<Hashtable<String, Object>> tables,
+      Hashtable<String, Object> table)
+    {
+      if (table != null && !table.isEmpty() &&
+        !sectionIndexes.containsKey(table))
+      {
+        tables.add(table);
+        sectionIndexes.put(table, tables.size());
+      }
+    }
+
+    private byte[] toBytes(Object section) {
+      if (section == null) {
+        return null;
+      }
+      Output sectionOutput = new Output(4096, -1);
+      kryo.writeClassAndObject(sectionOutput, section);
+      return sectionOutput.toBytes();
+    }
+
+    /**
+     * Writes objects that belong in a separate section as an index, and
+     * all other objects using the default Kryo serializer for their type.
+     */
+    private class SectionSerializer extends Serializer<Object> {
+
+      private final Map<Class<?>, Serializer<?>> defaults =
+        new HashMap<Class<?>, Serializer<?>>();
+
+      @Override
+      public void write(Kryo kryo, Output output, Object object) {
+        Integer index =
+          sectionIndexes == null ? null : sectionIndexes.get(object);
+        if (index == null) {
+          output.writeVarInt(0, true);
+          getDefault(kryo, object.getClass()).write(kryo, output, object);
+        }
+        else {
+          output.writeVarInt(index + 1, true);
+          if (index == 0) {
+            kryo.writeClass(output, object.getClass());
+          }
+        }
+      }
+
+      @Override
+      public Object read(Kryo kryo, Input input,
+        Class<? extends Object> type)
+      {
+        int index = input.readVarInt(true) - 1;
+        if (index < 0) {
+          return getDefault(kryo, type).read(kryo, input, type);
+        }
+        if (sections == null) {
+          throw new KryoException("Unexpected memo section " + index);
+        }
+        if (index == 0) {
+          return sections.getStore(kryo.readClass(input).getType());
+        }
+        return sections.getTable(index - 1);
+      }
+
+      @SuppressWarnings("unchecked")
+      private Serializer<Object> getDefault(Kryo kryo, Class<?> type) {
+        Serializer<?> serializer = defaults.get(type);
+        if (serializer == null) {
+          if (type == LazyMetadataTable.class) {
+            serializer = new LoadedTableSerializer();
+          }
+          else if (Map.class.isAssignableFrom(type)) {
+            serializer = new MapSerializer<Map<?, ?>>();
+          }
+          else {
+            serializer = new FieldSerializer<Object>(kryo, type);
+          }
+          defaults.put(type, serializer);
+        }
+        return (Serializer<Object>) serializer;
+      }
     }
 
     @Override
@@ -339,7 +555,7 @@ public class Memoizer extends ReaderWrapper {
    * cached items. This should happen when the order and type of objects stored
    * in the memo file changes.
    */
-  public static final Integer VERSION = 4;
+  public static final Integer VERSION = 6;
 
   /**
    * Default value for {@link #minimumElapsed} if none is provided in the
@@ -375,6 +591,13 @@ public class Memoizer extends ReaderWrapper {
    */
   private boolean doInPlaceCaching = false;
 
+  /**
+   * Shared repository in which memo files are stored. If this value is
+   * non-null, it takes precedence over {@link #directory} and
+   * {@link #doInPlaceCaching}.
+   */
+  private MemoRepository repository;
+
   protected transient Deser ser;
 
   private transient OMEXMLService service;
@@ -656,6 +879,27 @@ public class Memoizer extends ReaderWrapper {
     this.skipSave = skip;
   }
 
+  /**
+   * Set the repository in which memo files are stored, replacing the
+   * directory passed to the constructor.  A repository can be shared by
+   * any number of Memoizer instances, in this or other processes.
+   * Memo files in a repository are saved however long initialization took,
+   * so the minimum elapsed time passed to the constructor is ignored.
+   *
+   * @param repository the repository to use, or {@code null} to use the
+   *        directory passed to the constructor
+   */
+  public void setRepository(MemoRepository repository) {
+    this.repository = repository;
+  }
+
+  /**
+   * @return the repository in which memo files are stored (may be null)
+   */
+  public MemoRepository getRepository() {
+    return repository;
+  }
+
   protected void cleanup() {
     if (ser != null) {
       ser.close();
@@ -686,6 +930,7 @@ public class Memoizer extends ReaderWrapper {
   @Override
   public void setId(String id) throws FormatException, IOException {
     StopWatch sw = stopWatch();
+    MemoRepository.Lock lock = null;
     try {
       realFile = new Location(id);
       memoFile = getMemoFile(id);
@@ -704,12 +949,22 @@ public class Memoizer extends ReaderWrapper {
       loadedFromMemo = false;
       savedToMemo = false;
 
+      if (memo == null && repository != null) {
+        // wait for any other process that is saving the same memo file,
+        // then check again before initializing the reader here
+        lock = repository.lock(memoFile);
+        memo = loadMemo();
+      }
+
       if (memo != null) {
         // loadMemo has already called handleMetadataStore with non-null
         try {
           loadedFromMemo = true;
           reader = memo;
           reader.reopenFile();
+          if (repository != null) {
+            repository.recordHit(memoFile);
+          }
         } catch (FileNotFoundException e) {
           LOGGER.info("could not reopen file - deleting invalid memo file: {}", memoFile);
           deleteQuietly(memoFile);
@@ -720,13 +975,18 @@ public class Memoizer extends ReaderWrapper {
       }
 
       if (memo == null) {
+        if (repository != null) {
+          repository.recordMiss();
+        }
         OMEXMLService service = getService();
         super.setMetadataStore(service.createOMEXMLMetadata());
         long start = System.currentTimeMillis();
         super.setId(id);
         long elapsed = System.currentTimeMillis() - start;
         handleMetadataStore(null); // Between setId and saveMemo
-        if (elapsed < minimumElapsed) {
+        // memo files in a repository are always saved, as other
+        // instances waiting for the lock would otherwise parse the file again
+        if (elapsed < minimumElapsed && repository == null) {
           LOGGER.debug("skipping save memo. elapsed millis: {}", elapsed);
           return; // EARLY EXIT!
         }
@@ -735,6 +995,9 @@ public class Memoizer extends ReaderWrapper {
     } catch (ServiceException e) {
       LOGGER.error("Could not create OMEXMLMetadata", e);
     } finally {
+      if (lock != null) {
+        lock.close();
+      }
       sw.stop("loci.formats.Memoizer.setId");
     }
   }
@@ -816,6 +1079,9 @@ public class Memoizer extends ReaderWrapper {
    * @return a {@link File} object pointing at the location of the memo file
    */
   public File getMemoFile(String id) {
+    if (repository != null) {
+      return repository.getMemoFile(id);
+    }
     File f = null;
     File writeDirectory = null;
     if (directory == null && !doInPlaceCaching) {
@@ -1025,7 +1291,16 @@ public class Memoizer extends ReaderWrapper {
       // Any failures will have to be ignored.
       // Note: renaming the tempfile with open
       // resources can lead to segfaults
-      if (rv) {
+      if (rv && repository != null) {
+        try {
+          repository.publish(tempFile, memoFile);
+          LOGGER.debug("saved memo file: {} ({} bytes)",
+            memoFile, memoFile.length());
+        } catch (IOException e) {
+          LOGGER.error("could not move temp file: {}", tempFile, e);
+        }
+      }
+      else if (rv) {
         if (!tempFile.renameTo(memoFile)) {
           LOGGER.error("temp file rename returned false: {}", tempFile);
         } else {
@@ -1174,4 +1449,352 @@ public class Memoizer extends ReaderWrapper {
     }
   }
 
+  // -- Helper classes --
+
+  /**
+   * Serialized metadata store and original metadata tables from a memo
+   * file, which are deserialized when first used.
+   */
+  private static final class MemoSections {
+
+    private final File memoFile;
+
+    private byte[] storeBytes;
+
+    private byte[] tableBytes;
+
+    private Object store;
+
+    private final List<LazyMetadataTable> tables =
+      new ArrayList<LazyMetadataTable>();
+
+    MemoSections(File memoFile) {
+      this.memoFile = memoFile;
+    }
+
+    void setBytes(byte[] storeBytes, byte[] tableBytes) {
+      this.storeBytes = storeBytes;
+      this.tableBytes = tableBytes;
+    }
+
+    /** Returns a placeholder for the metadata store of the given type. */
+    Object getStore(Class<?> type) {
+      Set<Class<?>> interfaces = new LinkedHashSet<Class<?>>();
+      for (Class<?> c=type; c!=null; c=c.getSuperclass()) {
+        for (Class<?> i : c.getInterfaces()) {
+          interfaces.add(i);
+        }
+      }
+      return Proxy.newProxyInstance(type.getClassLoader(),
+        interfaces.toArray(new Class<?>[interfaces.size()]),
+        new LazyStore(this));
+    }
+
+    /** Returns a placeholder for the original metadata table. */
+    LazyMetadataTable getTable(int index) {
+      while (tables.size() <= index) {
+        tables.add(new LazyMetadataTable(this));
+      }
+      return tables.get(index);
+    }
+
+    synchronized Object loadStore() {
+      if (store == null) {
+        store = deserialize(storeBytes);
+        storeBytes = null;
+      }
+      return store;
+    }
+
+    @SuppressWarnings("unchecked")
+    synchronized void loadTables() {
+      if (tableBytes == null) {
+        return;
+      }
+      List<Hashtable<String, Object>> loaded =
+        (List<Hashtable<String, Object>>) deserialize(tableBytes);
+      tableBytes = null;
+      for (int i=0; i<tables.size(); i++) {
+        tables.get(i).fill(loaded.get(i));
+      }
+    }
+
+    private Object deserialize(byte[] bytes) {
+      StopWatch sw = new Slf4JStopWatch(LOGGER, Slf4JStopWatch.DEBUG_LEVEL);
+      KryoDeser deser = new KryoDeser();
+      try {
+        return deser.kryo.readClassAndObject(new Input(bytes));
+      }
+      catch (RuntimeException e) {
+        // the memo file was loaded, so the reader cannot be parsed again
+        // here; delete the memo file so that the next setId does so
+        LOGGER.warn("deleting invalid memo file: {}", memoFile, e);
+        if (memoFile != null && memoFile.exists() && !memoFile.delete()) {
+          LOGGER.warn("file deletion failed {}", memoFile);
+        }
+        throw e;
+      }
+      finally {
+        deser.close();
+        sw.stop("loci.formats.Memoizer.loadSection");
+      }
+    }
+  }
+
+  /** Forwards calls to a metadata store that is loaded on first use. */
+  private static final class LazyStore implements InvocationHandler {
+
+    private final MemoSections sections;
+
+    LazyStore(MemoSections sections) {
+      this.sections = sections;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args)
+      throws Throwable
+    {
+      if (method.getName().equals("equals") && args != null &&
+        args.length == 1 &&
+        args[0] == proxy)
+      {
+        return true;
+      }
+      try {
+        return method.invoke(sections.loadStore(), args);
+      }
+      catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+    }
+
+    /** Returns the metadata store behind the given placeholder. */
+    static Object load(Object proxy) {
+      return ((LazyStore) Proxy.getInvocationHandler(proxy)).sections
+        .loadStore();
+    }
+  }
+
+  /**
+   * Writes a metadata store placeholder as the store that it stands for,
+   * so that readers loaded from a memo file can be copied with Kryo.
+   */
+  private static final class LazyStoreSerializer extends Serializer<Object> {
+
+    @Override
+    public void write(Kryo kryo, Output output, Object object) {
+      if (!(Proxy.getInvocationHandler(object) instanceof LazyStore)) {
+        throw new KryoException("Cannot serialize proxy " + object.getClass());
+      }
+      kryo.writeClassAndObject(output, LazyStore.load(object));
+    }
+
+    @Override
+    public Object read(Kryo kryo, Input input,
+      Class<? extends Object> type)
+    {
+      return kryo.readClassAndObject(input);
+    }
+  }
+
+  /**
+   * Reads copies of original metadata tables, which are created with
+   * their content already loaded.
+   */
+  private static final class LoadedTableSerializer
+    extends MapSerializer<LazyMetadataTable>
+  {
+    @Override
+    protected LazyMetadataTable create(Kryo kryo, Input input,
+      Class<? extends LazyMetadataTable> type, int size)
+    {
+      return new LazyMetadataTable(null);
+    }
+  }
+
+  /** Original metadata table that is filled in on first use. */
+  private static final class LazyMetadataTable
+    extends Hashtable<String, Object>
+  {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient MemoSections sections;
+
+    private volatile boolean loaded;
+
+    LazyMetadataTable(MemoSections sections) {
+      this.sections = sections;
+      this.loaded = sections == null;
+    }
+
+    void fill(Hashtable<String, Object> table) {
+      loaded = true;
+      super.putAll(table);
+    }
+
+    private void load() {
+      if (!loaded) {
+        sections.loadTables();
+      }
+    }
+
+    @Override
+    public int size() { load(); return super.size(); }
+
+    @Override
+    public boolean isEmpty() { load(); return super.isEmpty(); }
+
+    @Override
+    public Enumeration<String> keys() { load(); return super.keys(); }
+
+    @Override
+    public Enumeration<Object> elements() {
+      load();
+      return super.elements();
+    }
+
+    @Override
+    public boolean contains(Object value) {
+      load();
+      return super.contains(value);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+      load();
+      return super.containsValue(value);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      load();
+      return super.containsKey(key);
+    }
+
+    @Override
+    public Object get(Object key) { load(); return super.get(key); }
+
+    @Override
+    public Object put(String key, Object value) {
+      load();
+      return super.put(key, value);
+    }
+
+    @Override
+    public Object remove(Object key) { load(); return super.remove(key); }
+
+    @Override
+    public void putAll(Map<? extends String, ? extends Object> t) {
+      load();
+      super.putAll(t);
+    }
+
+    @Override
+    public void clear() { load(); super.clear(); }
+
+    @Override
+    public Object clone() {
+      load();
+      return new Hashtable<String, Object>(this);
+    }
+
+    @Override
+    public String toString() { load(); return super.toString(); }
+
+    @Override
+    public Set<String> keySet() { load(); return super.keySet(); }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+      load();
+      return super.entrySet();
+    }
+
+    @Override
+    public Collection<Object> values() { load(); return super.values(); }
+
+    @Override
+    public boolean equals(Object o) { load(); return super.equals(o); }
+
+    @Override
+    public int hashCode() { load(); return super.hashCode(); }
+
+    @Override
+    public Object getOrDefault(Object key, Object defaultValue) {
+      load();
+      return super.getOrDefault(key, defaultValue);
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super Object> action) {
+      load();
+      super.forEach(action);
+    }
+
+    @Override
+    public void replaceAll(
+      BiFunction<? super String, ? super Object, ? extends Object> function)
+    {
+      load();
+      super.replaceAll(function);
+    }
+
+    @Override
+    public Object putIfAbsent(String key, Object value) {
+      load();
+      return super.putIfAbsent(key, value);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+      load();
+      return super.remove(key, value);
+    }
+
+    @Override
+    public boolean replace(String key, Object oldValue, Object newValue) {
+      load();
+      return super.replace(key, oldValue, newValue);
+    }
+
+    @Override
+    public Object replace(String key, Object value) {
+      load();
+      return super.replace(key, value);
+    }
+
+    @Override
+    public Object computeIfAbsent(String key,
+      Function<? super String, ? extends Object> mappingFunction)
+    {
+      load();
+      return super.computeIfAbsent(key, mappingFunction);
+    }
+
+    @Override
+    public Object computeIfPresent(String key,
+      BiFunction<? super String, ? super Object, ? extends Object> function)
+    {
+      load();
+      return super.computeIfPresent(key, function);
+    }
+
+    @Override
+    public Object compute(String key,
+      BiFunction<? super String, ? super Object, ? extends Object> function)
+    {
+      load();
+      return super.compute(key, function);
+    }
+
+    @Override
+    public Object merge(String key, Object value,
+      BiFunction<? super Object, ? super Object, ? extends Object> function)
+    {
+      load();
+      return super.merge(key, value, function);
+    }
+  }
+
 }
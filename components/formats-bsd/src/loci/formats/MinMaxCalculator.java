@@ -35,7 +35,6 @@ package loci.formats;
 import java.io.IOException;
 import java.util.Arrays;
 
-import loci.common.DataTools;
 import loci.formats.meta.IMinMaxStore;
 
 /**
@@ -331,30 +330,18 @@ public class MinMaxCalculator extends ReaderWrapper {
       planeMax[series][pBase + c] = Double.NEGATIVE_INFINITY;
     }
 
-    boolean signed = FormatTools.isSigned(pixelType);
-
-    long threshold = (long) Math.pow(2, bpp * 8 - 1);
-    for (int i=0; i<pixels; i++) {
-      for (int c=0; c<numRGB; c++) {
-        int idx = bpp * (interleaved ? i * numRGB + c : c * pixels + i);
-        long bits = DataTools.bytesToLong(buf, idx, bpp, little);
-        if (signed) {
-          if (bits >= threshold) bits -= 2*threshold;
-        }
-        double v = bits;
-        if (pixelType == FormatTools.FLOAT) {
-          v = Float.intBitsToFloat((int) bits);
-        }
-        else if (pixelType == FormatTools.DOUBLE) {
-          v = Double.longBitsToDouble(bits);
-        }
-
-        if (v > chanMax[series][cBase + c]) {
-          chanMax[series][cBase + c] = v;
-        }
-        if (v < chanMin[series][cBase + c]) {
-          chanMin[series][cBase + c] = v;
-        }
+    ChannelStatistics[] stats = new ChannelStatistics[numRGB];
+    for (int c=0; c<numRGB; c++) {
+      stats[c] = new ChannelStatistics();
+    }
+    ChannelStatistics.add(stats, buf, pixels * bpp * numRGB, pixelType,
+      little, interleaved);
+    for (int c=0; c<numRGB; c++) {
+      if (stats[c].getMaximum() > chanMax[series][cBase + c]) {
+        chanMax[series][cBase + c] = stats[c].getMaximum();
+      }
+      if (stats[c].getMinimum() < chanMin[series][cBase + c]) {
+        chanMin[series][cBase + c] = stats[c].getMinimum();
       }
     }
 
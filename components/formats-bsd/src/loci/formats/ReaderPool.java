@@ -0,0 +1,537 @@
+/*
+ * #%L
+ * BSD implementations of Bio-Formats readers and writers
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Pool of initialized readers for a single dataset, allowing concurrent
+ * calls to {@link IFormatReader#openBytes} without sharing any reader state
+ * between threads.
+ *
+ * {@link IFormatReader#setId(String)} is called once, on a template reader.
+ * The initialized template is then serialized in the same way as a
+ * {@link Memoizer} memo file, and each pooled reader is created by
+ * deserializing that state and calling {@link IFormatReader#reopenFile()}.
+ * This avoids re-parsing the dataset for each thread.
+ *
+ * Readers are obtained with {@link #borrowReader()} and must be handed back
+ * with {@link #returnReader(IFormatReader)}, typically in a
+ * <code>finally</code> block.  At most {@link #getMaxSize()} readers are
+ * lent out at once; further calls to {@link #borrowReader()} block until a
+ * reader is returned.  Readers that have been idle for longer than
+ * {@link #getIdleTimeout()} milliseconds are closed.
+ */
+public class ReaderPool implements Closeable {
+
+  // -- Constants --
+
+  /** Default maximum number of readers. */
+  public static final int DEFAULT_MAX_SIZE =
+    Runtime.getRuntime().availableProcessors();
+
+  /** Default idle time in milliseconds after which a reader is closed. */
+  public static final long DEFAULT_IDLE_TIMEOUT = 60000;
+
+  private static final Logger LOGGER =
+    LoggerFactory.getLogger(ReaderPool.class);
+
+  // -- Fields --
+
+  private final String id;
+
+  private final int maxSize;
+
+  private final long idleTimeout;
+
+  /** Limits the number of readers that are lent out at once. */
+  private final Semaphore permits;
+
+  /** Idle readers, most recently returned first. */
+  private final Deque<PooledReader> idle = new ArrayDeque<PooledReader>();
+
+  /**
+   * Guards initialization of the template reader, so that a slow
+   * {@link IFormatReader#setId(String)} does not block returns to the pool.
+   */
+  private final Object initLock = new Object();
+
+  /** Serialized state of the initialized template reader. */
+  private byte[] state;
+
+  /** Readers that are currently lent out. */
+  private final Set<IFormatReader> lent =
+    Collections.newSetFromMap(new IdentityHashMap<IFormatReader, Boolean>());
+
+  private boolean closed = false;
+
+  private final AtomicLong borrowed = new AtomicLong();
+  private final AtomicLong returned = new AtomicLong();
+  private final AtomicLong created = new AtomicLong();
+  private final AtomicLong evicted = new AtomicLong();
+  private final AtomicLong waitTime = new AtomicLong();
+
+  // -- Constructors --
+
+  /**
+   * Constructs a pool for the given file, with at most
+   * {@link #DEFAULT_MAX_SIZE} readers and an idle timeout of
+   * {@link #DEFAULT_IDLE_TIMEOUT} milliseconds.
+   *
+   * @param id the path passed to {@link IFormatReader#setId(String)}
+   */
+  public ReaderPool(String id) {
+    this(id, DEFAULT_MAX_SIZE, DEFAULT_IDLE_TIMEOUT);
+  }
+
+  /**
+   * Constructs a pool for the given file.
+   *
+   * @param id the path passed to {@link IFormatReader#setId(String)}
+   * @param maxSize the maximum number of readers that can be lent out
+   *        at once
+   * @param idleTimeout the number of milliseconds after which an idle reader
+   *        is closed, or a negative number to never close idle readers
+   */
+  public ReaderPool(String id, int maxSize, long idleTimeout) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("Invalid pool size: " + maxSize);
+    }
+    this.id = id;
+    this.maxSize = maxSize;
+    this.idleTimeout = idleTimeout;
+    permits = new Semaphore(maxSize, true);
+  }
+
+  // -- ReaderPool API methods --
+
+  /** Returns the path of the dataset served by this pool. */
+  public String getId() {
+    return id;
+  }
+
+  /** Returns the maximum number of readers that can be lent out at once. */
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  /** Returns the number of milliseconds after which idle readers are closed. */
+  public long getIdleTimeout() {
+    return idleTimeout;
+  }
+
+  /**
+   * Borrows a reader, waiting for one to be returned if {@link #getMaxSize()}
+   * readers are already lent out.
+   *
+   * The first call initializes the dataset.  Subsequent readers are cloned
+   * from the initialized state.
+   *
+   * @return an initialized reader, which must be passed to
+   *         {@link #returnReader(IFormatReader)} when no longer needed
+   */
+  public IFormatReader borrowReader()
+    throws FormatException, IOException, InterruptedException
+  {
+    long start = System.nanoTime();
+    permits.acquire();
+    return borrow(start);
+  }
+
+  /**
+   * Borrows a reader, waiting up to the given time for one to be returned if
+   * {@link #getMaxSize()} readers are already lent out.
+   *
+   * @return an initialized reader, or null if the timeout elapsed
+   * @see #borrowReader()
+   */
+  public IFormatReader borrowReader(long timeout, TimeUnit unit)
+    throws FormatException, IOException, InterruptedException
+  {
+    long start = System.nanoTime();
+    if (!permits.tryAcquire(timeout, unit)) {
+      return null;
+    }
+    return borrow(start);
+  }
+
+  /**
+   * Returns a reader to the pool.  The reader's series is reset to 0;
+   * callers must not use the reader after it has been returned.
+   *
+   * @param reader a reader obtained from {@link #borrowReader()}
+   * @throws IllegalArgumentException if the reader is not currently lent out
+   *         by this pool
+   */
+  public void returnReader(IFormatReader reader) throws IOException {
+    if (reader == null) {
+      return;
+    }
+    synchronized (this) {
+      if (!lent.remove(reader)) {
+        throw new IllegalArgumentException(
+          "Reader was not borrowed from this pool");
+      }
+    }
+    returned.incrementAndGet();
+    try {
+      reader.setSeries(0);
+      synchronized (this) {
+        if (!closed) {
+          idle.addFirst(new PooledReader(reader, System.currentTimeMillis()));
+          reader = null;
+        }
+      }
+      if (reader != null) {
+        reader.close();
+      }
+    }
+    finally {
+      permits.release();
+      evictIdle();
+    }
+  }
+
+  /**
+   * Closes all readers that have been idle for longer than
+   * {@link #getIdleTimeout()}.  This is done automatically whenever a reader
+   * is borrowed or returned, but may also be called periodically by the
+   * application.
+   *
+   * @return the number of readers that were closed
+   */
+  public int evictIdle() {
+    if (idleTimeout < 0) {
+      return 0;
+    }
+    long cutoff = System.currentTimeMillis() - idleTimeout;
+    Deque<PooledReader> expired = new ArrayDeque<PooledReader>();
+    synchronized (this) {
+      Iterator<PooledReader> readers = idle.descendingIterator();
+      while (readers.hasNext()) {
+        PooledReader r = readers.next();
+        if (r.lastUsed > cutoff) {
+          break;
+        }
+        readers.remove();
+        expired.add(r);
+      }
+    }
+    for (PooledReader r : expired) {
+      closeQuietly(r.reader);
+      evicted.incrementAndGet();
+    }
+    return expired.size();
+  }
+
+  /** Returns the number of readers currently lent out. */
+  public int getActiveCount() {
+    return maxSize - permits.availablePermits();
+  }
+
+  /** Returns the number of open readers waiting to be borrowed. */
+  public synchronized int getIdleCount() {
+    return idle.size();
+  }
+
+  /** Returns the total number of successful calls to borrowReader. */
+  public long getBorrowCount() {
+    return borrowed.get();
+  }
+
+  /** Returns the total number of calls to returnReader. */
+  public long getReturnCount() {
+    return returned.get();
+  }
+
+  /** Returns the total number of readers created, including the template. */
+  public long getCreatedCount() {
+    return created.get();
+  }
+
+  /** Returns the total number of idle readers that were closed. */
+  public long getEvictionCount() {
+    return evicted.get();
+  }
+
+  /**
+   * Returns the total time in milliseconds that callers of borrowReader
+   * spent waiting for a reader, including reader creation.
+   */
+  public long getTotalWaitTime() {
+    return TimeUnit.NANOSECONDS.toMillis(waitTime.get());
+  }
+
+  /**
+   * Opens the thumbnail of the given plane in each of the given series,
+   * using up to {@link #getMaxSize()} pooled readers concurrently.
+   *
+   * @param series the series indices
+   * @param no the plane index within each series
+   * @return the result of {@link IFormatReader#openThumbBytes(int)} for each
+   *         series, in the same order as <code>series</code>
+   */
+  public byte[][] openThumbBytes(int[] series, final int no)
+    throws FormatException, IOException, InterruptedException
+  {
+    byte[][] thumbs = new byte[series.length][];
+    if (series.length == 0) {
+      return thumbs;
+    }
+    List<Callable<byte[]>> tasks = new ArrayList<Callable<byte[]>>();
+    for (final int s : series) {
+      tasks.add(new Callable<byte[]>() {
+        @Override
+        public byte[] call() throws Exception {
+          IFormatReader reader = borrowReader();
+          try {
+            reader.setSeries(s);
+            return reader.openThumbBytes(no);
+          }
+          finally {
+            returnReader(reader);
+          }
+        }
+      });
+    }
+
+    final AtomicInteger threadCount = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(
+      Math.min(maxSize, series.length), new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r,
+            "ReaderPool-thumbnail-" + threadCount.incrementAndGet());
+          t.setDaemon(true);
+          return t;
+        }
+      });
+    try {
+      List<Future<byte[]>> results = executor.invokeAll(tasks);
+      for (int i=0; i<thumbs.length; i++) {
+        thumbs[i] = results.get(i).get();
+      }
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof FormatException) {
+        throw (FormatException) cause;
+      }
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new FormatException("Could not open thumbnail", cause);
+    }
+    finally {
+      executor.shutdownNow();
+    }
+    return thumbs;
+  }
+
+  /**
+   * Closes all idle readers and discards the initialized state.
+   * Readers that are currently lent out are closed when they are returned.
+   */
+  @Override
+  public void close() throws IOException {
+    Deque<PooledReader> toClose;
+    synchronized (this) {
+      closed = true;
+      toClose = new ArrayDeque<PooledReader>(idle);
+      idle.clear();
+    }
+    synchronized (initLock) {
+      state = null;
+    }
+    for (PooledReader r : toClose) {
+      r.reader.close();
+    }
+  }
+
+  // -- Helper methods --
+
+  /**
+   * Creates the uninitialized template reader.  Subclasses may override
+   * this to add reader wrappers or to configure the reader, e.g. by setting
+   * metadata options or a metadata store.  If the reader is a
+   * {@link Memoizer}, it is only used to initialize the template, and the
+   * reader that it wraps is lent out instead.
+   */
+  protected IFormatReader createReader() {
+    return new ImageReader();
+  }
+
+  /**
+   * Initializes the template reader created by {@link #createReader()}.
+   * Subclasses may override this to adjust the reader after
+   * {@link IFormatReader#setId(String)}, e.g. to swap dimensions; the
+   * resulting state is copied to every other reader in the pool.
+   */
+  protected void initializeReader(IFormatReader reader)
+    throws FormatException, IOException
+  {
+    reader.setId(id);
+  }
+
+  /** Borrows a reader, once a permit has been acquired. */
+  private IFormatReader borrow(long start)
+    throws FormatException, IOException
+  {
+    IFormatReader reader = null;
+    try {
+      evictIdle();
+      synchronized (this) {
+        if (closed) {
+          throw new IllegalStateException("Reader pool is closed");
+        }
+        PooledReader r = idle.pollFirst();
+        if (r != null) {
+          reader = r.reader;
+        }
+      }
+      if (reader == null) {
+        // the permit reserves a slot, so the reader is built without
+        // holding the pool lock
+        reader = newReader();
+      }
+      synchronized (this) {
+        lent.add(reader);
+      }
+      borrowed.incrementAndGet();
+      return reader;
+    }
+    finally {
+      waitTime.addAndGet(System.nanoTime() - start);
+      if (reader == null) {
+        permits.release();
+      }
+    }
+  }
+
+  /**
+   * Creates a new initialized reader.  The first call initializes the
+   * template reader and records its state; later calls clone that state
+   * without holding any lock.
+   */
+  private IFormatReader newReader() throws FormatException, IOException {
+    byte[] template;
+    synchronized (initLock) {
+      if (state == null) {
+        IFormatReader reader = createReader();
+        initializeReader(reader);
+        created.incrementAndGet();
+
+        // a Memoizer only speeds up initialization, so the reader that
+        // it wraps is lent out and copied, as the same kind of reader
+        if (reader instanceof Memoizer) {
+          reader = ((Memoizer) reader).getReader();
+        }
+
+        Kryo kryo = new Memoizer.KryoDeser().kryo;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (Output output = new Output(bytes)) {
+          kryo.writeObject(output, reader.getClass());
+          kryo.writeObject(output, reader);
+        }
+        state = bytes.toByteArray();
+        LOGGER.debug("initialized {} ({} bytes of reader state)",
+          id, state.length);
+
+        // the template is ready to use, so lend it out directly
+        return reader;
+      }
+      template = state;
+    }
+
+    // Kryo instances are not thread-safe, so each clone uses its own
+    Kryo kryo = new Memoizer.KryoDeser().kryo;
+    IFormatReader reader;
+    try (Input input = new Input(template)) {
+      Class<?> c = kryo.readObject(input, Class.class);
+      reader = (IFormatReader) kryo.readObject(input, c);
+    }
+    reader.reopenFile();
+    created.incrementAndGet();
+    return reader;
+  }
+
+  private void closeQuietly(IFormatReader reader) {
+    try {
+      reader.close();
+    }
+    catch (IOException e) {
+      LOGGER.warn("Could not close pooled reader for {}", id, e);
+    }
+  }
+
+  // -- Helper classes --
+
+  /** An idle reader along with the time at which it was returned. */
+  private static class PooledReader {
+    public final IFormatReader reader;
+    public final long lastUsed;
+
+    public PooledReader(IFormatReader reader, long lastUsed) {
+      this.reader = reader;
+      this.lastUsed = lastUsed;
+    }
+  }
+
+}
@@ -0,0 +1,490 @@
+/*
+ * #%L
+ * BSD implementations of Bio-Formats readers and writers
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import loci.common.Location;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Computes per-channel statistics (minimum, maximum, mean, standard deviation
+ * and optionally a histogram) for a whole series.
+ *
+ * Unlike {@link MinMaxCalculator}, which updates its values as planes are
+ * read, the whole series is scanned up front.  Each plane is split into
+ * tiles, and tiles are read in parallel by several threads, each using a
+ * reader borrowed from a {@link ReaderPool}.  For a quick estimate, a lower
+ * resolution of a pyramid can be scanned instead of the full resolution
+ * image; this requires the pool's readers to have flattened resolutions
+ * disabled.
+ *
+ * Results can be saved to a statistics file, typically placed next to the
+ * {@link Memoizer} memo file (see {@link #getStatisticsFile(Memoizer,
+ * String)}), so that they only need to be computed once.  Saved results are
+ * discarded when the dataset's file changes.
+ */
+public class StatisticsCalculator {
+
+  // -- Constants --
+
+  private static final Logger LOGGER =
+    LoggerFactory.getLogger(StatisticsCalculator.class);
+
+  /** Version of the statistics file format. */
+  public static final int VERSION = 1;
+
+  /** Extension of statistics files created next to memo files. */
+  public static final String EXTENSION = ".bfstats";
+
+  /** Default number of threads used to read tiles. */
+  public static final int DEFAULT_THREADS =
+    Runtime.getRuntime().availableProcessors();
+
+  // -- Fields --
+
+  private final ReaderPool pool;
+
+  private int threads = DEFAULT_THREADS;
+  private int histogramBins = 0;
+  private int resolution = 0;
+  private File statisticsFile;
+
+  // -- Constructors --
+
+  /** Constructs a calculator that reads tiles from the given pool. */
+  public StatisticsCalculator(ReaderPool pool) {
+    this.pool = pool;
+  }
+
+  // -- Utility methods --
+
+  /**
+   * Returns the statistics file stored next to the memo file for the given
+   * dataset, or null if the memoizer does not write memo files.
+   */
+  public static File getStatisticsFile(Memoizer memoizer, String id) {
+    File memoFile = memoizer.getMemoFile(id);
+    if (memoFile == null) {
+      return null;
+    }
+    String name = memoFile.getName();
+    if (name.endsWith(".bfmemo")) {
+      name = name.substring(0, name.length() - ".bfmemo".length());
+    }
+    return new File(memoFile.getParentFile(), name + EXTENSION);
+  }
+
+  // -- StatisticsCalculator API methods --
+
+  /** Gets the pool from which readers are borrowed. */
+  public ReaderPool getPool() {
+    return pool;
+  }
+
+  /**
+   * Sets the number of threads used to read tiles.  At most
+   * {@link ReaderPool#getMaxSize()} threads are used.
+   */
+  public void setThreads(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Invalid thread count: " + threads);
+    }
+    this.threads = threads;
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+
+  /**
+   * Sets the number of histogram bins, or 0 to skip the histogram.
+   * Integer pixel types are binned over the whole range of the pixel type;
+   * floating point pixels are binned between the channel's minimum and
+   * maximum, which requires a second pass over the data.
+   */
+  public void setHistogramBins(int bins) {
+    if (bins < 0) {
+      throw new IllegalArgumentException("Invalid bin count: " + bins);
+    }
+    histogramBins = bins;
+  }
+
+  public int getHistogramBins() {
+    return histogramBins;
+  }
+
+  /**
+   * Sets the resolution to scan.  A negative value selects the smallest
+   * available resolution.
+   */
+  public void setResolution(int resolution) {
+    this.resolution = resolution;
+  }
+
+  public int getResolution() {
+    return resolution;
+  }
+
+  /** Sets the file in which results are saved, or null to not save them. */
+  public void setStatisticsFile(File statisticsFile) {
+    this.statisticsFile = statisticsFile;
+  }
+
+  public File getStatisticsFile() {
+    return statisticsFile;
+  }
+
+  /**
+   * Computes statistics for each channel of the given series, or loads them
+   * from the statistics file if they were computed before with the same
+   * resolution and histogram settings.
+   *
+   * @return the statistics for each channel, indexed by C
+   */
+  public ChannelStatistics[] compute(int series)
+    throws FormatException, IOException
+  {
+    Layout layout = getLayout(series);
+    String key = series + ":" + layout.resolution + ":" + histogramBins;
+
+    Map<String, ChannelStatistics[]> saved = load();
+    ChannelStatistics[] stats = saved.get(key);
+    if (stats != null) {
+      return stats;
+    }
+
+    stats = scan(layout, null);
+    if (histogramBins > 0 && FormatTools.isFloatingPoint(layout.pixelType)) {
+      stats = scan(layout, stats);
+    }
+
+    if (statisticsFile != null) {
+      saved.put(key, stats);
+      save(saved);
+    }
+    return stats;
+  }
+
+  // -- Helper methods --
+
+  /** Records the dimensions of the given series. */
+  private Layout getLayout(int series) throws FormatException, IOException {
+    IFormatReader reader = borrowReader();
+    try {
+      reader.setSeries(series);
+      int resolutions = reader.getResolutionCount();
+      int r = resolution < 0 ? resolutions - 1 : resolution;
+      if (r >= resolutions) {
+        throw new FormatException("Invalid resolution: " + resolution +
+          " (" + resolutions + " available)");
+      }
+      reader.setResolution(r);
+      return new Layout(reader, series, r);
+    }
+    finally {
+      pool.returnReader(reader);
+    }
+  }
+
+  /**
+   * Scans every tile of the given series.  If a range is given, floating
+   * point histograms are binned between each channel's minimum and maximum.
+   */
+  private ChannelStatistics[] scan(final Layout layout,
+    final ChannelStatistics[] range)
+    throws FormatException, IOException
+  {
+    final int tileCount = layout.tilesX * layout.tilesY;
+    final int taskCount = layout.imageCount * tileCount;
+    final AtomicInteger next = new AtomicInteger();
+    int workers = Math.max(1,
+      Math.min(Math.min(threads, pool.getMaxSize()), taskCount));
+
+    ExecutorService executor = Executors.newFixedThreadPool(workers);
+    List<Future<ChannelStatistics[]>> results =
+      new ArrayList<Future<ChannelStatistics[]>>();
+    try {
+      for (int w=0; w<workers; w++) {
+        results.add(executor.submit(new Callable<ChannelStatistics[]>() {
+          @Override
+          public ChannelStatistics[] call() throws Exception {
+            ChannelStatistics[] stats = createStatistics(layout, range);
+            IFormatReader reader = pool.borrowReader();
+            try {
+              reader.setSeries(layout.series);
+              reader.setResolution(layout.resolution);
+              byte[] buf = new byte[layout.tileWidth * layout.tileHeight *
+                layout.rgbChannels * layout.bpp];
+              ChannelStatistics[] tile =
+                new ChannelStatistics[layout.rgbChannels];
+              for (int task=next.getAndIncrement(); task<taskCount;
+                task=next.getAndIncrement())
+              {
+                int no = task / tileCount;
+                int x = (task % tileCount) % layout.tilesX * layout.tileWidth;
+                int y = (task % tileCount) / layout.tilesX * layout.tileHeight;
+                int w = Math.min(layout.tileWidth, layout.sizeX - x);
+                int h = Math.min(layout.tileHeight, layout.sizeY - y);
+                reader.openBytes(no, buf, x, y, w, h);
+                int c = reader.getZCTCoords(no)[1] * layout.rgbChannels;
+                System.arraycopy(stats, c, tile, 0, tile.length);
+                ChannelStatistics.add(tile, buf,
+                  w * h * layout.rgbChannels * layout.bpp, layout.pixelType,
+                  layout.little, layout.interleaved);
+              }
+            }
+            finally {
+              pool.returnReader(reader);
+            }
+            return stats;
+          }
+        }));
+      }
+
+      ChannelStatistics[] stats = createStatistics(layout, range);
+      for (Future<ChannelStatistics[]> result : results) {
+        ChannelStatistics[] partial = result.get();
+        for (int c=0; c<stats.length; c++) {
+          stats[c].add(partial[c]);
+        }
+      }
+      return stats;
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while computing statistics", e);
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof FormatException) throw (FormatException) cause;
+      if (cause instanceof IOException) throw (IOException) cause;
+      if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+      throw new FormatException(cause);
+    }
+    finally {
+      // stop the remaining workers after the first failure
+      next.set(taskCount);
+      executor.shutdownNow();
+    }
+  }
+
+  private ChannelStatistics[] createStatistics(Layout layout,
+    ChannelStatistics[] range)
+  {
+    ChannelStatistics[] stats = new ChannelStatistics[layout.sizeC];
+    for (int c=0; c<stats.length; c++) {
+      if (histogramBins == 0) {
+        stats[c] = new ChannelStatistics();
+      }
+      else if (!FormatTools.isFloatingPoint(layout.pixelType)) {
+        stats[c] = new ChannelStatistics(histogramBins, layout.pixelType);
+      }
+      else if (range == null) {
+        stats[c] = new ChannelStatistics();
+      }
+      else {
+        double min = range[c].getCount() == 0 ? 0 : range[c].getMinimum();
+        double max = range[c].getCount() == 0 ? 0 : range[c].getMaximum();
+        stats[c] = new ChannelStatistics(histogramBins, min, max);
+      }
+    }
+    return stats;
+  }
+
+  private IFormatReader borrowReader() throws FormatException, IOException {
+    try {
+      return pool.borrowReader();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for a reader", e);
+    }
+  }
+
+  /**
+   * Reads the saved statistics, or returns an empty map if there are none
+   * or they are out of date.
+   */
+  private Map<String, ChannelStatistics[]> load() {
+    Map<String, ChannelStatistics[]> saved =
+      new LinkedHashMap<String, ChannelStatistics[]>();
+    if (statisticsFile == null || !statisticsFile.exists()) {
+      return saved;
+    }
+    Location source = new Location(pool.getId());
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+      new FileInputStream(statisticsFile))))
+    {
+      if (in.readInt() != VERSION || in.readLong() != source.length() ||
+        in.readLong() != source.lastModified())
+      {
+        LOGGER.debug("discarding outdated statistics {}", statisticsFile);
+        return saved;
+      }
+      int entries = in.readInt();
+      for (int i=0; i<entries; i++) {
+        String key = in.readUTF();
+        ChannelStatistics[] stats = new ChannelStatistics[in.readInt()];
+        for (int c=0; c<stats.length; c++) {
+          long count = in.readLong();
+          double min = in.readDouble();
+          double max = in.readDouble();
+          double sum = in.readDouble();
+          double sumSquares = in.readDouble();
+          double histogramMin = in.readDouble();
+          double histogramMax = in.readDouble();
+          int bins = in.readInt();
+          long[] histogram = bins < 0 ? null : new long[bins];
+          for (int b=0; b<bins; b++) {
+            histogram[b] = in.readLong();
+          }
+          stats[c] = new ChannelStatistics(count, min, max, sum, sumSquares,
+            histogram, histogramMin, histogramMax);
+        }
+        saved.put(key, stats);
+      }
+    }
+    catch (IOException e) {
+      LOGGER.warn("Could not read statistics {}", statisticsFile, e);
+      saved.clear();
+    }
+    return saved;
+  }
+
+  /** Writes the given statistics, replacing the statistics file. */
+  private void save(Map<String, ChannelStatistics[]> saved) {
+    Location source = new Location(pool.getId());
+    File parent = statisticsFile.getAbsoluteFile().getParentFile();
+    File tempFile = null;
+    try {
+      parent.mkdirs();
+      tempFile = File.createTempFile(".stats-", ".tmp", parent);
+      try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(tempFile))))
+      {
+        out.writeInt(VERSION);
+        out.writeLong(source.length());
+        out.writeLong(source.lastModified());
+        out.writeInt(saved.size());
+        for (Map.Entry<String, ChannelStatistics[]> entry : saved.entrySet()) {
+          out.writeUTF(entry.getKey());
+          out.writeInt(entry.getValue().length);
+          for (ChannelStatistics stats : entry.getValue()) {
+            out.writeLong(stats.getCount());
+            out.writeDouble(stats.getMinimum());
+            out.writeDouble(stats.getMaximum());
+            out.writeDouble(stats.getSum());
+            out.writeDouble(stats.getSumOfSquares());
+            out.writeDouble(stats.getHistogramMinimum());
+            out.writeDouble(stats.getHistogramMaximum());
+            long[] histogram = stats.getHistogram();
+            out.writeInt(histogram == null ? -1 : histogram.length);
+            if (histogram != null) {
+              for (long count : histogram) {
+                out.writeLong(count);
+              }
+            }
+          }
+        }
+      }
+      try {
+        Files.move(tempFile.toPath(), statisticsFile.toPath(),
+          StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      }
+      catch (AtomicMoveNotSupportedException e) {
+        Files.move(tempFile.toPath(), statisticsFile.toPath(),
+          StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+    catch (IOException e) {
+      LOGGER.warn("Could not save statistics {}", statisticsFile, e);
+      if (tempFile != null) {
+        tempFile.delete();
+      }
+    }
+  }
+
+  // -- Helper classes --
+
+  /** Dimensions of the scanned series and resolution. */
+  private static class Layout {
+    final int series, resolution;
+    final int sizeX, sizeY, sizeC, imageCount, rgbChannels;
+    final int pixelType, bpp;
+    final boolean little, interleaved;
+    final int tileWidth, tileHeight, tilesX, tilesY;
+
+    Layout(IFormatReader reader, int series, int resolution) {
+      this.series = series;
+      this.resolution = resolution;
+      sizeX = reader.getSizeX();
+      sizeY = reader.getSizeY();
+      sizeC = reader.getSizeC();
+      imageCount = reader.getImageCount();
+      rgbChannels = reader.getRGBChannelCount();
+      pixelType = reader.getPixelType();
+      bpp = FormatTools.getBytesPerPixel(pixelType);
+      little = reader.isLittleEndian();
+      interleaved = reader.isInterleaved();
+      tileWidth = Math.max(1, Math.min(reader.getOptimalTileWidth(), sizeX));
+      tileHeight =
+        Math.max(1, Math.min(reader.getOptimalTileHeight(), sizeY));
+      tilesX = (sizeX + tileWidth - 1) / tileWidth;
+      tilesY = (sizeY + tileHeight - 1) / tileHeight;
+    }
+  }
+
+}
@@ -0,0 +1,433 @@
+/*
+ * #%L
+ * BSD implementations of Bio-Formats readers and writers
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import loci.common.DataTools;
+
+/**
+ * Reader wrapper that keeps recently decoded tiles in memory, so that
+ * repeated requests for the same area do not decompress the same data again.
+ *
+ * Each plane is divided into a grid of tiles aligned to
+ * {@link #getOptimalTileWidth()} and {@link #getOptimalTileHeight()}.
+ * A call to {@link #openBytes(int, byte[], int, int, int, int)} reads
+ * every tile that intersects the requested area (from the cache if possible)
+ * and copies the relevant part of each tile into the output buffer.
+ * Tiles are keyed by file, series, resolution, plane index and grid cell.
+ *
+ * The total size of the cached tiles is limited by {@link #getMaximumBytes()}.
+ * When the limit is reached, tiles are evicted according to the
+ * {@link EvictionPolicy}.  Tiles can optionally be stored in direct
+ * (off-heap) buffers, in which case the limit on direct memory
+ * (<code>-XX:MaxDirectMemorySize</code>) must allow for the cache size.
+ *
+ * As with other readers, a TileCacheReader must not be used by more than
+ * one thread at a time.
+ */
+public class TileCacheReader extends ReaderWrapper {
+
+  // -- Constants --
+
+  /** Default maximum number of bytes of decoded tiles to keep. */
+  public static final long DEFAULT_MAXIMUM_BYTES = 64 * 1024 * 1024;
+
+  /** Order in which cached tiles are evicted. */
+  public enum EvictionPolicy {
+    /** Evict the tile that was used least recently. */
+    LRU,
+    /**
+     * Evict the tile that was used least often, or the least recently used
+     * of those if more than one tile has the same number of uses.
+     */
+    LFU
+  }
+
+  // -- Fields --
+
+  /** Cached tiles, least recently used first. */
+  private final LinkedHashMap<TileKey, Tile> tiles =
+    new LinkedHashMap<TileKey, Tile>(16, 0.75f, true);
+
+  /**
+   * Keys of the cached tiles grouped by number of uses, each group least
+   * recently used first, so that LFU eviction does not scan every tile.
+   */
+  private final TreeMap<Long, LinkedHashSet<TileKey>> tilesByUses =
+    new TreeMap<Long, LinkedHashSet<TileKey>>();
+
+  private long maximumBytes = DEFAULT_MAXIMUM_BYTES;
+
+  private EvictionPolicy policy = EvictionPolicy.LRU;
+
+  private boolean offHeap = false;
+
+  /** Total size in bytes of the cached tiles. */
+  private long cachedBytes = 0;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  // -- Constructors --
+
+  /** Constructs a TileCacheReader around a new image reader. */
+  public TileCacheReader() { super(); }
+
+  /** Constructs a TileCacheReader with the given reader. */
+  public TileCacheReader(IFormatReader r) { super(r); }
+
+  /**
+   * Constructs a TileCacheReader with the given reader.
+   *
+   * @param r the reader from which tiles are read
+   * @param maximumBytes the maximum total size in bytes of cached tiles
+   */
+  public TileCacheReader(IFormatReader r, long maximumBytes) {
+    super(r);
+    setMaximumBytes(maximumBytes);
+  }
+
+  // -- TileCacheReader API methods --
+
+  /** Returns the maximum total size in bytes of cached tiles. */
+  public long getMaximumBytes() {
+    return maximumBytes;
+  }
+
+  /**
+   * Sets the maximum total size in bytes of cached tiles, evicting tiles
+   * if the cache is already larger.  Tiles larger than this are never cached.
+   */
+  public synchronized void setMaximumBytes(long maximumBytes) {
+    if (maximumBytes < 0) {
+      throw new IllegalArgumentException(
+        "Invalid cache size: " + maximumBytes);
+    }
+    this.maximumBytes = maximumBytes;
+    evict(0);
+  }
+
+  /** Returns the order in which cached tiles are evicted. */
+  public EvictionPolicy getEvictionPolicy() {
+    return policy;
+  }
+
+  /** Sets the order in which cached tiles are evicted. */
+  public synchronized void setEvictionPolicy(EvictionPolicy policy) {
+    if (policy == null) {
+      throw new IllegalArgumentException("Eviction policy cannot be null");
+    }
+    this.policy = policy;
+  }
+
+  /** Returns true if tiles are stored outside of the Java heap. */
+  public boolean isOffHeap() {
+    return offHeap;
+  }
+
+  /**
+   * Sets whether tiles are stored in direct buffers outside of the Java heap.
+   * This only affects tiles that are cached after the call.
+   */
+  public void setOffHeap(boolean offHeap) {
+    this.offHeap = offHeap;
+  }
+
+  /** Returns the number of tiles that were read from the cache. */
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  /** Returns the number of tiles that were read from the wrapped reader. */
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  /** Returns the number of tiles that were removed to make room for others. */
+  public long getEvictionCount() {
+    return evictions.get();
+  }
+
+  /** Returns the number of tiles currently cached. */
+  public synchronized int getCachedTileCount() {
+    return tiles.size();
+  }
+
+  /** Returns the total size in bytes of the tiles currently cached. */
+  public synchronized long getCachedBytes() {
+    return cachedBytes;
+  }
+
+  /** Removes all cached tiles.  The hit, miss and eviction counts are kept. */
+  public synchronized void clearCache() {
+    tiles.clear();
+    tilesByUses.clear();
+    cachedBytes = 0;
+  }
+
+  // -- IFormatReader API methods --
+
+  /* @see IFormatReader#openBytes(int) */
+  @Override
+  public byte[] openBytes(int no) throws FormatException, IOException {
+    return openBytes(no, 0, 0, getSizeX(), getSizeY());
+  }
+
+  /* @see IFormatReader#openBytes(int, byte[]) */
+  @Override
+  public byte[] openBytes(int no, byte[] buf)
+    throws FormatException, IOException
+  {
+    return openBytes(no, buf, 0, 0, getSizeX(), getSizeY());
+  }
+
+  /* @see IFormatReader#openBytes(int, int, int, int, int) */
+  @Override
+  public byte[] openBytes(int no, int x, int y, int w, int h)
+    throws FormatException, IOException
+  {
+    int bpp = FormatTools.getBytesPerPixel(getPixelType());
+    byte[] buf = DataTools.allocate(w, h, getRGBChannelCount(), bpp);
+    return openBytes(no, buf, x, y, w, h);
+  }
+
+  /* @see IFormatReader#openBytes(int, byte[], int, int, int, int) */
+  @Override
+  public byte[] openBytes(int no, byte[] buf, int x, int y, int w, int h)
+    throws FormatException, IOException
+  {
+    FormatTools.checkPlaneParameters(this, no, buf.length, x, y, w, h);
+
+    int tileWidth = reader.getOptimalTileWidth();
+    int tileHeight = reader.getOptimalTileHeight();
+    int channels = getRGBChannelCount();
+    int bpp = FormatTools.getBytesPerPixel(getPixelType());
+    if (tileWidth <= 0 || tileHeight <= 0 ||
+      (long) tileWidth * tileHeight * channels * bpp > maximumBytes)
+    {
+      return reader.openBytes(no, buf, x, y, w, h);
+    }
+
+    boolean interleaved = isInterleaved();
+    int pixel = interleaved ? channels * bpp : bpp;
+    int planes = interleaved ? 1 : channels;
+    int sizeX = getSizeX();
+    int sizeY = getSizeY();
+
+    for (int row=y/tileHeight; row<=(y + h - 1)/tileHeight; row++) {
+      int tileY = row * tileHeight;
+      int tileH = Math.min(tileHeight, sizeY - tileY);
+      int top = Math.max(y, tileY);
+      int bottom = Math.min(y + h, tileY + tileH);
+
+      for (int col=x/tileWidth; col<=(x + w - 1)/tileWidth; col++) {
+        int tileX = col * tileWidth;
+        int tileW = Math.min(tileWidth, sizeX - tileX);
+        int left = Math.max(x, tileX);
+        int right = Math.min(x + w, tileX + tileW);
+
+        ByteBuffer tile = getTile(no, col, row, tileX, tileY, tileW, tileH);
+        int len = (right - left) * pixel;
+        for (int p=0; p<planes; p++) {
+          int srcPlane = p * tileW * tileH * bpp;
+          int destPlane = p * w * h * bpp;
+          for (int yy=top; yy<bottom; yy++) {
+            tile.position(srcPlane +
+              ((yy - tileY) * tileW + left - tileX) * pixel);
+            tile.get(buf, destPlane + ((yy - y) * w + left - x) * pixel, len);
+          }
+        }
+      }
+    }
+    return buf;
+  }
+
+  /* @see IFormatReader#close(boolean) */
+  @Override
+  public void close(boolean fileOnly) throws IOException {
+    super.close(fileOnly);
+    if (!fileOnly) {
+      clearCache();
+    }
+  }
+
+  // -- Helper methods --
+
+  /**
+   * Returns a view of the given tile, reading it from the wrapped reader
+   * and adding it to the cache if it is not already cached.
+   */
+  private ByteBuffer getTile(int no, int col, int row,
+    int tileX, int tileY, int tileW, int tileH)
+    throws FormatException, IOException
+  {
+    TileKey key = new TileKey(getCurrentFile(), getSeries(), getResolution(),
+      no, col, row);
+    synchronized (this) {
+      Tile tile = tiles.get(key);
+      if (tile != null) {
+        hits.incrementAndGet();
+        removeUses(key, tile.uses);
+        tile.uses++;
+        addUses(key, tile.uses);
+        return tile.data.duplicate();
+      }
+    }
+
+    misses.incrementAndGet();
+    byte[] bytes = reader.openBytes(no, tileX, tileY, tileW, tileH);
+    ByteBuffer data;
+    if (offHeap) {
+      data = ByteBuffer.allocateDirect(bytes.length);
+      data.put(bytes);
+      data.clear();
+    }
+    else {
+      data = ByteBuffer.wrap(bytes);
+    }
+
+    synchronized (this) {
+      if (bytes.length <= maximumBytes) {
+        evict(bytes.length);
+        Tile previous = tiles.put(key, new Tile(data));
+        cachedBytes += bytes.length;
+        if (previous != null) {
+          cachedBytes -= previous.data.capacity();
+          removeUses(key, previous.uses);
+        }
+        addUses(key, 0);
+      }
+    }
+    return data.duplicate();
+  }
+
+  /**
+   * Evicts tiles until the given number of bytes can be added without
+   * exceeding the maximum cache size.
+   */
+  private void evict(long required) {
+    while (!tiles.isEmpty() && cachedBytes + required > maximumBytes) {
+      TileKey victim;
+      if (policy == EvictionPolicy.LFU) {
+        victim = tilesByUses.firstEntry().getValue().iterator().next();
+      }
+      else {
+        victim = tiles.keySet().iterator().next();
+      }
+      Tile tile = tiles.remove(victim);
+      removeUses(victim, tile.uses);
+      cachedBytes -= tile.data.capacity();
+      evictions.incrementAndGet();
+    }
+  }
+
+  /** Records that the given tile has been used the given number of times. */
+  private void addUses(TileKey key, long uses) {
+    LinkedHashSet<TileKey> keys = tilesByUses.get(uses);
+    if (keys == null) {
+      keys = new LinkedHashSet<TileKey>();
+      tilesByUses.put(uses, keys);
+    }
+    keys.add(key);
+  }
+
+  /** Removes the given tile from the group with the given number of uses. */
+  private void removeUses(TileKey key, long uses) {
+    LinkedHashSet<TileKey> keys = tilesByUses.get(uses);
+    keys.remove(key);
+    if (keys.isEmpty()) {
+      tilesByUses.remove(uses);
+    }
+  }
+
+  // -- Helper classes --
+
+  /** Identifies a single tile in a single plane. */
+  private static final class TileKey {
+    private final String file;
+    private final int series;
+    private final int resolution;
+    private final int no;
+    private final int col;
+    private final int row;
+
+    TileKey(String file, int series, int resolution, int no,
+      int col, int row)
+    {
+      this.file = file;
+      this.series = series;
+      this.resolution = resolution;
+      this.no = no;
+      this.col = col;
+      this.row = row;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof TileKey)) {
+        return false;
+      }
+      TileKey k = (TileKey) o;
+      return series == k.series && resolution == k.resolution &&
+        no == k.no && col == k.col && row == k.row && file.equals(k.file);
+    }
+
+    @Override
+    public int hashCode() {
+      int hash = file.hashCode();
+      hash = 31 * hash + series;
+      hash = 31 * hash + resolution;
+      hash = 31 * hash + no;
+      hash = 31 * hash + col;
+      return 31 * hash + row;
+    }
+  }
+
+  /** Decoded tile and the number of times it has been read from the cache. */
+  private static final class Tile {
+    private final ByteBuffer data;
+    private long uses = 0;
+
+    Tile(ByteBuffer data) {
+      this.data = data;
+    }
+  }
+
+}
@@ -32,6 +32,8 @@
 
 package loci.formats.cache;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Vector;
 
 import loci.formats.FormatTools;
@@ -46,6 +48,10 @@ import loci.formats.FormatTools;
  * across the multidimensional image series's dimensional axes, with the
  * strategy indicating which surrounding planes to load into the cache (i.e.,
  * planes within a certain range along each dimensional axis).
+ * <p>
+ * The total size of the cached objects can optionally be limited with
+ * {@link #setMaximumBytes(long)}, in which case the objects furthest from
+ * the current position are dropped first.
  */
 public class Cache implements CacheReporter {
 
@@ -72,6 +78,12 @@ public class Cache implements CacheReporter {
   /** Whether the cache should automatically update when a parameter changes. */
   protected boolean autoUpdate;
 
+  /** Maximum total size in bytes of cached objects, or 0 for no limit. */
+  protected long maximumBytes;
+
+  /** Total size in bytes of cached objects. */
+  protected long cachedBytes;
+
   // -- Constructors --
 
   /** Constructs an object cache with the given cache strategy and source. */
@@ -115,10 +127,11 @@ public class Cache implements CacheReporter {
   }
 
   /** Reallocates the cache. */
-  public void reset() throws CacheException {
+  public synchronized void reset() throws CacheException {
     currentPos = new int[strategy.getLengths().length];
     cache = new Object[source.getObjectCount()];
     inCache = new boolean[source.getObjectCount()];
+    cachedBytes = 0;
   }
 
   /** Gets the cache's caching strategy. */
@@ -175,35 +188,31 @@ public class Cache implements CacheReporter {
     if (autoUpdate) recache();
   }
 
-  /** Updates the given plane. */
-  public void recache(int n) throws CacheException {
-    int[][] indices = strategy.getLoadList(currentPos);
-    int[] len = strategy.getLengths();
-
-    for (int i=0; i<inCache.length; i++) {
-      boolean found = false;
-      for (int j=0; j<indices.length; j++) {
-        if (i == FormatTools.positionToRaster(len, indices[j])) {
-          found = true;
-          break;
-        }
-      }
-      if (!found) {
-        inCache[i] = false;
-        if (cache[i] != null) {
-          cache[i] = null;
-          notifyListeners(new CacheEvent(this, CacheEvent.OBJECT_DROPPED, i));
-        }
-      }
+  /**
+   * Sets the maximum total size in bytes of the cached objects, or 0 for no
+   * limit.  When loading an object would exceed the limit, the objects
+   * furthest from the current position are dropped first; an object is not
+   * loaded if only closer objects remain.
+   */
+  public void setMaximumBytes(long maximumBytes) throws CacheException {
+    if (maximumBytes < 0) {
+      throw new CacheException("invalid maximum bytes: " + maximumBytes);
     }
+    this.maximumBytes = maximumBytes;
+    if (autoUpdate) recache();
+  }
 
-    int ndx = FormatTools.positionToRaster(len, indices[n]);
-    if (ndx >= 0) inCache[ndx] = true;
+  /** Gets the maximum total size in bytes of the cached objects. */
+  public long getMaximumBytes() { return maximumBytes; }
 
-    if (cache[ndx] == null) {
-      cache[ndx] = source.getObject(ndx);
-      notifyListeners(new CacheEvent(this, CacheEvent.OBJECT_LOADED, ndx));
-    }
+  /** Gets the total size in bytes of the cached objects. */
+  public synchronized long getCachedBytes() { return cachedBytes; }
+
+  /** Updates the given plane. */
+  public void recache(int n) throws CacheException {
+    int[] rasters = getLoadRasters();
+    drop(rasters);
+    load(rasters, n);
   }
 
   /** Updates all planes on the load list. */
@@ -220,8 +229,10 @@ public class Cache implements CacheReporter {
     // each time through the loop only (i.e., only when a recache call occurs)
     //
     // /lo
-    for (int i=0; i<strategy.getLoadList(currentPos).length; i++) {
-      recache(i);
+    int[] rasters = getLoadRasters();
+    drop(rasters);
+    for (int i=0; i<rasters.length; i++) {
+      load(rasters, i);
     }
   }
 
@@ -258,6 +269,108 @@ public class Cache implements CacheReporter {
 
   // -- Helper methods --
 
+  /**
+   * Gets the size in bytes of the given cached object.  Primitive arrays
+   * are measured by their length; other objects count as 0 bytes unless
+   * a subclass knows better.
+   */
+  protected long getSize(Object o) {
+    if (o instanceof byte[]) return ((byte[]) o).length;
+    if (o instanceof short[]) return 2L * ((short[]) o).length;
+    if (o instanceof char[]) return 2L * ((char[]) o).length;
+    if (o instanceof int[]) return 4L * ((int[]) o).length;
+    if (o instanceof float[]) return 4L * ((float[]) o).length;
+    if (o instanceof long[]) return 8L * ((long[]) o).length;
+    if (o instanceof double[]) return 8L * ((double[]) o).length;
+    return 0;
+  }
+
+  /** Gets the rasterized positions of the current load list. */
+  int[] getLoadRasters() throws CacheException {
+    int[][] indices = strategy.getLoadList(currentPos);
+    int[] len = strategy.getLengths();
+    int[] rasters = new int[indices.length];
+    for (int i=0; i<indices.length; i++) {
+      rasters[i] = FormatTools.positionToRaster(len, indices[i]);
+    }
+    return rasters;
+  }
+
+  /** Drops every object that is not on the given load list. */
+  void drop(int[] rasters) {
+    boolean[] listed = new boolean[inCache.length];
+    for (int r : rasters) listed[r] = true;
+
+    List<CacheEvent> events = new ArrayList<CacheEvent>();
+    synchronized (this) {
+      for (int i=0; i<inCache.length; i++) {
+        if (listed[i]) continue;
+        inCache[i] = false;
+        if (cache[i] != null) {
+          unload(i);
+          events.add(new CacheEvent(this, CacheEvent.OBJECT_DROPPED, i));
+        }
+      }
+    }
+    for (CacheEvent e : events) notifyListeners(e);
+  }
+
+  /**
+   * Loads the n-th object on the given load list, if it is not already
+   * cached.  The object is read without holding the cache's lock, so that
+   * several objects can be loaded at once by a multi-threaded
+   * {@link CacheUpdater}.
+   */
+  void load(int[] rasters, int n) throws CacheException {
+    int ndx = rasters[n];
+    synchronized (this) {
+      inCache[ndx] = true;
+      if (cache[ndx] != null) return;
+    }
+
+    Object o = source.getObject(ndx);
+    long size = getSize(o);
+
+    boolean loaded = true;
+    List<CacheEvent> events = new ArrayList<CacheEvent>();
+    synchronized (this) {
+      // dropped or loaded by another thread in the meantime
+      if (!inCache[ndx] || cache[ndx] != null) return;
+
+      if (maximumBytes > 0) {
+        // make room by dropping the objects furthest from the current position
+        for (int i=rasters.length-1;
+          i>n && cachedBytes + size > maximumBytes; i--)
+        {
+          int r = rasters[i];
+          if (cache[r] != null) {
+            unload(r);
+            inCache[r] = false;
+            events.add(new CacheEvent(this, CacheEvent.OBJECT_DROPPED, r));
+          }
+        }
+        if (cachedBytes + size > maximumBytes) {
+          inCache[ndx] = false;
+          loaded = false;
+        }
+      }
+      if (loaded) {
+        cache[ndx] = o;
+        cachedBytes += size;
+      }
+    }
+    for (CacheEvent e : events) notifyListeners(e);
+    if (loaded) {
+      notifyListeners(new CacheEvent(this, CacheEvent.OBJECT_LOADED, ndx));
+    }
+  }
+
+  /** Removes the object at the given index from the cache. */
+  private void unload(int ndx) {
+    cachedBytes -= getSize(cache[ndx]);
+    cache[ndx] = null;
+  }
+
   /** Informs listeners of a cache update. */
   protected void notifyListeners(CacheEvent e) {
     synchronized (listeners) {
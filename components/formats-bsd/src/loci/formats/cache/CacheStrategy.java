@@ -32,8 +32,10 @@
 
 package loci.formats.cache;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Vector;
 
 import loci.formats.FormatTools;
@@ -70,6 +72,9 @@ public abstract class CacheStrategy
    */
   private int[][] positions;
 
+  /** Guards the positions list and its ordering. */
+  private final Object lock = new Object();
+
   /**
    * Whether load order array needs to be recomputed
    * before building the next load list.
@@ -113,13 +118,13 @@ public abstract class CacheStrategy
     switch (order[axis]) {
       case CENTERED_ORDER:
         if (value == 0) return 0;
-        int vb = lengths[axis] - value;
+        int vb = span(axis) - value;
         return value <= vb ? value : vb;
       case FORWARD_ORDER:
         return value;
       case BACKWARD_ORDER:
         if (value == 0) return 0;
-        return lengths[axis] - value;
+        return span(axis) - value;
       default:
         throw new IllegalStateException("unknown order: " + order[axis]);
     }
@@ -148,6 +153,56 @@ public abstract class CacheStrategy
   /** Shortcut for computing total number of positions. */
   protected int length() { return FormatTools.getRasterLength(lengths); }
 
+  /**
+   * Gets the number of distinct offsets along the given axis.  Since axes
+   * wrap around by default, this is the length of the axis.
+   */
+  protected int span(int axis) { return lengths[axis]; }
+
+  /**
+   * Whether {@link #getPossiblePositions()} only returns positions within the
+   * current range and order, so that the positions must be recomputed when
+   * either changes.  By default every position is returned.
+   */
+  protected boolean isRangeLimited() { return false; }
+
+  /**
+   * Converts an offset from {@link #getPossiblePositions()} into the
+   * dimensional position to load, relative to the given current position.
+   * By default each axis wraps around, so that the planes following the
+   * last plane are the first planes.
+   *
+   * @return the position to load, or null if the offset does not
+   *         correspond to a valid position
+   */
+  protected int[] getLoadPosition(int[] pos, int[] offset) {
+    int[] value = new int[lengths.length];
+    for (int j=0; j<value.length; j++) {
+      value[j] = (pos[j] + offset[j]) % lengths[j]; // normalize axis value
+    }
+    return value;
+  }
+
+  /**
+   * Converts an axis value from {@link #getPossiblePositions()} into a
+   * signed offset from the current position, taking into account the
+   * axis ordering scheme.
+   */
+  protected int offset(int axis, int value) {
+    if (value == 0) return 0;
+    switch (order[axis]) {
+      case CENTERED_ORDER:
+        int vb = span(axis) - value;
+        return value <= vb ? value : -vb;
+      case FORWARD_ORDER:
+        return value;
+      case BACKWARD_ORDER:
+        return value - span(axis);
+      default:
+        throw new IllegalStateException("unknown order: " + order[axis]);
+    }
+  }
+
   // -- CacheReporter API methods --
 
   /* @see CacheReporter#addCacheListener(CacheListener) */
@@ -218,16 +273,14 @@ public abstract class CacheStrategy
   /* @see ICacheStrategy#getLoadList(int[]) */
   @Override
   public int[][] getLoadList(int[] pos) throws CacheException {
-    int[][] loadList = null;
-    synchronized (positions) {
+    List<int[]> loadList = new ArrayList<int[]>();
+    synchronized (lock) {
       if (dirty) {
         // reorder the positions list
         Arrays.sort(positions, this);
         dirty = false;
       }
 
-      // count up number of load list entries
-      int c = 0;
       for (int i=0; i<positions.length; i++) {
         int[] ipos = positions[i];
 
@@ -239,30 +292,13 @@ public abstract class CacheStrategy
             break;
           }
         }
-        if (ok) c++; // in range
-      }
-
-      loadList = new int[c][lengths.length];
-      c = 0;
-
-      // build load list
-      for (int i=0; i<positions.length; i++) {
-        int[] ipos = positions[i];
+        if (!ok) continue;
 
-        // verify position is close enough to current position
-        boolean ok = true;
-        for (int j=0; j<ipos.length && c<loadList.length; j++) {
-          if (distance(j, ipos[j]) > range[j]) {
-            ok = false;
-            break;
-          }
-          int value = (pos[j] + ipos[j]) % lengths[j]; // normalize axis value
-          loadList[c][j] = value;
-        }
-        if (ok) c++; // in range; lock in load list entry
+        int[] value = getLoadPosition(pos, ipos);
+        if (value != null) loadList.add(value); // lock in load list entry
       }
     }
-    return loadList;
+    return loadList.toArray(new int[loadList.size()][]);
   }
 
   /* @see ICacheStrategy#getPriorities() */
@@ -276,7 +312,7 @@ public abstract class CacheStrategy
       throw new IllegalArgumentException(
         "Invalid priority for axis #" + axis + ": " + priority);
     }
-    synchronized (positions) {
+    synchronized (lock) {
       priorities[axis] = priority;
       dirty = true;
     }
@@ -296,8 +332,9 @@ public abstract class CacheStrategy
       throw new IllegalArgumentException(
         "Invalid order for axis #" + axis + ": " + order);
     }
-    synchronized (positions) {
+    synchronized (lock) {
       this.order[axis] = order;
+      if (isRangeLimited()) positions = getPossiblePositions();
       dirty = true;
     }
     notifyListeners(new CacheEvent(this, CacheEvent.ORDER_CHANGED));
@@ -314,7 +351,13 @@ public abstract class CacheStrategy
       throw new IllegalArgumentException(
         "Invalid range for axis #" + axis + ": " + num);
     }
-    range[axis] = num;
+    synchronized (lock) {
+      range[axis] = num;
+      if (isRangeLimited()) {
+        positions = getPossiblePositions();
+        dirty = true;
+      }
+    }
     notifyListeners(new CacheEvent(this, CacheEvent.RANGE_CHANGED));
   }
 
@@ -32,12 +32,21 @@
 
 package loci.formats.cache;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Thread responsible for updating the cache
  * (loading and dropping planes) in the background.
+ * <p>
+ * By default planes are loaded one at a time.  If the cache's source is
+ * thread-safe (e.g. a {@link TileSource} backed by a
+ * {@link loci.formats.ReaderPool}), several worker threads can be used to
+ * load planes concurrently; planes closest to the current position are
+ * still started first.  The load list is computed once when the updater
+ * starts.
  */
 public class CacheUpdater extends Thread {
 
@@ -49,14 +58,28 @@ public class CacheUpdater extends Thread {
   // -- Fields --
 
   private Cache cache;
-  private boolean quit;
+  private int threads;
+  private volatile boolean quit;
 
   // -- Constructors --
 
   public CacheUpdater(Cache cache) {
+    this(cache, 1);
+  }
+
+  /**
+   * Constructs a cache updater that loads planes using the given number of
+   * worker threads.  More than one thread should only be used if the cache's
+   * source can be read from several threads at once.
+   */
+  public CacheUpdater(Cache cache, int threads) {
     super("Bio-Formats-Cache-Updater");
+    if (threads < 1) {
+      throw new IllegalArgumentException("Invalid thread count: " + threads);
+    }
     setPriority(Thread.MIN_PRIORITY);
     this.cache = cache;
+    this.threads = threads;
     quit = false;
   }
 
@@ -79,16 +102,58 @@ public class CacheUpdater extends Thread {
 
   @Override
   public void run() {
-    int length = 0;
+    // compute the load list once, and load its entries in order,
+    // handing them out to a fixed set of workers if there are several
+    final int[] rasters;
     try {
-      length = cache.getStrategy().getLoadList(cache.getCurrentPos()).length;
-      for (int i=0; i<length; i++) {
-        if (quit) break;
-        cache.recache(i);
-      }
+      rasters = cache.getLoadRasters();
     }
     catch (CacheException e) {
       LOGGER.info("", e);
+      return;
+    }
+    cache.drop(rasters);
+
+    if (threads == 1) {
+      try {
+        for (int i=0; i<rasters.length && !quit; i++) {
+          cache.load(rasters, i);
+        }
+      }
+      catch (CacheException e) {
+        LOGGER.info("", e);
+      }
+      return;
+    }
+
+    final AtomicInteger next = new AtomicInteger();
+    Thread[] workers = new Thread[Math.min(threads, rasters.length)];
+    for (int w=0; w<workers.length; w++) {
+      workers[w] = new Thread(getName() + "-" + w) {
+        @Override
+        public void run() {
+          try {
+            for (int i=next.getAndIncrement(); i<rasters.length && !quit;
+              i=next.getAndIncrement())
+            {
+              cache.load(rasters, i);
+            }
+          }
+          catch (CacheException e) {
+            LOGGER.info("", e);
+          }
+        }
+      };
+      workers[w].setPriority(getPriority());
+      workers[w].start();
+    }
+    for (Thread worker : workers) {
+      try {
+        worker.join();
+      }
+      catch (InterruptedException exc) {
+        LOGGER.info("Thread interrupted", exc);
+      }
     }
   }
 
@@ -0,0 +1,303 @@
+/*
+ * #%L
+ * BSD implementations of Bio-Formats readers and writers
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats.cache;
+
+import java.io.IOException;
+
+import loci.formats.FormatException;
+import loci.formats.FormatTools;
+import loci.formats.IFormatReader;
+import loci.formats.ReaderPool;
+
+/**
+ * Retrieves tiles of a single series as byte arrays, across every resolution
+ * of the series.  Positions have six axes, indexed by the *_AXIS constants:
+ * tile column, tile row, resolution, Z, C and T.  The tile column and row
+ * axes are sized for the largest resolution; tiles that fall outside a
+ * smaller resolution are returned as null, and are never requested by a
+ * {@link TileStrategy}.
+ * <p>
+ * Resolutions are only visible if the reader has
+ * {@link IFormatReader#setFlattenedResolutions(boolean)} set to false.
+ * <p>
+ * A source built on a single reader synchronizes on that reader, so that
+ * only one tile is read at a time.  A source built on a {@link ReaderPool}
+ * borrows a reader for each tile, and can be used by a multi-threaded
+ * {@link CacheUpdater}.
+ */
+public class TileSource extends CacheSource {
+
+  // -- Constants --
+
+  /** Index of the tile column axis. */
+  public static final int X_AXIS = 0;
+
+  /** Index of the tile row axis. */
+  public static final int Y_AXIS = 1;
+
+  /** Index of the resolution axis. */
+  public static final int RESOLUTION_AXIS = 2;
+
+  /** Index of the Z axis. */
+  public static final int Z_AXIS = 3;
+
+  /** Index of the C axis. */
+  public static final int C_AXIS = 4;
+
+  /** Index of the T axis. */
+  public static final int T_AXIS = 5;
+
+  // -- Fields --
+
+  /** Pool from which to borrow readers, or null to use the single reader. */
+  private ReaderPool pool;
+
+  private int series;
+  private int tileWidth, tileHeight;
+
+  /** Width and height of each resolution. */
+  private int[] sizeX, sizeY;
+
+  private String dimensionOrder;
+  private int sizeZ, sizeC, sizeT;
+
+  /** Length of each dimensional axis. */
+  private int[] lengths;
+
+  // -- Constructors --
+
+  /**
+   * Constructs a tile source for the given series of the given reader,
+   * using the reader's optimal tile size.
+   */
+  public TileSource(IFormatReader r, int series) throws CacheException {
+    this(r, series, 0, 0);
+  }
+
+  /**
+   * Constructs a tile source for the given series of the given reader,
+   * using the given tile size.  A non-positive tile width or height
+   * selects the reader's optimal tile size.
+   */
+  public TileSource(IFormatReader r, int series, int tileWidth,
+    int tileHeight) throws CacheException
+  {
+    super(r);
+    synchronized (r) {
+      init(r, series, tileWidth, tileHeight);
+    }
+  }
+
+  /**
+   * Constructs a tile source for the given series, reading each tile with a
+   * reader borrowed from the given pool.
+   */
+  public TileSource(ReaderPool pool, int series) throws CacheException {
+    this(pool, series, 0, 0);
+  }
+
+  /**
+   * Constructs a tile source for the given series and tile size, reading
+   * each tile with a reader borrowed from the given pool.
+   */
+  public TileSource(ReaderPool pool, int series, int tileWidth,
+    int tileHeight) throws CacheException
+  {
+    super((IFormatReader) null);
+    this.pool = pool;
+    IFormatReader r = borrowReader();
+    try {
+      init(r, series, tileWidth, tileHeight);
+    }
+    finally {
+      returnReader(r);
+    }
+  }
+
+  // -- TileSource API methods --
+
+  /** Gets the length of each dimensional axis. */
+  public int[] getLengths() { return lengths; }
+
+  /** Gets the series from which tiles are read. */
+  public int getSeries() { return series; }
+
+  /** Gets the number of resolutions. */
+  public int getResolutionCount() { return sizeX.length; }
+
+  /** Gets the width of the given resolution. */
+  public int getSizeX(int resolution) { return sizeX[resolution]; }
+
+  /** Gets the height of the given resolution. */
+  public int getSizeY(int resolution) { return sizeY[resolution]; }
+
+  /** Gets the width of a tile. */
+  public int getTileWidth() { return tileWidth; }
+
+  /** Gets the height of a tile. */
+  public int getTileHeight() { return tileHeight; }
+
+  /** Gets the number of tile columns in the given resolution. */
+  public int getTileColumns(int resolution) {
+    return (sizeX[resolution] + tileWidth - 1) / tileWidth;
+  }
+
+  /** Gets the number of tile rows in the given resolution. */
+  public int getTileRows(int resolution) {
+    return (sizeY[resolution] + tileHeight - 1) / tileHeight;
+  }
+
+  /**
+   * Gets the region {x, y, width, height} covered by the tile at the given
+   * dimensional position, or null if the tile lies outside its resolution.
+   */
+  public int[] getRegion(int[] pos) {
+    int res = pos[RESOLUTION_AXIS];
+    int x = pos[X_AXIS] * tileWidth;
+    int y = pos[Y_AXIS] * tileHeight;
+    if (x >= sizeX[res] || y >= sizeY[res]) return null;
+    return new int[] {x, y, Math.min(tileWidth, sizeX[res] - x),
+      Math.min(tileHeight, sizeY[res] - y)};
+  }
+
+  // -- ICacheSource API methods --
+
+  /* @see loci.formats.cache.ICacheSource#getObjectCount() */
+  @Override
+  public int getObjectCount() {
+    return FormatTools.getRasterLength(lengths);
+  }
+
+  /* @see loci.formats.cache.ICacheSource#getObject(int) */
+  @Override
+  public Object getObject(int index) throws CacheException {
+    int[] pos = FormatTools.rasterToPosition(lengths, index);
+    int[] region = getRegion(pos);
+    if (region == null) return null;
+    int no = FormatTools.getIndex(dimensionOrder, sizeZ, sizeC, sizeT,
+      sizeZ * sizeC * sizeT, pos[Z_AXIS], pos[C_AXIS], pos[T_AXIS]);
+    int res = pos[RESOLUTION_AXIS];
+
+    if (pool == null) {
+      synchronized (reader) {
+        int oldSeries = reader.getSeries();
+        int oldResolution = reader.getResolution();
+        try {
+          return openTile(reader, res, no, region);
+        }
+        finally {
+          reader.setSeries(oldSeries);
+          reader.setResolution(oldResolution);
+        }
+      }
+    }
+
+    IFormatReader r = borrowReader();
+    try {
+      return openTile(r, res, no, region);
+    }
+    finally {
+      returnReader(r);
+    }
+  }
+
+  // -- Helper methods --
+
+  /** Records the dimensions of the given series. */
+  private void init(IFormatReader r, int series, int tileWidth,
+    int tileHeight) throws CacheException
+  {
+    int oldSeries = r.getSeries();
+    int oldResolution = r.getResolution();
+    try {
+      r.setSeries(series);
+      this.series = series;
+      int resolutions = r.getResolutionCount();
+      sizeX = new int[resolutions];
+      sizeY = new int[resolutions];
+      for (int i=0; i<resolutions; i++) {
+        r.setResolution(i);
+        sizeX[i] = r.getSizeX();
+        sizeY[i] = r.getSizeY();
+      }
+      r.setResolution(0);
+      this.tileWidth =
+        tileWidth > 0 ? tileWidth : Math.max(r.getOptimalTileWidth(), 1);
+      this.tileHeight =
+        tileHeight > 0 ? tileHeight : Math.max(r.getOptimalTileHeight(), 1);
+      dimensionOrder = r.getDimensionOrder();
+      sizeZ = r.getSizeZ();
+      sizeC = r.getEffectiveSizeC();
+      sizeT = r.getSizeT();
+    }
+    finally {
+      r.setSeries(oldSeries);
+      r.setResolution(oldResolution);
+    }
+    lengths = new int[] {getTileColumns(0), getTileRows(0), sizeX.length,
+      sizeZ, sizeC, sizeT};
+  }
+
+  /** Reads the given region of the given plane. */
+  private byte[] openTile(IFormatReader r, int res, int no, int[] region)
+    throws CacheException
+  {
+    r.setSeries(series);
+    r.setResolution(res);
+    try {
+      return r.openBytes(no, region[0], region[1], region[2], region[3]);
+    }
+    catch (FormatException exc) { throw new CacheException(exc); }
+    catch (IOException exc) { throw new CacheException(exc); }
+  }
+
+  private IFormatReader borrowReader() throws CacheException {
+    try {
+      return pool.borrowReader();
+    }
+    catch (FormatException exc) { throw new CacheException(exc); }
+    catch (IOException exc) { throw new CacheException(exc); }
+    catch (InterruptedException exc) {
+      Thread.currentThread().interrupt();
+      throw new CacheException(exc);
+    }
+  }
+
+  private void returnReader(IFormatReader r) throws CacheException {
+    try {
+      pool.returnReader(r);
+    }
+    catch (IOException exc) { throw new CacheException(exc); }
+  }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * #%L
+ * BSD implementations of Bio-Formats readers and writers
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats.cache;
+
+import loci.formats.FormatTools;
+
+/**
+ * A tile strategy caches the tiles surrounding the current tile of a
+ * {@link TileSource}, along with the tiles covering the same area in
+ * neighbouring resolutions and neighbouring Z, C and T planes.
+ * <p>
+ * Unlike the other strategies, the tile and resolution axes do not wrap
+ * around: the tile to the left of the first column is not the last column,
+ * and tiles outside a smaller resolution are never loaded.  When the
+ * resolution changes, the tile offsets are measured from the tile that
+ * covers the center of the current tile, so that panning and zooming both
+ * preload the tiles a viewer is likely to request next.  The Z, C and T
+ * axes wrap around as in the {@link RectangleStrategy}.
+ * <p>
+ * As with other strategies, tiles closest to the current position are loaded
+ * first, with axes prioritized according to the strategy's priority settings.
+ */
+public class TileStrategy extends CacheStrategy {
+
+  // -- Fields --
+
+  private int tileWidth, tileHeight;
+
+  /** Width and height of each resolution. */
+  private int[] sizeX, sizeY;
+
+  // -- Constructor --
+
+  /** Constructs a tile strategy for the given tile source. */
+  public TileStrategy(TileSource source) {
+    super(source.getLengths());
+    tileWidth = source.getTileWidth();
+    tileHeight = source.getTileHeight();
+    int resolutions = source.getResolutionCount();
+    sizeX = new int[resolutions];
+    sizeY = new int[resolutions];
+    for (int i=0; i<resolutions; i++) {
+      sizeX[i] = source.getSizeX(i);
+      sizeY[i] = source.getSizeY(i);
+    }
+  }
+
+  // -- CacheStrategy API methods --
+
+  /**
+   * Only the offsets within the current range are returned, as the tile and
+   * resolution axes of a large image have far more offsets than are ever
+   * cached.  The positions are recomputed when the range or order changes.
+   *
+   * @see CacheStrategy#getPossiblePositions()
+   */
+  @Override
+  protected int[][] getPossiblePositions() {
+    int[][] values = new int[lengths.length][];
+    int[] counts = new int[lengths.length];
+    for (int i=0; i<values.length; i++) {
+      int span = span(i);
+      values[i] = new int[(int) Math.min(span, 2L * range[i] + 1)];
+      for (int v=0; v<span && counts[i]<values[i].length; v++) {
+        if (distance(i, v) <= range[i]) values[i][counts[i]++] = v;
+      }
+    }
+    int[] index = new int[counts.length];
+    int[][] p = new int[FormatTools.getRasterLength(counts)][counts.length];
+    for (int i=0; i<p.length; i++) {
+      FormatTools.rasterToPosition(counts, i, index);
+      for (int j=0; j<index.length; j++) p[i][j] = values[j][index[j]];
+    }
+    return p;
+  }
+
+  /* @see CacheStrategy#isRangeLimited() */
+  @Override
+  protected boolean isRangeLimited() { return true; }
+
+  /**
+   * The tile and resolution axes do not wrap around, so offsets range from
+   * one less than minus the axis length to one less than the axis length.
+   *
+   * @see CacheStrategy#span(int)
+   */
+  @Override
+  protected int span(int axis) {
+    if (axis == TileSource.X_AXIS || axis == TileSource.Y_AXIS ||
+      axis == TileSource.RESOLUTION_AXIS)
+    {
+      return 2 * lengths[axis] - 1;
+    }
+    return super.span(axis);
+  }
+
+  /* @see CacheStrategy#getLoadPosition(int[], int[]) */
+  @Override
+  protected int[] getLoadPosition(int[] pos, int[] offset) {
+    int[] value = super.getLoadPosition(pos, offset);
+
+    int res = pos[TileSource.RESOLUTION_AXIS];
+    int r = res + offset(TileSource.RESOLUTION_AXIS,
+      offset[TileSource.RESOLUTION_AXIS]);
+    if (r < 0 || r >= sizeX.length) return null;
+    value[TileSource.RESOLUTION_AXIS] = r;
+
+    int col = scale(pos[TileSource.X_AXIS], tileWidth, sizeX[res], sizeX[r]) +
+      offset(TileSource.X_AXIS, offset[TileSource.X_AXIS]);
+    int row = scale(pos[TileSource.Y_AXIS], tileHeight, sizeY[res], sizeY[r]) +
+      offset(TileSource.Y_AXIS, offset[TileSource.Y_AXIS]);
+    if (col < 0 || col * tileWidth >= sizeX[r]) return null;
+    if (row < 0 || row * tileHeight >= sizeY[r]) return null;
+    value[TileSource.X_AXIS] = col;
+    value[TileSource.Y_AXIS] = row;
+    return value;
+  }
+
+  // -- Helper methods --
+
+  /**
+   * Finds the tile in a resolution of the given size that covers the center
+   * of the given tile in a resolution of the current size.
+   */
+  private static int scale(int tile, int tileSize, int size, int newSize) {
+    if (size == newSize) return tile;
+    long center = Math.min((long) tile * tileSize + tileSize / 2, size - 1);
+    return (int) (center * newSize / size / tileSize);
+  }
+
+}
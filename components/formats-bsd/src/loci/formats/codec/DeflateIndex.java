@@ -0,0 +1,672 @@
+/*
+ * #%L
+ * BSD implementations of Bio-Formats readers and writers
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats.codec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import loci.common.Location;
+import loci.common.NIOFileHandle;
+import loci.common.RandomAccessInputStream;
+import loci.formats.in.DynamicMetadataOptions;
+import loci.formats.in.MetadataOptions;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Random access to deflate-compressed data, such as a gzip file or the
+ * zlib-compressed pixels of a file.
+ *
+ * Data is decoded with {@link Inflater}, continuing from the current
+ * position for forward reads.  When a read has to go back, or skip far
+ * ahead, decoding restarts from the nearest access point before the read
+ * position, instead of from the start of the stream.  Access points are
+ * recorded at the first deflate block boundary after every
+ * {@link #getSpan()} decoded bytes; each holds the compressed bit offset and
+ * the last 32 KB of decoded data.  Finding them and resuming from them needs
+ * the decoder state at block boundaries, which {@link Inflater} does not
+ * expose, so both are done with the slower {@link Inflate}, which then hands
+ * over to {@link Inflater} at the next byte-aligned block boundary.
+ * Purely sequential reads therefore never find any access points; they are
+ * only found while skipping to a position past those already found.
+ *
+ * Access points can be saved to an index file (see {@link #setIndexFile}),
+ * so that they only need to be found once.  Index files are discarded when
+ * the compressed file changes.
+ *
+ * Instances are not thread-safe.
+ */
+public class DeflateIndex implements Closeable {
+
+  // -- Constants --
+
+  private static final Logger LOGGER =
+    LoggerFactory.getLogger(DeflateIndex.class);
+
+  /** Version of the index file format. */
+  public static final int VERSION = 1;
+
+  /** Extension of index files. */
+  public static final String EXTENSION = ".bfindex";
+
+  /** Number of compressed bytes passed to the inflater at once. */
+  private static final int INPUT_SIZE = 65536;
+
+  /** Default number of decoded bytes between access points. */
+  public static final long DEFAULT_SPAN = 8L << 20;
+
+  /** Framing of the deflate data. */
+  public enum Format {
+    /** Raw deflate data, with no header or trailer. */
+    RAW,
+    /** zlib stream (RFC 1950). */
+    ZLIB,
+    /** gzip file (RFC 1952), possibly with several members. */
+    GZIP
+  }
+
+  // -- Fields --
+
+  private final String file;
+  private final long offset;
+  private final Format format;
+  private long span = DEFAULT_SPAN;
+
+  private final List<AccessPoint> points = new ArrayList<AccessPoint>();
+
+  /** Total number of decoded bytes, or -1 if not yet known. */
+  private long length = -1;
+
+  /** Number of decoded bytes up to which access points have been found. */
+  private long indexed;
+
+  private File indexFile;
+  private boolean modified;
+
+  private RandomAccessInputStream stream;
+
+  /** Channel of the compressed file, or null if it is not a real file. */
+  private FileChannel channel;
+  private Inflate inflate;
+  private byte[] scratch;
+
+  /**
+   * True if {@link #inflate} has decoded every block since the start of the
+   * stream or an access point, so that it can record access points.
+   */
+  private boolean contiguous;
+
+  /** True while skipping to a position past {@link #indexed}. */
+  private boolean capturing;
+
+  /** Decoder used instead of {@link #inflate} when {@link #fast} is set. */
+  private Inflater inflater;
+  private boolean fast;
+  private byte[] input;
+
+  /** Offset of the next compressed byte to be passed to the inflater. */
+  private long inputOffset;
+
+  /** Number of bytes decoded by the inflater since the start of the data. */
+  private long fastPosition;
+
+  // -- Constructors --
+
+  /**
+   * Constructs an index for the deflate data that starts at the given offset
+   * in the given file.
+   *
+   * @throws ZipException if the data does not start with a valid header
+   */
+  public DeflateIndex(String file, long offset, Format format)
+    throws IOException
+  {
+    this.file = file;
+    this.offset = offset;
+    this.format = format;
+    if (Location.getMappedFile(file) != null) {
+      stream = new RandomAccessInputStream(file);
+    }
+    else {
+      // open the compressed bytes, not a decompressing handle for .gz files
+      NIOFileHandle handle = new NIOFileHandle(Location.getMappedId(file), "r");
+      stream = new RandomAccessInputStream(handle, file);
+      channel = handle.getFileChannel();
+    }
+    inflate = new Inflate(stream, format);
+    try {
+      inflate.start(offset);
+      contiguous = true;
+    }
+    catch (IOException e) {
+      stream.close();
+      throw e;
+    }
+  }
+
+  // -- Utility methods --
+
+  /**
+   * Gets the index file for the given file, in the directory set by
+   * {@link DynamicMetadataOptions#READER_INDEX_DIRECTORY_KEY}, or null
+   * if that option is not set.
+   */
+  public static File getIndexFile(MetadataOptions options, String file) {
+    if (!(options instanceof DynamicMetadataOptions)) {
+      return null;
+    }
+    File directory = ((DynamicMetadataOptions) options).getFile(
+      DynamicMetadataOptions.READER_INDEX_DIRECTORY_KEY);
+    return directory == null ? null : getIndexFile(directory, file);
+  }
+
+  /**
+   * Gets the index file for the given file in the given directory, using
+   * the same layout as {@link loci.formats.Memoizer} memo files: the
+   * absolute path of the file is appended to the directory, unless the
+   * directory is the root directory, in which case the index file is placed
+   * next to the file itself.
+   */
+  public static File getIndexFile(File directory, String file) {
+    String path = new File(file).getAbsolutePath();
+    int root = path.indexOf(File.separator) + 1;
+    File f;
+    if (directory.getAbsolutePath().equals(path.substring(0, root))) {
+      f = new File(path);
+    }
+    else {
+      f = new File(directory, path.substring(root));
+    }
+    return new File(f.getParentFile(), "." + f.getName() + EXTENSION);
+  }
+
+  // -- DeflateIndex API methods --
+
+  /** Gets the compressed file. */
+  public String getFile() {
+    return file;
+  }
+
+  /** Gets the offset of the deflate data in the compressed file. */
+  public long getOffset() {
+    return offset;
+  }
+
+  public Format getFormat() {
+    return format;
+  }
+
+  /**
+   * Sets the minimum number of decoded bytes between access points.
+   * Smaller spans make random reads faster, at the cost of 32 KB (before
+   * compression) per access point.
+   */
+  public void setSpan(long span) {
+    if (span < Inflate.WINDOW_SIZE) {
+      throw new IllegalArgumentException("Invalid span: " + span);
+    }
+    this.span = span;
+  }
+
+  public long getSpan() {
+    return span;
+  }
+
+  /** Gets the number of access points found so far. */
+  public int getAccessPointCount() {
+    return points.size();
+  }
+
+  /**
+   * Gets the total number of decoded bytes, or -1 if the end of the data
+   * has not been reached yet.
+   */
+  public long getLength() {
+    return length;
+  }
+
+  /**
+   * Sets the file in which access points are saved when this index is
+   * closed, and loads any access points previously saved there.
+   */
+  public void setIndexFile(File indexFile) {
+    this.indexFile = indexFile;
+    if (indexFile != null && indexFile.exists()) {
+      load();
+    }
+  }
+
+  public File getIndexFile() {
+    return indexFile;
+  }
+
+  /**
+   * Reads decoded bytes starting at the given position.
+   *
+   * @return the number of bytes read, which is less than len only at the end
+   *   of the data, or -1 if the position is at or after the end of the data
+   */
+  public int read(long position, byte[] buf, int off, int len)
+    throws IOException
+  {
+    if (position < 0) {
+      throw new IllegalArgumentException("Invalid position: " + position);
+    }
+    if (!seek(position)) {
+      return -1;
+    }
+    int n = 0;
+    while (n < len) {
+      int count = decode(buf, off + n, len - n);
+      if (count < 0) {
+        break;
+      }
+      n += count;
+    }
+    return n == 0 && len > 0 ? -1 : n;
+  }
+
+  /**
+   * Reads exactly len decoded bytes starting at the given position.
+   *
+   * @throws EOFException if the data ends first
+   */
+  public void readFully(long position, byte[] buf, int off, int len)
+    throws IOException
+  {
+    if (read(position, buf, off, len) != len) {
+      throw new EOFException("Unexpected end of " + file);
+    }
+  }
+
+  /** Writes the access points to the index file. */
+  public void save() throws IOException {
+    Location source = new Location(file);
+    File parent = indexFile.getAbsoluteFile().getParentFile();
+    parent.mkdirs();
+    File tempFile = File.createTempFile(".index-", ".tmp", parent);
+    try {
+      try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(tempFile))))
+      {
+        out.writeInt(VERSION);
+        out.writeLong(source.length());
+        out.writeLong(source.lastModified());
+        out.writeLong(offset);
+        out.writeInt(format.ordinal());
+        out.writeLong(span);
+        out.writeLong(length);
+        out.writeInt(points.size());
+        for (AccessPoint point : points) {
+          out.writeLong(point.bitOffset);
+          out.writeLong(point.position);
+          out.writeInt(point.windowLength);
+          out.writeInt(point.window.length);
+          out.write(point.window);
+        }
+      }
+      try {
+        Files.move(tempFile.toPath(), indexFile.toPath(),
+          StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      }
+      catch (AtomicMoveNotSupportedException e) {
+        Files.move(tempFile.toPath(), indexFile.toPath(),
+          StandardCopyOption.REPLACE_EXISTING);
+      }
+      modified = false;
+    }
+    finally {
+      tempFile.delete();
+    }
+  }
+
+  // -- Closeable API methods --
+
+  /**
+   * Closes the compressed file, saving any new access points to the index
+   * file if one was set.
+   */
+  @Override
+  public void close() throws IOException {
+    if (modified && indexFile != null) {
+      try {
+        save();
+      }
+      catch (IOException e) {
+        LOGGER.warn("Could not save index {}", indexFile, e);
+      }
+    }
+    if (inflater != null) {
+      inflater.end();
+    }
+    stream.close();
+  }
+
+  // -- Helper methods --
+
+  /**
+   * Positions the decoder at the given position, starting from the nearest
+   * access point or the current position.
+   *
+   * @return false if the data ends before the given position
+   */
+  private boolean seek(long position) throws IOException {
+    if (length >= 0 && position >= length) {
+      return false;
+    }
+    AccessPoint point = null;
+    int low = 0, high = points.size() - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (points.get(mid).position <= position) {
+        point = points.get(mid);
+        low = mid + 1;
+      }
+      else {
+        high = mid - 1;
+      }
+    }
+    long start = point == null ? 0 : point.position;
+    long current = getPosition();
+    if (current > position || current < start) {
+      fast = false;
+      if (point == null) {
+        inflate.start(offset);
+      }
+      else {
+        inflate.resume(point.bitOffset, point.position, point.getWindow());
+      }
+      contiguous = true;
+    }
+    if (scratch == null) {
+      scratch = new byte[65536];
+    }
+    capturing = position > indexed;
+    try {
+      while (getPosition() < position) {
+        int len = (int) Math.min(scratch.length, position - getPosition());
+        if (decode(scratch, 0, len) < 0) {
+          return false;
+        }
+      }
+    }
+    finally {
+      capturing = false;
+    }
+    return true;
+  }
+
+  /** Gets the number of bytes decoded so far. */
+  private long getPosition() {
+    return fast ? fastPosition : inflate.getPosition();
+  }
+
+  /**
+   * Decodes the next bytes.  Any new access point is recorded first, and
+   * decoding is handed over to the inflater when it is not needed.
+   */
+  private int decode(byte[] buf, int off, int len) throws IOException {
+    if (fast) {
+      return inflate(buf, off, len);
+    }
+    if (inflate.isAtBlockBoundary()) {
+      long position = inflate.getPosition();
+      if (contiguous && position >= indexed) {
+        long last =
+          points.isEmpty() ? 0 : points.get(points.size() - 1).position;
+        if (position - last >= span) {
+          points.add(new AccessPoint(inflate.getBitOffset(), position,
+            inflate.getWindow()));
+          modified = true;
+        }
+        indexed = position;
+      }
+      if (!(capturing && contiguous) && (inflate.getBitOffset() & 7) == 0) {
+        startInflater();
+        return inflate(buf, off, len);
+      }
+    }
+    int n = inflate.read(buf, off, len);
+    if (n < 0 && length < 0) {
+      length = inflate.getPosition();
+      modified = true;
+    }
+    return n;
+  }
+
+  /**
+   * Continues decoding with the inflater, from the block boundary at which
+   * {@link #inflate} stopped.
+   */
+  private void startInflater() throws IOException {
+    if (inflater == null) {
+      inflater = new Inflater(true);
+      input = new byte[INPUT_SIZE];
+    }
+    else {
+      inflater.reset();
+    }
+    byte[] window = inflate.getWindow();
+    if (window.length > 0) {
+      inflater.setDictionary(window);
+    }
+    inputOffset = inflate.getBitOffset() >>> 3;
+    fastPosition = inflate.getPosition();
+    stream.seek(inputOffset);
+    fast = true;
+  }
+
+  /**
+   * Decodes the next bytes with the inflater.  At the end of the deflate
+   * data, decoding is handed back to {@link #inflate}, which reads any
+   * trailer and following gzip member.
+   *
+   * @return the number of bytes decoded, which may be 0
+   */
+  private int inflate(byte[] buf, int off, int len) throws IOException {
+    boolean padded = false;
+    try {
+      while (true) {
+        int n = inflater.inflate(buf, off, len);
+        if (n > 0 || len == 0) {
+          fastPosition += n;
+          return n;
+        }
+        if (inflater.finished()) {
+          long end = inputOffset - (padded ? 0 : inflater.getRemaining());
+          fast = false;
+          contiguous = false;
+          inflate.resumeAfterEnd(end, fastPosition);
+          return 0;
+        }
+        if (inflater.needsDictionary()) {
+          throw new ZipException("Unexpected preset dictionary");
+        }
+        if (inflater.needsInput()) {
+          int count;
+          if (channel != null) {
+            // avoids copying through the stream's buffer
+            count = channel.read(ByteBuffer.wrap(input), inputOffset);
+          }
+          else {
+            count = stream.read(input);
+          }
+          if (count > 0) {
+            inflater.setInput(input, 0, count);
+            inputOffset += count;
+          }
+          else if (!padded) {
+            // raw streams may need an extra byte to detect their end
+            inflater.setInput(new byte[1]);
+            padded = true;
+          }
+          else {
+            throw new EOFException("Unexpected end of deflate data");
+          }
+        }
+      }
+    }
+    catch (DataFormatException e) {
+      throw new ZipException(e.getMessage());
+    }
+  }
+
+  /** Reads the saved access points, unless they are out of date. */
+  private void load() {
+    Location source = new Location(file);
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+      new FileInputStream(indexFile))))
+    {
+      if (in.readInt() != VERSION || in.readLong() != source.length() ||
+        in.readLong() != source.lastModified() || in.readLong() != offset ||
+        in.readInt() != format.ordinal() || in.readLong() != span)
+      {
+        LOGGER.debug("discarding outdated index {}", indexFile);
+        return;
+      }
+      long savedLength = in.readLong();
+      int count = in.readInt();
+      List<AccessPoint> saved = new ArrayList<AccessPoint>(count);
+      for (int i=0; i<count; i++) {
+        long bitOffset = in.readLong();
+        long position = in.readLong();
+        int windowLength = in.readInt();
+        byte[] window = new byte[in.readInt()];
+        in.readFully(window);
+        saved.add(new AccessPoint(bitOffset, position, windowLength, window));
+      }
+      if (saved.size() >= points.size()) {
+        points.clear();
+        points.addAll(saved);
+        if (!saved.isEmpty()) {
+          indexed = Math.max(indexed, saved.get(saved.size() - 1).position);
+        }
+      }
+      if (length < 0) {
+        length = savedLength;
+      }
+    }
+    catch (IOException e) {
+      LOGGER.warn("Could not read index {}", indexFile, e);
+    }
+  }
+
+  // -- Helper classes --
+
+  /** Position from which decoding can be resumed. */
+  private static class AccessPoint {
+    final long bitOffset;
+    final long position;
+    final int windowLength;
+
+    /** Deflate-compressed copy of the data decoded before the point. */
+    final byte[] window;
+
+    AccessPoint(long bitOffset, long position, byte[] window) {
+      this.bitOffset = bitOffset;
+      this.position = position;
+      this.windowLength = window.length;
+      Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+      try {
+        deflater.setInput(window);
+        deflater.finish();
+        byte[] buf = new byte[window.length + 64];
+        int n = 0;
+        while (!deflater.finished()) {
+          if (n == buf.length) {
+            buf = Arrays.copyOf(buf, buf.length * 2);
+          }
+          n += deflater.deflate(buf, n, buf.length - n);
+        }
+        this.window = Arrays.copyOf(buf, n);
+      }
+      finally {
+        deflater.end();
+      }
+    }
+
+    AccessPoint(long bitOffset, long position, int windowLength,
+      byte[] window)
+    {
+      this.bitOffset = bitOffset;
+      this.position = position;
+      this.windowLength = windowLength;
+      this.window = window;
+    }
+
+    byte[] getWindow() throws IOException {
+      Inflater inflater = new Inflater();
+      try {
+        inflater.setInput(window);
+        byte[] buf = new byte[windowLength];
+        int n = 0;
+        while (n < windowLength) {
+          int count = inflater.inflate(buf, n, windowLength - n);
+          if (count == 0 && (inflater.finished() || inflater.needsInput())) {
+            throw new ZipException("Corrupt index window");
+          }
+          n += count;
+        }
+        return buf;
+      }
+      catch (DataFormatException e) {
+        throw new ZipException(e.getMessage());
+      }
+      finally {
+        inflater.end();
+      }
+    }
+  }
+
+}
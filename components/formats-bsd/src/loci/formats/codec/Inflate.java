@@ -0,0 +1,629 @@
+/*
+ * #%L
+ * BSD implementations of Bio-Formats readers and writers
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats.codec;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.ZipException;
+
+import loci.common.RandomAccessInputStream;
+
+/**
+ * Decoder for deflate data (RFC 1951), optionally wrapped in zlib
+ * (RFC 1950) or gzip (RFC 1952) framing.
+ *
+ * Unlike {@link java.util.zip.Inflater}, decoding can be suspended at any
+ * deflate block boundary and later resumed from the compressed bit offset
+ * and the last 32 KB of output, which is what {@link DeflateIndex} records
+ * for each of its access points.  As it is slower than
+ * {@link java.util.zip.Inflater}, it is only used to find access points and
+ * to resume decoding from them.  Checksums in the zlib and gzip trailers
+ * are not verified, as the data is not necessarily decoded from the start.
+ *
+ * Instances are not thread-safe.
+ */
+class Inflate {
+
+  // -- Constants --
+
+  /** Maximum distance of back-references, and size of the window. */
+  static final int WINDOW_SIZE = 32768;
+
+  private static final int WINDOW_MASK = WINDOW_SIZE - 1;
+
+  private static final int MAX_BITS = 15;
+
+  /** Codes up to this length are decoded with a single table lookup. */
+  private static final int TABLE_BITS = 9;
+
+  private static final int[] LENGTH_BASE = {
+    3, 4, 5, 6, 7, 8, 9, 10, 11, 13, 15, 17, 19, 23, 27, 31, 35, 43, 51, 59,
+    67, 83, 99, 115, 131, 163, 195, 227, 258
+  };
+
+  private static final int[] LENGTH_EXTRA = {
+    0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2, 2, 3, 3, 3, 3, 4, 4, 4, 4,
+    5, 5, 5, 5, 0
+  };
+
+  private static final int[] DISTANCE_BASE = {
+    1, 2, 3, 4, 5, 7, 9, 13, 17, 25, 33, 49, 65, 97, 129, 193, 257, 385, 513,
+    769, 1025, 1537, 2049, 3073, 4097, 6145, 8193, 12289, 16385, 24577
+  };
+
+  private static final int[] DISTANCE_EXTRA = {
+    0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6, 7, 7, 8, 8, 9, 9, 10, 10,
+    11, 11, 12, 12, 13, 13
+  };
+
+  /** Order in which code length code lengths are stored. */
+  private static final int[] CODE_LENGTH_ORDER = {
+    16, 17, 18, 0, 8, 7, 9, 6, 10, 5, 11, 4, 12, 3, 13, 2, 14, 1, 15
+  };
+
+  private static final Huffman FIXED_LITERALS = new Huffman(288);
+  private static final Huffman FIXED_DISTANCES = new Huffman(30);
+
+  static {
+    byte[] lengths = new byte[288];
+    for (int i=0; i<lengths.length; i++) {
+      lengths[i] = (byte) (i < 144 ? 8 : i < 256 ? 9 : i < 280 ? 7 : 8);
+    }
+    try {
+      FIXED_LITERALS.build(lengths, 0, 288);
+      for (int i=0; i<30; i++) {
+        lengths[i] = 5;
+      }
+      FIXED_DISTANCES.build(lengths, 0, 30);
+    }
+    catch (ZipException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  // -- Decoder states --
+
+  private static final int BLOCK = 0;
+  private static final int STORED = 1;
+  private static final int CODES = 2;
+  private static final int DONE = 3;
+
+  // -- Fields --
+
+  private final RandomAccessInputStream in;
+  private final DeflateIndex.Format format;
+
+  private final byte[] input = new byte[65536];
+  private long inputOffset;
+  private int inputPosition, inputLength;
+
+  private long bits;
+  private int bitCount;
+
+  /** Number of zero bytes added to the bit buffer after the end of input. */
+  private int padding;
+
+  private final byte[] window = new byte[WINDOW_SIZE];
+
+  /** Number of bytes decoded since the start of the stream. */
+  private long total;
+
+  /** Value of {@link #total} at the start of the valid window contents. */
+  private long history;
+
+  private int state = DONE;
+  private boolean lastBlock;
+  private int storedRemaining;
+  private int copyLength, copyDistance;
+
+  private Huffman literals, distances;
+  private final Huffman dynamicLiterals = new Huffman(288);
+  private final Huffman dynamicDistances = new Huffman(30);
+  private final Huffman codeLengths = new Huffman(19);
+  private final byte[] lengths = new byte[288 + 30];
+
+  // -- Constructor --
+
+  Inflate(RandomAccessInputStream in, DeflateIndex.Format format) {
+    this.in = in;
+    this.format = format;
+  }
+
+  // -- Inflate API methods --
+
+  /**
+   * Starts decoding a stream, including its zlib or gzip header, at the
+   * given byte offset.
+   */
+  void start(long offset) throws IOException {
+    seek(offset, 0);
+    total = 0;
+    history = 0;
+    readHeader();
+    state = BLOCK;
+  }
+
+  /**
+   * Resumes decoding at a block boundary.
+   *
+   * @param bitOffset the offset in bits of the block header
+   * @param position the number of bytes decoded before the block
+   * @param previous the (up to) 32 KB decoded immediately before the block
+   */
+  void resume(long bitOffset, long position, byte[] previous)
+    throws IOException
+  {
+    seek(bitOffset >>> 3, (int) (bitOffset & 7));
+    total = position;
+    history = position - previous.length;
+    for (int i=0; i<previous.length; i++) {
+      window[(int) (history + i) & WINDOW_MASK] = previous[i];
+    }
+    state = BLOCK;
+  }
+
+  /**
+   * Resumes decoding after the final block of a deflate stream, which ends
+   * at the given byte offset, so that any zlib or gzip trailer and any
+   * following gzip member are handled as if the stream had been decoded here.
+   *
+   * @param offset the offset of the first byte after the final block
+   * @param position the number of bytes decoded before the offset
+   */
+  void resumeAfterEnd(long offset, long position) throws IOException {
+    seek(offset, 0);
+    total = position;
+    history = position;
+    readTrailer();
+  }
+
+  /** Gets the number of bytes decoded since the start of the stream. */
+  long getPosition() {
+    return total;
+  }
+
+  /** Gets the offset in bits of the next compressed bit. */
+  long getBitOffset() {
+    return (inputOffset + inputPosition + padding) * 8 - bitCount;
+  }
+
+  /**
+   * Returns true if decoding is between two blocks, that is, if
+   * {@link #resume} could restart decoding here.
+   */
+  boolean isAtBlockBoundary() {
+    return state == BLOCK;
+  }
+
+  /** Returns true if the end of the stream has been reached. */
+  boolean isDone() {
+    return state == DONE;
+  }
+
+  /** Gets a copy of the (up to) 32 KB decoded last. */
+  byte[] getWindow() {
+    int length = (int) Math.min(WINDOW_SIZE, total - history);
+    byte[] copy = new byte[length];
+    long start = total - length;
+    for (int i=0; i<length; i++) {
+      copy[i] = window[(int) (start + i) & WINDOW_MASK];
+    }
+    return copy;
+  }
+
+  /**
+   * Decodes up to len bytes.  Decoding stops early at the end of each block,
+   * so that the caller can observe every block boundary.
+   *
+   * @return the number of bytes decoded, which may be 0, or -1 if the end of
+   *   the stream has been reached
+   */
+  int read(byte[] buf, int off, int len) throws IOException {
+    if (state == DONE) {
+      return -1;
+    }
+    if (state == BLOCK) {
+      readBlockHeader();
+    }
+    if (state == STORED) {
+      return readStored(buf, off, len);
+    }
+    return readCodes(buf, off, len);
+  }
+
+  // -- Helper methods --
+
+  private void seek(long offset, int skipBits) throws IOException {
+    in.seek(offset);
+    inputOffset = offset;
+    inputPosition = 0;
+    inputLength = 0;
+    bits = 0;
+    bitCount = 0;
+    padding = 0;
+    copyLength = 0;
+    lastBlock = false;
+    if (skipBits > 0) {
+      need(skipBits);
+      drop(skipBits);
+    }
+  }
+
+  /** Reads the next chunk of compressed data. */
+  private boolean fill() throws IOException {
+    inputOffset += inputLength;
+    inputPosition = 0;
+    inputLength = Math.max(0, in.read(input));
+    return inputLength > 0;
+  }
+
+  /** Ensures that at least n bits are buffered, padding with zeros. */
+  private int need(int n) throws IOException {
+    while (bitCount < n) {
+      int b = 0;
+      if (inputPosition < inputLength || fill()) {
+        b = input[inputPosition++] & 0xff;
+      }
+      else {
+        padding++;
+      }
+      bits |= (long) b << bitCount;
+      bitCount += 8;
+    }
+    return n;
+  }
+
+  private void drop(int n) throws EOFException {
+    bits >>>= n;
+    bitCount -= n;
+    if (bitCount < padding * 8) {
+      throw new EOFException("Unexpected end of deflate data");
+    }
+  }
+
+  private int readBits(int n) throws IOException {
+    if (n == 0) return 0;
+    need(n);
+    int value = (int) (bits & ((1L << n) - 1));
+    drop(n);
+    return value;
+  }
+
+  private void alignToByte() throws IOException {
+    drop(bitCount & 7);
+  }
+
+  /** Returns true if there is any compressed data left. */
+  private boolean hasInput() throws IOException {
+    return bitCount > padding * 8 || inputPosition < inputLength || fill();
+  }
+
+  private int decode(Huffman h) throws IOException {
+    need(MAX_BITS);
+    int entry = h.table[(int) bits & ((1 << TABLE_BITS) - 1)];
+    if (entry != 0) {
+      drop(entry & 15);
+      return entry >>> 4;
+    }
+    // codes longer than TABLE_BITS are decoded one bit at a time
+    long b = bits;
+    int code = 0, first = 0, index = 0;
+    for (int len=1; len<=MAX_BITS; len++) {
+      code |= (int) (b & 1);
+      b >>>= 1;
+      int count = h.counts[len];
+      if (code - count < first) {
+        drop(len);
+        return h.symbols[index + code - first];
+      }
+      index += count;
+      first += count;
+      first <<= 1;
+      code <<= 1;
+    }
+    throw new ZipException("Invalid deflate code");
+  }
+
+  private void readHeader() throws IOException {
+    if (format == DeflateIndex.Format.GZIP) {
+      if (readBits(16) != 0x8b1f) {
+        throw new ZipException("Not in GZIP format");
+      }
+      if (readBits(8) != 8) {
+        throw new ZipException("Unsupported compression method");
+      }
+      int flags = readBits(8);
+      // modification time, extra flags, operating system
+      readBits(16);
+      readBits(16);
+      readBits(16);
+      if ((flags & 4) != 0) {
+        int extra = readBits(16);
+        for (int i=0; i<extra; i++) {
+          readBits(8);
+        }
+      }
+      if ((flags & 8) != 0) {
+        while (readBits(8) != 0);
+      }
+      if ((flags & 16) != 0) {
+        while (readBits(8) != 0);
+      }
+      if ((flags & 2) != 0) {
+        readBits(16);
+      }
+    }
+    else if (format == DeflateIndex.Format.ZLIB) {
+      int cmf = readBits(8);
+      int flags = readBits(8);
+      if ((cmf & 15) != 8 || ((cmf << 8) | flags) % 31 != 0) {
+        throw new ZipException("Not in zlib format");
+      }
+      if ((flags & 0x20) != 0) {
+        throw new ZipException("Preset dictionaries are not supported");
+      }
+    }
+  }
+
+  /** Handles the end of the final block, and any following gzip member. */
+  private void readTrailer() throws IOException {
+    state = DONE;
+    if (format == DeflateIndex.Format.RAW) {
+      return;
+    }
+    alignToByte();
+    if (format == DeflateIndex.Format.ZLIB) {
+      readBits(16);
+      readBits(16);
+      return;
+    }
+    readBits(16);
+    readBits(16);
+    readBits(16);
+    readBits(16);
+    // concatenated gzip members are decoded as a single stream;
+    // anything else after the trailer is ignored, as by GZIPInputStream
+    if (hasInput() && need(16) == 16 && (bits & 0xffff) == 0x8b1f &&
+      bitCount - padding * 8 >= 16)
+    {
+      readHeader();
+      history = total;
+      state = BLOCK;
+    }
+  }
+
+  private void readBlockHeader() throws IOException {
+    lastBlock = readBits(1) == 1;
+    int type = readBits(2);
+    if (type == 0) {
+      alignToByte();
+      int length = readBits(16);
+      if (length != (~readBits(16) & 0xffff)) {
+        throw new ZipException("Invalid stored block length");
+      }
+      storedRemaining = length;
+      state = STORED;
+    }
+    else if (type == 1) {
+      literals = FIXED_LITERALS;
+      distances = FIXED_DISTANCES;
+      state = CODES;
+    }
+    else if (type == 2) {
+      readDynamicCodes();
+      state = CODES;
+    }
+    else {
+      throw new ZipException("Invalid block type");
+    }
+  }
+
+  private void readDynamicCodes() throws IOException {
+    int literalCount = readBits(5) + 257;
+    int distanceCount = readBits(5) + 1;
+    int codeLengthCount = readBits(4) + 4;
+    if (literalCount > 286 || distanceCount > 30) {
+      throw new ZipException("Too many length or distance codes");
+    }
+    for (int i=0; i<19; i++) {
+      lengths[i] = 0;
+    }
+    for (int i=0; i<codeLengthCount; i++) {
+      lengths[CODE_LENGTH_ORDER[i]] = (byte) readBits(3);
+    }
+    codeLengths.build(lengths, 0, 19);
+
+    int count = literalCount + distanceCount;
+    int index = 0;
+    while (index < count) {
+      int symbol = decode(codeLengths);
+      if (symbol < 16) {
+        lengths[index++] = (byte) symbol;
+        continue;
+      }
+      byte value = 0;
+      int repeat;
+      if (symbol == 16) {
+        if (index == 0) {
+          throw new ZipException("Invalid repeated code length");
+        }
+        value = lengths[index - 1];
+        repeat = 3 + readBits(2);
+      }
+      else if (symbol == 17) {
+        repeat = 3 + readBits(3);
+      }
+      else {
+        repeat = 11 + readBits(7);
+      }
+      if (index + repeat > count) {
+        throw new ZipException("Too many code lengths");
+      }
+      while (repeat-- > 0) {
+        lengths[index++] = value;
+      }
+    }
+    if (lengths[256] == 0) {
+      throw new ZipException("Missing end-of-block code");
+    }
+    dynamicLiterals.build(lengths, 0, literalCount);
+    dynamicDistances.build(lengths, literalCount, distanceCount);
+    literals = dynamicLiterals;
+    distances = dynamicDistances;
+  }
+
+  private void endBlock() throws IOException {
+    if (lastBlock) {
+      readTrailer();
+    }
+    else {
+      state = BLOCK;
+    }
+  }
+
+  private int readStored(byte[] buf, int off, int len) throws IOException {
+    int n = Math.min(len, storedRemaining);
+    for (int i=0; i<n; i++) {
+      byte b = (byte) readBits(8);
+      window[(int) total++ & WINDOW_MASK] = b;
+      buf[off + i] = b;
+    }
+    storedRemaining -= n;
+    if (storedRemaining == 0) {
+      endBlock();
+    }
+    return n;
+  }
+
+  private int readCodes(byte[] buf, int off, int len) throws IOException {
+    int n = 0;
+    while (n < len) {
+      if (copyLength > 0) {
+        int count = Math.min(copyLength, len - n);
+        copyLength -= count;
+        long from = total - copyDistance;
+        for (int i=0; i<count; i++) {
+          byte b = window[(int) from++ & WINDOW_MASK];
+          window[(int) total++ & WINDOW_MASK] = b;
+          buf[off + n++] = b;
+        }
+        continue;
+      }
+      int symbol = decode(literals);
+      if (symbol < 256) {
+        byte b = (byte) symbol;
+        window[(int) total++ & WINDOW_MASK] = b;
+        buf[off + n++] = b;
+      }
+      else if (symbol == 256) {
+        endBlock();
+        break;
+      }
+      else {
+        symbol -= 257;
+        if (symbol >= LENGTH_BASE.length) {
+          throw new ZipException("Invalid length code");
+        }
+        copyLength = LENGTH_BASE[symbol] + readBits(LENGTH_EXTRA[symbol]);
+        int code = decode(distances);
+        if (code >= DISTANCE_BASE.length) {
+          throw new ZipException("Invalid distance code");
+        }
+        copyDistance = DISTANCE_BASE[code] + readBits(DISTANCE_EXTRA[code]);
+        if (copyDistance > total - history) {
+          throw new ZipException("Invalid distance too far back");
+        }
+      }
+    }
+    return n;
+  }
+
+  // -- Helper classes --
+
+  /** Canonical Huffman code. */
+  private static class Huffman {
+    /** Number of codes of each length. */
+    final short[] counts = new short[MAX_BITS + 1];
+
+    /** Symbols ordered by code. */
+    final short[] symbols;
+
+    /**
+     * Symbol and code length for each value of the next TABLE_BITS bits,
+     * or 0 if the code is longer than TABLE_BITS.
+     */
+    final int[] table = new int[1 << TABLE_BITS];
+
+    Huffman(int maxSymbols) {
+      symbols = new short[maxSymbols];
+    }
+
+    void build(byte[] lengths, int off, int count) throws ZipException {
+      Arrays.fill(counts, (short) 0);
+      Arrays.fill(table, 0);
+      for (int i=0; i<count; i++) {
+        counts[lengths[off + i]]++;
+      }
+      counts[0] = 0;
+      int left = 1;
+      for (int len=1; len<=MAX_BITS; len++) {
+        left <<= 1;
+        left -= counts[len];
+        if (left < 0) {
+          throw new ZipException("Over-subscribed Huffman code");
+        }
+      }
+
+      int[] offsets = new int[MAX_BITS + 2];
+      int[] codes = new int[MAX_BITS + 2];
+      for (int len=1; len<=MAX_BITS; len++) {
+        offsets[len + 1] = offsets[len] + counts[len];
+        codes[len + 1] = (codes[len] + counts[len]) << 1;
+      }
+      for (int symbol=0; symbol<count; symbol++) {
+        int len = lengths[off + symbol];
+        if (len == 0) continue;
+        symbols[offsets[len]++] = (short) symbol;
+        int code = codes[len]++;
+        if (len <= TABLE_BITS) {
+          int reversed = Integer.reverse(code) >>> (32 - len);
+          for (int i=reversed; i<table.length; i+=1<<len) {
+            table[i] = (symbol << 4) | len;
+          }
+        }
+      }
+    }
+  }
+
+}
@@ -84,6 +84,21 @@ public class FitsReader extends FormatReader {
     return buf;
   }
 
+  /**
+   * @see loci.formats.IFormatReader#openBytes(int, byte[], int, int, int, int, int)
+   */
+  @Override
+  public byte[] openBytes(int no, byte[] buf, int x, int y, int w, int h,
+    int scale) throws FormatException, IOException
+  {
+    FormatTools.checkScaledPlaneParameters(this, no, buf.length, x, y, w, h,
+      scale);
+
+    in.seek(pixelOffset + no * FormatTools.getPlaneSize(this));
+    readScaledPlane(in, x, y, w, h, scale, buf);
+    return buf;
+  }
+
   /* @see loci.formats.IFormatReader#close(boolean) */
   @Override
   public void close(boolean fileOnly) throws IOException {
@@ -32,8 +32,8 @@
 
 package loci.formats.in;
 
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -41,7 +41,7 @@ import java.util.Hashtable;
 import java.util.List;
 import java.util.StringTokenizer;
 import java.util.Vector;
-import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipException;
 
 import loci.common.DataTools;
 import loci.common.DateTools;
@@ -52,6 +52,7 @@ import loci.formats.FormatException;
 import loci.formats.FormatReader;
 import loci.formats.FormatTools;
 import loci.formats.MetadataTools;
+import loci.formats.codec.DeflateIndex;
 import loci.formats.meta.MetadataStore;
 
 import ome.xml.model.primitives.Timestamp;
@@ -526,7 +527,8 @@ public class ICSReader extends FormatReader {
   /** Whether or not the pixels are GZIP-compressed. */
   private boolean gzip;
 
-  private GZIPInputStream gzipStream;
+  /** Index into the gzip-compressed pixel data. */
+  private transient DeflateIndex gzipIndex;
 
   /** Whether or not the image is inverted along the Y axis. */
   private boolean invertY;
@@ -622,42 +624,28 @@ public class ICSReader extends FormatReader {
       in.seek(offset + no * (long) len);
     }
     else {
-      long toSkip = (no - prevImage - 1) * (long) len;
-      if (gzipStream == null || no <= prevImage) {
-        FileInputStream fis = null;
-        toSkip = no * (long) len;
-        if (versionTwo) {
-          fis = new FileInputStream(currentIcsId);
-          fis.skip(offset);
-        }
-        else {
-          fis = new FileInputStream(currentIdsId);
-          toSkip += offset;
-        }
+      if (gzipIndex == null) {
+        String file = versionTwo ? currentIcsId : currentIdsId;
         try {
-          if (gzipStream != null) {
-            gzipStream.close();
-          }
-          gzipStream = new GZIPInputStream(fis);
+          gzipIndex = new DeflateIndex(file, versionTwo ? offset : 0,
+            DeflateIndex.Format.GZIP);
+          gzipIndex.setIndexFile(
+            DeflateIndex.getIndexFile(getMetadataOptions(), file));
         }
-        catch (IOException e) {
+        catch (ZipException | EOFException e) {
           // the 'gzip' flag is set erroneously
           gzip = false;
           in.seek(offset + no * (long) len);
-          gzipStream = null;
         }
       }
 
-      if (gzipStream != null) {
-        while (toSkip > 0) {
-          toSkip -= gzipStream.skip(toSkip);
+      if (gzipIndex != null) {
+        long position = no * (long) len;
+        if (!versionTwo) {
+          position += offset;
         }
-
         data = new byte[len * (storedRGB ? getSizeC() : 1)];
-        int toRead = data.length;
-        while (toRead > 0) {
-          toRead -= gzipStream.read(data, data.length - toRead, toRead);
-        }
+        gzipIndex.readFully(position, data, 0, data.length);
       }
     }
 
@@ -727,6 +715,10 @@ public class ICSReader extends FormatReader {
   @Override
   public void close(boolean fileOnly) throws IOException {
     super.close(fileOnly);
+    if (gzipIndex != null) {
+      gzipIndex.close();
+      gzipIndex = null;
+    }
     if (!fileOnly) {
       currentIcsId = null;
       currentIdsId = null;
@@ -738,10 +730,6 @@ public class ICSReader extends FormatReader {
       prevImage = 0;
       hasInstrumentData = false;
       storedRGB = false;
-      if (gzipStream != null) {
-        gzipStream.close();
-      }
-      gzipStream = null;
     }
   }
 
@@ -762,6 +750,13 @@ public class ICSReader extends FormatReader {
 
   // -- Internal FormatReader API methods --
 
+  /* @see loci.formats.FormatReader#getStreamFile(RandomAccessInputStream) */
+  @Override
+  protected String getStreamFile(RandomAccessInputStream s) {
+    if (s != in) return null;
+    return versionTwo ? currentIcsId : currentIdsId;
+  }
+
   /* @see loci.formats.FormatReader#initFile(String) */
   @Override
   protected void initFile(String id) throws FormatException, IOException {
@@ -187,6 +187,57 @@ public class JPEG2000Reader extends FormatReader {
     return buf;
   }
 
+  /**
+   * Subsampling by a power of 2 is done by decoding a lower resolution level
+   * of the codestream, which is both faster and smoother than sampling the
+   * full resolution image.
+   *
+   * @see loci.formats.IFormatReader#openBytes(int, byte[], int, int, int, int, int)
+   */
+  @Override
+  public byte[] openBytes(int no, byte[] buf, int x, int y, int w, int h,
+    int scale) throws FormatException, IOException
+  {
+    FormatTools.checkScaledPlaneParameters(this, no, buf.length, x, y, w, h,
+      scale);
+
+    int coreIndex = getCoreIndex();
+    int levels = 0;
+    if (resolutionLevels != null) {
+      while ((scale >> levels) % 2 == 0 &&
+        coreIndex + levels < resolutionLevels)
+      {
+        levels++;
+      }
+    }
+    if (levels == 0) {
+      return super.openBytes(no, buf, x, y, w, h, scale);
+    }
+
+    // each level halves the image, so subsample the chosen level by the
+    // remaining factor
+    int remaining = scale >> levels;
+    int levelX = x >> levels;
+    int levelY = y >> levels;
+    int levelWidth = (FormatTools.getScaledSize(w, scale) - 1) * remaining + 1;
+    int levelHeight = (FormatTools.getScaledSize(h, scale) - 1) * remaining + 1;
+    CoreMetadata level = core.get(coreIndex + levels);
+    if (levelX + levelWidth > level.sizeX ||
+      levelY + levelHeight > level.sizeY)
+    {
+      return super.openBytes(no, buf, x, y, w, h, scale);
+    }
+
+    setCoreIndex(coreIndex + levels);
+    try {
+      return super.openBytes(no, buf, levelX, levelY, levelWidth, levelHeight,
+        remaining);
+    }
+    finally {
+      setCoreIndex(coreIndex);
+    }
+  }
+
   // -- Internal FormatReader API methods --
 
   /* @see loci.formats.FormatReader#initFile(String) */
@@ -42,9 +42,17 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang.ArrayUtils;
 
@@ -90,6 +98,15 @@ public class KLBReader extends FormatReader {
   private static final int COMPRESSION_NONE = 0;
   private static final int COMPRESSION_BZIP2 = 1;
   private static final int COMPRESSION_ZLIB = 2;
+
+  /** Maximum number of bytes of decompressed blocks kept in memory. */
+  public static final String CACHE_SIZE_KEY = "klb.cache_size";
+  public static final long CACHE_SIZE_DEFAULT = 128L * 1024 * 1024;
+
+  /** Number of threads used to decompress the blocks of a tile. */
+  public static final String THREADS_KEY = "klb.threads";
+  public static final int THREADS_DEFAULT =
+    Runtime.getRuntime().availableProcessors();
   
   // -- Fields --
 
@@ -110,6 +127,21 @@ public class KLBReader extends FormatReader {
   private ArrayList<Integer> channels = new ArrayList<Integer>();
   private static final String DEFAULT_SERIES = "Default";
 
+  /** Name of the file that {@link #in} is currently reading. */
+  private transient String inFile;
+
+  /**
+   * Recently decompressed blocks, keyed by file name and block index.
+   * Each block spans several Z planes, so a Z-stack reuses each block
+   * dims_blockSize[2] times.
+   */
+  private transient LinkedHashMap<String, byte[]> blockCache =
+    new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+  private transient long cachedBytes;
+
+  private transient ExecutorService executor;
+  private transient int executorThreads;
+
   /** Prefixes indicating dimensions and projections */
   public static final String CHANNEL_PREFIX = "_CHN";
   public static final String TIME_PREFIX = ".TM";
@@ -131,6 +163,33 @@ public class KLBReader extends FormatReader {
     setGroupFiles(true);
   }
 
+  // -- KLBReader API methods --
+
+  /** Gets the maximum number of bytes of decompressed blocks to cache. */
+  public long getCacheSize() {
+    MetadataOptions options = getMetadataOptions();
+    if (options instanceof DynamicMetadataOptions) {
+      return ((DynamicMetadataOptions) options).getLong(
+        CACHE_SIZE_KEY, CACHE_SIZE_DEFAULT);
+    }
+    return CACHE_SIZE_DEFAULT;
+  }
+
+  /** Gets the number of threads used to decompress blocks. */
+  public int getThreads() {
+    MetadataOptions options = getMetadataOptions();
+    if (options instanceof DynamicMetadataOptions) {
+      return ((DynamicMetadataOptions) options).getInteger(
+        THREADS_KEY, THREADS_DEFAULT);
+    }
+    return THREADS_DEFAULT;
+  }
+
+  /** Gets the number of bytes of decompressed blocks currently cached. */
+  public long getCachedBytes() {
+    return cachedBytes;
+  }
+
   // -- IFormatReader API methods --
 
   /**
@@ -140,7 +199,6 @@ public class KLBReader extends FormatReader {
   public byte[] openBytes(int no, byte[] buf, int x, int y, int w, int h)
     throws FormatException, IOException
   {
-    in.close();
     String fileName;
     int[] currentCoords = getZCTCoords(no);
     int currentSeries = getSeries();
@@ -148,13 +206,20 @@ public class KLBReader extends FormatReader {
     Set<String> keys = filelist.keySet();
     fileName = filelist.get(keys.toArray()[currentSeries])[currentCoords[2]][currentCoords[1]];
 
-    in = new RandomAccessInputStream(fileName);
+    if (fileName.equals(inFile)) {
+      in.seek(0);
+    }
+    else {
+      in.close();
+      in = new RandomAccessInputStream(fileName);
+      inFile = fileName;
+    }
 
     FormatTools.checkPlaneParameters(this, no, buf.length, x, y, w, h);
 
     //As number of offsets can be greater than INT_MAX only storing enough required for given plane
     //New offsets are read from header each time openBytes is called
-    reCalculateBlockOffsets(no);
+    int requiredBlockNum = reCalculateBlockOffsets(no);
     
     //Calculate block offsets for tiled reading
     int xBlockOffset = x % dims_blockSize[0];
@@ -180,82 +245,28 @@ public class KLBReader extends FormatReader {
       dimsBlock[ii] = (int) Math.ceil((float)dims_xyzct[ii] / (float)dims_blockSize[ii]);
     }
 
-    long compressedBlockSize = blockOffsets[1] - blockOffsets[0];
-    int outputOffset = 0;
-
+    // Decompress all blocks intersecting the tile first, so that blocks
+    // that are not cached can be decompressed in parallel
+    int[] blockIds = new int[yNumBlocks * xNumBlocks];
+    int[] blockSizes = new int[blockIds.length];
     for (int yy=0; yy < yNumBlocks; yy++) {
       for (int xx=0; xx < xNumBlocks; xx++) {
+        int index = yy * xNumBlocks + xx;
+        blockIds[index] = (yBlockStartIndex + yy) * blocksPerImageRow + xBlockStartIndex + xx;
+        blockSizes[index] = getBlockGeometry(blockIds[index], x, y, w, h,
+          bytesPerPixel, dimsBlock, coordBlock, blockSizeAux);
+      }
+    }
+    byte[][] blocks = readBlocks(fileName, requiredBlockNum, blockIds, blockSizes);
 
-        //calculate coordinate (in block space)        
-        int blockId = (yBlockStartIndex + yy) * blocksPerImageRow + xBlockStartIndex + xx;
-        for (int ii = 0; ii < KLB_DATA_DIMS; ii++)
-        {
-          //parsing coordinates to image space (not block anymore)
-          if (ii == 1) {
-            coordBlock[1] = blockId / dimsBlock[0];
-          }
-          else {
-            coordBlock[ii] = blockId % dimsBlock[ii];
-          }
-          coordBlock[ii] *= dims_blockSize[ii];
-        }
-
-        // Calculate block size in case we had border block
-        blockSizeAux[0] = Math.min(dims_blockSize[0], (x + w - coordBlock[0]));
-        blockSizeAux[0] = Math.min(blockSizeAux[0], coordBlock[0] + dims_blockSize[0] - x);
-        blockSizeAux[1] = Math.min(dims_blockSize[1], (y + h - coordBlock[1]));
-        blockSizeAux[1] = Math.min(blockSizeAux[1], coordBlock[1] + dims_blockSize[1] - y);
-        for (int ii = 2; ii < KLB_DATA_DIMS; ii++) {
-          blockSizeAux[ii] = Math.min(dims_blockSize[ii], (dims_xyzct[ii] - coordBlock[ii]));
-        }
+    int outputOffset = 0;
 
-        int blockSizeBytes = bytesPerPixel;
-        for (int ii = 0; ii < KLB_DATA_DIMS; ii++)
-        {
-          if (ii == 0 && coordBlock[ii] + blockSizeAux[ii] >= dims_xyzct[ii]) {
-            blockSizeBytes *= blockSizeAux[0];
-          }
-          else {
-            blockSizeBytes *= dims_blockSize[ii];
-          }
-        }
-        
-        compressedBlockSize = blockOffsets[blockId+1] - blockOffsets[blockId];
-        long offset =  blockOffsets[blockId];
-        //Seek to start of block
-        in.seek((long) (headerSize + offset));
-
-        //Read compressed block
-        byte[] block = new byte[(int) compressedBlockSize];
-        in.read(block);
-
-        //Decompress block
-        if (compressionType == COMPRESSION_BZIP2) {
-          // Discard first two bytes of BZIP2 header
-          byte[] tempPixels = block;
-          block = new byte[tempPixels.length - 2];
-          System.arraycopy(tempPixels, 2, block, 0, block.length);
-
-          try {
-            ByteArrayInputStream bais = new ByteArrayInputStream(block);
-            CBZip2InputStream bzip = new CBZip2InputStream(bais);
-            block = new byte[blockSizeBytes];
-            bzip.read(block, 0, block.length);
-            tempPixels = null;
-            bais.close();
-            bzip.close();
-            bais = null;
-            bzip = null;
-          }
-          catch(IOException e) {
-            LOGGER.error("IOException while decompressing block {}", xx);
-            throw e;
-          }
-        }
-        else if (compressionType == COMPRESSION_ZLIB) {
-          CodecOptions options = new CodecOptions();
-          block = new ZlibCodec().decompress(block, options);
-        }
+    for (int yy=0; yy < yNumBlocks; yy++) {
+      for (int xx=0; xx < xNumBlocks; xx++) {
+        int index = yy * xNumBlocks + xx;
+        getBlockGeometry(blockIds[index], x, y, w, h, bytesPerPixel,
+          dimsBlock, coordBlock, blockSizeAux);
+        byte[] block = blocks[index];
 
         try {
           int imageRowSize = w * bytesPerPixel;
@@ -310,6 +321,15 @@ public class KLBReader extends FormatReader {
 
   // -- Internal FormatReader API methods --
 
+  /* @see loci.formats.FormatReader#getAvailableOptions() */
+  @Override
+  protected ArrayList<String> getAvailableOptions() {
+    ArrayList<String> optionsList = super.getAvailableOptions();
+    optionsList.add(CACHE_SIZE_KEY);
+    optionsList.add(THREADS_KEY);
+    return optionsList;
+  }
+
   /* @see loci.formats.FormatReader#initFile(String) */
   @Override
   protected void initFile(String id) throws FormatException, IOException {
@@ -486,7 +506,8 @@ public class KLBReader extends FormatReader {
   }
   
   // Needed as offsets array can only be int max and full image may be greater
-  private void reCalculateBlockOffsets(int no) throws IOException, FormatException {
+  // Returns the index of the Z block containing the plane
+  private int reCalculateBlockOffsets(int no) throws IOException, FormatException {
     LOGGER.debug("Beginning calulating offsets for plane : " + no);
     headerVersion = in.readUnsignedByte();
     for (int i=0; i < KLB_DATA_DIMS; i++) {
@@ -538,10 +559,202 @@ public class KLBReader extends FormatReader {
       blockOffsets[0] = 0;
     }
     in.seek(filePoointer);
+    return requiredBlockNum;
   }
 
   // Helper methods
 
+  /**
+   * Computes the image coordinates and size of the given block, clipped to
+   * the requested tile, and returns the decompressed size of the block.
+   */
+  private int getBlockGeometry(int blockId, int x, int y, int w, int h,
+    int bytesPerPixel, int[] dimsBlock, int[] coordBlock, int[] blockSizeAux)
+  {
+    //calculate coordinate (in block space)
+    for (int ii = 0; ii < KLB_DATA_DIMS; ii++)
+    {
+      //parsing coordinates to image space (not block anymore)
+      if (ii == 1) {
+        coordBlock[1] = blockId / dimsBlock[0];
+      }
+      else {
+        coordBlock[ii] = blockId % dimsBlock[ii];
+      }
+      coordBlock[ii] *= dims_blockSize[ii];
+    }
+
+    // Calculate block size in case we had border block
+    blockSizeAux[0] = Math.min(dims_blockSize[0], (x + w - coordBlock[0]));
+    blockSizeAux[0] = Math.min(blockSizeAux[0], coordBlock[0] + dims_blockSize[0] - x);
+    blockSizeAux[1] = Math.min(dims_blockSize[1], (y + h - coordBlock[1]));
+    blockSizeAux[1] = Math.min(blockSizeAux[1], coordBlock[1] + dims_blockSize[1] - y);
+    for (int ii = 2; ii < KLB_DATA_DIMS; ii++) {
+      blockSizeAux[ii] = Math.min(dims_blockSize[ii], (dims_xyzct[ii] - coordBlock[ii]));
+    }
+
+    int blockSizeBytes = bytesPerPixel;
+    for (int ii = 0; ii < KLB_DATA_DIMS; ii++)
+    {
+      if (ii == 0 && coordBlock[ii] + blockSizeAux[ii] >= dims_xyzct[ii]) {
+        blockSizeBytes *= blockSizeAux[0];
+      }
+      else {
+        blockSizeBytes *= dims_blockSize[ii];
+      }
+    }
+    return blockSizeBytes;
+  }
+
+  /**
+   * Returns the decompressed blocks with the given IDs from the current Z
+   * block of the given file.  Blocks are taken from the block cache when
+   * possible; the others are read in order, then decompressed in parallel.
+   */
+  private byte[][] readBlocks(String fileName, int requiredBlockNum,
+    int[] blockIds, int[] blockSizes) throws FormatException, IOException
+  {
+    byte[][] blocks = new byte[blockIds.length][];
+    String[] cacheKeys = new String[blockIds.length];
+    List<Integer> missing = new ArrayList<Integer>();
+    for (int i=0; i<blockIds.length; i++) {
+      long blockIndex = (long) requiredBlockNum * blocksPerPlane + blockIds[i];
+      cacheKeys[i] = fileName + "#" + blockIndex;
+      blocks[i] = blockCache.get(cacheKeys[i]);
+      if (blocks[i] == null) {
+        missing.add(i);
+      }
+    }
+    if (missing.isEmpty()) {
+      return blocks;
+    }
+
+    final byte[][] compressed = new byte[blockIds.length][];
+    for (int i : missing) {
+      int blockId = blockIds[i];
+      long compressedBlockSize = blockOffsets[blockId+1] - blockOffsets[blockId];
+      //Seek to start of block
+      in.seek(headerSize + blockOffsets[blockId]);
+
+      //Read compressed block
+      compressed[i] = new byte[(int) compressedBlockSize];
+      in.read(compressed[i]);
+    }
+
+    int threads = Math.min(getThreads(), missing.size());
+    if (threads <= 1) {
+      for (int i : missing) {
+        blocks[i] = decompressBlock(compressed[i], blockSizes[i]);
+      }
+    }
+    else {
+      List<Callable<byte[]>> tasks = new ArrayList<Callable<byte[]>>();
+      for (final int i : missing) {
+        final int blockSize = blockSizes[i];
+        tasks.add(new Callable<byte[]>() {
+          @Override
+          public byte[] call() throws FormatException, IOException {
+            return decompressBlock(compressed[i], blockSize);
+          }
+        });
+      }
+      try {
+        List<Future<byte[]>> results = getExecutor(threads).invokeAll(tasks);
+        for (int t=0; t<tasks.size(); t++) {
+          blocks[missing.get(t)] = results.get(t).get();
+        }
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while decompressing blocks", e);
+      }
+      catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof FormatException) {
+          throw (FormatException) cause;
+        }
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+        throw new FormatException("Could not decompress block", cause);
+      }
+    }
+
+    for (int i : missing) {
+      cacheBlock(cacheKeys[i], blocks[i]);
+    }
+    return blocks;
+  }
+
+  /** Decompresses a single block. */
+  private byte[] decompressBlock(byte[] block, int blockSizeBytes)
+    throws FormatException, IOException
+  {
+    if (compressionType == COMPRESSION_BZIP2) {
+      // Discard first two bytes of BZIP2 header
+      try (CBZip2InputStream bzip = new CBZip2InputStream(
+        new ByteArrayInputStream(block, 2, block.length - 2)))
+      {
+        byte[] pixels = new byte[blockSizeBytes];
+        int offset = 0;
+        while (offset < pixels.length) {
+          int n = bzip.read(pixels, offset, pixels.length - offset);
+          if (n <= 0) {
+            break;
+          }
+          offset += n;
+        }
+        return pixels;
+      }
+      catch (IOException e) {
+        LOGGER.error("IOException while decompressing block", e);
+        throw e;
+      }
+    }
+    else if (compressionType == COMPRESSION_ZLIB) {
+      return new ZlibCodec().decompress(block, new CodecOptions());
+    }
+    return block;
+  }
+
+  /** Adds a decompressed block to the cache, evicting the oldest blocks. */
+  private void cacheBlock(String key, byte[] block) {
+    long maxBytes = getCacheSize();
+    if (block.length > maxBytes) {
+      return;
+    }
+    byte[] previous = blockCache.put(key, block);
+    if (previous != null) {
+      cachedBytes -= previous.length;
+    }
+    cachedBytes += block.length;
+    Iterator<byte[]> blocks = blockCache.values().iterator();
+    while (cachedBytes > maxBytes && blocks.hasNext()) {
+      cachedBytes -= blocks.next().length;
+      blocks.remove();
+    }
+  }
+
+  private ExecutorService getExecutor(int threads) {
+    if (executor == null || executorThreads < threads) {
+      if (executor != null) {
+        executor.shutdown();
+      }
+      final AtomicInteger threadCount = new AtomicInteger();
+      executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r,
+            "KLBReader-" + threadCount.incrementAndGet());
+          t.setDaemon(true);
+          return t;
+        }
+      });
+      executorThreads = threads;
+    }
+    return executor;
+  }
+
   private void convertPixelType(CoreMetadata ms0, int pixelType) throws FormatException {
     switch (pixelType) {
       case UINT8_TYPE:
@@ -617,6 +830,16 @@ public class KLBReader extends FormatReader {
     blocksPerPlane = 0;
     offsetFilePointer = 0;
     headerVersion = 0;    
+    inFile = null;
+    if (blockCache != null) {
+      blockCache.clear();
+    }
+    cachedBytes = 0;
+    if (executor != null) {
+      executor.shutdown();
+      executor = null;
+      executorThreads = 0;
+    }
   }
 
 }
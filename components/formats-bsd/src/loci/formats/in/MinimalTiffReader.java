@@ -35,6 +35,10 @@ package loci.formats.in;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import loci.formats.CoreMetadata;
 import loci.formats.FormatException;
@@ -68,6 +72,13 @@ public class MinimalTiffReader extends SubResolutionFormatReader {
   private static final Logger LOGGER =
     LoggerFactory.getLogger(MinimalTiffReader.class);
 
+  /**
+   * Number of threads used to decode the tiles of a single openBytes call.
+   * Values greater than 1 enable parallel tile decoding.
+   */
+  public static final String TILE_THREADS_KEY = "tiff.tile_threads";
+  public static final int TILE_THREADS_DEFAULT = 1;
+
   // -- Fields --
 
   /** List of IFDs for the current TIFF. */
@@ -109,6 +120,9 @@ public class MinimalTiffReader extends SubResolutionFormatReader {
   /** Codec options to use when decoding JPEG 2000 data. */
   private JPEG2000CodecOptions j2kCodecOptions;
 
+  /** Executor used for parallel tile decoding, if enabled. */
+  private transient ExecutorService tileExecutor;
+
   // -- Constructors --
 
   /** Constructs a new MinimalTiffReader. */
@@ -130,6 +144,19 @@ public class MinimalTiffReader extends SubResolutionFormatReader {
 
   // -- MinimalTiffReader API methods --
 
+  /**
+   * Returns the number of threads to use when decoding tiles.
+   * @see #TILE_THREADS_KEY
+   */
+  public int getTileThreads() {
+    MetadataOptions options = getMetadataOptions();
+    if (options instanceof DynamicMetadataOptions) {
+      return ((DynamicMetadataOptions) options).getInteger(
+        TILE_THREADS_KEY, TILE_THREADS_DEFAULT);
+    }
+    return TILE_THREADS_DEFAULT;
+  }
+
   /** Gets the list of IFDs associated with the current TIFF's image planes. */
   public IFDList getIFDs() {
     return ifds;
@@ -142,6 +169,14 @@ public class MinimalTiffReader extends SubResolutionFormatReader {
 
   // -- IFormatReader API methods --
 
+  /* @see loci.formats.FormatReader#getAvailableOptions() */
+  @Override
+  protected ArrayList<String> getAvailableOptions() {
+    ArrayList<String> optionsList = super.getAvailableOptions();
+    optionsList.add(TILE_THREADS_KEY);
+    return optionsList;
+  }
+
   /* @see loci.formats.IFormatReader#isThisType(RandomAccessInputStream) */
   @Override
   public boolean isThisType(RandomAccessInputStream stream) throws IOException {
@@ -309,6 +344,7 @@ public class MinimalTiffReader extends SubResolutionFormatReader {
       initTiffParser();
     }
 
+    tiffParser.setTileExecutor(getTileExecutor());
     tiffParser.getSamples(ifd, buf, x, y, w, h);
 
     boolean float16 = getPixelType() == FormatTools.FLOAT &&
@@ -392,10 +428,39 @@ public class MinimalTiffReader extends SubResolutionFormatReader {
       tiffParser = null;
       resolutionLevels = null;
       j2kCodecOptions = null;
+      if (tileExecutor != null) {
+        tileExecutor.shutdown();
+        tileExecutor = null;
+      }
       seriesToIFD = false;
     }
   }
 
+  /**
+   * Uncompressed strips are subsampled by reading only the sampled rows.
+   *
+   * @see loci.formats.IFormatReader#openBytes(int, byte[], int, int, int, int, int)
+   */
+  @Override
+  public byte[] openBytes(int no, byte[] buf, int x, int y, int w, int h,
+    int scale) throws FormatException, IOException
+  {
+    FormatTools.checkScaledPlaneParameters(this, no, buf.length, x, y, w, h,
+      scale);
+
+    int index = seriesToIFD ? getSeries() : no;
+    if (index < ifds.size()) {
+      IFD ifd = ifds.get(index);
+      if (ifd.getCompression() == TiffCompression.UNCOMPRESSED &&
+        ifd.getTileWidth() == ifd.getImageWidth())
+      {
+        return FormatTools.openScaledBytes(this, no, buf, x, y, w, h, scale,
+          getOptimalTileWidth(), 1);
+      }
+    }
+    return super.openBytes(no, buf, x, y, w, h, scale);
+  }
+
   /* @see loci.formats.IFormatReader#getOptimalTileWidth() */
   @Override
   public int getOptimalTileWidth() {
@@ -690,6 +755,41 @@ public class MinimalTiffReader extends SubResolutionFormatReader {
   }
 
 
+  /**
+   * Get the executor used to decode tiles in parallel, creating it
+   * if necessary.
+   *
+   * @return the executor, or null if tiles should be decoded serially
+   * @see #TILE_THREADS_KEY
+   */
+  protected ExecutorService getTileExecutor() {
+    if (tileExecutor == null) {
+      tileExecutor = createTileExecutor(getTileThreads());
+    }
+    return tileExecutor;
+  }
+
+  /**
+   * Create a fixed-size pool of daemon threads for tile decoding.
+   *
+   * @param threads the number of threads
+   * @return the executor, or null if <code>threads</code> is less than 2
+   */
+  static ExecutorService createTileExecutor(int threads) {
+    if (threads < 2) {
+      return null;
+    }
+    final AtomicInteger count = new AtomicInteger();
+    return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "TiffTileDecoder-" + count.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+      }
+    });
+  }
+
   /** Reinitialize the underlying TiffParser. */
   protected void initTiffParser() {
     if (in == null) {
@@ -33,10 +33,7 @@
 package loci.formats.in;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.InputStream;
 import java.io.IOException;
-import java.util.zip.GZIPInputStream;
 
 import loci.common.DataTools;
 import loci.common.Location;
@@ -51,6 +48,7 @@ import loci.formats.ImageReader;
 import loci.formats.MetadataTools;
 import loci.formats.UnknownFormatException;
 import loci.formats.UnsupportedCompressionException;
+import loci.formats.codec.DeflateIndex;
 import loci.formats.meta.MetadataStore;
 
 import ome.units.quantity.Length;
@@ -82,8 +80,8 @@ public class NRRDReader extends FormatReader {
 
   private boolean initializeHelper = false;
 
-  private transient GZIPInputStream gzip;
-  private transient int lastPlane = -1;
+  /** Index into the gzip-compressed pixel data. */
+  private transient DeflateIndex gzipIndex;
 
   // -- Constructor --
 
@@ -209,22 +207,48 @@ public class NRRDReader extends FormatReader {
     return helper.openBytes(no, buf, x, y, w, h);
   }
 
+  /**
+   * @see loci.formats.IFormatReader#openBytes(int, byte[], int, int, int, int, int)
+   */
+  @Override
+  public byte[] openBytes(int no, byte[] buf, int x, int y, int w, int h,
+    int scale) throws FormatException, IOException
+  {
+    if (!encoding.equals("raw") || (dataFile != null && initializeHelper)) {
+      return super.openBytes(no, buf, x, y, w, h, scale);
+    }
+    FormatTools.checkScaledPlaneParameters(this, no, buf.length, x, y, w, h,
+      scale);
+
+    long planeOffset = offset + no * FormatTools.getPlaneSize(this);
+    if (dataFile == null) {
+      in.seek(planeOffset);
+      readScaledPlane(in, x, y, w, h, scale, buf);
+    }
+    else {
+      try (RandomAccessInputStream s = new RandomAccessInputStream(dataFile)) {
+        s.seek(planeOffset);
+        readScaledPlane(s, x, y, w, h, scale, buf);
+      }
+    }
+    return buf;
+  }
+
   /* @see loci.formats.IFormatReader#close(boolean) */
   @Override
   public void close(boolean fileOnly) throws IOException {
     super.close(fileOnly);
     if (helper != null) helper.close(fileOnly);
+    if (gzipIndex != null) {
+      gzipIndex.close();
+      gzipIndex = null;
+    }
     if (!fileOnly) {
       helper = null;
       dataFile = encoding = null;
       offset = 0;
       pixelSizes = null;
       initializeHelper = false;
-      if (gzip != null) {
-        gzip.close();
-      }
-      gzip = null;
-      lastPlane = -1;
     }
   }
 
@@ -408,25 +432,10 @@ public class NRRDReader extends FormatReader {
     }
   }
 
-  /**
-   * Skip a specified number of bytes in a stream.
-   * This can be used to skip more than {@link Integer#MAX_VALUE}
-   * bytes at once.
-   *
-   * @param stream the InputStream in which to skip bytes
-   * @param skip the number of bytes to skip, which may be greater than
-   *             {@link Integer#MAX_VALUE}. Non-positive values will
-   *             not throw an exception, but will also not skip any bytes.
-   * @throws IOException
-   */
-  private void safeSkip(InputStream stream, long skip) throws IOException {
-    while (skip > 0) {
-      skip -= stream.skip((int) Math.min(skip, Integer.MAX_VALUE));
-    }
-  }
-
   /**
    * Read a tile in the specified plane from a GZIP-compressed file.
+   * Planes are located through a {@link DeflateIndex}, so that only
+   * the data between the nearest access point and the tile is decompressed.
    *
    * @param file the path to the GZIP-compressed file
    * @param no the plane index
@@ -440,32 +449,24 @@ public class NRRDReader extends FormatReader {
   private void readGZIPPlane(String file, int no, byte[] buf,
     int x, int y, int w, int h) throws IOException
   {
-    if (gzip == null || no <= lastPlane) {
-      if (gzip != null) {
-        gzip.close();
+    if (gzipIndex == null || !gzipIndex.getFile().equals(file)) {
+      if (gzipIndex != null) {
+        gzipIndex.close();
       }
-      FileInputStream fis = new FileInputStream(file);
-      safeSkip(fis, offset);
-      gzip = new GZIPInputStream(fis);
-      lastPlane = -1;
+      gzipIndex = new DeflateIndex(file, offset, DeflateIndex.Format.GZIP);
+      gzipIndex.setIndexFile(
+        DeflateIndex.getIndexFile(getMetadataOptions(), file));
     }
 
     int bpp = getRGBChannelCount() * FormatTools.getBytesPerPixel(getPixelType());
     int rowLen = getSizeX() * bpp;
-    int diff = no - (lastPlane + 1);
     long planeSize = FormatTools.getPlaneSize(this);
-    safeSkip(gzip, (planeSize * diff) + (y * rowLen));
+    long start = no * planeSize + (long) y * rowLen + (long) x * bpp;
     int readLen = w * bpp;
     for (int row=0; row<h; row++) {
-      safeSkip(gzip, x * bpp);
-
-      int toRead = readLen;
-      while (toRead > 0) {
-        toRead -= gzip.read(buf, ((row + y) * readLen) + (readLen - toRead), toRead);
-      }
-      safeSkip(gzip, (getSizeX() - w - x) * bpp);
+      gzipIndex.readFully(start + (long) row * rowLen, buf, row * readLen,
+        readLen);
     }
-    lastPlane = no;
   }
 
   private Double parsePixelSize(int index) {
@@ -41,7 +41,10 @@ import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 import loci.common.DataTools;
 import loci.common.Location;
@@ -92,6 +95,16 @@ public class OMETiffReader extends SubResolutionFormatReader {
   public static final String FAIL_ON_MISSING_KEY = "ometiff.fail_on_missing_tiff";
   public static final boolean FAIL_ON_MISSING_DEFAULT = true;
 
+  /**
+   * Maximum number of TIFF files to keep open between calls to openBytes.
+   * A value of 0 opens and closes the file on every call.
+   */
+  public static final String MAX_OPEN_FILES_KEY = "ometiff.max_open_files";
+  public static final int MAX_OPEN_FILES_DEFAULT = 8;
+
+  /** Maximum number of SubIFDs to keep after they have been read. */
+  private static final int MAX_CACHED_SUBIFDS = 256;
+
   // -- Fields --
 
   /** Mapping from series and plane numbers to files and IFD entries. */
@@ -109,6 +122,15 @@ public class OMETiffReader extends SubResolutionFormatReader {
 
   private String metadataFile;
 
+  /** Executor used for parallel tile decoding, if enabled. */
+  private transient ExecutorService tileExecutor;
+
+  /** Open parsers for recently read files, in least recently used order. */
+  private transient LinkedHashMap<String, TiffParser> parsers;
+
+  /** SubIFDs that have already been read, keyed by file and IFD offset. */
+  private transient Map<String, IFD> subResolutionIFDs;
+
   // -- Constructor --
 
   /** Constructs a new OME-TIFF reader. */
@@ -128,6 +150,8 @@ public class OMETiffReader extends SubResolutionFormatReader {
   protected ArrayList<String> getAvailableOptions() {
     ArrayList<String> optionsList = super.getAvailableOptions();
     optionsList.add(FAIL_ON_MISSING_KEY);
+    optionsList.add(MAX_OPEN_FILES_KEY);
+    optionsList.add(MinimalTiffReader.TILE_THREADS_KEY);
     return optionsList;
   }
 
@@ -295,6 +319,7 @@ public class OMETiffReader extends SubResolutionFormatReader {
           {
             try {
               p.reader.close();
+              closeParser(p.id);
             }
             catch (IOException e) {
               LOGGER.warn("Could not close " + p.id, e);
@@ -335,6 +360,8 @@ public class OMETiffReader extends SubResolutionFormatReader {
   @Override
   public void reopenFile() throws IOException {
     super.reopenFile();
+    closeParsers();
+    subResolutionIFDs = null;
     for (int s=0; s<info.length; s++) {
       for (int q=0; q<info[s].length; q++) {
         // only reopen readers that had previously been initialized
@@ -377,26 +404,33 @@ public class OMETiffReader extends SubResolutionFormatReader {
       return buf;
     }
     IFD ifd = ifdList.get(i);
-    try (RandomAccessInputStream s = new RandomAccessInputStream(info[series][no].id, 16)) {
-      TiffParser p = new TiffParser(s);
+    String file = info[series][no].id;
+    if (getMaxOpenFiles() > 0) {
+      TiffParser p = getParser(file);
       if (resolution > 0) {
-        // read the required SubIFD, but don't attempt to read the ImageDescription
-        // the ImageDescription will be completely ignored anyway
-        // it may be quite large (> 10 MB) in which case this has a significant
-        // impact on read time and memory usage
-        p.setDoCaching(false);
-        long offset = ifd.getIFDLongArray(IFD.SUB_IFD)[((OMETiffCoreMetadata)core.get(series, resolution)).subresolutionOffset];
-        ifd = p.getIFD(offset);
-        ifd.remove(IFD.IMAGE_DESCRIPTION);
-        p.fillInIFD(ifd);
+        ifd = getSubResolutionIFD(p, file, ifd);
       }
+      p.setTileExecutor(getTileExecutor());
       p.getSamples(ifd, buf, x, y, w, h);
     }
+    else {
+      try (RandomAccessInputStream s = new RandomAccessInputStream(file, 16)) {
+        TiffParser p = new TiffParser(s);
+        if (resolution > 0) {
+          ifd = getSubResolutionIFD(p, file, ifd);
+        }
+        p.setTileExecutor(getTileExecutor());
+        p.getSamples(ifd, buf, x, y, w, h);
+      }
+    }
 
     // reasonably safe to close the reader if the entire plane or
     // lower-right-most tile from a single plane file has been read
     if (r.getImageCount() == 1 && w + x == getSizeX() && h + y == getSizeY()) {
       r.close();
+      // closing the reader also closes any on-demand offset arrays,
+      // which now refer to the cached parser's stream
+      closeParser(file);
     }
     return buf;
   }
@@ -440,6 +474,7 @@ public class OMETiffReader extends SubResolutionFormatReader {
   @Override
   public void close(boolean fileOnly) throws IOException {
     super.close(fileOnly);
+    closeParsers();
     if (info != null) {
       for (OMETiffPlane[] dimension : info) {
         if (dimension == null) continue;
@@ -460,6 +495,11 @@ public class OMETiffReader extends SubResolutionFormatReader {
       used = null;
       lastPlane = 0;
       metadataFile = null;
+      subResolutionIFDs = null;
+      if (tileExecutor != null) {
+        tileExecutor.shutdown();
+        tileExecutor = null;
+      }
     }
   }
 
@@ -1520,6 +1560,114 @@ public class OMETiffReader extends SubResolutionFormatReader {
     }
   }
 
+  /**
+   * Returns the number of threads to use when decoding tiles.
+   * @see MinimalTiffReader#TILE_THREADS_KEY
+   */
+  public int getTileThreads() {
+    MetadataOptions options = getMetadataOptions();
+    if (options instanceof DynamicMetadataOptions) {
+      return ((DynamicMetadataOptions) options).getInteger(
+        MinimalTiffReader.TILE_THREADS_KEY,
+        MinimalTiffReader.TILE_THREADS_DEFAULT);
+    }
+    return MinimalTiffReader.TILE_THREADS_DEFAULT;
+  }
+
+  private ExecutorService getTileExecutor() {
+    if (tileExecutor == null) {
+      tileExecutor = MinimalTiffReader.createTileExecutor(getTileThreads());
+    }
+    return tileExecutor;
+  }
+
+  /**
+   * Returns the maximum number of files to keep open between calls
+   * to openBytes.
+   * @see #MAX_OPEN_FILES_KEY
+   */
+  public int getMaxOpenFiles() {
+    MetadataOptions options = getMetadataOptions();
+    if (options instanceof DynamicMetadataOptions) {
+      return ((DynamicMetadataOptions) options).getInteger(
+        MAX_OPEN_FILES_KEY, MAX_OPEN_FILES_DEFAULT);
+    }
+    return MAX_OPEN_FILES_DEFAULT;
+  }
+
+  /**
+   * Returns an open parser for the given file, opening the file and
+   * closing the least recently used file if necessary.
+   */
+  private TiffParser getParser(String file) throws IOException {
+    if (parsers == null) {
+      parsers = new LinkedHashMap<String, TiffParser>(16, 0.75f, true);
+    }
+    TiffParser parser = parsers.get(file);
+    if (parser == null) {
+      Iterator<TiffParser> eldest = parsers.values().iterator();
+      while (parsers.size() >= getMaxOpenFiles() && eldest.hasNext()) {
+        TiffParser p = eldest.next();
+        eldest.remove();
+        p.getStream().close();
+      }
+      parser = new TiffParser(new RandomAccessInputStream(file, 16));
+      parsers.put(file, parser);
+    }
+    return parser;
+  }
+
+  /** Closes the given file, if it was opened by {@link #getParser(String)}. */
+  private void closeParser(String file) throws IOException {
+    TiffParser parser = parsers == null ? null : parsers.remove(file);
+    if (parser != null) {
+      parser.getStream().close();
+    }
+  }
+
+  /** Closes all files opened by {@link #getParser(String)}. */
+  private void closeParsers() throws IOException {
+    if (parsers == null) {
+      return;
+    }
+    for (TiffParser parser : parsers.values()) {
+      parser.getStream().close();
+    }
+    parsers = null;
+  }
+
+  /**
+   * Returns the SubIFD for the current resolution of the given IFD,
+   * reading it with the given parser if it has not already been read.
+   */
+  private IFD getSubResolutionIFD(TiffParser p, String file, IFD ifd)
+    throws FormatException, IOException
+  {
+    long offset = ifd.getIFDLongArray(IFD.SUB_IFD)[((OMETiffCoreMetadata)core.get(series, resolution)).subresolutionOffset];
+    String key = file + "@" + offset;
+    if (subResolutionIFDs == null) {
+      subResolutionIFDs = new LinkedHashMap<String, IFD>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, IFD> eldest) {
+          return size() > MAX_CACHED_SUBIFDS;
+        }
+      };
+    }
+    IFD subIFD = subResolutionIFDs.get(key);
+    if (subIFD == null) {
+      // read the required SubIFD, but don't attempt to read the ImageDescription
+      // the ImageDescription will be completely ignored anyway
+      // it may be quite large (> 10 MB) in which case this has a significant
+      // impact on read time and memory usage
+      p.setDoCaching(false);
+      subIFD = p.getIFD(offset);
+      subIFD.remove(IFD.IMAGE_DESCRIPTION);
+      p.fillInIFD(subIFD);
+      subResolutionIFDs.put(key, subIFD);
+    }
+    return subIFD;
+  }
+
   public boolean failOnMissingTIFF() {
       MetadataOptions options = getMetadataOptions();
       if (options instanceof DynamicMetadataOptions) {
@@ -33,12 +33,20 @@
 package loci.formats.in;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import loci.common.CBZip2InputStream;
+import loci.common.Constants;
 import loci.common.RandomAccessInputStream;
 import loci.common.services.DependencyException;
 import loci.common.services.ServiceException;
@@ -61,9 +69,7 @@ import loci.formats.services.OMEXMLService;
 import loci.formats.services.OMEXMLServiceImpl;
 
 import org.xml.sax.Attributes;
-import org.xml.sax.Locator;
 import org.xml.sax.helpers.DefaultHandler;
-import com.google.common.io.BaseEncoding;
 
 
 /**
@@ -73,12 +79,25 @@ import com.google.common.io.BaseEncoding;
  */
 public class OMEXMLReader extends FormatReader {
 
+  // -- Constants --
+
+  /** Maximum number of bytes of decompressed planes kept in memory. */
+  private static final long PLANE_CACHE_SIZE = 64L * 1024 * 1024;
+
+  private static final int SCAN_BUFFER_SIZE = 1024 * 1024;
+
+  private static final Pattern COMPRESSION =
+    Pattern.compile("\\sCompression\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)')");
+
   // -- Fields --
 
-  // compression value and offset for each BinData element
+  // location of the base64 text and compression for each Pixels BinData
   private List<BinData> binData;
-  private List<Long> binDataOffsets;
-  private List<String> compression;
+
+  /** Recently decompressed planes, keyed by BinData index. */
+  private transient LinkedHashMap<Integer, byte[]> planeCache =
+    new LinkedHashMap<Integer, byte[]>(16, 0.75f, true);
+  private transient long cachedBytes;
 
   private String omexml;
   private boolean hasSPW = false;
@@ -127,7 +146,7 @@ public class OMEXMLReader extends FormatReader {
   public byte[] openBytes(int no, byte[] buf, int x, int y, int w, int h)
     throws FormatException, IOException
   {
-    if (binDataOffsets.size() == 0) return buf;
+    if (binData.size() == 0) return buf;
     FormatTools.checkPlaneParameters(this, no, buf.length, x, y, w, h);
 
     int index = no;
@@ -135,74 +154,54 @@ public class OMEXMLReader extends FormatReader {
     for (int i=0; i<series; i++) {
       index += core.get(i).imageCount;
     }
-    if (index >= binDataOffsets.size()) {
-      index = binDataOffsets.size() - 1;
+    if (index >= binData.size()) {
+      index = binData.size() - 1;
     }
 
-    long offset = binDataOffsets.get(index).longValue();
-    String compress = compression.get(index);
-
-    in.seek(offset);
-
-    int depth = FormatTools.getBytesPerPixel(getPixelType());
-    int planeSize = getSizeX() * getSizeY() * depth;
-
-    CodecOptions options = new CodecOptions();
-    options.width = getSizeX();
-    options.height = getSizeY();
-    options.bitsPerSample = depth * 8;
-    options.channels = getRGBChannelCount();
-    options.maxBytes = planeSize;
-    options.littleEndian = isLittleEndian();
-    options.interleaved = isInterleaved();
-
-    String encoded = in.readString("<");
-    encoded = encoded.trim();
-    if (encoded.length() == 0 || encoded.equals("<")) {
-      LOGGER.debug("No pixel data for plane #{}", no);
-      return buf;
-    }
-    encoded = encoded.substring(0, encoded.length() - 1);
-    byte[] pixels =  BaseEncoding.base64().decode(encoded);
+    BinData bin = binData.get(index);
     // return a blank plane if no pixel data was stored
-    if (pixels.length == 0) {
+    if (bin.getLength() == 0) {
       LOGGER.debug("No pixel data for plane #{}", no);
       return buf;
     }
 
-    // TODO: Create a method uncompress to handle all compression methods
-    if (compress.equals("bzip2")) {
-      byte[] tempPixels = pixels;
-      pixels = new byte[tempPixels.length - 2];
-      System.arraycopy(tempPixels, 2, pixels, 0, pixels.length);
-
-      ByteArrayInputStream bais = new ByteArrayInputStream(pixels);
-      CBZip2InputStream bzip = new CBZip2InputStream(bais);
-      pixels = new byte[planeSize];
-      bzip.read(pixels, 0, pixels.length);
-      tempPixels = null;
-      bais.close();
-      bzip.close();
-      bais = null;
-      bzip = null;
-    }
-    else if (compress.equals("zlib")) {
-      pixels = new ZlibCodec().decompress(pixels, options);
-    }
-    else if (compress.equals("J2K")) {
-      pixels = new JPEG2000Codec().decompress(pixels, options);
+    int depth = FormatTools.getBytesPerPixel(getPixelType());
+    int rowLen = getSizeX() * depth;
+
+    if (!bin.isCompressed()) {
+      // decode only the requested rows, straight into the output buffer
+      try (Base64InputStream stream = new Base64InputStream(in, bin)) {
+        long position = 0;
+        for (int row=0; row<h; row++) {
+          long rowStart = (long) (row + y) * rowLen + x * depth;
+          if (stream.skip(rowStart - position) < rowStart - position) {
+            break;
+          }
+          int n = stream.read(buf, row * w * depth, w * depth);
+          if (n < 0) {
+            break;
+          }
+          position = rowStart + n;
+        }
+      }
+      return buf;
     }
-    else if (compress.equals("JPEG")) {
-      pixels = new JPEGCodec().decompress(pixels, options);
+
+    byte[] pixels = planeCache.get(index);
+    if (pixels == null) {
+      pixels = decompress(bin, no);
+      if (pixels == null) {
+        LOGGER.debug("No pixel data for plane #{}", no);
+        return buf;
+      }
+      cachePlane(index, pixels);
     }
 
     for (int row=0; row<h; row++) {
-      int off = (row + y) * getSizeX() * depth + x * depth;
+      int off = (row + y) * rowLen + x * depth;
       System.arraycopy(pixels, off, buf, row * w * depth, w * depth);
     }
 
-    pixels = null;
-
     return buf;
   }
 
@@ -210,9 +209,11 @@ public class OMEXMLReader extends FormatReader {
   @Override
   public void close(boolean fileOnly) throws IOException {
     super.close(fileOnly);
+    if (planeCache != null) {
+      planeCache.clear();
+    }
+    cachedBytes = 0;
     if (!fileOnly) {
-      compression = null;
-      binDataOffsets = null;
       binData = null;
       omexml = null;
       hasSPW = false;
@@ -229,28 +230,24 @@ public class OMEXMLReader extends FormatReader {
     in = new RandomAccessInputStream(id);
     in.setEncoding("ASCII");
     binData = new ArrayList<BinData>();
-    binDataOffsets = new ArrayList<Long>();
-    compression = new ArrayList<String>();
+    planeCache.clear();
+    cachedBytes = 0;
 
-    DefaultHandler handler = new OMEXMLHandler();
+    // a single pass over the file records where each BinData's text lies,
+    // leaving a much smaller document without pixel data to parse
+    byte[] xml;
     try (RandomAccessInputStream s = new RandomAccessInputStream(id)) {
-      XMLTools.parseXML(s, handler);
+      xml = indexBinData(s);
+    }
+
+    DefaultHandler handler = new OMEXMLHandler();
+    try {
+      XMLTools.parseXML(xml, handler);
     }
     catch (IOException e) {
       throw new FormatException("Malformed OME-XML", e);
     }
-
-    int lineNumber = 1;
-    for (BinData bin : binData) {
-      int line = bin.getRow();
-      int col = bin.getColumn();
-
-      while (lineNumber < line) {
-        in.readLine();
-        lineNumber++;
-      }
-      binDataOffsets.add(in.getFilePointer() + col - 1);
-    }
+    xml = null;
 
     LOGGER.info("Populating metadata");
 
@@ -332,12 +329,261 @@ public class OMEXMLReader extends FormatReader {
     MetadataTools.populatePixels(store, this, false, false);
   }
 
+  // -- Helper methods --
+
+  /**
+   * Scans the whole document once, recording the position of the text of
+   * each BinData element within Pixels.  The document is returned with
+   * that text removed.
+   */
+  private byte[] indexBinData(RandomAccessInputStream s) throws IOException {
+    ByteArrayOutputStream xml = new ByteArrayOutputStream();
+    ByteArrayOutputStream markup = new ByteArrayOutputStream();
+    byte[] buffer = new byte[SCAN_BUFFER_SIZE];
+
+    boolean inMarkup = false;
+    boolean inBinData = false;
+    boolean inPixels = false;
+    int quote = 0;
+    int bracketDepth = 0;
+
+    // first and last non-whitespace offsets of the current BinData text
+    long textStart = -1;
+    long textEnd = -1;
+    boolean contiguous = true;
+    String compress = null;
+
+    long position = s.getFilePointer();
+    long length = s.length();
+    while (position < length) {
+      int n = (int) Math.min(buffer.length, length - position);
+      s.readFully(buffer, 0, n);
+      int copyStart = 0;
+      for (int i=0; i<n; i++) {
+        int b = buffer[i] & 0xff;
+        if (inBinData) {
+          if (b == '<') {
+            inBinData = false;
+            binData.add(new BinData(textStart,
+              textStart < 0 ? 0 : textEnd - textStart + 1, contiguous,
+              compress));
+            copyStart = i;
+          }
+          else if (!isWhitespace(b)) {
+            if (textStart < 0) {
+              textStart = position + i;
+            }
+            else if (textEnd < position + i - 1) {
+              contiguous = false;
+            }
+            textEnd = position + i;
+            continue;
+          }
+          else {
+            continue;
+          }
+        }
+
+        if (!inMarkup) {
+          if (b == '<') {
+            inMarkup = true;
+            quote = 0;
+            bracketDepth = 0;
+            markup.reset();
+            markup.write(b);
+          }
+          continue;
+        }
+
+        markup.write(b);
+        if (quote != 0) {
+          if (b == quote) {
+            quote = 0;
+          }
+          continue;
+        }
+        if (b == '"' || b == '\'') {
+          if (markup.size() > 2 && !isSpecialMarkup(markup)) {
+            quote = b;
+          }
+          continue;
+        }
+        if (b == '[') {
+          bracketDepth++;
+        }
+        else if (b == ']') {
+          bracketDepth--;
+        }
+        if (b != '>' || !isMarkupEnd(markup, bracketDepth)) {
+          continue;
+        }
+
+        inMarkup = false;
+        String tag = markup.toString(Constants.ENCODING);
+        if (tag.startsWith("<!") || tag.startsWith("<?")) {
+          continue;
+        }
+        boolean endTag = tag.startsWith("</");
+        boolean emptyTag = tag.endsWith("/>");
+        String name = getElementName(tag);
+        if (name.indexOf("Pixels") != -1) {
+          inPixels = !endTag && !emptyTag;
+        }
+        else if (inPixels && !endTag && name.indexOf("BinData") != -1) {
+          Matcher m = COMPRESSION.matcher(tag);
+          compress = "";
+          if (m.find()) {
+            compress = m.group(1) != null ? m.group(1) : m.group(2);
+          }
+          if (emptyTag) {
+            binData.add(new BinData(-1, 0, true, compress));
+            continue;
+          }
+          xml.write(buffer, copyStart, i + 1 - copyStart);
+          inBinData = true;
+          textStart = -1;
+          textEnd = -1;
+          contiguous = true;
+        }
+      }
+      if (!inBinData) {
+        xml.write(buffer, copyStart, n - copyStart);
+      }
+      position += n;
+    }
+    if (inBinData) {
+      throw new IOException("Unterminated BinData element");
+    }
+    return xml.toByteArray();
+  }
+
+  /** Decodes and decompresses the given BinData in its entirety. */
+  private byte[] decompress(BinData bin, int no)
+    throws FormatException, IOException
+  {
+    ByteArrayOutputStream bytes =
+      new ByteArrayOutputStream((int) (bin.getLength() / 4 * 3));
+    try (Base64InputStream stream = new Base64InputStream(in, bin)) {
+      byte[] chunk = new byte[8192];
+      int n = stream.read(chunk, 0, chunk.length);
+      while (n >= 0) {
+        bytes.write(chunk, 0, n);
+        n = stream.read(chunk, 0, chunk.length);
+      }
+    }
+    byte[] pixels = bytes.toByteArray();
+    if (pixels.length == 0) {
+      return null;
+    }
+
+    int depth = FormatTools.getBytesPerPixel(getPixelType());
+    int planeSize = getSizeX() * getSizeY() * depth;
+
+    CodecOptions options = new CodecOptions();
+    options.width = getSizeX();
+    options.height = getSizeY();
+    options.bitsPerSample = depth * 8;
+    options.channels = getRGBChannelCount();
+    options.maxBytes = planeSize;
+    options.littleEndian = isLittleEndian();
+    options.interleaved = isInterleaved();
+
+    // TODO: Create a method uncompress to handle all compression methods
+    String compress = bin.getCompression();
+    if (compress.equals("bzip2")) {
+      ByteArrayInputStream bais =
+        new ByteArrayInputStream(pixels, 2, pixels.length - 2);
+      try (CBZip2InputStream bzip = new CBZip2InputStream(bais)) {
+        pixels = new byte[planeSize];
+        int offset = 0;
+        while (offset < pixels.length) {
+          int n = bzip.read(pixels, offset, pixels.length - offset);
+          if (n <= 0) {
+            break;
+          }
+          offset += n;
+        }
+      }
+    }
+    else if (compress.equals("zlib")) {
+      pixels = new ZlibCodec().decompress(pixels, options);
+    }
+    else if (compress.equals("J2K")) {
+      pixels = new JPEG2000Codec().decompress(pixels, options);
+    }
+    else if (compress.equals("JPEG")) {
+      pixels = new JPEGCodec().decompress(pixels, options);
+    }
+    return pixels;
+  }
+
+  /** Adds a decompressed plane to the cache, evicting the oldest planes. */
+  private void cachePlane(int index, byte[] pixels) {
+    if (pixels.length > PLANE_CACHE_SIZE) {
+      return;
+    }
+    byte[] previous = planeCache.put(index, pixels);
+    if (previous != null) {
+      cachedBytes -= previous.length;
+    }
+    cachedBytes += pixels.length;
+    Iterator<byte[]> planes = planeCache.values().iterator();
+    while (cachedBytes > PLANE_CACHE_SIZE && planes.hasNext()) {
+      cachedBytes -= planes.next().length;
+      planes.remove();
+    }
+  }
+
+  private static boolean isWhitespace(int b) {
+    return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+  }
+
+  /** Whether the markup is a comment, CDATA section or processing instruction. */
+  private static boolean isSpecialMarkup(ByteArrayOutputStream markup)
+    throws IOException
+  {
+    String start = new String(markup.toByteArray(), 0,
+      Math.min(markup.size(), 9), Constants.ENCODING);
+    return start.startsWith("<?") || "<!--".startsWith(start) ||
+      start.startsWith("<!--") || "<![CDATA[".startsWith(start) ||
+      start.startsWith("<![CDATA[");
+  }
+
+  /** Whether the '>' just appended to the markup terminates it. */
+  private static boolean isMarkupEnd(ByteArrayOutputStream markup,
+    int bracketDepth) throws IOException
+  {
+    String tag = markup.toString(Constants.ENCODING);
+    if (tag.startsWith("<!--")) {
+      return tag.length() >= 7 && tag.endsWith("-->");
+    }
+    if (tag.startsWith("<![CDATA[")) {
+      return tag.endsWith("]]>");
+    }
+    if (tag.startsWith("<?")) {
+      return tag.endsWith("?>");
+    }
+    return bracketDepth <= 0;
+  }
+
+  private static String getElementName(String tag) {
+    int start = tag.startsWith("</") ? 2 : 1;
+    int end = start;
+    while (end < tag.length()) {
+      char c = tag.charAt(end);
+      if (Character.isWhitespace(c) || c == '/' || c == '>') {
+        break;
+      }
+      end++;
+    }
+    return tag.substring(start, end);
+  }
+
   // -- Helper class --
 
   class OMEXMLHandler extends BaseHandler {
     private final StringBuilder xmlBuffer;
     private String currentQName;
-    private Locator locator;
     private boolean inPixels;
 
     public OMEXMLHandler() {
@@ -374,11 +620,6 @@ public class OMEXMLReader extends FormatReader {
       }
 
       if (inPixels && qName.indexOf("BinData") != -1) {
-        binData.add(
-          new BinData(locator.getLineNumber(), locator.getColumnNumber()));
-        String compress = attributes.getValue("Compression");
-        compression.add(compress == null ? "" : compress);
-
         xmlBuffer.append("<");
         xmlBuffer.append(qName);
         for (int i=0; i<attributes.getLength(); i++) {
@@ -422,24 +663,215 @@ public class OMEXMLReader extends FormatReader {
     public void endDocument() {
       omexml = xmlBuffer.toString();
     }
+  }
 
-    @Override
-    public void setDocumentLocator(Locator locator) {
-      this.locator = locator;
+  static class BinData {
+    private long offset;
+    private long length;
+    private boolean contiguous;
+    private String compression;
+
+    public BinData(long offset, long length, boolean contiguous,
+      String compression)
+    {
+      this.offset = offset;
+      this.length = length;
+      this.contiguous = contiguous;
+      this.compression = compression;
+    }
+
+    /** Offset of the first base64 character. */
+    public long getOffset() { return offset; }
+
+    /** Number of characters from the first to the last base64 character. */
+    public long getLength() { return length; }
+
+    /** Whether the base64 text contains no whitespace. */
+    public boolean isContiguous() { return contiguous; }
+
+    public String getCompression() { return compression; }
+
+    public boolean isCompressed() {
+      return compression.equals("bzip2") || compression.equals("zlib") ||
+        compression.equals("J2K") || compression.equals("JPEG");
     }
   }
 
-  class BinData {
-    private int row;
-    private int column;
+  /**
+   * Decodes the base64 text of a BinData element as it is read from the
+   * file.  When the text contains no whitespace, skipping is done by
+   * seeking rather than decoding.
+   */
+  static class Base64InputStream extends InputStream {
+    private static final int WHITESPACE = -2;
+    private static final int PADDING = -3;
+    private static final int[] DECODE = new int[256];
+
+    static {
+      Arrays.fill(DECODE, -1);
+      String alphabet =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+      for (int i=0; i<alphabet.length(); i++) {
+        DECODE[alphabet.charAt(i)] = i;
+      }
+      DECODE[' '] = WHITESPACE;
+      DECODE['\n'] = WHITESPACE;
+      DECODE['\r'] = WHITESPACE;
+      DECODE['\t'] = WHITESPACE;
+      DECODE['='] = PADDING;
+    }
+
+    private final RandomAccessInputStream in;
+    private final long end;
+    private final boolean contiguous;
+
+    /** Offset in the file of the next character to be buffered. */
+    private long position;
+    private final byte[] chars = new byte[8192];
+    private int charIndex;
+    private int charCount;
+
+    private final byte[] decoded = new byte[3];
+    private int decodedIndex;
+    private int decodedCount;
+    private boolean done;
+
+    public Base64InputStream(RandomAccessInputStream in, BinData bin) {
+      this.in = in;
+      this.position = bin.getOffset();
+      this.end = bin.getOffset() + bin.getLength();
+      this.contiguous = bin.isContiguous();
+    }
 
-    public BinData(int row, int column) {
-      this.row = row;
-      this.column = column;
+    @Override
+    public int read() throws IOException {
+      if (decodedIndex == decodedCount && !decodeQuantum()) {
+        return -1;
+      }
+      return decoded[decodedIndex++] & 0xff;
     }
 
-    public int getRow() { return row; }
-    public int getColumn() { return column; }
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int total = 0;
+      while (total < len) {
+        if (decodedIndex == decodedCount) {
+          // decode whole quanta of buffered text directly into the output
+          while (len - total >= 3 && charCount - charIndex >= 4) {
+            int a = DECODE[chars[charIndex] & 0xff];
+            int b1 = DECODE[chars[charIndex + 1] & 0xff];
+            int c = DECODE[chars[charIndex + 2] & 0xff];
+            int d = DECODE[chars[charIndex + 3] & 0xff];
+            if ((a | b1 | c | d) < 0) {
+              break;
+            }
+            int bits = (a << 18) | (b1 << 12) | (c << 6) | d;
+            b[off + total] = (byte) (bits >> 16);
+            b[off + total + 1] = (byte) (bits >> 8);
+            b[off + total + 2] = (byte) bits;
+            charIndex += 4;
+            total += 3;
+          }
+          if (total == len) {
+            break;
+          }
+        }
+        if (decodedIndex == decodedCount && !decodeQuantum()) {
+          break;
+        }
+        int n = Math.min(len - total, decodedCount - decodedIndex);
+        System.arraycopy(decoded, decodedIndex, b, off + total, n);
+        decodedIndex += n;
+        total += n;
+      }
+      return total == 0 && len > 0 ? -1 : total;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = 0;
+      int pending = Math.min(decodedCount - decodedIndex, (int) Math.min(n, 3));
+      decodedIndex += pending;
+      skipped += pending;
+
+      if (contiguous && !done) {
+        // every 4 characters decode to 3 bytes, so seek straight past
+        // whole quanta, leaving the last one to be decoded
+        long quanta = Math.max(0, (n - skipped) / 3 - 1);
+        long next = position - (charCount - charIndex);
+        quanta = Math.min(quanta, Math.max(0, (end - next) / 4 - 1));
+        position = next + quanta * 4;
+        charIndex = 0;
+        charCount = 0;
+        skipped += quanta * 3;
+      }
+
+      while (skipped < n) {
+        if (decodedIndex == decodedCount && !decodeQuantum()) {
+          break;
+        }
+        int count = (int) Math.min(n - skipped, decodedCount - decodedIndex);
+        decodedIndex += count;
+        skipped += count;
+      }
+      return skipped;
+    }
+
+    /** Decodes the next 4 characters, returning false at the end. */
+    private boolean decodeQuantum() throws IOException {
+      if (done) {
+        return false;
+      }
+      int bits = 0;
+      int count = 0;
+      while (count < 4) {
+        int c = nextChar();
+        if (c < 0) {
+          break;
+        }
+        int value = DECODE[c];
+        if (value == WHITESPACE) {
+          continue;
+        }
+        if (value == PADDING) {
+          done = true;
+          break;
+        }
+        if (value < 0) {
+          throw new IOException("Invalid base64 character: " + (char) c);
+        }
+        bits = (bits << 6) | value;
+        count++;
+      }
+      if (count < 4) {
+        done = true;
+        if (count < 2) {
+          return false;
+        }
+        bits <<= 6 * (4 - count);
+      }
+      decodedCount = count - 1;
+      decodedIndex = 0;
+      decoded[0] = (byte) (bits >> 16);
+      decoded[1] = (byte) (bits >> 8);
+      decoded[2] = (byte) bits;
+      return true;
+    }
+
+    private int nextChar() throws IOException {
+      if (charIndex == charCount) {
+        if (position >= end) {
+          return -1;
+        }
+        int n = (int) Math.min(chars.length, end - position);
+        in.seek(position);
+        in.readFully(chars, 0, n);
+        position += n;
+        charIndex = 0;
+        charCount = n;
+      }
+      return chars[charIndex++] & 0xff;
+    }
   }
 
 }
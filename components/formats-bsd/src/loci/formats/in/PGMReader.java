@@ -127,6 +127,24 @@ public class PGMReader extends FormatReader {
     return buf;
   }
 
+  /**
+   * @see loci.formats.IFormatReader#openBytes(int, byte[], int, int, int, int, int)
+   */
+  @Override
+  public byte[] openBytes(int no, byte[] buf, int x, int y, int w, int h,
+    int scale) throws FormatException, IOException
+  {
+    if (!rawBits) {
+      return super.openBytes(no, buf, x, y, w, h, scale);
+    }
+    FormatTools.checkScaledPlaneParameters(this, no, buf.length, x, y, w, h,
+      scale);
+
+    in.seek(offset);
+    readScaledPlane(in, x, y, w, h, scale, buf);
+    return buf;
+  }
+
   /* @see loci.formats.IFormatReader#close(boolean) */
   @Override
   public void close(boolean fileOnly) throws IOException {
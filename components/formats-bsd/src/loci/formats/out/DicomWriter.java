@@ -310,11 +310,15 @@ public class DicomWriter extends FormatWriter implements IExtraMetadataWriter {
       out.seek(compressionMethodPointer[resolutionIndex]);
       out.writeBytes(getCompressionMethod());
 
-      ifds[resolutionIndex][no].put(IFD.COMPRESSION, getTIFFCompression().getCode());
+      // the corresponding IFD is expected to be null
+      // if dual personality writing is turned off
+      if (ifds[resolutionIndex][no] != null) {
+        ifds[resolutionIndex][no].put(IFD.COMPRESSION, getTIFFCompression().getCode());
 
-      // see https://github.com/ome/bioformats/issues/3856
-      if (getTIFFCompression() == TiffCompression.JPEG) {
-        ifds[resolutionIndex][no].put(IFD.PHOTOMETRIC_INTERPRETATION, PhotoInterp.Y_CB_CR.getCode());
+        // see https://github.com/ome/bioformats/issues/3856
+        if (getTIFFCompression() == TiffCompression.JPEG) {
+          ifds[resolutionIndex][no].put(IFD.PHOTOMETRIC_INTERPRETATION, PhotoInterp.Y_CB_CR.getCode());
+        }
       }
 
       out.seek(tileWidthPointer[resolutionIndex]);
@@ -505,55 +509,7 @@ public class DicomWriter extends FormatWriter implements IExtraMetadataWriter {
     out.seek(out.length());
     long start = out.getFilePointer();
 
-    byte[] paddedBuf = null;
-
-    int thisTilePixels = thisTileWidth * thisTileHeight;
-
-    // pad the last row and column of tiles to match specified tile size
-    if ((x + w == getSizeX() && w < thisTileWidth) ||
-      (y + h == getSizeY() && h < thisTileHeight))
-    {
-      if (interleaved || samplesPerPixel == 1) {
-        int srcRowLen = w * bytesPerPixel * samplesPerPixel;
-        int destRowLen = thisTileWidth * bytesPerPixel * samplesPerPixel;
-        paddedBuf = new byte[thisTileHeight * destRowLen];
-
-        for (int row=0; row<h; row++) {
-          System.arraycopy(buf, row * srcRowLen, paddedBuf, row * destRowLen, srcRowLen);
-        }
-      }
-      else {
-        int srcRowLen = w * bytesPerPixel;
-        int destRowLen = thisTileWidth * bytesPerPixel;
-        paddedBuf = new byte[thisTileHeight * destRowLen * samplesPerPixel];
-
-        for (int c=0; c<samplesPerPixel; c++) {
-          for (int row=0; row<h; row++) {
-            int src = srcRowLen * ((c * h) + row);
-            int dest = destRowLen * ((c * thisTileHeight) + row);
-            System.arraycopy(buf, src, paddedBuf, dest, srcRowLen);
-          }
-        }
-      }
-    }
-    else {
-      paddedBuf = buf;
-    }
-    if (!isInterleaved()) {
-      byte[] interleavedBuf = new byte[paddedBuf.length];
-      for (int c=0; c<samplesPerPixel; c++) {
-        int channelIndex = c * bytesPerPixel;
-        int splitChannelIndex = thisTilePixels * channelIndex;
-        for (int px=0, pixelIndex=0; px<thisTilePixels; px++, pixelIndex+=bytesPerPixel) {
-          int interleavedPixelIndex = pixelIndex * samplesPerPixel;
-          for (int b=0; b<bytesPerPixel; b++) {
-            interleavedBuf[interleavedPixelIndex + channelIndex + b] = paddedBuf[splitChannelIndex + pixelIndex + b];
-          }
-        }
-      }
-
-      paddedBuf = interleavedBuf;
-    }
+    byte[] paddedBuf = padTile(buf, x, y, w, h, resolutionIndex);
     tileWatch.stop("repacked tile for compression");
 
     // now we actually compress and write the pixel data
@@ -607,20 +563,7 @@ public class DicomWriter extends FormatWriter implements IExtraMetadataWriter {
       }
     }
     else {
-      Codec codec = getCodec();
-      CodecOptions options = new CodecOptions(getCodecOptions());
-      options.width = tileWidth[resolutionIndex];
-      options.height = tileHeight[resolutionIndex];
-      options.channels = samplesPerPixel;
-      options.bitsPerSample = bytesPerPixel * 8;
-      options.littleEndian = out.isLittleEndian();
-      options.interleaved = true;
-
-      if (codec instanceof JPEG2000Codec) {
-        options = JPEG2000CodecOptions.getDefaultOptions(options);
-        ((JPEG2000CodecOptions) options).numDecompositionLevels = 0;
-      }
-      byte[] compressed = codec.compress(paddedBuf, options);
+      byte[] compressed = compress(paddedBuf, resolutionIndex);
       boolean pad = compressed.length % 2 == 1;
 
       if (first) {
@@ -1524,6 +1467,40 @@ public class DicomWriter extends FormatWriter implements IExtraMetadataWriter {
 
   // -- DicomWriter-specific methods --
 
+  /**
+   * Compresses a tile in the same way as
+   * {@link #saveBytes(int, byte[], int, int, int, int)}, without writing it.
+   * The result can then be written with
+   * {@link #saveCompressedBytes(int, byte[], int, int, int, int)}.
+   * Nothing is written to the file, so tiles may be compressed on several
+   * threads while other tiles are being written, as long as the series and
+   * resolution are not changed in the meantime.
+   *
+   * @return the compressed tile, or null if the tile must be written with
+   *         saveBytes instead (e.g. no compression is used, the tile is not
+   *         aligned to the tile size, or tiles are written as TILED_SPARSE)
+   */
+  public byte[] compressTile(byte[] buf, int x, int y, int w, int h)
+    throws FormatException, IOException
+  {
+    if (compression == null ||
+      compression.equals(CompressionType.UNCOMPRESSED.getCompression()) ||
+      !isReallySequential())
+    {
+      return null;
+    }
+    int resolutionIndex = getIndex(series, resolution);
+    int thisTileWidth = tileWidth[resolutionIndex];
+    int thisTileHeight = tileHeight[resolutionIndex];
+    if (x % thisTileWidth != 0 || y % thisTileHeight != 0 ||
+      (w != thisTileWidth && x + w != getSizeX()) ||
+      (h != thisTileHeight && y + h != getSizeY()))
+    {
+      return null;
+    }
+    return compress(padTile(buf, x, y, w, h, resolutionIndex), resolutionIndex);
+  }
+
   public String getUIDRoot() {
     MetadataOptions options = getMetadataOptions();
     if (options instanceof DynamicMetadataOptions) {
@@ -1534,6 +1511,97 @@ public class DicomWriter extends FormatWriter implements IExtraMetadataWriter {
 
   // -- Helper methods --
 
+  /**
+   * Pads the given tile to the tile size of the current resolution and
+   * interleaves its channels, as expected by the codecs.
+   */
+  private byte[] padTile(byte[] buf, int x, int y, int w, int h,
+    int resolutionIndex)
+    throws FormatException
+  {
+    int thisTileWidth = tileWidth[resolutionIndex];
+    int thisTileHeight = tileHeight[resolutionIndex];
+    int bytesPerPixel = FormatTools.getBytesPerPixel(
+      FormatTools.pixelTypeFromString(
+      getMetadataRetrieve().getPixelsType(series).toString()));
+    int samplesPerPixel = getSamplesPerPixel();
+
+    byte[] paddedBuf = null;
+
+    int thisTilePixels = thisTileWidth * thisTileHeight;
+
+    // pad the last row and column of tiles to match specified tile size
+    if ((x + w == getSizeX() && w < thisTileWidth) ||
+      (y + h == getSizeY() && h < thisTileHeight))
+    {
+      if (interleaved || samplesPerPixel == 1) {
+        int srcRowLen = w * bytesPerPixel * samplesPerPixel;
+        int destRowLen = thisTileWidth * bytesPerPixel * samplesPerPixel;
+        paddedBuf = new byte[thisTileHeight * destRowLen];
+
+        for (int row=0; row<h; row++) {
+          System.arraycopy(buf, row * srcRowLen, paddedBuf, row * destRowLen, srcRowLen);
+        }
+      }
+      else {
+        int srcRowLen = w * bytesPerPixel;
+        int destRowLen = thisTileWidth * bytesPerPixel;
+        paddedBuf = new byte[thisTileHeight * destRowLen * samplesPerPixel];
+
+        for (int c=0; c<samplesPerPixel; c++) {
+          for (int row=0; row<h; row++) {
+            int src = srcRowLen * ((c * h) + row);
+            int dest = destRowLen * ((c * thisTileHeight) + row);
+            System.arraycopy(buf, src, paddedBuf, dest, srcRowLen);
+          }
+        }
+      }
+    }
+    else {
+      paddedBuf = buf;
+    }
+    if (!isInterleaved()) {
+      byte[] interleavedBuf = new byte[paddedBuf.length];
+      for (int c=0; c<samplesPerPixel; c++) {
+        int channelIndex = c * bytesPerPixel;
+        int splitChannelIndex = thisTilePixels * channelIndex;
+        for (int px=0, pixelIndex=0; px<thisTilePixels; px++, pixelIndex+=bytesPerPixel) {
+          int interleavedPixelIndex = pixelIndex * samplesPerPixel;
+          for (int b=0; b<bytesPerPixel; b++) {
+            interleavedBuf[interleavedPixelIndex + channelIndex + b] = paddedBuf[splitChannelIndex + pixelIndex + b];
+          }
+        }
+      }
+
+      paddedBuf = interleavedBuf;
+    }
+    return paddedBuf;
+  }
+
+  /** Compresses a padded tile of the current resolution. */
+  private byte[] compress(byte[] paddedBuf, int resolutionIndex)
+    throws FormatException
+  {
+    int bytesPerPixel = FormatTools.getBytesPerPixel(
+      FormatTools.pixelTypeFromString(
+      getMetadataRetrieve().getPixelsType(series).toString()));
+
+    Codec codec = getCodec();
+    CodecOptions options = new CodecOptions(getCodecOptions());
+    options.width = tileWidth[resolutionIndex];
+    options.height = tileHeight[resolutionIndex];
+    options.channels = getSamplesPerPixel();
+    options.bitsPerSample = bytesPerPixel * 8;
+    options.littleEndian = out.isLittleEndian();
+    options.interleaved = true;
+
+    if (codec instanceof JPEG2000Codec) {
+      options = JPEG2000CodecOptions.getDefaultOptions(options);
+      ((JPEG2000CodecOptions) options).numDecompositionLevels = 0;
+    }
+    return codec.compress(paddedBuf, options);
+  }
+
   private int getStoredLength(DicomTag tag) {
     if (tag.vr == SQ) {
       return (int) 0xffffffff;
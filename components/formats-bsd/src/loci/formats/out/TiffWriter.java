@@ -33,6 +33,7 @@
 package loci.formats.out;
 
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
 import loci.common.RandomAccessInputStream;
 import loci.common.Region;
 import loci.formats.FormatException;
@@ -100,6 +101,9 @@ public class TiffWriter extends FormatWriter {
   /** The tile height which will be used for writing. */
   protected int tileSizeY;
 
+  /** Executor used to compress strips or tiles concurrently, if any. */
+  private ExecutorService compressionExecutor;
+
   /**
    * Get the TIFF compression enum value that corresponds to
    * the current compression type.
@@ -216,6 +220,57 @@ public class TiffWriter extends FormatWriter {
       nChannels, lastPlane && lastSeries && lastResolution, x, y);
   }
 
+  /**
+   * Compresses a tile in the same way as
+   * {@link #saveBytes(int, byte[], int, int, int, int)}, without writing it.
+   * The result can then be written with
+   * {@link #saveCompressedBytes(int, byte[], int, int, int, int)}.
+   * Nothing is written to the file, so tiles may be compressed on several
+   * threads while other tiles are being written.
+   *
+   * @return the compressed tile, or null if the tile must be written with
+   *         saveBytes instead (e.g. tiling is not enabled, the tile is not
+   *         aligned to the tile size, or channels are not interleaved)
+   */
+  public byte[] compressTile(byte[] buf, int x, int y, int w, int h)
+    throws FormatException, IOException
+  {
+    IFD ifd;
+    int type;
+    int nChannels;
+    // Writer state is read while holding the same lock as saveBytes,
+    // which may temporarily switch series; compression happens unlocked.
+    synchronized (this) {
+      int currentTileSizeX = getTileSizeX();
+      int currentTileSizeY = getTileSizeY();
+      if (!sequential || currentTileSizeX <= 0 || currentTileSizeY <= 0 ||
+        x % currentTileSizeX != 0 || y % currentTileSizeY != 0 ||
+        (currentTileSizeX != w && x + w != getSizeX()) ||
+        (currentTileSizeY != h && y + h != getSizeY()))
+      {
+        return null;
+      }
+      nChannels = getSamplesPerPixel();
+      if (nChannels > 1 && !interleaved) {
+        return null;
+      }
+
+      MetadataRetrieve retrieve = getMetadataRetrieve();
+      type = FormatTools.pixelTypeFromString(
+          retrieve.getPixelsType(series).toString());
+      ifd = makeIFD();
+      formatCompression(ifd);
+      ifd.put(IFD.IMAGE_WIDTH, Long.valueOf(getSizeX()));
+      ifd.put(IFD.IMAGE_LENGTH, Long.valueOf(getSizeY()));
+      ifd.put(IFD.LITTLE_ENDIAN, Boolean.valueOf(isLittleEndian()));
+      ifd.putIFDValue(IFD.PLANAR_CONFIGURATION, 1);
+    }
+
+    byte[][] strips =
+      tiffSaver.compressImage(buf, ifd, type, w, h, nChannels, false);
+    return strips.length == 1 ? strips[0] : null;
+  }
+
   protected IFD makeIFD() throws FormatException, IOException {
     IFD ifd = new IFD();
     boolean usingTiling = getTileSizeX() > 0 && getTileSizeY() > 0;
@@ -370,13 +425,7 @@ public class TiffWriter extends FormatWriter {
       int no, byte[] buf, IFD ifd, int x, int y, int w, int h)
   throws IOException, FormatException {
     MetadataRetrieve retrieve = getMetadataRetrieve();
-    boolean littleEndian = false;
-    if (retrieve.getPixelsBigEndian(series) != null) {
-      littleEndian = !retrieve.getPixelsBigEndian(series).booleanValue();
-    }
-    else if (retrieve.getPixelsBinDataCount(series) == 0) {
-      littleEndian = !retrieve.getPixelsBinDataBigEndian(series, 0).booleanValue();
-    }
+    boolean littleEndian = isLittleEndian();
 
     // Ensure that no more than one thread manipulated the initialized array
     // at one time.
@@ -589,8 +638,34 @@ public class TiffWriter extends FormatWriter {
     canDetectBigTiff = detect;
   }
 
+  /**
+   * Sets the executor used to compress the strips or tiles of each plane
+   * concurrently, or null to compress on the calling thread.
+   * This is not reset when close() is called, and the executor is
+   * not shut down by this writer.
+   * @see TiffSaver#setCompressionExecutor(ExecutorService)
+   */
+  public void setCompressionExecutor(ExecutorService executor) {
+    compressionExecutor = executor;
+    if (tiffSaver != null) {
+      tiffSaver.setCompressionExecutor(executor);
+    }
+  }
+
   // -- Helper methods --
 
+  /** Returns true if the current series is stored in little endian order. */
+  private boolean isLittleEndian() {
+    MetadataRetrieve retrieve = getMetadataRetrieve();
+    if (retrieve.getPixelsBigEndian(series) != null) {
+      return !retrieve.getPixelsBigEndian(series).booleanValue();
+    }
+    else if (retrieve.getPixelsBinDataCount(series) == 0) {
+      return !retrieve.getPixelsBinDataBigEndian(series, 0).booleanValue();
+    }
+    return false;
+  }
+
   protected void setupTiffSaver() throws IOException {
     out.close();
     out = createOutputStream();
@@ -609,6 +684,7 @@ public class TiffWriter extends FormatWriter {
     tiffSaver.setLittleEndian(littleEndian);
     tiffSaver.setBigTiff(isBigTiff);
     tiffSaver.setCodecOptions(options);
+    tiffSaver.setCompressionExecutor(compressionExecutor);
   }
 
   @Override
@@ -38,6 +38,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import loci.common.ByteArrayHandle;
 import loci.common.Constants;
@@ -48,6 +54,7 @@ import loci.common.enumeration.EnumException;
 import loci.formats.FormatException;
 import loci.formats.ImageTools;
 import loci.formats.codec.CodecOptions;
+import loci.formats.codec.JPEG2000CodecOptions;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -98,6 +105,9 @@ public class TiffParser implements Closeable {
 
   private boolean canClose = false;
 
+  /** Executor used to decode tiles concurrently; null if decoding is serial. */
+  private transient ExecutorService tileExecutor;
+
   // -- Constructors --
 
   /** Constructs a new TIFF parser from the given file name. */
@@ -159,6 +169,27 @@ public class TiffParser implements Closeable {
     return codecOptions;
   }
 
+  /**
+   * Sets the executor used to decode tiles concurrently in
+   * {@link #getSamples(IFD, byte[], int, int, long, long, int, int)}.
+   * Compressed tile data is still read serially from the stream, and only
+   * decompression and unpacking are parallelized.  The executor is not
+   * shut down by this parser.
+   *
+   * @param executor the executor to use, or null to decode tiles serially
+   */
+  public void setTileExecutor(ExecutorService executor) {
+    tileExecutor = executor;
+  }
+
+  /**
+   * Retrieves the executor used to decode tiles concurrently.
+   * @return the executor, or null if tiles are decoded serially
+   */
+  public ExecutorService getTileExecutor() {
+    return tileExecutor;
+  }
+
   /** Sets whether or not IFD entries should be cached. */
   public void setDoCaching(boolean doCaching) {
     this.doCaching = doCaching;
@@ -724,21 +755,35 @@ public class TiffParser implements Closeable {
   public byte[] getTile(IFD ifd, byte[] buf, int row, int col)
     throws FormatException, IOException
   {
-    byte[] jpegTable = (byte[]) ifd.getIFDValue(IFD.JPEG_TABLES);
-
     codecOptions.interleaved = true;
     codecOptions.littleEndian = ifd.isLittleEndian();
 
-    long tileWidth = ifd.getTileWidth();
-    long tileLength = ifd.getTileLength();
-    int samplesPerPixel = ifd.getSamplesPerPixel();
-    int planarConfig = ifd.getPlanarConfiguration();
-    TiffCompression compression = ifd.getCompression();
+    byte[] tile = readTile(ifd, row, col);
 
-    long numTileCols = ifd.getTilesPerRow();
+    if (buf == null) buf = new byte[getTileSize(ifd)];
+    if (tile == null) {
+      // make sure that the buffer is cleared before returning
+      // the caller may be reusing the same buffer for multiple calls to getTile
+      Arrays.fill(buf, (byte) 0);
+      return buf;
+    }
+    return decodeTile(ifd, tile, buf, row, codecOptions);
+  }
+
+  /**
+   * Reads the compressed bytes for the given tile, prepending the JPEG
+   * tables if present.  No decompression is performed.
+   *
+   * @return the compressed tile, or null if the tile is empty or missing
+   */
+  private byte[] readTile(IFD ifd, int row, int col)
+    throws FormatException, IOException
+  {
+    byte[] jpegTable = (byte[]) ifd.getIFDValue(IFD.JPEG_TABLES);
 
+    long tileWidth = ifd.getTileWidth();
+    long numTileCols = ifd.getTilesPerRow();
     int pixel = ifd.getBytesPerSample()[0];
-    int effectiveChannels = planarConfig == 2 ? 1 : samplesPerPixel;
 
     if (ifd.get(IFD.STRIP_BYTE_COUNTS) instanceof OnDemandLongArray) {
       OnDemandLongArray counts = (OnDemandLongArray) ifd.get(IFD.STRIP_BYTE_COUNTS);
@@ -773,28 +818,19 @@ public class TiffParser implements Closeable {
     }
 
     long stripOffset = 0;
-    long nStrips = 0;
 
     if (ifd.getOnDemandStripOffsets() != null) {
       OnDemandLongArray stripOffsets = ifd.getOnDemandStripOffsets();
       stripOffsets.setStream(in);
       stripOffset = stripOffsets.get(offsetIndex);
-      nStrips = stripOffsets.size();
     }
     else {
       long[] stripOffsets = ifd.getStripOffsets();
       stripOffset = stripOffsets[offsetIndex];
-      nStrips = stripOffsets.length;
     }
 
-    int size = (int) (tileWidth * tileLength * pixel * effectiveChannels);
-
-    if (buf == null) buf = new byte[size];
     if (stripByteCounts[countIndex] == 0 || stripOffset >= in.length()) {
-      // make sure that the buffer is cleared before returning
-      // the caller may be reusing the same buffer for multiple calls to getTile
-      Arrays.fill(buf, (byte) 0);
-      return buf;
+      return null;
     }
     int tileSize = (int) stripByteCounts[countIndex];
     if (jpegTable != null) {
@@ -813,6 +849,22 @@ public class TiffParser implements Closeable {
       in.seek(stripOffset);
       in.read(tile);
     }
+    return tile;
+  }
+
+  /**
+   * Decompresses the given tile and unpacks the samples into the given
+   * buffer.  This does not touch the input stream, so it is safe to call
+   * concurrently as long as each thread uses its own buffer and
+   * codec options.
+   */
+  private byte[] decodeTile(IFD ifd, byte[] tile, byte[] buf, int row,
+    CodecOptions options)
+    throws FormatException, IOException
+  {
+    int planarConfig = ifd.getPlanarConfiguration();
+    int pixel = ifd.getBytesPerSample()[0];
+    TiffCompression compression = ifd.getCompression();
 
     // reverse bits in each byte if FillOrder == 2
 
@@ -826,16 +878,18 @@ public class TiffParser implements Closeable {
       }
     }
 
-    codecOptions.maxBytes = (int) Math.max(size, tile.length);
-    codecOptions.ycbcr =
+    options.maxBytes = Math.max(getTileSize(ifd), tile.length);
+    options.ycbcr =
       ifd.getPhotometricInterpretation() == PhotoInterp.Y_CB_CR &&
       ifd.getIFDIntValue(IFD.Y_CB_CR_SUB_SAMPLING) == 1 && ycbcrCorrection;
 
-    tile = compression.decompress(tile, codecOptions);
+    tile = compression.decompress(tile, options);
     TiffCompression.undifference(tile, ifd);
     unpackBytes(buf, 0, tile, ifd);
 
     if (planarConfig == 2 && !ifd.isTiled() && ifd.getSamplesPerPixel() > 1) {
+      long nStrips = ifd.getOnDemandStripOffsets() != null ?
+        ifd.getOnDemandStripOffsets().size() : ifd.getStripOffsets().length;
       int channel = (int) (row % nStrips);
       if (channel < ifd.getBytesPerSample().length) {
         int realBytes = ifd.getBytesPerSample()[channel];
@@ -860,6 +914,14 @@ public class TiffParser implements Closeable {
     return buf;
   }
 
+  /** Returns the number of bytes in one uncompressed tile. */
+  private int getTileSize(IFD ifd) throws FormatException {
+    int effectiveChannels =
+      ifd.getPlanarConfiguration() == 2 ? 1 : ifd.getSamplesPerPixel();
+    return (int) (ifd.getTileWidth() * ifd.getTileLength() *
+      ifd.getBytesPerSample()[0] * effectiveChannels);
+  }
+
   public byte[] getSamples(IFD ifd, byte[] buf)
     throws FormatException, IOException
   {
@@ -1084,7 +1146,14 @@ public class TiffParser implements Closeable {
     int bufferSize = (int) tileWidth * (int) tileLength *
       bufferSizeSamplesPerPixel * bpp;
 
-    cachedTileBuffer = new byte[bufferSize];
+    // tiles can only be decoded out of order if they do not overlap,
+    // as otherwise a later tile may need to overwrite an earlier one
+    boolean parallel = tileExecutor != null && overlapX == 0 && overlapY == 0;
+    List<TileCopy> pending = parallel ? new ArrayList<TileCopy>() : null;
+
+    if (!parallel) {
+      cachedTileBuffer = new byte[bufferSize];
+    }
 
     Region tileBounds = new Region(0, 0, (int) tileWidth, (int) tileLength);
 
@@ -1116,8 +1185,6 @@ public class TiffParser implements Closeable {
 
         if (!imageBounds.intersects(tileBounds)) continue;
 
-        getTile(ifd, cachedTileBuffer, row, col);
-
         // adjust tile bounds, if necessary
 
         int tileX = (int) Math.max(tileBounds.x, x);
@@ -1136,38 +1203,130 @@ public class TiffParser implements Closeable {
 
         // copy appropriate portion of the tile to the output buffer
 
-        int copy = pixel * twidth;
-
-        realX *= pixel;
-        realY *= rowLen;
-
-        for (int q=0; q<effectiveChannels; q++) {
-          int src = (int) (q * tileSize) + realX + realY;
-          int dest = (int) (q * planeSize) + pixel * (tileX - x) +
-            outputRowLen * (tileY - y);
-          if (planarConfig == 2) dest += (planeSize * (row / nrows));
-
-          // copying the tile directly will only work if there is no overlap
-          // and only one tile needs to be read
-          // otherwise, we may be overwriting a previous tile
-          // (or the current tile may be overwritten by a subsequent tile)
-          if (rowLen == outputRowLen && overlapX == 0 && overlapY == 0 &&
-            rowLen == pixel * imageBounds.intersection(tileBounds).width)
-          {
-            System.arraycopy(cachedTileBuffer, src, buf, dest, copy * theight);
-          }
-          else {
-            for (int tileRow=0; tileRow<theight; tileRow++) {
-              System.arraycopy(cachedTileBuffer, src, buf, dest, copy);
-              src += rowLen;
-              dest += outputRowLen;
+        TileCopy copy = new TileCopy();
+        copy.row = row;
+        copy.rows = theight;
+        copy.rowBytes = pixel * twidth;
+        copy.src = realX * pixel + realY * rowLen;
+        copy.dest = pixel * (tileX - x) + outputRowLen * (tileY - y);
+        if (planarConfig == 2) copy.dest += (planeSize * (row / nrows));
+
+        // copying the tile directly will only work if there is no overlap
+        // and only one tile needs to be read
+        // otherwise, we may be overwriting a previous tile
+        // (or the current tile may be overwritten by a subsequent tile)
+        copy.contiguous = rowLen == outputRowLen && overlapX == 0 &&
+          overlapY == 0 &&
+          rowLen == pixel * imageBounds.intersection(tileBounds).width;
+
+        if (parallel) {
+          // the stream is not thread-safe, so compressed tiles are read
+          // here and only decoding is handed off to the executor
+          copy.compressed = readTile(ifd, row, col);
+          pending.add(copy);
+        }
+        else {
+          getTile(ifd, cachedTileBuffer, row, col);
+          copy.copyTo(cachedTileBuffer, buf, effectiveChannels, tileSize,
+            planeSize, rowLen, outputRowLen);
+        }
+      }
+    }
+
+    if (parallel && pending.size() > 0) {
+      decodeTiles(ifd, pending, buf, bufferSize, effectiveChannels, tileSize,
+        planeSize, rowLen, outputRowLen);
+    }
+
+    return buf;
+  }
+
+  /**
+   * Decodes the given compressed tiles on the tile executor and copies
+   * each into the output buffer.  Each worker uses its own tile buffer and
+   * codec options; workers pull tiles from a shared queue until none remain.
+   */
+  private void decodeTiles(final IFD ifd, final List<TileCopy> tiles,
+    final byte[] buf, final int bufferSize, final int effectiveChannels,
+    final int tileSize, final int planeSize, final int rowLen,
+    final int outputRowLen)
+    throws FormatException, IOException
+  {
+    int workers = Runtime.getRuntime().availableProcessors();
+    if (tileExecutor instanceof ThreadPoolExecutor) {
+      workers = ((ThreadPoolExecutor) tileExecutor).getMaximumPoolSize();
+    }
+    workers = Math.max(1, Math.min(workers, tiles.size()));
+
+    final AtomicInteger nextTile = new AtomicInteger();
+    List<Future<Void>> results = new ArrayList<Future<Void>>();
+    for (int w=0; w<workers; w++) {
+      results.add(tileExecutor.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws FormatException, IOException {
+          byte[] tileBuffer = new byte[bufferSize];
+          CodecOptions options = copyCodecOptions(codecOptions);
+          int index = nextTile.getAndIncrement();
+          while (index < tiles.size()) {
+            TileCopy tile = tiles.get(index);
+            if (tile.compressed == null) {
+              Arrays.fill(tileBuffer, (byte) 0);
+            }
+            else {
+              decodeTile(ifd, tile.compressed, tileBuffer, tile.row, options);
+              tile.compressed = null;
             }
+            tile.copyTo(tileBuffer, buf, effectiveChannels, tileSize,
+              planeSize, rowLen, outputRowLen);
+            index = nextTile.getAndIncrement();
           }
+          return null;
         }
+      }));
+    }
+
+    Throwable failure = null;
+    for (Future<Void> result : results) {
+      try {
+        result.get();
+      }
+      catch (InterruptedException e) {
+        // stop handing out tiles, so that the remaining workers finish quickly
+        nextTile.set(tiles.size());
+        Thread.currentThread().interrupt();
+        if (failure == null) failure = e;
+      }
+      catch (ExecutionException e) {
+        nextTile.set(tiles.size());
+        if (failure == null) failure = e.getCause();
       }
     }
 
-    return buf;
+    if (failure instanceof FormatException) {
+      throw (FormatException) failure;
+    }
+    else if (failure instanceof IOException) {
+      throw (IOException) failure;
+    }
+    else if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    }
+    else if (failure != null) {
+      throw new IOException("Tile decoding failed", failure);
+    }
+  }
+
+  /**
+   * Creates an independent copy of the given codec options, preserving
+   * any JPEG 2000 specific settings.
+   */
+  private static CodecOptions copyCodecOptions(CodecOptions options) {
+    if (options instanceof JPEG2000CodecOptions) {
+      JPEG2000CodecOptions j2k = new JPEG2000CodecOptions(options);
+      j2k.writeBox = ((JPEG2000CodecOptions) options).writeBox;
+      return j2k;
+    }
+    return new CodecOptions(options);
   }
 
   // -- Utility methods - byte stream decoding --
@@ -1447,4 +1606,37 @@ public class TiffParser implements Closeable {
 
     return new TiffIFDEntry(entryTag, entryType, valueCount, offset);
   }
+
+  // -- Helper classes --
+
+  /** Location of one decoded tile's pixels within the output buffer. */
+  private static class TileCopy {
+    public int row;
+    public int src;
+    public int dest;
+    public int rows;
+    public int rowBytes;
+    public boolean contiguous;
+    public byte[] compressed;
+
+    public void copyTo(byte[] tile, byte[] buf, int channels, int tileSize,
+      int planeSize, int rowLen, int outputRowLen)
+    {
+      for (int q=0; q<channels; q++) {
+        int srcIndex = q * tileSize + src;
+        int destIndex = q * planeSize + dest;
+        if (contiguous) {
+          System.arraycopy(tile, srcIndex, buf, destIndex, rowBytes * rows);
+        }
+        else {
+          for (int tileRow=0; tileRow<rows; tileRow++) {
+            System.arraycopy(tile, srcIndex, buf, destIndex, rowBytes);
+            srcIndex += rowLen;
+            destIndex += outputRowLen;
+          }
+        }
+      }
+    }
+  }
+
 }
@@ -38,8 +38,15 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 import loci.common.ByteArrayHandle;
 import loci.common.Constants;
@@ -89,6 +96,9 @@ public class TiffSaver implements Closeable {
   /** The codec options if set. */
   private CodecOptions options;
 
+  /** Executor used to compress strips concurrently, if set. */
+  private ExecutorService compressionExecutor;
+
   // -- Constructors --
   /**
    * Constructs a new TIFF saver from the given filename.
@@ -189,6 +199,22 @@ public class TiffSaver implements Closeable {
     this.options = options;
   }
 
+  /**
+   * Sets the executor used to compress the strips or tiles of each
+   * block concurrently.  Compressed data is always written in the same
+   * order, whether or not an executor is set.  The executor is not
+   * shut down by this saver.
+   * @param executor The executor to use, or null to compress serially.
+   */
+  public void setCompressionExecutor(ExecutorService executor) {
+    this.compressionExecutor = executor;
+  }
+
+  /** Gets the executor used to compress strips, or null if not set. */
+  public ExecutorService getCompressionExecutor() {
+    return compressionExecutor;
+  }
+
   /** Writes the TIFF file header. */
   public void writeHeader() throws IOException {
     // write endianness indicator
@@ -284,6 +310,40 @@ public class TiffSaver implements Closeable {
   throws FormatException, IOException
   {
     LOGGER.debug("Attempting to write image.");
+    byte[][] strips =
+      compressImage(buf, ifd, pixelType, w, h, nChannels, copyDirectly);
+
+    // This operation is synchronized
+    synchronized (this) {
+      writeImageIFD(ifd, no, strips, ifd.getSamplesPerPixel(), last, x ,y);
+    }
+  }
+
+  /**
+   * Splits the passed block into strips or tiles as described by the IFD,
+   * and compresses each strip or tile.  Nothing is written to the file,
+   * so compression of several blocks may run concurrently; the returned
+   * strips can then be written with
+   * {@link #writeImageIFD(IFD, int, byte[][], int, boolean, int, int)}.
+   *
+   * @param buf The block that is to be compressed.
+   * @param ifd The Image File Directories. Mustn't be <code>null</code>.
+   *            Missing required fields are filled in.
+   * @param pixelType The type of pixels.
+   * @param w   The width of the rectangle.
+   * @param h   The height of the rectangle.
+   * @param nChannels The number of channels, or null to calculate it
+   *                  from the size of the block.
+   * @param copyDirectly Pass <code>true</code> if a single strip or tile
+   *                     can be copied from the block without reordering.
+   * @return the compressed strips or tiles
+   * @throws FormatException
+   * @throws IOException
+   */
+  public byte[][] compressImage(byte[] buf, IFD ifd, int pixelType, int w,
+      int h, Integer nChannels, boolean copyDirectly)
+  throws FormatException, IOException
+  {
     //b/c method is public should check parameters again
     if (buf == null) {
       throw new FormatException("Image data cannot be null");
@@ -373,6 +433,21 @@ public class TiffSaver implements Closeable {
         if (effectiveStrips == 1 && copyDirectly) {
           stripOut[0].write(buf);
         }
+        else if (channelsAllSameSize) {
+          // every sample is bytesPerPixel wide, so each tile row is a
+          // contiguous run of the input block and can be copied in bulk
+          int pixelBytes = interleaved ? nChannels * bytesPerPixel : bytesPerPixel;
+          int planes = interleaved ? 1 : nChannels;
+          for (int strip = 0; strip < effectiveStrips; strip++) {
+            int xOffset = (strip % tilesPerRow) * tileWidth;
+            int yOffset = (strip / tilesPerRow) * tileHeight;
+            for (int c=0; c<planes; c++) {
+              stripOut[c * effectiveStrips + strip].write(packTile(buf,
+                c * blockSize, w, h, xOffset, yOffset, tileWidth, tileHeight,
+                pixelBytes));
+            }
+          }
+        }
         else {
           for (int strip = 0; strip < effectiveStrips; strip++) {
             // This is broken; the tilesPerRow is based on output image size and tile size,
@@ -422,26 +497,70 @@ public class TiffSaver implements Closeable {
     // TiffWriter.saveBytes() --> TiffSaver.writeImage() stack that is NOT
     // synchronized.
     byte[][] strips = new byte[nStrips][];
+    int channels = interleaved ? nChannels : 1;
+    ExecutorService executor = compressionExecutor;
+    if (executor == null || nStrips == 1) {
+      for (int strip=0; strip<nStrips; strip++) {
+        strips[strip] = compressStrip(stripBuf[strip].toByteArray(), ifd,
+          compression, tileWidth, tileHeight, channels);
+        if (LOGGER.isDebugEnabled()) {
+          LOGGER.debug(String.format("Compressed strip %d/%d length %d",
+              strip + 1, nStrips, strips[strip].length));
+        }
+      }
+      return strips;
+    }
+
+    // Strips are queued on the executor, and any strip that has not been
+    // picked up by the time it is needed is compressed on this thread,
+    // so this cannot deadlock even if called from one of the executor's
+    // own threads.  The order of the returned strips is unchanged.
+    List<FutureTask<byte[]>> tasks = new ArrayList<FutureTask<byte[]>>();
+    for (int strip=0; strip<nStrips; strip++) {
+      final byte[] raw = stripBuf[strip].toByteArray();
+      stripBuf[strip] = null;
+      final IFD stripIFD = ifd;
+      final TiffCompression stripCompression = compression;
+      final int width = tileWidth, height = tileHeight, c = channels;
+      FutureTask<byte[]> task = new FutureTask<byte[]>(new Callable<byte[]>() {
+        @Override
+        public byte[] call() throws FormatException, IOException {
+          return compressStrip(raw, stripIFD, stripCompression,
+            width, height, c);
+        }
+      });
+      tasks.add(task);
+      try {
+        executor.execute(task);
+      }
+      catch (RejectedExecutionException e) {
+        LOGGER.debug("Could not queue strip compression", e);
+      }
+    }
     for (int strip=0; strip<nStrips; strip++) {
-      strips[strip] = stripBuf[strip].toByteArray();
-      TiffCompression.difference(strips[strip], ifd);
-      CodecOptions codecOptions = compression.getCompressionCodecOptions(
-          ifd, options);
-      codecOptions.height = tileHeight;
-      codecOptions.width = tileWidth;
-      codecOptions.channels = interleaved ? nChannels : 1;
-
-      strips[strip] = compression.compress(strips[strip], codecOptions);
+      FutureTask<byte[]> task = tasks.get(strip);
+      task.run();
+      try {
+        strips[strip] = task.get();
+      }
+      catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+      catch (ExecutionException e) {
+        if (e.getCause() instanceof FormatException) {
+          throw (FormatException) e.getCause();
+        }
+        if (e.getCause() instanceof IOException) {
+          throw (IOException) e.getCause();
+        }
+        throw new FormatException(e.getCause());
+      }
       if (LOGGER.isDebugEnabled()) {
         LOGGER.debug(String.format("Compressed strip %d/%d length %d",
             strip + 1, nStrips, strips[strip].length));
       }
     }
-
-    // This operation is synchronized
-    synchronized (this) {
-      writeImageIFD(ifd, no, strips, nChannels, last, x ,y);
-    }
+    return strips;
   }
 
   /**
@@ -987,6 +1106,51 @@ public class TiffSaver implements Closeable {
 
   // -- Helper methods --
 
+  /**
+   * Applies the IFD's predictor to a single packed strip or tile,
+   * then compresses it.
+   */
+  private byte[] compressStrip(byte[] strip, IFD ifd,
+    TiffCompression compression, int tileWidth, int tileHeight, int channels)
+    throws FormatException, IOException
+  {
+    TiffCompression.difference(strip, ifd);
+    CodecOptions codecOptions = compression.getCompressionCodecOptions(
+        ifd, options);
+    codecOptions.height = tileHeight;
+    codecOptions.width = tileWidth;
+    codecOptions.channels = channels;
+    return compression.compress(strip, codecOptions);
+  }
+
+  /**
+   * Copies one tile out of a block, one row at a time.  Rows and columns
+   * outside the block, and bytes past the end of the buffer, are zero.
+   *
+   * @param buf the block containing the tile
+   * @param planeOffset offset to the first byte of the plane in buf
+   * @param w the width of the block
+   * @param h the height of the block
+   * @param pixelBytes the number of bytes per pixel in a row of buf
+   */
+  private static byte[] packTile(byte[] buf, int planeOffset, int w, int h,
+    int xOffset, int yOffset, int tileWidth, int tileHeight, int pixelBytes)
+  {
+    int rowBytes = tileWidth * pixelBytes;
+    byte[] tile = new byte[rowBytes * tileHeight];
+    int validBytes = Math.min(tileWidth, w) * pixelBytes;
+    int rows = Math.min(tileHeight, h);
+    for (int row=0; row<rows; row++) {
+      int src = planeOffset + ((row + yOffset) * w + xOffset) * pixelBytes;
+      int len = Math.min(validBytes, buf.length - src);
+      if (len <= 0) {
+        break;
+      }
+      System.arraycopy(buf, src, tile, row * rowBytes, len);
+    }
+    return tile;
+  }
+
   /**
    * Write the given value to the given RandomAccessOutputStream.
    * If the 'bigTiff' flag is set, then the value will be written as an 8 byte
@@ -0,0 +1,176 @@
+/*
+ * #%L
+ * BSD implementations of Bio-Formats readers and writers
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats.utests;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutionException;
+
+import loci.formats.AsyncReader;
+import loci.formats.FormatException;
+import loci.formats.ImageReader;
+import loci.formats.ReaderPool;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class AsyncReaderTest {
+
+  private static final String TEST_FILE =
+    "test&pixelType=uint16&sizeX=128&sizeY=96&sizeZ=3&sizeC=2&sizeT=6" +
+    "&series=2.fake";
+
+  private File idDir;
+  private String id;
+  private ImageReader expected;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    idDir = Files.createTempDirectory(
+      AsyncReaderTest.class.getName() + ".").toFile();
+    File tempFile = new File(idDir, TEST_FILE);
+    tempFile.createNewFile();
+    id = tempFile.getAbsolutePath();
+    expected = new ImageReader();
+    expected.setId(id);
+  }
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    expected.close();
+    for (File f : idDir.listFiles()) {
+      f.delete();
+    }
+    idDir.delete();
+  }
+
+  @Test
+  public void testOpenBytesAsync() throws Exception {
+    try (AsyncReader reader = new AsyncReader(id)) {
+      for (int series=0; series<expected.getSeriesCount(); series++) {
+        expected.setSeries(series);
+        for (int no=0; no<expected.getImageCount(); no++) {
+          assertEquals(reader.openBytesAsync(series, no).get(),
+            expected.openBytes(no));
+          assertEquals(reader.openBytesAsync(series, no, 5, 7, 30, 20).get(),
+            expected.openBytes(no, 5, 7, 30, 20));
+        }
+      }
+      assertEquals(reader.getRequestCount(),
+        expected.getSeriesCount() * expected.getImageCount() * 2);
+    }
+  }
+
+  @Test
+  public void testPrefetchTimeSeries() throws Exception {
+    try (AsyncReader reader = new AsyncReader(id)) {
+      for (int t=0; t<expected.getSizeT(); t++) {
+        int no = expected.getIndex(1, 1, t);
+        assertEquals(reader.openBytesAsync(0, no).get(),
+          expected.openBytes(no));
+      }
+      // the plane size is not known until the first request completes,
+      // so the second and third requests establish the pattern
+      assertEquals(reader.getPrefetchCount(), expected.getSizeT() - 3);
+      assertEquals(reader.getPrefetchHitCount(), expected.getSizeT() - 3);
+      assertEquals(reader.getPrefetchDiscardCount(), 0);
+    }
+  }
+
+  @Test
+  public void testPrefetchPanning() throws Exception {
+    try (AsyncReader reader = new AsyncReader(id)) {
+      for (int x=0; x+32<=expected.getSizeX(); x+=16) {
+        assertEquals(reader.openBytesAsync(0, 2, x, 40, 32, 32).get(),
+          expected.openBytes(2, x, 40, 32, 32));
+      }
+      assertTrue(reader.getPrefetchHitCount() > 0);
+      assertEquals(reader.getPrefetchDiscardCount(), 0);
+
+      // changing direction discards nothing, but does not hit either
+      long hits = reader.getPrefetchHitCount();
+      reader.openBytesAsync(0, 2, 0, 0, 32, 32).get();
+      reader.openBytesAsync(0, 2, 0, 16, 32, 32).get();
+      reader.openBytesAsync(0, 2, 0, 32, 32, 32).get();
+      assertEquals(reader.getPrefetchHitCount(), hits + 1);
+    }
+  }
+
+  @Test
+  public void testPrefetchBudget() throws Exception {
+    ReaderPool pool = new ReaderPool(id, 2, -1);
+    try (AsyncReader reader = new AsyncReader(pool, 0)) {
+      for (int t=0; t<expected.getSizeT(); t++) {
+        reader.openBytesAsync(0, expected.getIndex(0, 0, t)).get();
+      }
+      assertEquals(reader.getPrefetchCount(), 0);
+    }
+    finally {
+      pool.close();
+    }
+
+    // room for a single 32x32 uint16 region
+    pool = new ReaderPool(id, 2, -1);
+    try (AsyncReader reader = new AsyncReader(pool, 32 * 32 * 2)) {
+      for (int y=0; y+32<=expected.getSizeY(); y+=8) {
+        reader.openBytesAsync(1, 0, 0, y, 32, 32).get();
+      }
+      assertTrue(reader.getPrefetchCount() > 0);
+      assertTrue(reader.getPrefetchDiscardCount() > 0);
+    }
+    finally {
+      pool.close();
+    }
+  }
+
+  @Test
+  public void testException() throws Exception {
+    try (AsyncReader reader = new AsyncReader(id)) {
+      try {
+        reader.openBytesAsync(0, expected.getImageCount()).get();
+        fail("Expected an exception for an invalid plane");
+      }
+      catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof FormatException);
+      }
+      // the reader can still be used after an exception
+      assertEquals(reader.openBytesAsync(0, 0).get(), expected.openBytes(0));
+    }
+  }
+
+}
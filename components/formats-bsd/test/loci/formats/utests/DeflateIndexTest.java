@@ -0,0 +1,274 @@
+/*
+ * #%L
+ * BSD implementations of Bio-Formats readers and writers
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats.utests;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import loci.formats.codec.DeflateIndex;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class DeflateIndexTest {
+
+  private static final int OFFSET = 11;
+  private static final long SPAN = 64 * 1024;
+
+  private File dir;
+  private File file;
+  private byte[] data;
+
+  @BeforeMethod
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("deflate-index").toFile();
+    file = new File(dir, "data.gz");
+    Random random = new Random(5);
+    data = new byte[1024 * 1024];
+    for (int i=0; i<data.length; i++) {
+      data[i] = (byte) ((i / 64) + random.nextInt(4));
+    }
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (File f : files) {
+        f.delete();
+      }
+    }
+    dir.delete();
+  }
+
+  @DataProvider(name = "streams")
+  public Object[][] createStreams() {
+    return new Object[][] {
+      {DeflateIndex.Format.RAW, Deflater.DEFAULT_COMPRESSION},
+      {DeflateIndex.Format.ZLIB, Deflater.DEFAULT_COMPRESSION},
+      {DeflateIndex.Format.GZIP, Deflater.DEFAULT_COMPRESSION},
+      {DeflateIndex.Format.GZIP, Deflater.NO_COMPRESSION},
+      {DeflateIndex.Format.GZIP, Deflater.BEST_SPEED},
+      {DeflateIndex.Format.ZLIB, Deflater.BEST_COMPRESSION},
+    };
+  }
+
+  @Test(dataProvider = "streams")
+  public void testSequentialRead(DeflateIndex.Format format, int level)
+    throws IOException
+  {
+    writeFile(format, level);
+    try (DeflateIndex index = createIndex(format)) {
+      byte[] buf = new byte[data.length + 100];
+      assertEquals(index.read(0, buf, 0, buf.length), data.length);
+      assertEquals(Arrays.copyOf(buf, data.length), data);
+      assertEquals(index.getLength(), data.length);
+      assertEquals(index.read(data.length, buf, 0, 1), -1);
+    }
+  }
+
+  @Test(dataProvider = "streams")
+  public void testRandomRead(DeflateIndex.Format format, int level)
+    throws IOException
+  {
+    writeFile(format, level);
+    try (DeflateIndex index = createIndex(format)) {
+      assertRandomReads(index, new Random(format.ordinal() + level));
+      assertTrue(index.getAccessPointCount() > 0);
+    }
+  }
+
+  @Test(dataProvider = "streams")
+  public void testSequentialThenRandomRead(DeflateIndex.Format format,
+    int level)
+    throws IOException
+  {
+    writeFile(format, level);
+    try (DeflateIndex index = createIndex(format)) {
+      byte[] buf = new byte[7919];
+      for (int position=0; position<data.length; position+=buf.length) {
+        int length = Math.min(buf.length, data.length - position);
+        assertEquals(index.read(position, buf, 0, buf.length), length);
+        assertEquals(Arrays.copyOf(buf, length),
+          Arrays.copyOfRange(data, position, position + length));
+      }
+      // sequential reads do not need access points
+      assertEquals(index.getAccessPointCount(), 0);
+      assertEquals(index.getLength(), data.length);
+
+      index.readFully(data.length - 10, buf, 0, 10);
+      assertTrue(index.getAccessPointCount() > 0);
+      assertRandomReads(index, new Random(format.ordinal() + level));
+    }
+  }
+
+  @Test
+  public void testConcatenatedMembers() throws IOException {
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(new byte[OFFSET]);
+      int split = data.length / 3;
+      GZIPOutputStream gzip = new GZIPOutputStream(out);
+      gzip.write(data, 0, split);
+      gzip.finish();
+      gzip = new GZIPOutputStream(out);
+      gzip.write(data, split, data.length - split);
+      gzip.finish();
+    }
+    try (DeflateIndex index = createIndex(DeflateIndex.Format.GZIP)) {
+      assertRandomReads(index, new Random(1));
+      byte[] buf = new byte[data.length];
+      index.readFully(0, buf, 0, buf.length);
+      assertEquals(buf, data);
+    }
+  }
+
+  @Test
+  public void testSavedIndex() throws IOException {
+    writeFile(DeflateIndex.Format.GZIP, Deflater.DEFAULT_COMPRESSION);
+    File indexFile = new File(dir, "data" + DeflateIndex.EXTENSION);
+    int points;
+    try (DeflateIndex index = createIndex(DeflateIndex.Format.GZIP)) {
+      index.setIndexFile(indexFile);
+      assertEquals(index.read(data.length - 10, new byte[20], 0, 20), 10);
+      points = index.getAccessPointCount();
+    }
+    assertTrue(indexFile.exists());
+
+    try (DeflateIndex index = createIndex(DeflateIndex.Format.GZIP)) {
+      index.setIndexFile(indexFile);
+      assertEquals(index.getAccessPointCount(), points);
+      assertEquals(index.getLength(), data.length);
+      assertRandomReads(index, new Random(2));
+    }
+  }
+
+  @Test
+  public void testOutdatedIndex() throws IOException {
+    writeFile(DeflateIndex.Format.GZIP, Deflater.DEFAULT_COMPRESSION);
+    File indexFile = new File(dir, "data" + DeflateIndex.EXTENSION);
+    try (DeflateIndex index = createIndex(DeflateIndex.Format.GZIP)) {
+      index.setIndexFile(indexFile);
+      index.readFully(data.length - 10, new byte[10], 0, 10);
+    }
+
+    data = Arrays.copyOf(data, data.length / 2);
+    writeFile(DeflateIndex.Format.GZIP, Deflater.BEST_COMPRESSION);
+    try (DeflateIndex index = createIndex(DeflateIndex.Format.GZIP)) {
+      index.setIndexFile(indexFile);
+      assertEquals(index.getAccessPointCount(), 0);
+      assertEquals(index.getLength(), -1);
+      assertRandomReads(index, new Random(3));
+    }
+  }
+
+  @Test(expectedExceptions = ZipException.class)
+  public void testInvalidHeader() throws IOException {
+    writeFile(DeflateIndex.Format.ZLIB, Deflater.DEFAULT_COMPRESSION);
+    createIndex(DeflateIndex.Format.GZIP);
+  }
+
+  @Test
+  public void testIndexFileLayout() {
+    File directory = new File("cache").getAbsoluteFile();
+    String path = new File("a", "image.nii.gz").getAbsolutePath();
+    File indexFile = DeflateIndex.getIndexFile(directory, path);
+    assertEquals(indexFile.getName(), ".image.nii.gz" + DeflateIndex.EXTENSION);
+    assertTrue(indexFile.getPath().startsWith(directory.getPath()));
+    assertTrue(indexFile.getParent().endsWith(File.separator + "a"));
+  }
+
+  // -- Helper methods --
+
+  private DeflateIndex createIndex(DeflateIndex.Format format)
+    throws IOException
+  {
+    DeflateIndex index =
+      new DeflateIndex(file.getAbsolutePath(), OFFSET, format);
+    index.setSpan(SPAN);
+    return index;
+  }
+
+  private void assertRandomReads(DeflateIndex index, Random random)
+    throws IOException
+  {
+    for (int i=0; i<100; i++) {
+      int position = random.nextInt(data.length);
+      int length = Math.min(random.nextInt(20000), data.length - position);
+      byte[] buf = new byte[length];
+      index.readFully(position, buf, 0, length);
+      assertEquals(buf, Arrays.copyOfRange(data, position, position + length));
+    }
+  }
+
+  private void writeFile(DeflateIndex.Format format, int level)
+    throws IOException
+  {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    if (format == DeflateIndex.Format.GZIP) {
+      GZIPOutputStream gzip = new GZIPOutputStream(bytes) {
+        {
+          def.setLevel(level);
+        }
+      };
+      gzip.write(data);
+      gzip.finish();
+    }
+    else {
+      Deflater deflater =
+        new Deflater(level, format == DeflateIndex.Format.RAW);
+      DeflaterOutputStream out = new DeflaterOutputStream(bytes, deflater);
+      out.write(data);
+      out.finish();
+      deflater.end();
+    }
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(new byte[OFFSET]);
+      bytes.writeTo(out);
+    }
+  }
+
+}
@@ -32,7 +32,9 @@
 
 package loci.formats.utests;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -44,6 +46,13 @@ import loci.formats.FormatTools;
 import loci.formats.FileStitcher;
 import loci.formats.FormatException;
 import loci.formats.IFormatReader;
+import loci.formats.IFormatWriter;
+import loci.formats.ImageReader;
+import loci.formats.MetadataTools;
+import loci.formats.ReaderWrapper;
+import loci.formats.meta.IMetadata;
+import loci.formats.out.APNGWriter;
+import loci.formats.out.TiffWriter;
 import loci.formats.in.FakeReader;
 import loci.formats.in.MetadataLevel;
 import loci.formats.in.MetadataOptions;
@@ -133,7 +142,13 @@ public class FileStitcherTest {
 
   private static void check(String pattern, String[] filenames, Integer[] dims)
       throws IOException, FormatException {
+    check(pattern, filenames, dims, false);
+  }
+
+  private static void check(String pattern, String[] filenames, Integer[] dims,
+      boolean template) throws IOException, FormatException {
     FileStitcher fs = new FileStitcher();
+    fs.setUsingTemplate(template);
     fs.setId(pattern);
     assertEquals(fs.getFilePattern().getPattern(), pattern);
     assertEquals(fs.getImageCount(), SIZE_Z * SIZE_T * SIZE_C);
@@ -203,6 +218,17 @@ public class FileStitcherTest {
 
   @Test(dataProvider = "dimZTC")
   public void testStitch(Integer[] dims) throws IOException, FormatException {
+    stitch(dims, false);
+  }
+
+  @Test(dataProvider = "dimZTC")
+  public void testStitchTemplate(Integer[] dims)
+      throws IOException, FormatException {
+    stitch(dims, true);
+  }
+
+  private void stitch(Integer[] dims, boolean template)
+      throws IOException, FormatException {
     // dims: ZCT dimensions for each individual file in the pattern
     // dimensions set to 1 must be spread out across a pattern block
     Integer[] patternDims = new Integer[] {1, 1, 1};
@@ -223,7 +249,119 @@ public class FileStitcherTest {
     }
     String pattern = String.format(TEMPLATE, blocks.toString(), ptString,
                                    SIZE_X, SIZE_Y, dims[0], dims[1], dims[2]);
-    check(pattern, filenames.toArray(new String[filenames.size()]), dims);
+    check(pattern, filenames.toArray(new String[filenames.size()]), dims,
+          template);
+  }
+
+  @Test
+  public void testTemplateReaders() throws IOException, FormatException {
+    FileStitcher fs = new FileStitcher();
+    fs.setUsingTemplate(true);
+    fs.setId("test_z<0-2>.fake");
+    IFormatReader[] readers = fs.getUnderlyingReaders();
+    assertEquals(readers.length, 3);
+    for (int i = 1; i < readers.length; i++) {
+      assertTrue(((ReaderWrapper) readers[i]).getReader() instanceof FakeReader);
+    }
+    fs.close();
+  }
+
+  @Test
+  public void testTemplateLargePattern() throws IOException, FormatException {
+    FileStitcher fs = new FileStitcher();
+    fs.setUsingTemplate(true);
+    fs.setId("test_t<0-1199>&sizeX=16&sizeY=16.fake");
+    assertEquals(fs.getImageCount(), 1200);
+    String[] files = fs.getFilePattern().getFiles();
+    assertTrue(fs.getUnderlyingReaders().length < files.length);
+
+    // alternate between distant files, as when reading several channels
+    int[] planes = {0, 600, 1, 601, 2, 602, 1199, 0, 600};
+    for (int no : planes) {
+      IFormatReader r = fs.getReader(no);
+      assertEquals(new Location(r.getCurrentFile()).getName(),
+        new Location(files[no]).getName());
+      assertEquals(FakeReader.readSpecialPixels(fs.openBytes(no))[1], 0);
+    }
+    fs.close();
+  }
+
+  @Test
+  public void testTemplateDetectsOtherFormat()
+      throws IOException, FormatException {
+    File dir = Files.createTempDirectory("FileStitcherTest").toFile();
+    String pattern = new File(dir, "test_<0-2>.tif").getAbsolutePath();
+    try {
+      // the last file is not a TIFF, despite its name
+      write(new TiffWriter(), new File(dir, "test_0.tif"), 0);
+      write(new TiffWriter(), new File(dir, "test_1.tif"), 1);
+      write(new APNGWriter(), new File(dir, "test_2.tif"), 2);
+
+      FileStitcher fs = new FileStitcher();
+      fs.setUsingTemplate(true);
+      fs.setId(pattern);
+      assertEquals(fs.getImageCount(), 3);
+      for (int i = 0; i < 3; i++) {
+        byte[] plane = fs.openBytes(i);
+        assertEquals(plane.length, 16 * 16);
+        assertEquals(plane[0], (byte) i);
+      }
+      IFormatReader r = ((ReaderWrapper) fs.getReader(2)).getReader();
+      assertTrue(r instanceof ImageReader);
+      fs.close();
+    }
+    finally {
+      for (File f : dir.listFiles()) {
+        f.delete();
+      }
+      dir.delete();
+    }
+  }
+
+  @Test
+  public void testTemplateLayoutMismatch()
+      throws IOException, FormatException {
+    File dir = Files.createTempDirectory("FileStitcherTest").toFile();
+    String pattern = new File(dir, "test_z<0-2>.fake").getAbsolutePath();
+    try {
+      for (int i = 0; i < 3; i++) {
+        new File(dir, "test_z" + i + ".fake").createNewFile();
+      }
+      Files.write(new File(dir, "test_z2.fake.ini").toPath(),
+        "sizeX=32\n".getBytes("UTF-8"));
+
+      FileStitcher fs = new FileStitcher();
+      fs.setUsingTemplate(true);
+      fs.setId(pattern);
+      assertEquals(fs.getReader(1).getSizeX(), 512);
+      assertTrue(((ReaderWrapper) fs.getReader(1)).getReader()
+        instanceof FakeReader);
+
+      // the file that differs from the first is opened with format detection
+      IFormatReader r = fs.getReader(2);
+      assertEquals(r.getSizeX(), 32);
+      assertTrue(((ReaderWrapper) r).getReader() instanceof ImageReader);
+      fs.close();
+    }
+    finally {
+      for (File f : dir.listFiles()) {
+        f.delete();
+      }
+      dir.delete();
+    }
+  }
+
+  private static void write(IFormatWriter writer, File file, int value)
+      throws IOException, FormatException {
+    IMetadata metadata = MetadataTools.createOMEXMLMetadata();
+    MetadataTools.populateMetadata(metadata, 0, file.getName(), false,
+      "XYZCT", "uint8", 16, 16, 1, 1, 1, 1);
+    byte[] plane = new byte[16 * 16];
+    Arrays.fill(plane, (byte) value);
+    writer.setMetadataRetrieve(metadata);
+    writer.setId(file.getAbsolutePath());
+    writer.saveBytes(0, plane);
+    writer.close();
   }
 
   @Test
@@ -32,10 +32,25 @@
 
 package loci.formats.utests;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import loci.common.Constants;
+import loci.common.RandomAccessInputStream;
+import loci.formats.ClassList;
+import loci.formats.FormatException;
+import loci.formats.FormatReader;
+import loci.formats.IFormatReader;
 import loci.formats.ImageReader;
+import loci.formats.ImageWriter;
+import loci.formats.MetadataTools;
+import loci.formats.UnknownFormatException;
 import loci.formats.in.MetadataOptions;
 import loci.formats.in.DynamicMetadataOptions;
 import loci.formats.in.MetadataLevel;
+import loci.formats.meta.IMetadata;
 
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
@@ -43,6 +58,7 @@ import org.testng.annotations.Test;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
 
 
 public class ImageReaderTest {
@@ -85,4 +101,142 @@ public class ImageReaderTest {
     reader.close();
   }
 
+  @DataProvider(name = "detection")
+  public Object[][] createDetectionFiles() {
+    return new Object[][] {
+      {".tif"}, {".ome.tiff"}, {".ics"}, {".png"}, {".jpg"}, {".avi"},
+      {".eps"}
+    };
+  }
+
+  /**
+   * Checks that detection with a single shared stream picks the same reader
+   * as asking each reader in turn, both with and without a known suffix.
+   */
+  @Test(dataProvider = "detection")
+  public void testTypeDetection(String suffix) throws Exception {
+    File dir = Files.createTempDirectory("ImageReaderTest").toFile();
+    dir.deleteOnExit();
+    File file = new File(dir, "test" + suffix);
+    file.deleteOnExit();
+    File noSuffix = new File(dir, "test");
+    noSuffix.deleteOnExit();
+
+    String fake = "test&sizeX=64&sizeY=32&pixelType=uint8.fake";
+    ImageReader source = new ImageReader();
+    IMetadata meta = MetadataTools.createOMEXMLMetadata();
+    source.setMetadataStore(meta);
+    source.setId(fake);
+    ImageWriter writer = new ImageWriter();
+    writer.setMetadataRetrieve(meta);
+    writer.setId(file.getAbsolutePath());
+    writer.saveBytes(0, source.openBytes(0));
+    writer.close();
+    source.close();
+    Files.copy(file.toPath(), noSuffix.toPath(),
+      StandardCopyOption.REPLACE_EXISTING);
+
+    for (File f : new File[] {file, noSuffix}) {
+      String id = f.getAbsolutePath();
+      ImageReader reader = new ImageReader();
+      Class<?> expected = null;
+      for (IFormatReader r : reader.getReaders()) {
+        if (r.isThisType(id, true)) {
+          expected = r.getClass();
+          break;
+        }
+      }
+      assertEquals(reader.isThisType(id, true), expected != null);
+      if (expected == null) {
+        assertNull(getReaderClass(reader, id));
+      }
+      else {
+        assertEquals(getReaderClass(reader, id), expected, id);
+      }
+      reader.close();
+    }
+  }
+
+  /**
+   * Checks that a reader which changes the character encoding of the shared
+   * stream does not affect the readers that are asked after it.
+   */
+  @Test
+  public void testSharedStreamEncoding() throws Exception {
+    File file = File.createTempFile("ImageReaderTest", ".enc");
+    file.deleteOnExit();
+    Files.write(file.toPath(), "ABCD".getBytes(Constants.ENCODING));
+
+    ClassList<IFormatReader> classes =
+      new ClassList<IFormatReader>(IFormatReader.class);
+    classes.addClass(UTF16Reader.class);
+    classes.addClass(StringReader.class);
+    ImageReader reader = new ImageReader(classes);
+    StringReader.lastString = null;
+    assertTrue(!reader.isThisType(file.getAbsolutePath(), true));
+    assertEquals(StringReader.lastString, "ABCD");
+    reader.close();
+  }
+
+  private Class<?> getReaderClass(ImageReader reader, String id)
+    throws FormatException, IOException
+  {
+    try {
+      return reader.getReader(id).getClass();
+    }
+    catch (UnknownFormatException e) {
+      return null;
+    }
+  }
+
+  // -- Helper classes --
+
+  /** Switches the stream to UTF-16 while checking the type. */
+  public static class UTF16Reader extends StreamReader {
+    public UTF16Reader() {
+      super("UTF-16");
+    }
+
+    @Override
+    public boolean isThisType(RandomAccessInputStream stream)
+      throws IOException
+    {
+      stream.setEncoding("UTF-16");
+      stream.readString(2);
+      return false;
+    }
+  }
+
+  /** Records the first four characters of the stream. */
+  public static class StringReader extends StreamReader {
+    static String lastString;
+
+    public StringReader() {
+      super("String");
+    }
+
+    @Override
+    public boolean isThisType(RandomAccessInputStream stream)
+      throws IOException
+    {
+      lastString = stream.readString(4);
+      return false;
+    }
+  }
+
+  /** A reader that can only be detected by looking at the stream. */
+  public abstract static class StreamReader extends FormatReader {
+    public StreamReader(String name) {
+      super(name, "unused");
+      suffixNecessary = false;
+    }
+
+    @Override
+    public byte[] openBytes(int no, byte[] buf, int x, int y, int w, int h)
+      throws FormatException, IOException
+    {
+      return buf;
+    }
+  }
+
 }
@@ -0,0 +1,252 @@
+/*
+ * #%L
+ * BSD implementations of Bio-Formats readers and writers
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats.utests;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.zip.Deflater;
+
+import loci.formats.in.DynamicMetadataOptions;
+import loci.formats.in.KLBReader;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the block cache and parallel decompression of
+ * {@link KLBReader}, using a synthetic zlib-compressed Z-stack.
+ */
+public class KLBReaderTest {
+
+  // 4x3 blocks per plane, each spanning 4 Z sections
+  private static final int[] DIMS = {64, 48, 8, 1, 1};
+  private static final int[] BLOCK = {16, 16, 4, 1, 1};
+
+  private static final int UINT16_TYPE = 1;
+  private static final int COMPRESSION_ZLIB = 2;
+
+  /** Size in bytes of a decompressed block. */
+  private static final int BLOCK_BYTES = 16 * 16 * 4 * 2;
+
+  private File dir;
+  private String id;
+
+  @BeforeMethod
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("KLBReaderTest").toFile();
+    File file = new File(dir, "test.klb");
+    writeFile(file);
+    id = file.getAbsolutePath();
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    new File(id).delete();
+    dir.delete();
+  }
+
+  @DataProvider(name = "options")
+  public Object[][] createOptions() {
+    return new Object[][] {
+      // threads, cache size
+      {1, KLBReader.CACHE_SIZE_DEFAULT},
+      {3, KLBReader.CACHE_SIZE_DEFAULT},
+      {1, 2L * BLOCK_BYTES + 100},
+      {3, 2L * BLOCK_BYTES + 100},
+      {3, 0L},
+    };
+  }
+
+  @Test(dataProvider = "options")
+  public void testZStack(int threads, long cacheSize) throws Exception {
+    KLBReader reader = createReader(threads, cacheSize);
+    try {
+      assertEquals(reader.getSizeX(), DIMS[0]);
+      assertEquals(reader.getSizeY(), DIMS[1]);
+      assertEquals(reader.getSizeZ(), DIMS[2]);
+      for (int z=0; z<reader.getImageCount(); z++) {
+        assertEquals(reader.openBytes(z),
+          expected(z, 0, 0, DIMS[0], DIMS[1]), "Z=" + z);
+        assertTrue(reader.getCachedBytes() <= cacheSize);
+      }
+
+      // tiles that do not line up with the blocks
+      for (int z=DIMS[2]-1; z>=0; z--) {
+        assertEquals(reader.openBytes(z, 10, 7, 30, 20),
+          expected(z, 10, 7, 30, 20), "Z=" + z);
+        assertTrue(reader.getCachedBytes() <= cacheSize);
+      }
+      if (cacheSize >= BLOCK_BYTES) {
+        assertTrue(reader.getCachedBytes() > 0);
+      }
+    }
+    finally {
+      reader.close();
+    }
+  }
+
+  @Test
+  public void testCacheEviction() throws Exception {
+    long cacheSize = 2L * BLOCK_BYTES + 100;
+    KLBReader reader = createReader(2, cacheSize);
+    try {
+      // each plane decompresses 12 blocks, so only the last 2 are kept
+      reader.openBytes(0);
+      assertEquals(reader.getCachedBytes(), 2L * BLOCK_BYTES);
+      reader.openBytes(4);
+      assertEquals(reader.getCachedBytes(), 2L * BLOCK_BYTES);
+      reader.openBytes(0, 0, 0, 16, 16);
+      assertEquals(reader.getCachedBytes(), 2L * BLOCK_BYTES);
+    }
+    finally {
+      reader.close();
+    }
+    assertEquals(reader.getCachedBytes(), 0);
+  }
+
+  // -- Helper methods --
+
+  private KLBReader createReader(int threads, long cacheSize)
+    throws Exception
+  {
+    DynamicMetadataOptions options = new DynamicMetadataOptions();
+    options.setInteger(KLBReader.THREADS_KEY, threads);
+    options.setLong(KLBReader.CACHE_SIZE_KEY, cacheSize);
+    KLBReader reader = new KLBReader();
+    reader.setMetadataOptions(options);
+    reader.setId(id);
+    return reader;
+  }
+
+  private static int value(int x, int y, int z) {
+    return x + y * DIMS[0] + z * DIMS[0] * DIMS[1];
+  }
+
+  /** Gets the expected little-endian pixels of the given tile. */
+  private static byte[] expected(int z, int x, int y, int w, int h) {
+    ByteBuffer pixels =
+      ByteBuffer.allocate(w * h * 2).order(ByteOrder.LITTLE_ENDIAN);
+    for (int yy=y; yy<y+h; yy++) {
+      for (int xx=x; xx<x+w; xx++) {
+        pixels.putShort((short) value(xx, yy, z));
+      }
+    }
+    return pixels.array();
+  }
+
+  /**
+   * Writes a KLB file with the dimensions and block size above.  Blocks are
+   * stored in X, Y, Z order, and each block stores its pixels in X, Y, Z
+   * order.
+   */
+  private static void writeFile(File file) throws IOException {
+    int[] blocks = new int[DIMS.length];
+    int numBlocks = 1;
+    for (int i=0; i<DIMS.length; i++) {
+      blocks[i] = DIMS[i] / BLOCK[i];
+      numBlocks *= blocks[i];
+    }
+
+    ByteArrayOutputStream data = new ByteArrayOutputStream();
+    long[] offsets = new long[numBlocks];
+    int index = 0;
+    for (int bz=0; bz<blocks[2]; bz++) {
+      for (int by=0; by<blocks[1]; by++) {
+        for (int bx=0; bx<blocks[0]; bx++) {
+          ByteBuffer block =
+            ByteBuffer.allocate(BLOCK_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+          for (int z=0; z<BLOCK[2]; z++) {
+            for (int y=0; y<BLOCK[1]; y++) {
+              for (int x=0; x<BLOCK[0]; x++) {
+                block.putShort((short) value(bx * BLOCK[0] + x,
+                  by * BLOCK[1] + y, bz * BLOCK[2] + z));
+              }
+            }
+          }
+          data.write(compress(block.array()));
+          offsets[index++] = data.size();
+        }
+      }
+    }
+
+    ByteBuffer header = ByteBuffer.allocate(
+      1 + 12 * DIMS.length + 2 + 256 + 8 * numBlocks);
+    header.order(ByteOrder.LITTLE_ENDIAN);
+    header.put((byte) 2);
+    for (int dim : DIMS) {
+      header.putInt(dim);
+    }
+    for (int i=0; i<DIMS.length; i++) {
+      header.putFloat(1f);
+    }
+    header.put((byte) UINT16_TYPE);
+    header.put((byte) COMPRESSION_ZLIB);
+    header.put(new byte[256]);
+    for (int size : BLOCK) {
+      header.putInt(size);
+    }
+    for (long offset : offsets) {
+      header.putLong(offset);
+    }
+
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(header.array());
+      data.writeTo(out);
+    }
+  }
+
+  private static byte[] compress(byte[] block) {
+    Deflater deflater = new Deflater();
+    deflater.setInput(block);
+    deflater.finish();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buf = new byte[4096];
+    while (!deflater.finished()) {
+      int n = deflater.deflate(buf);
+      out.write(buf, 0, n);
+    }
+    deflater.end();
+    return out.toByteArray();
+  }
+
+}
@@ -38,10 +38,23 @@ import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.assertNull;
 
 import java.io.File;
+import java.lang.reflect.Proxy;
 import java.nio.file.Files;
-
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import loci.common.services.ServiceFactory;
+import loci.formats.ImageReader;
+import loci.formats.MemoRepository;
 import loci.formats.Memoizer;
 import loci.formats.in.FakeReader;
+import loci.formats.meta.IMetadata;
+import loci.formats.services.OMEXMLService;
 
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
@@ -274,4 +287,318 @@ public class MemoizerTest {
     checkMemo(memoizer, id);
   }
 
+  @Test
+  public void testRepository() throws Exception {
+    File directory = createTempDir();
+    try {
+      MemoRepository repository = new MemoRepository(directory);
+      Memoizer memoizer = new Memoizer(reader, 0);
+      memoizer.setRepository(repository);
+      File memoFile = memoizer.getMemoFile(id);
+      assertEquals(memoFile.getParentFile().getParentFile(),
+        repository.getDirectory());
+      assertTrue(memoFile.getName().endsWith(MemoRepository.MEMO_SUFFIX));
+      assertEquals(memoizer.getMemoFile(id), memoFile);
+
+      checkMemo(memoizer, id);
+      assertEquals(memoizer.getMemoFile(), memoFile);
+      assertEquals(repository.getMissCount(), 1);
+      assertEquals(repository.getHitCount(), 1);
+      assertEquals(repository.getRegenerationCount(), 1);
+      assertEquals(repository.getBytesWritten(), memoFile.length());
+      assertEquals(repository.getBytesRead(), memoFile.length());
+      assertEquals(repository.getTotalBytes(), memoFile.length());
+    }
+    finally {
+      recursiveDeleteOnExit(directory);
+    }
+  }
+
+  @Test
+  public void testRepositoryEviction() throws Exception {
+    File directory = createTempDir();
+    try {
+      Memoizer memoizer = new Memoizer(reader, 0);
+      memoizer.setRepository(new MemoRepository(directory));
+      memoizer.setId(id);
+      memoizer.close();
+      long memoSize = memoizer.getMemoFile().length();
+
+      // room for two memo files
+      MemoRepository repository =
+        new MemoRepository(directory, memoSize * 5 / 2, 1000);
+      String[] ids = new String[3];
+      File[] memoFiles = new File[ids.length];
+      for (int i=0; i<ids.length; i++) {
+        File f = new File(idDir, i + TEST_FILE);
+        f.createNewFile();
+        ids[i] = f.getAbsolutePath();
+        memoizer = new Memoizer(new FakeReader(), 0);
+        memoizer.setRepository(repository);
+        memoizer.setId(ids[i]);
+        memoizer.close();
+        memoFiles[i] = memoizer.getMemoFile();
+        // the original memo file is used more recently than the others
+        memoizer.getMemoFile(id).setLastModified(
+          System.currentTimeMillis() + 60000);
+        memoFiles[i].setLastModified(System.currentTimeMillis() - 60000);
+      }
+      assertEquals(repository.getRegenerationCount(), 3);
+      assertEquals(repository.getEvictionCount(), 2);
+      assertFalse(memoFiles[0].exists());
+      assertFalse(memoFiles[1].exists());
+      assertTrue(memoFiles[2].exists());
+      assertTrue(memoizer.getMemoFile(id).exists());
+      assertTrue(repository.getTotalBytes() <= repository.getMaximumBytes());
+    }
+    finally {
+      recursiveDeleteOnExit(directory);
+    }
+  }
+
+  @Test
+  public void testRepositoryIgnoresMinimumElapsed() throws Exception {
+    File directory = createTempDir();
+    try {
+      Memoizer memoizer = new Memoizer(reader, Long.MAX_VALUE);
+      memoizer.setRepository(new MemoRepository(directory));
+      checkMemo(memoizer, id);
+    }
+    finally {
+      recursiveDeleteOnExit(directory);
+    }
+  }
+
+  @Test
+  public void testRepositoryLockFiles() throws Exception {
+    File directory = createTempDir();
+    try {
+      MemoRepository repository = new MemoRepository(directory);
+      Memoizer memoizer = new Memoizer(reader, 0);
+      memoizer.setRepository(repository);
+      memoizer.setId(id);
+      memoizer.close();
+      File memoFile = memoizer.getMemoFile();
+      String name = memoFile.getName();
+      File lockFile = new File(memoFile.getParentFile(),
+        name.substring(0, name.length() - MemoRepository.MEMO_SUFFIX.length()) +
+        MemoRepository.LOCK_SUFFIX);
+      assertTrue(lockFile.exists());
+
+      // the lock file is kept as long as the memo file exists
+      repository.evict();
+      assertTrue(lockFile.exists());
+
+      // or while the lock is held
+      assertTrue(memoFile.delete());
+      MemoRepository.Lock lock = repository.lock(memoFile);
+      repository.evict();
+      assertTrue(lockFile.exists());
+      lock.close();
+
+      repository.evict();
+      assertFalse(lockFile.exists());
+
+      // a deleted lock file is created again when needed
+      lock = repository.lock(memoFile);
+      assertTrue(lock.isValid());
+      assertTrue(lockFile.exists());
+      lock.close();
+    }
+    finally {
+      recursiveDeleteOnExit(directory);
+    }
+  }
+
+  @Test
+  public void testRepositoryLocksPerFile() throws Exception {
+    File directory = createTempDir();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      final MemoRepository repository =
+        new MemoRepository(directory, MemoRepository.DEFAULT_MAXIMUM_BYTES,
+        60 * 1000);
+      final File memoFile = repository.getMemoFile(id);
+      // find another memo file whose path has the same hash code modulo 64
+      int hash = memoFile.getAbsolutePath().hashCode() & 63;
+      File other = null;
+      for (int i=0; other == null; i++) {
+        File f = repository.getMemoFile(id + i);
+        if ((f.getAbsolutePath().hashCode() & 63) == hash) {
+          other = f;
+        }
+      }
+      final File otherFile = other;
+
+      MemoRepository.Lock lock = repository.lock(memoFile);
+      assertTrue(lock.isValid());
+      try {
+        // locking again in the same thread does not wait for the timeout
+        long start = System.currentTimeMillis();
+        MemoRepository.Lock nested = repository.lock(memoFile);
+        assertFalse(nested.isValid());
+        nested.close();
+        assertTrue(System.currentTimeMillis() - start < 10 * 1000);
+        assertTrue(lock.isValid());
+
+        // other memo files can be locked by other threads meanwhile
+        Future<Boolean> result = executor.submit(new Callable<Boolean>() {
+          @Override
+          public Boolean call() throws Exception {
+            try (MemoRepository.Lock otherLock = repository.lock(otherFile)) {
+              return otherLock.isValid();
+            }
+          }
+        });
+        assertTrue(result.get(10, TimeUnit.SECONDS));
+
+        // but not the same memo file
+        final MemoRepository impatient = new MemoRepository(directory,
+          MemoRepository.DEFAULT_MAXIMUM_BYTES, 100);
+        result = executor.submit(new Callable<Boolean>() {
+          @Override
+          public Boolean call() throws Exception {
+            try (MemoRepository.Lock sameLock = impatient.lock(memoFile)) {
+              return sameLock.isValid();
+            }
+          }
+        });
+        assertFalse(result.get(10, TimeUnit.SECONDS));
+      }
+      finally {
+        lock.close();
+      }
+    }
+    finally {
+      executor.shutdown();
+      recursiveDeleteOnExit(directory);
+    }
+  }
+
+  @Test
+  public void testRepositoryConcurrentSetId() throws Exception {
+    File directory = createTempDir();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final MemoRepository repository = new MemoRepository(directory);
+      List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+      for (int i=0; i<8; i++) {
+        results.add(executor.submit(new Callable<Boolean>() {
+          @Override
+          public Boolean call() throws Exception {
+            Memoizer memoizer = new Memoizer(new FakeReader(), 0);
+            memoizer.setRepository(repository);
+            try {
+              memoizer.setId(id);
+              return memoizer.isLoadedFromMemo();
+            }
+            finally {
+              memoizer.close();
+            }
+          }
+        }));
+      }
+      int loaded = 0;
+      for (Future<Boolean> result : results) {
+        if (result.get()) {
+          loaded++;
+        }
+      }
+      // only one thread initializes the reader; the others wait for it
+      assertEquals(repository.getRegenerationCount(), 1);
+      assertEquals(loaded, 7);
+      assertEquals(repository.getHitCount(), 7);
+    }
+    finally {
+      executor.shutdown();
+      recursiveDeleteOnExit(directory);
+    }
+  }
+
+  @Test
+  public void testLoadSectionsOnFirstUse() throws Exception {
+    File seriesFile = new File(idDir, "test&sizeX=20&sizeY=20&series=3.fake");
+    seriesFile.createNewFile();
+    String seriesId = seriesFile.getAbsolutePath();
+    Files.write(new File(seriesId + ".ini").toPath(),
+      "[GlobalMetadata]\nfirst=1\nsecond=2\n".getBytes("UTF-8"));
+
+    OMEXMLService service =
+      new ServiceFactory().getInstance(OMEXMLService.class);
+    IMetadata expectedStore = service.createOMEXMLMetadata();
+    ImageReader expected = new ImageReader();
+    expected.setMetadataStore(expectedStore);
+    expected.setId(seriesId);
+
+    Memoizer memoizer = new Memoizer(0L, idDir);
+    memoizer.setId(seriesId);
+    memoizer.close();
+    assertTrue(memoizer.isSavedToMemo());
+    memoizer.setId(seriesId);
+    assertTrue(memoizer.isLoadedFromMemo());
+    try {
+      // the store is not deserialized until it is used
+      assertTrue(Proxy.isProxyClass(
+        memoizer.getMetadataStore().getClass()));
+      assertEquals(memoizer.getSeriesCount(), expected.getSeriesCount());
+      assertEquals(service.getOMEXML(service.asRetrieve(
+        memoizer.getMetadataStore())), service.getOMEXML(expectedStore));
+      assertEquals(memoizer.getGlobalMetadata().get("second"), "2");
+      assertEquals(memoizer.getGlobalMetadata(), expected.getGlobalMetadata());
+      for (int s=0; s<expected.getSeriesCount(); s++) {
+        memoizer.setSeries(s);
+        expected.setSeries(s);
+        assertEquals(memoizer.getSeriesMetadata(),
+          expected.getSeriesMetadata());
+      }
+      assertEquals(memoizer.openBytes(0), expected.openBytes(0));
+    }
+    finally {
+      memoizer.close();
+      expected.close();
+    }
+  }
+
+  @Test
+  public void testCorruptSection() throws Exception {
+    File seriesFile = new File(idDir, "test&sizeX=20&sizeY=20.fake");
+    seriesFile.createNewFile();
+    String seriesId = seriesFile.getAbsolutePath();
+    Files.write(new File(seriesId + ".ini").toPath(),
+      "[GlobalMetadata]\nkey=value\n".getBytes("UTF-8"));
+
+    Memoizer memoizer = new Memoizer(0L, idDir);
+    memoizer.setId(seriesId);
+    memoizer.close();
+    assertTrue(memoizer.isSavedToMemo());
+
+    // damage the original metadata section without changing its length
+    File memoFile = memoizer.getMemoFile(seriesId);
+    byte[] memo = Files.readAllBytes(memoFile.toPath());
+    String contents = new String(memo, "ISO-8859-1");
+    int index = contents.lastIndexOf("valu");
+    assertTrue(index > 0);
+    memo[index] = (byte) 'V';
+    Files.write(memoFile.toPath(), memo);
+
+    // the damaged memo file is replaced instead of failing on first use
+    memoizer.setId(seriesId);
+    try {
+      assertFalse(memoizer.isLoadedFromMemo());
+      assertTrue(memoizer.isSavedToMemo());
+      assertEquals(memoizer.getGlobalMetadata().get("key"), "value");
+    }
+    finally {
+      memoizer.close();
+    }
+    memoizer.setId(seriesId);
+    try {
+      assertTrue(memoizer.isLoadedFromMemo());
+      assertEquals(memoizer.getGlobalMetadata().get("key"), "value");
+    }
+    finally {
+      memoizer.close();
+    }
+  }
+
 }
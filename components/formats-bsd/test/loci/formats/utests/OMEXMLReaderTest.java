@@ -0,0 +1,195 @@
+/*
+ * #%L
+ * BSD implementations of Bio-Formats readers and writers
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats.utests;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Random;
+
+import loci.common.Constants;
+import loci.common.services.ServiceFactory;
+import loci.formats.IFormatReader;
+import loci.formats.Memoizer;
+import loci.formats.MetadataTools;
+import loci.formats.in.OMEXMLReader;
+import loci.formats.meta.IMetadata;
+import loci.formats.out.OMEXMLWriter;
+import loci.formats.services.OMEXMLService;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class OMEXMLReaderTest {
+
+  private static final int SIZE_X = 37;
+  private static final int SIZE_Y = 23;
+  private static final int SIZE_Z = 3;
+
+  private File file;
+  private byte[][] planes;
+  private OMEXMLReader reader;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    file = File.createTempFile(getClass().getName(), ".ome");
+    planes = new byte[SIZE_Z][SIZE_X * SIZE_Y * 2];
+    Random random = new Random(SIZE_Z);
+    for (byte[] plane : planes) {
+      random.nextBytes(plane);
+    }
+    reader = new OMEXMLReader();
+  }
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    reader.close();
+    file.delete();
+  }
+
+  @DataProvider(name = "compression")
+  public Object[][] createCompression() {
+    return new Object[][] {{null}, {"zlib"}};
+  }
+
+  @Test(dataProvider = "compression")
+  public void testTiles(String compression) throws Exception {
+    write(compression);
+    assertTiles();
+  }
+
+  @Test(dataProvider = "compression")
+  public void testWrappedBinData(String compression) throws Exception {
+    write(compression);
+    String xml = new String(Files.readAllBytes(file.toPath()),
+      Constants.ENCODING);
+
+    // break the base64 text into indented lines, as many writers do,
+    // and hide a BinData element in a comment
+    StringBuilder wrapped = new StringBuilder();
+    int index = 0;
+    int start = xml.indexOf("<BinData");
+    while (start >= 0) {
+      int text = xml.indexOf('>', start) + 1;
+      int end = xml.indexOf('<', text);
+      wrapped.append(xml, index, text);
+      for (int i=text; i<end; i+=76) {
+        wrapped.append("\n    ");
+        wrapped.append(xml, i, Math.min(end, i + 76));
+      }
+      wrapped.append("\n  ");
+      index = end;
+      start = xml.indexOf("<BinData", end);
+    }
+    wrapped.append(xml.substring(index));
+    xml = wrapped.toString().replaceFirst(
+      "<Image ", "<!-- <BinData>AAAA</BinData> --><Image ");
+    Files.write(file.toPath(), xml.getBytes(Constants.ENCODING));
+
+    assertTiles();
+  }
+
+  @Test(dataProvider = "compression")
+  public void testMemoizer(String compression) throws Exception {
+    write(compression);
+    File memoDir = Files.createTempDirectory(getClass().getName()).toFile();
+    Memoizer memoizer = new Memoizer(new OMEXMLReader(), 0, memoDir);
+    try {
+      memoizer.setId(file.getAbsolutePath());
+      assertTrue(memoizer.isSavedToMemo());
+      memoizer.close();
+
+      // the plane cache is not saved in the memo file
+      assertTiles(memoizer);
+      assertTrue(memoizer.isLoadedFromMemo());
+    }
+    finally {
+      memoizer.close();
+      File memoFile = memoizer.getMemoFile(file.getAbsolutePath());
+      for (File f=memoFile; !f.equals(memoDir.getParentFile());
+        f=f.getParentFile())
+      {
+        f.delete();
+      }
+    }
+  }
+
+  private void write(String compression) throws Exception {
+    ServiceFactory factory = new ServiceFactory();
+    OMEXMLService service = factory.getInstance(OMEXMLService.class);
+    IMetadata metadata = service.createOMEXMLMetadata();
+    MetadataTools.populateMetadata(metadata, 0, "test", false, "XYZCT",
+      "uint16", SIZE_X, SIZE_Y, SIZE_Z, 1, 1, 1);
+
+    file.delete();
+    try (OMEXMLWriter writer = new OMEXMLWriter()) {
+      writer.setMetadataRetrieve(metadata);
+      if (compression != null) {
+        writer.setCompression(compression);
+      }
+      writer.setId(file.getAbsolutePath());
+      for (int i=0; i<planes.length; i++) {
+        writer.saveBytes(i, planes[i]);
+      }
+    }
+  }
+
+  private void assertTiles() throws Exception {
+    assertTiles(reader);
+  }
+
+  private void assertTiles(IFormatReader reader) throws Exception {
+    reader.setId(file.getAbsolutePath());
+    assertEquals(reader.getImageCount(), SIZE_Z);
+    int[][] tiles = {
+      {0, 0, SIZE_X, SIZE_Y}, {1, 2, SIZE_X - 3, SIZE_Y - 5},
+      {SIZE_X - 1, SIZE_Y - 1, 1, 1}, {5, 0, 7, SIZE_Y}, {0, 7, SIZE_X, 3},
+    };
+    for (int no=0; no<SIZE_Z; no++) {
+      for (int[] tile : tiles) {
+        byte[] expected = new byte[tile[2] * tile[3] * 2];
+        for (int row=0; row<tile[3]; row++) {
+          System.arraycopy(planes[no], ((tile[1] + row) * SIZE_X + tile[0]) * 2,
+            expected, row * tile[2] * 2, tile[2] * 2);
+        }
+        assertEquals(reader.openBytes(no, tile[0], tile[1], tile[2], tile[3]),
+          expected);
+      }
+    }
+  }
+
+}
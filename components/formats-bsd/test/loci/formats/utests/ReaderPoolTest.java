@@ -0,0 +1,351 @@
+/*
+ * #%L
+ * BSD implementations of Bio-Formats readers and writers
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats.utests;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import loci.formats.FormatException;
+import loci.formats.IFormatReader;
+import loci.formats.ImageReader;
+import loci.formats.Memoizer;
+import loci.formats.MetadataTools;
+import loci.formats.ReaderPool;
+import loci.formats.meta.MetadataRetrieve;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class ReaderPoolTest {
+
+  private static final String TEST_FILE =
+    "test&pixelType=uint16&sizeX=64&sizeY=48&sizeZ=4&sizeC=2&series=2.fake";
+
+  private File idDir;
+  private String id;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    idDir = Files.createTempDirectory(
+      ReaderPoolTest.class.getName() + ".").toFile();
+    File tempFile = new File(idDir, TEST_FILE);
+    tempFile.createNewFile();
+    id = tempFile.getAbsolutePath();
+  }
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    for (File f : idDir.listFiles()) {
+      f.delete();
+    }
+    idDir.delete();
+  }
+
+  @Test
+  public void testBorrowAndReturn() throws Exception {
+    try (ReaderPool pool = new ReaderPool(id, 2, -1)) {
+      IFormatReader first = pool.borrowReader();
+      IFormatReader second = pool.borrowReader();
+      assertNotSame(first, second);
+      assertEquals(pool.getActiveCount(), 2);
+      assertEquals(pool.getCreatedCount(), 2);
+
+      // the pool is exhausted until a reader is returned
+      assertNull(pool.borrowReader(10, TimeUnit.MILLISECONDS));
+
+      second.setSeries(1);
+      pool.returnReader(second);
+      assertEquals(pool.getIdleCount(), 1);
+
+      IFormatReader third = pool.borrowReader();
+      assertEquals(third, second);
+      assertEquals(third.getSeries(), 0);
+      assertEquals(pool.getCreatedCount(), 2);
+
+      pool.returnReader(first);
+      pool.returnReader(third);
+      assertEquals(pool.getActiveCount(), 0);
+      assertEquals(pool.getBorrowCount(), 3);
+      assertEquals(pool.getReturnCount(), 3);
+    }
+  }
+
+  @Test
+  public void testClonedReaderMatchesTemplate() throws Exception {
+    try (ImageReader expected = new ImageReader();
+      ReaderPool pool = new ReaderPool(id, 2, -1))
+    {
+      expected.setId(id);
+      IFormatReader template = pool.borrowReader();
+      IFormatReader clone = pool.borrowReader();
+      try {
+        for (IFormatReader r : new IFormatReader[] {template, clone}) {
+          assertEquals(r.getSeriesCount(), expected.getSeriesCount());
+          assertEquals(r.getImageCount(), expected.getImageCount());
+          assertEquals(r.getSizeX(), expected.getSizeX());
+          assertEquals(r.getPixelType(), expected.getPixelType());
+          r.setSeries(1);
+          expected.setSeries(1);
+          assertTrue(Arrays.equals(r.openBytes(3), expected.openBytes(3)));
+        }
+      }
+      finally {
+        pool.returnReader(template);
+        pool.returnReader(clone);
+      }
+    }
+  }
+
+  @Test
+  public void testCloneReaderLoadedFromMemo() throws Exception {
+    // the original metadata is a separate, lazily loaded memo section
+    Files.write(new File(id + ".ini").toPath(),
+      "[GlobalMetadata]\nkey=value\n".getBytes("UTF-8"));
+
+    Memoizer memoizer = new Memoizer(0);
+    memoizer.setMetadataStore(MetadataTools.createOMEXMLMetadata());
+    memoizer.setId(id);
+    assertTrue(memoizer.isSavedToMemo());
+    MetadataRetrieve expectedStore =
+      (MetadataRetrieve) memoizer.getMetadataStore();
+    String imageName = expectedStore.getImageName(1);
+    Hashtable<String, Object> expectedGlobal =
+      new Hashtable<String, Object>(memoizer.getGlobalMetadata());
+    assertEquals(expectedGlobal.get("key"), "value");
+    memoizer.setSeries(1);
+    Hashtable<String, Object> expectedSeries =
+      new Hashtable<String, Object>(memoizer.getSeriesMetadata());
+    byte[] expectedPlane = memoizer.openBytes(3);
+    memoizer.close();
+
+    final List<Memoizer> templates = new ArrayList<Memoizer>();
+    ReaderPool pool = new ReaderPool(id, 2, -1) {
+      @Override
+      protected IFormatReader createReader() {
+        Memoizer m = new Memoizer(0);
+        m.setMetadataStore(MetadataTools.createOMEXMLMetadata());
+        templates.add(m);
+        return m;
+      }
+    };
+    try {
+      IFormatReader template = pool.borrowReader();
+      IFormatReader clone = pool.borrowReader();
+      try {
+        assertEquals(templates.size(), 1);
+        assertTrue(templates.get(0).isLoadedFromMemo());
+        // the template and its copies are the reader inside the Memoizer
+        assertEquals(template.getClass(), ImageReader.class);
+        assertEquals(clone.getClass(), ImageReader.class);
+        assertTrue(clone.getMetadataStore() instanceof MetadataRetrieve);
+        assertEquals(
+          ((MetadataRetrieve) clone.getMetadataStore()).getImageName(1),
+          imageName);
+        assertEquals(clone.getGlobalMetadata(), expectedGlobal);
+        clone.setSeries(1);
+        assertEquals(clone.getSeriesMetadata(), expectedSeries);
+        assertTrue(Arrays.equals(clone.openBytes(3), expectedPlane));
+      }
+      finally {
+        pool.returnReader(template);
+        pool.returnReader(clone);
+      }
+    }
+    finally {
+      pool.close();
+    }
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testReturnForeignReader() throws Exception {
+    try (ReaderPool pool = new ReaderPool(id, 2, -1);
+      ImageReader foreign = new ImageReader())
+    {
+      pool.returnReader(foreign);
+    }
+  }
+
+  @Test
+  public void testReturnTwice() throws Exception {
+    try (ReaderPool pool = new ReaderPool(id, 2, -1)) {
+      IFormatReader r = pool.borrowReader();
+      pool.returnReader(r);
+      try {
+        pool.returnReader(r);
+        fail("Returning a reader twice should fail");
+      }
+      catch (IllegalArgumentException e) {
+        // expected
+      }
+      assertEquals(pool.getActiveCount(), 0);
+      assertEquals(pool.getIdleCount(), 1);
+    }
+  }
+
+  @Test
+  public void testReturnDuringInitialization() throws Exception {
+    // a reader can be returned while another thread is initializing one
+    final CountDownLatch initializing = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final ReaderPool pool = new ReaderPool(id, 2, -1) {
+      @Override
+      protected IFormatReader createReader() {
+        return new ImageReader() {
+          @Override
+          public void setId(String file) throws FormatException, IOException {
+            initializing.countDown();
+            try {
+              release.await();
+            }
+            catch (InterruptedException e) {
+              throw new IOException(e);
+            }
+            super.setId(file);
+          }
+        };
+      }
+    };
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<IFormatReader> first = executor.submit(
+        new Callable<IFormatReader>() {
+          @Override
+          public IFormatReader call() throws Exception {
+            return pool.borrowReader();
+          }
+        });
+      assertTrue(initializing.await(10, TimeUnit.SECONDS));
+      assertEquals(pool.getIdleCount(), 0);
+      assertEquals(pool.evictIdle(), 0);
+      release.countDown();
+      pool.returnReader(first.get());
+      assertEquals(pool.getIdleCount(), 1);
+    }
+    finally {
+      release.countDown();
+      executor.shutdown();
+      pool.close();
+    }
+  }
+
+  @Test
+  public void testIdleEviction() throws Exception {
+    try (ReaderPool pool = new ReaderPool(id, 2, 0)) {
+      IFormatReader r = pool.borrowReader();
+      pool.returnReader(r);
+      Thread.sleep(5);
+      pool.evictIdle();
+      assertEquals(pool.getIdleCount(), 0);
+      assertTrue(pool.getEvictionCount() >= 1);
+
+      r = pool.borrowReader();
+      assertEquals(r.getImageCount(), 8);
+      pool.returnReader(r);
+    }
+  }
+
+  @Test
+  public void testOpenThumbBytes() throws Exception {
+    try (ImageReader expected = new ImageReader();
+      ReaderPool pool = new ReaderPool(id, 2, -1))
+    {
+      expected.setId(id);
+      int[] series = {1, 0, 1, 0, 1};
+      byte[][] thumbs = pool.openThumbBytes(series, 5);
+      assertEquals(thumbs.length, series.length);
+      for (int i=0; i<series.length; i++) {
+        expected.setSeries(series[i]);
+        assertTrue(Arrays.equals(thumbs[i], expected.openThumbBytes(5)));
+      }
+      assertTrue(pool.getCreatedCount() <= 2);
+      assertEquals(pool.getActiveCount(), 0);
+    }
+  }
+
+  @Test
+  public void testConcurrentReads() throws Exception {
+    final ReaderPool pool = new ReaderPool(id, 3, -1);
+    ExecutorService executor = Executors.newFixedThreadPool(6);
+    try {
+      List<Future<byte[]>> results = new ArrayList<Future<byte[]>>();
+      for (int i=0; i<24; i++) {
+        final int plane = i % 8;
+        results.add(executor.submit(new Callable<byte[]>() {
+          @Override
+          public byte[] call() throws Exception {
+            IFormatReader r = pool.borrowReader();
+            try {
+              return r.openBytes(plane);
+            }
+            finally {
+              pool.returnReader(r);
+            }
+          }
+        }));
+      }
+
+      try (ImageReader expected = new ImageReader()) {
+        expected.setId(id);
+        for (int i=0; i<results.size(); i++) {
+          assertTrue(Arrays.equals(results.get(i).get(),
+            expected.openBytes(i % 8)));
+        }
+      }
+      assertTrue(pool.getCreatedCount() <= 3);
+      assertEquals(pool.getBorrowCount(), 24);
+    }
+    finally {
+      executor.shutdown();
+      pool.close();
+    }
+  }
+
+}
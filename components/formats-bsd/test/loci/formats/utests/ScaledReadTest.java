@@ -0,0 +1,250 @@
+/*
+ * #%L
+ * BSD implementations of Bio-Formats readers and writers
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats.utests;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import loci.common.services.ServiceFactory;
+import loci.formats.ChannelSeparator;
+import loci.formats.FormatException;
+import loci.formats.FormatTools;
+import loci.formats.IFormatReader;
+import loci.formats.MetadataTools;
+import loci.formats.ReaderWrapper;
+import loci.formats.in.FakeReader;
+import loci.formats.in.JPEG2000Reader;
+import loci.formats.in.PGMReader;
+import loci.formats.meta.IMetadata;
+import loci.formats.out.JPEG2000Writer;
+import loci.formats.services.OMEXMLService;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class ScaledReadTest {
+
+  private IFormatReader reader;
+  private File file;
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    if (reader != null) {
+      reader.close();
+    }
+    if (file != null) {
+      file.delete();
+    }
+  }
+
+  @DataProvider(name = "regions")
+  public Object[][] createRegions() {
+    String[] layouts = {
+      "pixelType=uint8",
+      "pixelType=uint16&sizeC=3&rgb=3&interleaved=true",
+      "pixelType=uint16&sizeC=3&rgb=3&interleaved=false",
+    };
+    int[][] regions = {
+      {0, 0, 300, 200, 1},
+      {0, 0, 300, 200, 3},
+      {5, 7, 50, 33, 4},
+      {17, 3, 283, 197, 8},
+      {0, 0, 300, 200, 512},
+    };
+    List<Object[]> params = new ArrayList<Object[]>();
+    for (String layout : layouts) {
+      for (int[] region : regions) {
+        params.add(new Object[] {layout, region});
+      }
+    }
+    return params.toArray(new Object[0][]);
+  }
+
+  @Test(dataProvider = "regions")
+  public void testDefault(String layout, int[] region) throws Exception {
+    reader = new FakeReader();
+    reader.setId("test&sizeX=300&sizeY=200&" + layout + ".fake");
+    assertScaled(reader, 0, region);
+  }
+
+  @Test
+  public void testSampledRows() throws Exception {
+    // tiles are shorter than the scale, so only sampled rows are read
+    final List<Integer> heights = new ArrayList<Integer>();
+    reader = new FakeReader() {
+      @Override
+      public byte[] openBytes(int no, byte[] buf, int x, int y, int w, int h)
+        throws FormatException, IOException
+      {
+        heights.add(h);
+        return super.openBytes(no, buf, x, y, w, h);
+      }
+    };
+    reader.setId("test&sizeX=8192&sizeY=4096.fake");
+    assertTrue(reader.getOptimalTileHeight() < 256);
+    byte[] scaled = reader.openBytes(0, 0, 0, 8192, 4096, 256);
+    assertEquals(scaled.length, 32 * 16);
+    assertEquals(heights.size(), 16);
+    for (int h : heights) {
+      assertEquals(h, 1);
+    }
+    assertScaled(reader, 0, new int[] {0, 0, 8192, 4096, 256});
+  }
+
+  @Test
+  public void testWrappers() throws Exception {
+    // wrappers that change the pixels must not pass the read through
+    reader = new ChannelSeparator(new FakeReader());
+    reader.setId("test&sizeX=300&sizeY=200&sizeC=3&rgb=3.fake");
+    assertEquals(reader.getRGBChannelCount(), 1);
+    assertScaled(reader, 2, new int[] {3, 4, 290, 190, 5});
+    reader.close();
+
+    reader = new ReaderWrapper(new FakeReader()) { };
+    reader.setId("test&sizeX=300&sizeY=200&sizeC=3&rgb=3.fake");
+    assertScaled(reader, 0, new int[] {3, 4, 290, 190, 5});
+  }
+
+  @Test
+  public void testRawPlane() throws Exception {
+    int sizeX = 97;
+    int sizeY = 61;
+    file = File.createTempFile(ScaledReadTest.class.getName(), ".pgm");
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(("P5\n" + sizeX + " " + sizeY + "\n255\n").getBytes(
+        StandardCharsets.US_ASCII));
+      for (int i=0; i<sizeX*sizeY; i++) {
+        out.write(i * 7);
+      }
+    }
+    reader = new PGMReader();
+    reader.setId(file.getAbsolutePath());
+    assertEquals(reader.getSizeX(), sizeX);
+    assertScaled(reader, 0, new int[] {0, 0, sizeX, sizeY, 4});
+    assertScaled(reader, 0, new int[] {11, 13, 80, 40, 6});
+  }
+
+  @Test
+  public void testJPEG2000Resolutions() throws Exception {
+    int sizeX = 256;
+    int sizeY = 192;
+    file = File.createTempFile(ScaledReadTest.class.getName(), ".jp2");
+    IMetadata metadata = new ServiceFactory().getInstance(
+      OMEXMLService.class).createOMEXMLMetadata();
+    MetadataTools.populateMetadata(metadata, 0, "test", false, "XYZCT",
+      "uint8", sizeX, sizeY, 1, 1, 1, 1);
+    byte[] plane = new byte[sizeX * sizeY];
+    for (int i=0; i<plane.length; i++) {
+      plane[i] = (byte) (i % sizeX + i / sizeX);
+    }
+    try (JPEG2000Writer writer = new JPEG2000Writer()) {
+      writer.setMetadataRetrieve(metadata);
+      writer.setId(file.getAbsolutePath());
+      writer.saveBytes(0, plane);
+    }
+
+    reader = new JPEG2000Reader();
+    reader.setFlattenedResolutions(false);
+    reader.setId(file.getAbsolutePath());
+    assertTrue(reader.getResolutionCount() > 3);
+
+    // a scale of 4 is read from the third resolution level
+    byte[] scaled = reader.openBytes(0, 8, 16, 200, 160, 4);
+    assertEquals(reader.getResolution(), 0);
+    reader.setResolution(2);
+    assertEquals(scaled, reader.openBytes(0, 2, 4, 50, 40));
+
+    // a scale of 12 is read from the third level, then sampled
+    reader.setResolution(0);
+    scaled = reader.openBytes(0, 0, 0, sizeX, sizeY, 12);
+    reader.setResolution(2);
+    byte[] level = reader.openBytes(0, 0, 0, 64, 46);
+    assertEquals(scaled, sample(level, 64, 46, 3, 1, 1, true));
+  }
+
+  // -- Helper methods --
+
+  /**
+   * Checks a subsampled read against the corresponding full resolution
+   * region, sampled in the test.
+   */
+  private static void assertScaled(IFormatReader r, int no, int[] region)
+    throws FormatException, IOException
+  {
+    int x = region[0];
+    int y = region[1];
+    int w = region[2];
+    int h = region[3];
+    int scale = region[4];
+    byte[] full = r.openBytes(no, x, y, w, h);
+    byte[] scaled = r.openBytes(no, x, y, w, h, scale);
+    byte[] expected = sample(full, w, h, scale, r.getRGBChannelCount(),
+      FormatTools.getBytesPerPixel(r.getPixelType()), r.isInterleaved());
+    assertEquals(scaled, expected);
+  }
+
+  private static byte[] sample(byte[] plane, int w, int h, int scale,
+    int channels, int bpp, boolean interleaved)
+  {
+    int scaledWidth = (w + scale - 1) / scale;
+    int scaledHeight = (h + scale - 1) / scale;
+    byte[] sampled = new byte[scaledWidth * scaledHeight * channels * bpp];
+    for (int c=0; c<channels; c++) {
+      for (int row=0; row<scaledHeight; row++) {
+        for (int col=0; col<scaledWidth; col++) {
+          int src = row * scale * w + col * scale;
+          int dest = row * scaledWidth + col;
+          if (interleaved) {
+            src = src * channels + c;
+            dest = dest * channels + c;
+          }
+          else {
+            src += c * w * h;
+            dest += c * scaledWidth * scaledHeight;
+          }
+          System.arraycopy(plane, src * bpp, sampled, dest * bpp, bpp);
+        }
+      }
+    }
+    return sampled;
+  }
+
+}
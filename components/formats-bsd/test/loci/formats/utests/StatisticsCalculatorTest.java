@@ -0,0 +1,263 @@
+/*
+ * #%L
+ * BSD implementations of Bio-Formats readers and writers
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats.utests;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import loci.common.DataTools;
+import loci.formats.ChannelStatistics;
+import loci.formats.FormatTools;
+import loci.formats.IFormatReader;
+import loci.formats.ImageReader;
+import loci.formats.Memoizer;
+import loci.formats.ReaderPool;
+import loci.formats.StatisticsCalculator;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class StatisticsCalculatorTest {
+
+  private File dir;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    dir = Files.createTempDirectory("statistics").toFile();
+  }
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (File f : files) {
+        f.delete();
+      }
+    }
+    dir.delete();
+  }
+
+  @DataProvider(name = "files")
+  public Object[][] createFiles() {
+    return new Object[][] {
+      {"test&pixelType=uint8&sizeX=100&sizeY=70&sizeZ=2&sizeC=3.fake"},
+      {"test&pixelType=int16&sizeX=64&sizeY=50&sizeC=2&sizeT=3.fake"},
+      {"test&pixelType=uint32&sizeX=40&sizeY=30&sizeC=6&rgb=3.fake"},
+      {"test&pixelType=float&sizeX=40&sizeY=30&sizeC=2" +
+        "&little=false.fake"},
+      {"test&pixelType=double&sizeX=30&sizeY=30&sizeC=3&rgb=3" +
+        "&interleaved=false.fake"},
+    };
+  }
+
+  @Test(dataProvider = "files")
+  public void testMatchesPlaneScan(String id) throws Exception {
+    ReaderPool pool = new ReaderPool(id, 3, -1);
+    try {
+      StatisticsCalculator calculator = new StatisticsCalculator(pool);
+      calculator.setThreads(3);
+      calculator.setHistogramBins(16);
+      ChannelStatistics[] stats = calculator.compute(0);
+
+      ChannelStatistics[] expected = scanPlanes(id);
+      assertEquals(stats.length, expected.length);
+      for (int c=0; c<stats.length; c++) {
+        assertEquals(stats[c].getCount(), expected[c].getCount());
+        assertEquals(stats[c].getMinimum(), expected[c].getMinimum());
+        assertEquals(stats[c].getMaximum(), expected[c].getMaximum());
+        assertEquals(stats[c].getMean(), expected[c].getMean(), 1e-6);
+        assertEquals(stats[c].getStandardDeviation(),
+          expected[c].getStandardDeviation(), 1e-6);
+
+        long[] histogram = stats[c].getHistogram();
+        assertEquals(histogram.length, 16);
+        long total = 0;
+        for (long count : histogram) {
+          total += count;
+        }
+        assertEquals(total, stats[c].getCount());
+      }
+    }
+    finally {
+      pool.close();
+    }
+  }
+
+  @Test
+  public void testLowestResolution() throws Exception {
+    String id = "test&sizeX=128&sizeY=96&sizeC=2&resolutions=3.fake";
+    ReaderPool pool = new ReaderPool(id, 2, -1) {
+      @Override
+      protected IFormatReader createReader() {
+        IFormatReader reader = new ImageReader();
+        reader.setFlattenedResolutions(false);
+        return reader;
+      }
+    };
+    try {
+      StatisticsCalculator calculator = new StatisticsCalculator(pool);
+      calculator.setResolution(-1);
+      ChannelStatistics[] stats = calculator.compute(0);
+      assertEquals(stats.length, 2);
+      assertEquals(stats[0].getCount(), 32 * 24);
+      assertEquals(stats[0].getMinimum(), 0.0);
+    }
+    finally {
+      pool.close();
+    }
+  }
+
+  @Test
+  public void testSavedStatistics() throws Exception {
+    String id = "test&pixelType=uint16&sizeX=64&sizeY=48&sizeC=2.fake";
+    File file = new File(dir, "test" + StatisticsCalculator.EXTENSION);
+
+    ReaderPool pool = new ReaderPool(id);
+    ChannelStatistics[] stats;
+    try {
+      StatisticsCalculator calculator = new StatisticsCalculator(pool);
+      calculator.setStatisticsFile(file);
+      calculator.setHistogramBins(8);
+      stats = calculator.compute(0);
+    }
+    finally {
+      pool.close();
+    }
+    assertEquals(file.exists(), true);
+
+    pool = new ReaderPool(id);
+    try {
+      StatisticsCalculator calculator = new StatisticsCalculator(pool);
+      calculator.setStatisticsFile(file);
+      calculator.setHistogramBins(8);
+      ChannelStatistics[] saved = calculator.compute(0);
+      assertEquals(pool.getBorrowCount(), 1);
+      for (int c=0; c<stats.length; c++) {
+        assertEquals(saved[c].getCount(), stats[c].getCount());
+        assertEquals(saved[c].getMaximum(), stats[c].getMaximum());
+        assertEquals(saved[c].getSum(), stats[c].getSum());
+        assertEquals(saved[c].getHistogram(), stats[c].getHistogram());
+      }
+
+      // different settings are computed again
+      calculator.setHistogramBins(0);
+      assertNull(calculator.compute(0)[0].getHistogram());
+      assertEquals(pool.getBorrowCount() > 2, true);
+    }
+    finally {
+      pool.close();
+    }
+  }
+
+  @Test
+  public void testStatisticsFileNextToMemo() throws Exception {
+    String id = "test.fake";
+    Memoizer memoizer = new Memoizer(0, dir);
+    File file = StatisticsCalculator.getStatisticsFile(memoizer, id);
+    assertNotNull(file);
+    File memoFile = memoizer.getMemoFile(id);
+    assertEquals(file.getParentFile(), memoFile.getParentFile());
+    assertEquals(file.getName(), ".test.fake" + StatisticsCalculator.EXTENSION);
+  }
+
+  /** Computes statistics plane by plane, one sample at a time. */
+  private ChannelStatistics[] scanPlanes(String id) throws Exception {
+    ImageReader reader = new ImageReader();
+    try {
+      reader.setId(id);
+      int pixelType = reader.getPixelType();
+      int bpp = FormatTools.getBytesPerPixel(pixelType);
+      int rgb = reader.getRGBChannelCount();
+      int pixels = reader.getSizeX() * reader.getSizeY();
+      long[] count = new long[reader.getSizeC()];
+      double[] min = new double[count.length];
+      double[] max = new double[count.length];
+      double[] sum = new double[count.length];
+      double[] sumSquares = new double[count.length];
+      Arrays.fill(min, Double.POSITIVE_INFINITY);
+      Arrays.fill(max, Double.NEGATIVE_INFINITY);
+      for (int no=0; no<reader.getImageCount(); no++) {
+        byte[] plane = reader.openBytes(no);
+        int cBase = reader.getZCTCoords(no)[1] * rgb;
+        for (int i=0; i<pixels; i++) {
+          for (int c=0; c<rgb; c++) {
+            int index = reader.isInterleaved() ? i * rgb + c : c * pixels + i;
+            double v = value(plane, index * bpp, pixelType,
+              reader.isLittleEndian());
+            count[cBase + c]++;
+            min[cBase + c] = Math.min(min[cBase + c], v);
+            max[cBase + c] = Math.max(max[cBase + c], v);
+            sum[cBase + c] += v;
+            sumSquares[cBase + c] += v * v;
+          }
+        }
+      }
+      ChannelStatistics[] stats = new ChannelStatistics[count.length];
+      for (int c=0; c<stats.length; c++) {
+        stats[c] = new ChannelStatistics(count[c], min[c], max[c], sum[c],
+          sumSquares[c], null, 0, 0);
+      }
+      return stats;
+    }
+    finally {
+      reader.close();
+    }
+  }
+
+  private static double value(byte[] plane, int offset, int pixelType,
+    boolean little)
+  {
+    int bpp = FormatTools.getBytesPerPixel(pixelType);
+    long bits = DataTools.bytesToLong(plane, offset, bpp, little);
+    switch (pixelType) {
+      case FormatTools.FLOAT:
+        return Float.intBitsToFloat((int) bits);
+      case FormatTools.DOUBLE:
+        return Double.longBitsToDouble(bits);
+      default:
+        if (FormatTools.isSigned(pixelType) && bpp < 8) {
+          long threshold = 1L << (bpp * 8 - 1);
+          if (bits >= threshold) bits -= 2 * threshold;
+        }
+        return bits;
+    }
+  }
+
+}
@@ -0,0 +1,265 @@
+/*
+ * #%L
+ * BSD implementations of Bio-Formats readers and writers
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats.utests;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import loci.formats.FormatException;
+import loci.formats.FormatTools;
+import loci.formats.in.FakeReader;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class ThumbnailTest {
+
+  private RecordingReader reader;
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    if (reader != null) {
+      reader.close();
+    }
+  }
+
+  @DataProvider(name = "pixelTypes")
+  public Object[][] createPixelTypes() {
+    return new Object[][] {
+      {"int8"}, {"uint8"}, {"int16"}, {"uint16"}, {"int32"}, {"uint32"},
+      {"float"}, {"double"},
+    };
+  }
+
+  @DataProvider(name = "layouts")
+  public Object[][] createLayouts() {
+    return new Object[][] {
+      {"&sizeC=3&rgb=3&interleaved=true"},
+      {"&sizeC=3&rgb=3&interleaved=false"},
+      {"&little=false"},
+      {"&little=true"},
+    };
+  }
+
+  @Test(dataProvider = "pixelTypes")
+  public void testSameSize(String pixelType) throws Exception {
+    // the thumbnail of a plane no larger than the thumbnail is the plane
+    open("test&sizeX=128&sizeY=64&pixelType=" + pixelType);
+    assertEquals(reader.getThumbSizeX(), 128);
+    assertEquals(reader.getThumbSizeY(), 64);
+    assertTrue(Arrays.equals(reader.openThumbBytes(0), reader.openBytes(0)));
+  }
+
+  @Test(dataProvider = "layouts")
+  public void testAverage(String layout) throws Exception {
+    open("test&sizeX=256&sizeY=128&pixelType=uint16" + layout);
+    int channels = reader.getRGBChannelCount();
+    boolean little = reader.isLittleEndian();
+    boolean interleaved = reader.isInterleaved();
+    byte[] plane = reader.openBytes(0);
+    byte[] thumb = reader.openThumbBytes(0);
+    assertEquals(thumb.length, 128 * 64 * channels * 2);
+
+    for (int c=0; c<channels; c++) {
+      for (int y=0; y<64; y++) {
+        for (int x=0; x<128; x++) {
+          int sum = 0;
+          for (int yy=2*y; yy<2*y+2; yy++) {
+            for (int xx=2*x; xx<2*x+2; xx++) {
+              sum += getShort(plane, index(xx, yy, c, 256, 128, channels,
+                interleaved), little);
+            }
+          }
+          assertEquals(getShort(thumb, index(x, y, c, 128, 64, channels,
+            interleaved), little), Math.round(sum / 4.0));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testPyramid() throws Exception {
+    reader = new RecordingReader();
+    reader.setFlattenedResolutions(false);
+    reader.setId(
+      "test&sizeX=4096&sizeY=4096&resolutions=5&resolutionScale=2.fake");
+    assertEquals(reader.getResolutionCount(), 5);
+    byte[] thumb = reader.openThumbBytes(0);
+    assertEquals(reader.getResolution(), 0);
+    assertEquals(thumb.length, 128 * 128);
+
+    // only the 256x256 resolution is read
+    assertEquals(reader.resolutions, Arrays.asList(4));
+    reader.resolutions.clear();
+    reader.setResolution(4);
+    assertEquals(reader.getSizeX(), 256);
+    byte[] plane = reader.openBytes(0);
+    for (int y=0; y<128; y++) {
+      for (int x=0; x<128; x++) {
+        int sum = (plane[2*y*256 + 2*x] & 0xff) +
+          (plane[2*y*256 + 2*x + 1] & 0xff) +
+          (plane[(2*y+1)*256 + 2*x] & 0xff) +
+          (plane[(2*y+1)*256 + 2*x + 1] & 0xff);
+        assertEquals(thumb[y*128 + x] & 0xff, Math.round(sum / 4.0));
+      }
+    }
+  }
+
+  @Test
+  public void testLargePlane() throws Exception {
+    // planes larger than 64 MB with small tiles are sampled row by row
+    open("test&sizeX=16384&sizeY=8192");
+    assertEquals(reader.getThumbSizeX(), 128);
+    assertEquals(reader.getThumbSizeY(), 64);
+    byte[] thumb = reader.openThumbBytes(0);
+    assertEquals(reader.heights.size(), 64);
+    for (int h : reader.heights) {
+      assertEquals(h, 1);
+    }
+
+    for (int y=0; y<64; y++) {
+      byte[] row = reader.openBytes(0, 0, y * 128 + 63, 16384, 1);
+      for (int x=0; x<128; x++) {
+        long sum = 0;
+        for (int xx=x*128; xx<(x+1)*128; xx++) {
+          sum += row[xx] & 0xff;
+        }
+        assertEquals(thumb[y*128 + x] & 0xff, Math.round(sum / 128.0));
+      }
+    }
+  }
+
+  @Test
+  public void testLargeTiledPlane() throws Exception {
+    // planes larger than 64 MB with small tiles are sampled tile by tile
+    reader = new RecordingReader();
+    reader.tileSize = 64;
+    reader.setId("test&sizeX=16384&sizeY=8192.fake");
+    byte[] thumb = reader.openThumbBytes(0);
+    assertEquals(thumb.length, 128 * 64);
+    assertEquals(reader.heights.size(), 128 * 64);
+    for (int i=0; i<reader.heights.size(); i++) {
+      assertEquals((int) reader.widths.get(i), 64);
+      assertEquals((int) reader.heights.get(i), 64);
+    }
+
+    for (int y=0; y<64; y++) {
+      for (int x=0; x<128; x++) {
+        byte[] tile = reader.openBytes(0, x * 128, y * 128, 64, 64);
+        long sum = 0;
+        for (byte b : tile) {
+          sum += b & 0xff;
+        }
+        assertEquals(thumb[y*128 + x] & 0xff, Math.round(sum / 4096.0));
+      }
+    }
+  }
+
+  @Test
+  public void testIndexed() throws Exception {
+    // indices are sampled rather than averaged
+    open("test&sizeX=256&sizeY=256&indexed=true");
+    byte[] plane = reader.openBytes(0);
+    byte[] thumb = reader.openThumbBytes(0);
+    assertEquals(thumb.length, 128 * 128);
+    for (int y=0; y<128; y++) {
+      for (int x=0; x<128; x++) {
+        assertEquals(thumb[y*128 + x], plane[2*y*256 + 2*x]);
+      }
+    }
+  }
+
+  // -- Helper methods --
+
+  private void open(String id) throws FormatException, IOException {
+    reader = new RecordingReader();
+    reader.setId(id + ".fake");
+  }
+
+  private static int index(int x, int y, int c, int sizeX, int sizeY,
+    int channels, boolean interleaved)
+  {
+    if (interleaved) {
+      return ((y * sizeX + x) * channels + c) * 2;
+    }
+    return ((c * sizeY + y) * sizeX + x) * 2;
+  }
+
+  private static int getShort(byte[] buf, int index, boolean little) {
+    int b0 = buf[index] & 0xff;
+    int b1 = buf[index + 1] & 0xff;
+    return little ? (b1 << 8) | b0 : (b0 << 8) | b1;
+  }
+
+  // -- Helper classes --
+
+  /**
+   * Records the resolution and size of each call to openBytes, optionally
+   * reporting square tiles.
+   */
+  private static class RecordingReader extends FakeReader {
+    public final List<Integer> resolutions = new ArrayList<Integer>();
+    public final List<Integer> widths = new ArrayList<Integer>();
+    public final List<Integer> heights = new ArrayList<Integer>();
+    public int tileSize;
+
+    @Override
+    public int getOptimalTileWidth() {
+      return tileSize > 0 ? tileSize : super.getOptimalTileWidth();
+    }
+
+    @Override
+    public int getOptimalTileHeight() {
+      return tileSize > 0 ? tileSize : super.getOptimalTileHeight();
+    }
+
+    @Override
+    public byte[] openBytes(int no, byte[] buf, int x, int y, int w, int h)
+      throws FormatException, IOException
+    {
+      if (!resolutions.contains(getResolution())) {
+        resolutions.add(getResolution());
+      }
+      widths.add(w);
+      heights.add(h);
+      return super.openBytes(no, buf, x, y, w, h);
+    }
+  }
+
+}
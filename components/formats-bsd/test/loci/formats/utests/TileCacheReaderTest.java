@@ -0,0 +1,241 @@
+/*
+ * #%L
+ * BSD implementations of Bio-Formats readers and writers
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats.utests;
+
+import static org.testng.Assert.assertEquals;
+
+import loci.common.Location;
+import loci.formats.FormatTools;
+import loci.formats.IFormatReader;
+import loci.formats.ImageReader;
+import loci.formats.ReaderWrapper;
+import loci.formats.TileCacheReader;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class TileCacheReaderTest {
+
+  private static final String TEST_FILE =
+    "test&pixelType=uint16&sizeX=64&sizeY=48&sizeZ=2&sizeC=3&rgb=3";
+
+  private static final int TILE_WIDTH = 20;
+  private static final int TILE_HEIGHT = 16;
+
+  private ImageReader expected;
+  private TileCacheReader reader;
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    if (expected != null) {
+      expected.close();
+    }
+    if (reader != null) {
+      reader.close();
+    }
+  }
+
+  @DataProvider(name = "layouts")
+  public Object[][] createLayouts() {
+    return new Object[][] {
+      {"&interleaved=true", false},
+      {"&interleaved=false", false},
+      {"&interleaved=true", true},
+      {"&interleaved=false", true},
+      {"&pixelType=uint8&rgb=1", false},
+    };
+  }
+
+  @Test(dataProvider = "layouts")
+  public void testRegionsMatchWrappedReader(String options, boolean offHeap)
+    throws Exception
+  {
+    setUp(options);
+    reader.setOffHeap(offHeap);
+    int[][] regions = {
+      {0, 0, 64, 48}, {0, 0, 20, 16}, {5, 7, 1, 1}, {19, 15, 2, 2},
+      {13, 3, 40, 30}, {40, 32, 24, 16}, {0, 47, 64, 1}, {63, 0, 1, 48},
+    };
+    for (int no=0; no<reader.getImageCount(); no++) {
+      // read each region twice, so that the second read uses cached tiles
+      for (int pass=0; pass<2; pass++) {
+        for (int[] r : regions) {
+          assertEquals(reader.openBytes(no, r[0], r[1], r[2], r[3]),
+            expected.openBytes(no, r[0], r[1], r[2], r[3]));
+        }
+      }
+    }
+    assertEquals(reader.openBytes(0), expected.openBytes(0));
+  }
+
+  @Test
+  public void testCounters() throws Exception {
+    setUp("");
+    reader.openBytes(0, 0, 0, TILE_WIDTH, TILE_HEIGHT);
+    assertEquals(reader.getMissCount(), 1);
+    assertEquals(reader.getHitCount(), 0);
+
+    // touches the first tile and the tile to the right of it
+    reader.openBytes(0, 10, 10, TILE_WIDTH, 4);
+    assertEquals(reader.getMissCount(), 2);
+    assertEquals(reader.getHitCount(), 1);
+
+    // tiles for another plane are separate
+    reader.openBytes(1, 0, 0, 1, 1);
+    assertEquals(reader.getMissCount(), 3);
+    assertEquals(reader.getCachedTileCount(), 3);
+    assertEquals(reader.getCachedBytes(), 3 * tileBytes());
+    assertEquals(reader.getEvictionCount(), 0);
+
+    reader.clearCache();
+    assertEquals(reader.getCachedTileCount(), 0);
+    assertEquals(reader.getCachedBytes(), 0);
+    reader.openBytes(0, 0, 0, 1, 1);
+    assertEquals(reader.getMissCount(), 4);
+  }
+
+  @Test
+  public void testLRUEviction() throws Exception {
+    setUp("");
+    reader.setMaximumBytes(2 * tileBytes());
+    reader.openBytes(0, 0, 0, 1, 1);
+    reader.openBytes(0, TILE_WIDTH, 0, 1, 1);
+    reader.openBytes(0, 0, 0, 1, 1);
+    // evicts the tile at column 1, which was used least recently
+    reader.openBytes(0, 2 * TILE_WIDTH, 0, 1, 1);
+    assertEquals(reader.getEvictionCount(), 1);
+    assertEquals(reader.getCachedTileCount(), 2);
+
+    reader.openBytes(0, 0, 0, 1, 1);
+    assertEquals(reader.getHitCount(), 2);
+    reader.openBytes(0, TILE_WIDTH, 0, 1, 1);
+    assertEquals(reader.getHitCount(), 2);
+    assertEquals(reader.getMissCount(), 4);
+  }
+
+  @Test
+  public void testLFUEviction() throws Exception {
+    setUp("");
+    reader.setEvictionPolicy(TileCacheReader.EvictionPolicy.LFU);
+    reader.setMaximumBytes(2 * tileBytes());
+    reader.openBytes(0, 0, 0, 1, 1);
+    reader.openBytes(0, 0, 0, 1, 1);
+    for (int i=0; i<4; i++) {
+      reader.openBytes(0, TILE_WIDTH, 0, 1, 1);
+    }
+    reader.openBytes(0, 0, 0, 1, 1);
+    // evicts the tile at column 0, which was used less often
+    // even though it was used more recently
+    reader.openBytes(0, 2 * TILE_WIDTH, 0, 1, 1);
+    assertEquals(reader.getEvictionCount(), 1);
+    assertEquals(reader.getHitCount(), 5);
+
+    reader.openBytes(0, TILE_WIDTH, 0, 1, 1);
+    assertEquals(reader.getHitCount(), 6);
+    reader.openBytes(0, 0, 0, 1, 1);
+    assertEquals(reader.getHitCount(), 6);
+
+    reader.setMaximumBytes(tileBytes());
+    assertEquals(reader.getCachedTileCount(), 1);
+    assertEquals(reader.getCachedBytes(), tileBytes());
+  }
+
+  @Test
+  public void testLFUEvictionTies() throws Exception {
+    setUp("");
+    reader.setEvictionPolicy(TileCacheReader.EvictionPolicy.LFU);
+    reader.setMaximumBytes(2 * tileBytes());
+    reader.openBytes(0, 0, 0, 1, 1);
+    reader.openBytes(0, TILE_WIDTH, 0, 1, 1);
+    reader.openBytes(0, 0, 0, 1, 1);
+    reader.openBytes(0, TILE_WIDTH, 0, 1, 1);
+    // both tiles were used as often, so the tile at column 0,
+    // which was used least recently, is evicted
+    reader.openBytes(0, 2 * TILE_WIDTH, 0, 1, 1);
+    assertEquals(reader.getEvictionCount(), 1);
+
+    reader.openBytes(0, TILE_WIDTH, 0, 1, 1);
+    assertEquals(reader.getHitCount(), 3);
+    // the new tile at column 2 has been used least often
+    reader.openBytes(0, 0, 0, 1, 1);
+    assertEquals(reader.getHitCount(), 3);
+    reader.openBytes(0, TILE_WIDTH, 0, 1, 1);
+    assertEquals(reader.getHitCount(), 4);
+    reader.openBytes(0, 2 * TILE_WIDTH, 0, 1, 1);
+    assertEquals(reader.getHitCount(), 4);
+    assertEquals(reader.getEvictionCount(), 3);
+  }
+
+  @Test
+  public void testTilesLargerThanCache() throws Exception {
+    setUp("");
+    reader.setMaximumBytes(tileBytes() - 1);
+    assertEquals(reader.openBytes(0, 5, 5, 30, 30),
+      expected.openBytes(0, 5, 5, 30, 30));
+    assertEquals(reader.getCachedTileCount(), 0);
+    assertEquals(reader.getMissCount(), 0);
+  }
+
+  // -- Helper methods --
+
+  private void setUp(String options) throws Exception {
+    String id = TEST_FILE + options + ".fake";
+    Location.mapId(id, id);
+    expected = new ImageReader();
+    expected.setId(id);
+    reader = new TileCacheReader(new TiledReader(new ImageReader()));
+    reader.setId(id);
+  }
+
+  private long tileBytes() {
+    return (long) TILE_WIDTH * TILE_HEIGHT * reader.getRGBChannelCount() *
+      FormatTools.getBytesPerPixel(reader.getPixelType());
+  }
+
+  /** Reports a fixed tile size smaller than the image. */
+  private static class TiledReader extends ReaderWrapper {
+    TiledReader(IFormatReader r) { super(r); }
+
+    @Override
+    public int getOptimalTileWidth() {
+      return TILE_WIDTH;
+    }
+
+    @Override
+    public int getOptimalTileHeight() {
+      return TILE_HEIGHT;
+    }
+  }
+
+}
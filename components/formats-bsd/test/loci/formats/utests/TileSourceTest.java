@@ -0,0 +1,271 @@
+/*
+ * #%L
+ * BSD implementations of Bio-Formats readers and writers
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats.utests;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import loci.formats.FormatException;
+
+import loci.formats.FormatTools;
+import loci.formats.IFormatReader;
+import loci.formats.ImageReader;
+import loci.formats.ReaderPool;
+import loci.formats.cache.Cache;
+import loci.formats.cache.CacheUpdater;
+import loci.formats.cache.TileSource;
+import loci.formats.cache.TileStrategy;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TileSourceTest {
+
+  // resolutions are 100x80, 50x40 and 25x20, i.e. 4x3, 2x2 and 1x1 tiles
+  private static final String TEST_FILE =
+    "test&sizeX=100&sizeY=80&sizeZ=2&resolutions=3&resolutionScale=2.fake";
+
+  private static final int TILE_SIZE = 32;
+
+  private ImageReader reader;
+  private TileSource source;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    reader = new ImageReader();
+    reader.setFlattenedResolutions(false);
+    reader.setId(TEST_FILE);
+    source = new TileSource(reader, 0, TILE_SIZE, TILE_SIZE);
+  }
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    reader.close();
+  }
+
+  @Test
+  public void testTiles() throws Exception {
+    assertEquals(source.getLengths(), new int[] {4, 3, 3, 2, 1, 1});
+    assertEquals(source.getObjectCount(), 72);
+    assertEquals(source.getTileColumns(1), 2);
+    assertEquals(source.getTileRows(2), 1);
+
+    reader.setResolution(1);
+    byte[] expected = reader.openBytes(1, 32, 32, 18, 8);
+    reader.setResolution(0);
+    int index = FormatTools.positionToRaster(source.getLengths(),
+      new int[] {1, 1, 1, 1, 0, 0});
+    assertEquals((byte[]) source.getObject(index), expected);
+    assertEquals(reader.getResolution(), 0);
+
+    // outside the smallest resolution
+    index = FormatTools.positionToRaster(source.getLengths(),
+      new int[] {1, 0, 2, 0, 0, 0});
+    assertNull(source.getObject(index));
+  }
+
+  @Test
+  public void testLoadListDoesNotWrap() throws Exception {
+    TileStrategy strategy = new TileStrategy(source);
+    strategy.setRange(1, TileSource.X_AXIS);
+    strategy.setRange(1, TileSource.Y_AXIS);
+    int[][] loadList = strategy.getLoadList(new int[6]);
+    assertEquals(loadList.length, 4);
+    assertEquals(loadList[0], new int[6]);
+    for (int[] pos : loadList) {
+      assertTrue(pos[TileSource.X_AXIS] <= 1);
+      assertTrue(pos[TileSource.Y_AXIS] <= 1);
+    }
+
+    // Z still wraps around
+    strategy.setRange(1, TileSource.Z_AXIS);
+    assertEquals(strategy.getLoadList(new int[6]).length, 8);
+  }
+
+  @Test
+  public void testLoadListFollowsResolution() throws Exception {
+    TileStrategy strategy = new TileStrategy(source);
+    strategy.setRange(1, TileSource.RESOLUTION_AXIS);
+    int[][] loadList = strategy.getLoadList(new int[] {3, 2, 0, 0, 0, 0});
+    assertEquals(loadList.length, 2);
+    assertEquals(loadList[0], new int[] {3, 2, 0, 0, 0, 0});
+    assertEquals(loadList[1], new int[] {1, 1, 1, 0, 0, 0});
+
+    loadList = strategy.getLoadList(new int[] {0, 0, 2, 0, 0, 0});
+    assertEquals(loadList.length, 2);
+    assertEquals(loadList[1], new int[] {1, 1, 1, 0, 0, 0});
+  }
+
+  @Test
+  public void testLoadListOfLargeImage() throws Exception {
+    ImageReader large = new ImageReader();
+    large.setFlattenedResolutions(false);
+    large.setId("test&sizeX=100000&sizeY=100000&sizeZ=10&resolutions=5.fake");
+    try {
+      TileStrategy strategy =
+        new TileStrategy(new TileSource(large, 0, 256, 256));
+      int[] pos = {200, 100, 0, 5, 0, 0};
+      assertEquals(strategy.getLoadList(pos), new int[][] {pos});
+
+      strategy.setRange(2, TileSource.X_AXIS);
+      strategy.setRange(1, TileSource.Y_AXIS);
+      strategy.setRange(1, TileSource.Z_AXIS);
+      assertEquals(strategy.getLoadList(pos).length, 45);
+
+      // offsets that were outside the range are added when it grows
+      strategy.setOrder(TileStrategy.FORWARD_ORDER, TileSource.X_AXIS);
+      assertEquals(strategy.getLoadList(pos).length, 27);
+      strategy.setRange(4, TileSource.X_AXIS);
+      int[][] loadList = strategy.getLoadList(pos);
+      assertEquals(loadList.length, 45);
+      for (int[] p : loadList) {
+        assertTrue(p[TileSource.X_AXIS] >= 200);
+        assertTrue(p[TileSource.X_AXIS] <= 204);
+      }
+    }
+    finally {
+      large.close();
+    }
+  }
+
+  @Test
+  public void testMaximumBytes() throws Exception {
+    TileStrategy strategy = new TileStrategy(source);
+    strategy.setRange(1, TileSource.X_AXIS);
+    strategy.setRange(1, TileSource.Y_AXIS);
+    Cache cache = new Cache(strategy, source, false);
+    cache.setMaximumBytes(3 * TILE_SIZE * TILE_SIZE);
+    int[] pos = {1, 1, 0, 0, 0, 0};
+    cache.setCurrentPos(pos);
+    cache.recache();
+
+    assertEquals(cache.getCachedBytes(), 3 * TILE_SIZE * TILE_SIZE);
+    int[][] loadList = strategy.getLoadList(pos);
+    assertEquals(loadList.length, 9);
+    for (int i=0; i<loadList.length; i++) {
+      if (i < 3) {
+        assertNotNull(cache.getObject(loadList[i]));
+      }
+      else {
+        assertNull(cache.getObject(loadList[i]));
+        assertFalse(cache.isInCache(loadList[i]));
+      }
+    }
+
+    // moving away drops the old tiles
+    cache.setCurrentPos(new int[] {3, 2, 0, 1, 0, 0});
+    cache.recache();
+    assertNull(cache.getObject(pos));
+    assertTrue(cache.getCachedBytes() <= 3 * TILE_SIZE * TILE_SIZE);
+  }
+
+  @Test
+  public void testMultiThreadedUpdater() throws Exception {
+    // the first tile read waits for a second one to start,
+    // so that two readers are always borrowed at once
+    OverlappingReader.reads = new CountDownLatch(2);
+    OverlappingReader.overlapped = new AtomicBoolean();
+    ReaderPool pool = new ReaderPool(TEST_FILE, 3, -1) {
+      @Override
+      protected IFormatReader createReader() {
+        IFormatReader r = new OverlappingReader();
+        r.setFlattenedResolutions(false);
+        return r;
+      }
+    };
+    try {
+      TileSource pooled = new TileSource(pool, 0, TILE_SIZE, TILE_SIZE);
+      assertEquals(pooled.getLengths(), source.getLengths());
+      TileStrategy strategy = new TileStrategy(pooled);
+      for (int axis=0; axis<pooled.getLengths().length; axis++) {
+        strategy.setRange(pooled.getLengths()[axis], axis);
+      }
+      Cache cache = new Cache(strategy, pooled, false);
+      CacheUpdater updater = new CacheUpdater(cache, 3);
+      updater.start();
+      updater.join();
+
+      int[][] loadList = strategy.getLoadList(cache.getCurrentPos());
+      // 4x3 + 2x2 + 1x1 tiles for each of 2 Z sections
+      assertEquals(loadList.length, 34);
+      for (int[] pos : loadList) {
+        byte[] tile = (byte[]) cache.getObject(pos);
+        int index = FormatTools.positionToRaster(source.getLengths(), pos);
+        assertTrue(Arrays.equals(tile, (byte[]) source.getObject(index)));
+      }
+      assertTrue(OverlappingReader.overlapped.get());
+      assertTrue(pool.getCreatedCount() > 1);
+      assertTrue(pool.getCreatedCount() <= 3);
+    }
+    finally {
+      pool.close();
+    }
+  }
+
+  // -- Helper classes --
+
+  /**
+   * Reader whose tile reads wait for each other.  The latch is static, as
+   * the pool copies the reader's fields into every reader that it clones.
+   */
+  public static class OverlappingReader extends ImageReader {
+
+    static CountDownLatch reads;
+    static AtomicBoolean overlapped;
+
+    @Override
+    public byte[] openBytes(int no, int x, int y, int w, int h)
+      throws FormatException, IOException
+    {
+      reads.countDown();
+      try {
+        if (reads.await(10, TimeUnit.SECONDS)) overlapped.set(true);
+      }
+      catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+      return super.openBytes(no, x, y, w, h);
+    }
+  }
+
+}
@@ -42,6 +42,8 @@ import loci.formats.FormatException;
 import loci.formats.IFormatReader;
 import loci.formats.ImageReader;
 import loci.formats.MetadataTools;
+import loci.formats.in.DynamicMetadataOptions;
+import loci.formats.in.OMETiffReader;
 import loci.formats.meta.DummyMetadata;
 import loci.formats.meta.IMetadata;
 import loci.formats.meta.IPyramidStore;
@@ -68,7 +70,7 @@ public class PyramidTest {
   private static final int TILE_SIZE = 1;
   private static final int SCALE = 2;
 
-  private File[] files = new File[9];
+  private File[] files = new File[11];
 
   @BeforeClass
   public void setUp() throws Exception {
@@ -254,8 +256,49 @@ public class PyramidTest {
     }
   }
 
+  @Test
+  public void testMultiplePyramidsNoOpenFiles() throws FormatException, IOException {
+    int[] dims = new int[] {16, 10};
+    writePyramid(files[9].getAbsolutePath(), dims, dims, 2, 1, false, false);
+    DynamicMetadataOptions options = new DynamicMetadataOptions();
+    options.setInteger(OMETiffReader.MAX_OPEN_FILES_KEY, 0);
+    IFormatReader reader = getReader(9, options);
+    try {
+      assertEquals(reader.getSeriesCount(), 3);
+      assertTrue(checkPixels(reader));
+    }
+    finally {
+      reader.close();
+    }
+  }
+
+  @Test
+  public void testMultiplePyramidsReopen() throws FormatException, IOException {
+    int[] dims = new int[] {16, 10};
+    writePyramid(files[10].getAbsolutePath(), dims, dims, 2, 1, false, true);
+    DynamicMetadataOptions options = new DynamicMetadataOptions();
+    options.setInteger(OMETiffReader.MAX_OPEN_FILES_KEY, 1);
+    IFormatReader reader = getReader(10, options);
+    try {
+      assertTrue(checkPixels(reader));
+      reader.close(true);
+      reader.reopenFile();
+      assertTrue(checkPixels(reader));
+    }
+    finally {
+      reader.close();
+    }
+  }
+
   private IFormatReader getReader(int index) throws FormatException, IOException {
+    return getReader(index, new DynamicMetadataOptions());
+  }
+
+  private IFormatReader getReader(int index, DynamicMetadataOptions options)
+    throws FormatException, IOException
+  {
     ImageReader reader = new ImageReader();
+    reader.setMetadataOptions(options);
     reader.setFlattenedResolutions(false);
     reader.setId(files[index].getAbsolutePath());
     return reader;
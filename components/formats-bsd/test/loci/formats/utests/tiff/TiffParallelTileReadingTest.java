@@ -0,0 +1,150 @@
+/*
+ * #%L
+ * BSD implementations of Bio-Formats readers and writers
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats.utests.tiff;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import loci.formats.FormatTools;
+import loci.formats.MetadataTools;
+import loci.formats.in.DynamicMetadataOptions;
+import loci.formats.in.MinimalTiffReader;
+import loci.formats.meta.IMetadata;
+import loci.formats.out.TiffWriter;
+import loci.formats.tiff.IFD;
+import loci.formats.tiff.TiffParser;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Checks that tiles decoded in parallel match tiles decoded serially.
+ */
+public class TiffParallelTileReadingTest {
+
+  private static final int TILE_SIZE = 16;
+  private static final int TILES = 5;
+  private static final int SIZE = TILE_SIZE * TILES;
+
+  private File file;
+  private ExecutorService executor;
+
+  @BeforeClass
+  public void setUp() throws Exception {
+    file = File.createTempFile("parallelTileTest", ".tiff");
+    executor = Executors.newFixedThreadPool(4);
+
+    IMetadata meta = MetadataTools.createOMEXMLMetadata();
+    MetadataTools.populateMetadata(meta, 0, null, false, "XYZCT",
+      FormatTools.getPixelTypeString(FormatTools.UINT16), SIZE, SIZE,
+      1, 1, 1, 1);
+
+    TiffWriter writer = new TiffWriter();
+    writer.setMetadataRetrieve(meta);
+    writer.setCompression(TiffWriter.COMPRESSION_ZLIB);
+    writer.setTileSizeX(TILE_SIZE);
+    writer.setTileSizeY(TILE_SIZE);
+    writer.setId(file.getAbsolutePath());
+    byte[] plane = new byte[SIZE * SIZE * 2];
+    for (int i=0; i<plane.length; i++) {
+      plane[i] = (byte) (i * 31 + i / 7);
+    }
+    writer.saveBytes(0, plane);
+    writer.close();
+  }
+
+  @AfterClass
+  public void tearDown() throws Exception {
+    executor.shutdown();
+    file.delete();
+  }
+
+  @DataProvider(name = "regions")
+  public Object[][] createRegions() {
+    return new Object[][] {
+      {0, 0, SIZE, SIZE},
+      {0, 0, TILE_SIZE, TILE_SIZE},
+      {3, 5, TILE_SIZE * 2, TILE_SIZE * 3},
+      {TILE_SIZE - 1, TILE_SIZE - 1, 2, 2},
+      {7, 0, SIZE - 7, SIZE - 11},
+    };
+  }
+
+  @Test(dataProvider = "regions")
+  public void testParallelMatchesSerial(int x, int y, int w, int h)
+    throws Exception
+  {
+    try (TiffParser parser = new TiffParser(file.getAbsolutePath())) {
+      IFD ifd = parser.getFirstIFD();
+      assertTrue(ifd.isTiled());
+
+      byte[] serial = new byte[w * h * 2];
+      parser.getSamples(ifd, serial, x, y, w, h);
+
+      parser.setTileExecutor(executor);
+      byte[] parallel = new byte[w * h * 2];
+      parser.getSamples(ifd, parallel, x, y, w, h);
+
+      assertTrue(Arrays.equals(serial, parallel));
+    }
+  }
+
+  @Test
+  public void testReaderOption() throws Exception {
+    DynamicMetadataOptions options = new DynamicMetadataOptions();
+    options.setInteger(MinimalTiffReader.TILE_THREADS_KEY, 3);
+
+    byte[] serial;
+    try (MinimalTiffReader reader = new MinimalTiffReader()) {
+      reader.setId(file.getAbsolutePath());
+      assertEquals(1, reader.getTileThreads());
+      serial = reader.openBytes(0, 1, 2, SIZE - 3, SIZE - 4);
+    }
+
+    try (MinimalTiffReader reader = new MinimalTiffReader()) {
+      reader.setMetadataOptions(options);
+      reader.setId(file.getAbsolutePath());
+      assertEquals(3, reader.getTileThreads());
+      byte[] parallel = reader.openBytes(0, 1, 2, SIZE - 3, SIZE - 4);
+      assertTrue(Arrays.equals(serial, parallel));
+    }
+  }
+
+}
@@ -37,17 +37,24 @@ import static org.testng.AssertJUnit.assertFalse;
 import static org.testng.AssertJUnit.assertTrue;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import loci.common.ByteArrayHandle;
 import loci.common.RandomAccessInputStream;
 import loci.common.RandomAccessOutputStream;
 import loci.formats.FormatException;
+import loci.formats.FormatTools;
+import loci.formats.ImageTools;
 import loci.formats.tiff.IFD;
+import loci.formats.tiff.TiffCompression;
 import loci.formats.tiff.TiffParser;
 import loci.formats.tiff.TiffSaver;
 
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 /**
@@ -182,4 +189,91 @@ public class TiffSaverTest {
       tiffParser.getIFDs().get(1).getIFDTextValue(IFD.IMAGE_DESCRIPTION));
   }
 
+  @DataProvider(name = "tiledImages")
+  public Object[][] createTiledImages() {
+    return new Object[][] {
+      {1, false}, {3, false}, {1, true}, {3, true}
+    };
+  }
+
+  @Test(dataProvider = "tiledImages")
+  public void testWriteTiledImage(int channels, boolean concurrent)
+    throws FormatException, IOException
+  {
+    int width = 100, height = 70;
+    byte[] buf = createImage(width, height, channels);
+    IFD tiled = createTiledIFD(width, height, TiffCompression.DEFLATE, true);
+
+    ExecutorService executor =
+      concurrent ? Executors.newFixedThreadPool(2) : null;
+    try {
+      tiffSaver.setWritingSequentially(true);
+      tiffSaver.setCompressionExecutor(executor);
+      tiffSaver.writeHeader();
+      tiffSaver.writeImage(buf, tiled, 0, FormatTools.UINT16, true);
+    }
+    finally {
+      if (executor != null) {
+        executor.shutdown();
+      }
+    }
+
+    IFD written = tiffParser.getFirstIFD();
+    assertEquals(channels, written.getSamplesPerPixel());
+    assertEquals(12, written.getStripOffsets().length);
+    byte[] plane = new byte[buf.length];
+    tiffParser.getSamples(written, plane);
+    int channelSize = buf.length / channels;
+    for (int c=0; c<channels; c++) {
+      byte[] expected = ImageTools.splitChannels(buf, c, channels, 2,
+        false, true);
+      assertTrue(Arrays.equals(expected,
+        Arrays.copyOfRange(plane, c * channelSize, (c + 1) * channelSize)));
+    }
+  }
+
+  @Test
+  public void testCompressPlanarTiles() throws FormatException, IOException {
+    int width = 100, height = 70, channels = 3;
+    byte[] buf = createImage(width, height, channels);
+    IFD tiled =
+      createTiledIFD(width, height, TiffCompression.UNCOMPRESSED, false);
+
+    byte[][] tiles = tiffSaver.compressImage(buf, tiled, FormatTools.UINT16,
+      width, height, channels, false);
+    assertEquals(36, tiles.length);
+
+    // second tile in the second row of the last channel
+    byte[] tile = tiles[2 * 12 + 4 + 1];
+    assertEquals(32 * 32 * 2, tile.length);
+    int plane = (channels - 1) * width * height * 2;
+    for (int row=0; row<32; row++) {
+      int src = plane + ((32 + row) * width + 32) * 2;
+      assertTrue(Arrays.equals(Arrays.copyOfRange(buf, src, src + 64),
+        Arrays.copyOfRange(tile, row * 64, (row + 1) * 64)));
+    }
+  }
+
+  private byte[] createImage(int width, int height, int channels) {
+    byte[] buf = new byte[width * height * channels * 2];
+    for (int i=0; i<buf.length; i++) {
+      buf[i] = (byte) (i * 7 + i / 251);
+    }
+    return buf;
+  }
+
+  private IFD createTiledIFD(int width, int height,
+    TiffCompression compression, boolean interleaved)
+  {
+    IFD tiled = new IFD();
+    tiled.put(IFD.IMAGE_WIDTH, (long) width);
+    tiled.put(IFD.IMAGE_LENGTH, (long) height);
+    tiled.put(IFD.TILE_WIDTH, 32L);
+    tiled.put(IFD.TILE_LENGTH, 32L);
+    tiled.put(IFD.COMPRESSION, compression.getCode());
+    tiled.put(IFD.PLANAR_CONFIGURATION, interleaved ? 1 : 2);
+    tiled.put(IFD.LITTLE_ENDIAN, Boolean.FALSE);
+    return tiled;
+  }
+
 }
@@ -31,7 +31,6 @@ import java.util.Arrays;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.zip.InflaterInputStream;
 
 import loci.common.Constants;
 import loci.common.DataTools;
@@ -41,6 +40,7 @@ import loci.formats.FormatException;
 import loci.formats.FormatReader;
 import loci.formats.FormatTools;
 import loci.formats.MetadataTools;
+import loci.formats.codec.DeflateIndex;
 import loci.formats.meta.MetadataStore;
 import loci.formats.tools.AmiraParameters;
 
@@ -123,6 +123,9 @@ public class AmiraReader extends FormatReader {
   public void close(boolean fileOnly) throws IOException {
     super.close(fileOnly);
 
+    if (planeReader instanceof HxZip) {
+      ((HxZip) planeReader).close();
+    }
     offsetOfFirstStream = 0;
     planeReader = null;
     hasPlaneReader = false;
@@ -397,44 +400,41 @@ public class AmiraReader extends FormatReader {
   /**
    * This is the reader for GZip-compressed AmiraMeshes.
    *
-   * As such files contain a single GZipped stream for the complete stack,
-   * we cannot really access the slices randomly, but have to decompress
-   * instead of seeking.
+   * As such files contain a single zlib stream for the complete stack,
+   * slices are located through a {@link DeflateIndex}, so that only the
+   * data between the nearest access point and the slice is decompressed.
    */
   class HxZip implements PlaneReader {
     long offsetOfStream, compressedSize;
-    int currentNo, planeSize;
-    transient InflaterInputStream decompressor;
+    int planeSize;
+    transient DeflateIndex index;
 
     HxZip(long compressedSize) {
       this.compressedSize = compressedSize;
       planeSize = FormatTools.getPlaneSize(AmiraReader.this);
       offsetOfStream = offsetOfFirstStream;
-      currentNo = Integer.MAX_VALUE;
-    }
-
-    void initDecompressor() throws IOException {
-      currentNo = 0;
-      in.seek(offsetOfStream);
-      decompressor = new InflaterInputStream(in);
     }
 
     @Override
     public byte[] read(int no, byte[] buf) throws FormatException, IOException {
-      if (no < currentNo) {
-        initDecompressor();
+      if (index == null) {
+        index = new DeflateIndex(currentId, offsetOfStream,
+          DeflateIndex.Format.ZLIB);
+        index.setIndexFile(
+          DeflateIndex.getIndexFile(getMetadataOptions(), currentId));
       }
-      for (; currentNo <= no; currentNo++) {
-        int offset = 0, len = planeSize;
-        while (len > 0) {
-          int count = decompressor.read(buf, offset, len);
-          if (count <= 0) return null;
-          offset += count;
-          len -= count;
-        }
+      if (index.read((long) no * planeSize, buf, 0, planeSize) < planeSize) {
+        return null;
       }
       return buf;
     }
+
+    void close() throws IOException {
+      if (index != null) {
+        index.close();
+        index = null;
+      }
+    }
   }
 
   /**
@@ -93,33 +93,24 @@ public class LeicaSCNReader extends BaseTiffReader {
 
   // -- IFormatReader API methods --
 
-  /* (non-Javadoc)
-   * @see loci.formats.FormatReader#isThisType(java.lang.String, boolean)
-   */
+  /* @see loci.formats.IFormatReader#isThisType(RandomAccessInputStream) */
   @Override
-  public boolean isThisType(String name, boolean open) {
-    if (super.isThisType(name, open) && open) {
-      try (RandomAccessInputStream stream = new RandomAccessInputStream(name)) {
-        TiffParser tiffParser = new TiffParser(stream);
-        if (!tiffParser.isValidHeader()) {
-          return false;
-        }
+  public boolean isThisType(RandomAccessInputStream stream) throws IOException {
+    TiffParser tiffParser = new TiffParser(stream);
+    if (!tiffParser.isValidHeader()) {
+      return false;
+    }
 
-        String imageDescription = tiffParser.getComment();
-        if (imageDescription != null) {
-          try {
-            // Test if XML is valid SCN metadata
-            LeicaSCNHandler handler = new LeicaSCNHandler();
-            XMLTools.parseXML(imageDescription, handler);
-            return true;
-          }
-          catch (Exception se) {
-            LOGGER.debug("XML parsing failed", se);
-          }
-        }
+    String imageDescription = tiffParser.getComment();
+    if (imageDescription != null) {
+      try {
+        // Test if XML is valid SCN metadata
+        LeicaSCNHandler handler = new LeicaSCNHandler();
+        XMLTools.parseXML(imageDescription, handler);
+        return true;
       }
-      catch (IOException e) {
-        LOGGER.debug("I/O exception during isThisType() evaluation.", e);
+      catch (Exception se) {
+        LOGGER.debug("XML parsing failed", se);
       }
     }
     return false;
@@ -27,10 +27,13 @@ package loci.formats.in;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 import loci.common.ByteArrayHandle;
 import loci.common.Constants;
@@ -91,6 +94,9 @@ public class ND2Reader extends SubResolutionFormatReader {
   /** Array of image offsets. */
   private long[][] offsets;
 
+  /** File containing the pixel data, if set by {@link #setOffsets}. */
+  private String offsetsFile;
+
   /** Whether or not the pixel data is compressed using JPEG 2000. */
   private boolean isJPEG;
 
@@ -117,6 +123,18 @@ public class ND2Reader extends SubResolutionFormatReader {
   private Map<String, Integer> channelColors;
   private boolean split = false;
   private int lastChannel = 0;
+
+  /**
+   * Most recently decoded plane.  When channels are split out of one
+   * interleaved plane, each channel is read from this copy instead of
+   * decoding the plane once per channel.
+   */
+  private transient byte[] lastPlane;
+  private transient int lastPlaneSeries = -1;
+  private transient int lastPlaneIndex = -1;
+
+  /** Number of rows of the most recently decoded plane that are valid. */
+  private transient int lastPlaneRows;
   private int[] colors;
   private Boolean useZ = null;
 
@@ -264,16 +282,22 @@ public class ND2Reader extends SubResolutionFormatReader {
     int scanlinePad = getScanlinePad();
 
     if (isJPEG || isLossless) {
-      if (codec == null) codec = createCodec(isJPEG);
       byte[] t = null;
       try {
-        t = codec.decompress(in, options);
+        t = decompressPlane(planeIndex, options, y + h, pixel, scanlinePad);
       }
       catch (IOException e) {
         LOGGER.debug("Failed to decompress; plane may be corrupt", e);
         return buf;
       }
-      if ((getSizeX() + scanlinePad) * getSizeY() * pixel > t.length) {
+      if (split && getRGBChannelCount() == 1) {
+        int rowLength =
+          (getSizeX() + scanlinePad) * getSizeY() * pixel > t.length ?
+          getSizeX() * pixel + scanlinePad * bpp :
+          (getSizeX() + scanlinePad) * pixel;
+        copyChannel(t, rowLength, x, y, w, h, bpp, buf);
+      }
+      else if ((getSizeX() + scanlinePad) * getSizeY() * pixel > t.length) {
         // one padding pixel per row total, instead of one padding pixel
         // per channel per row
         int rowLength = getSizeX() * pixel + scanlinePad * bpp;
@@ -301,13 +325,20 @@ public class ND2Reader extends SubResolutionFormatReader {
       else {
         copyPixels(x, y, w, h, bpp, scanlinePad, t, buf, split);
       }
-      t = null;
     }
     else if (split && (getSizeC() <= 4 || scanlinePad == 0) && nXFields == 1) {
-      byte[] pix = new byte[(getSizeX() + scanlinePad) * getSizeY() * pixel];
-      in.read(pix);
-      copyPixels(x, y, w, h, bpp, scanlinePad, pix, buf, split);
-      pix = null;
+      int rowLength = (getSizeX() + scanlinePad) * pixel;
+      if (!isLastPlane(planeIndex, getSizeY())) {
+        byte[] pix = new byte[rowLength * getSizeY()];
+        in.read(pix);
+        setLastPlane(planeIndex, pix, getSizeY());
+      }
+      if (getRGBChannelCount() == 1) {
+        copyChannel(lastPlane, rowLength, x, y, w, h, bpp, buf);
+      }
+      else {
+        copyPixels(x, y, w, h, bpp, scanlinePad, lastPlane, buf, split);
+      }
     }
     else if (split) {
       // one padding pixel per row total, instead of one padding pixel
@@ -342,8 +373,10 @@ public class ND2Reader extends SubResolutionFormatReader {
   @Override
   public void close(boolean fileOnly) throws IOException {
     super.close(fileOnly);
+    setLastPlane(-1, null, 0);
     if (!fileOnly) {
       offsets = null;
+      offsetsFile = null;
       isJPEG = isLossless = false;
       codec = null;
       tsT.clear();
@@ -374,6 +407,13 @@ public class ND2Reader extends SubResolutionFormatReader {
 
   // -- Internal FormatReader API methods --
 
+  /* @see loci.formats.FormatReader#getStreamFile(RandomAccessInputStream) */
+  @Override
+  protected String getStreamFile(RandomAccessInputStream s) {
+    if (s == in && offsetsFile != null) return offsetsFile;
+    return super.getStreamFile(s);
+  }
+
   /* @see loci.formats.FormatReader#getAvailableOptions() */
   @Override
   protected ArrayList<String> getAvailableOptions() {
@@ -2612,6 +2652,94 @@ public class ND2Reader extends SubResolutionFormatReader {
     return isJPEG ? new JPEG2000Codec() : new ZlibCodec();
   }
 
+  /**
+   * Decompresses the given plane, reusing the most recently decompressed
+   * plane if possible.  Zlib-compressed planes without row padding are only
+   * decompressed as far as the last requested row.
+   */
+  private byte[] decompressPlane(int planeIndex, CodecOptions options,
+    int rows, int pixel, int scanlinePad)
+    throws FormatException, IOException
+  {
+    if (isLastPlane(planeIndex, rows)) {
+      return lastPlane;
+    }
+    byte[] t;
+    int decodedRows = getSizeY();
+    if (isLossless && scanlinePad == 0 && rows < getSizeY()) {
+      t = inflate(rows * getSizeX() * pixel);
+      decodedRows = rows;
+    }
+    else {
+      if (codec == null) codec = createCodec(isJPEG);
+      t = codec.decompress(in, options);
+    }
+    setLastPlane(planeIndex, t, decodedRows);
+    return t;
+  }
+
+  /**
+   * Inflates at most the given number of bytes from the zlib stream at the
+   * current file pointer.
+   */
+  private byte[] inflate(int length) throws IOException {
+    byte[] t = new byte[length];
+    int n = 0;
+    Inflater inflater = new Inflater();
+    try {
+      // NB: the stream is not closed, as that would close the file
+      InflaterInputStream s = new InflaterInputStream(in, inflater, 8192);
+      while (n < length) {
+        int r = s.read(t, n, length - n);
+        if (r < 0) break;
+        n += r;
+      }
+    }
+    finally {
+      inflater.end();
+    }
+    return n < length ? Arrays.copyOf(t, n) : t;
+  }
+
+  private boolean isLastPlane(int planeIndex, int rows) {
+    return lastPlane != null && lastPlaneSeries == getSeries() &&
+      lastPlaneIndex == planeIndex && lastPlaneRows >= rows;
+  }
+
+  private void setLastPlane(int planeIndex, byte[] plane, int rows) {
+    lastPlane = plane;
+    lastPlaneSeries = plane == null ? -1 : getSeries();
+    lastPlaneIndex = planeIndex;
+    lastPlaneRows = rows;
+  }
+
+  /**
+   * Copies the region of the current channel out of a plane in which all
+   * channels are interleaved, without splitting the whole plane first.
+   */
+  private void copyChannel(byte[] pix, int rowLength, int x, int y, int w,
+    int h, int bpp, byte[] buf)
+  {
+    int pixel = bpp * getEffectiveSizeC();
+    for (int row=0; row<h; row++) {
+      int src = (y + row) * rowLength + x * pixel + lastChannel * bpp;
+      if (src + (w - 1) * pixel + bpp > pix.length) {
+        break;
+      }
+      int dest = row * w * bpp;
+      if (bpp == 1) {
+        for (int col=0; col<w; col++) {
+          buf[dest + col] = pix[src + col * pixel];
+        }
+      }
+      else {
+        for (int col=0; col<w; col++) {
+          System.arraycopy(pix, src + col * pixel, buf, dest + col * bpp, bpp);
+        }
+      }
+    }
+  }
+
   private void copyPixels(int x, int y, int w, int h, int bpp, int scanlinePad,
     byte[] pix, byte[] buf, boolean split)
     throws IOException
@@ -2835,6 +2963,7 @@ public class ND2Reader extends SubResolutionFormatReader {
   public void setOffsets(String file, long[][] newOffsets) throws IOException {
     close(true);
     in = new RandomAccessInputStream(file);
+    offsetsFile = file;
     offsets = newOffsets;
   }
 
@@ -29,6 +29,7 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 
 import loci.common.DataTools;
+import loci.common.GZipHandle;
 import loci.common.Location;
 import loci.common.RandomAccessInputStream;
 import loci.formats.CoreMetadata;
@@ -36,6 +37,7 @@ import loci.formats.FormatException;
 import loci.formats.FormatReader;
 import loci.formats.FormatTools;
 import loci.formats.MetadataTools;
+import loci.formats.codec.DeflateIndex;
 import loci.formats.meta.MetadataStore;
 
 import ome.units.quantity.Length;
@@ -72,6 +74,9 @@ public class NiftiReader extends FormatReader {
   /** File containing the pixel data. */
   private transient RandomAccessInputStream pixelFile;
 
+  /** Index into the pixel data, if the pixel file is gzip-compressed. */
+  private transient DeflateIndex gzipIndex;
+
   private String pixelsFilename;
   private short nDimensions;
   private String description;
@@ -149,6 +154,23 @@ public class NiftiReader extends FormatReader {
     long planeSize = FormatTools.getPlaneSize(this);
     long newOffset = pixelOffset + no * planeSize;
 
+    if (gzipIndex == null && GZipHandle.isGZipFile(pixelsFilename)) {
+      gzipIndex = new DeflateIndex(pixelsFilename, 0, DeflateIndex.Format.GZIP);
+      gzipIndex.setIndexFile(
+        DeflateIndex.getIndexFile(getMetadataOptions(), pixelsFilename));
+    }
+    if (gzipIndex != null) {
+      // decompress only the requested rows, starting from the nearest
+      // access point instead of the start of the file
+      int rowLen = FormatTools.getPlaneSize(this, getSizeX(), 1);
+      byte[] rows = new byte[rowLen * h];
+      gzipIndex.readFully(newOffset + (long) y * rowLen, rows, 0, rows.length);
+      try (RandomAccessInputStream s = new RandomAccessInputStream(rows)) {
+        readPlane(s, x, 0, w, h, 0, getSizeX(), h, buf);
+      }
+      return buf;
+    }
+
     if (pixelFile.getFilePointer() > newOffset) {
       // force the stream to reset, in case of GZIP data
       // see https://github.com/ome/bioformats/pull/2508#issuecomment-237065726
@@ -182,6 +204,10 @@ public class NiftiReader extends FormatReader {
   public void close(boolean fileOnly) throws IOException {
     super.close(fileOnly);
     if (pixelFile != null) pixelFile.close();
+    if (gzipIndex != null) {
+      gzipIndex.close();
+      gzipIndex = null;
+    }
     if (!fileOnly) {
       pixelOffset = 0;
       pixelFile = null;
@@ -50,6 +50,7 @@ public class VarianFDFReader extends FormatReader {
   // -- Fields --
 
   private final List<String> files = new ArrayList<String>();
+  private String currentFile;
   private long[] pixelOffsets;
   private double pixelSizeX;
   private double pixelSizeY;
@@ -99,7 +100,8 @@ public class VarianFDFReader extends FormatReader {
         if (in != null) {
           in.close();
         }
-        in = new RandomAccessInputStream(files.get(no));
+        currentFile = files.get(no);
+        in = new RandomAccessInputStream(currentFile);
         in.order(isLittleEndian());
       }
       in.seek(pixelOffsets[no]);
@@ -131,6 +133,7 @@ public class VarianFDFReader extends FormatReader {
     if (!fileOnly) {
       pixelOffsets = null;
       files.clear();
+      currentFile = null;
       pixelSizeX = 0d;
       pixelSizeY = 0d;
       pixelSizeZ = 0d;
@@ -143,6 +146,13 @@ public class VarianFDFReader extends FormatReader {
 
   // -- Internal FormatReader API methods --
 
+  /* @see loci.formats.FormatReader#getStreamFile(RandomAccessInputStream) */
+  @Override
+  protected String getStreamFile(RandomAccessInputStream s) {
+    if (s != in) return null;
+    return files.size() > 1 ? currentFile : currentId;
+  }
+
   /* @see loci.formats.FormatReader#initFile(String) */
   @Override
   protected void initFile(String id) throws FormatException, IOException {
@@ -31,10 +31,14 @@ import java.io.IOException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import javax.xml.parsers.DocumentBuilder;
 
 import loci.common.ByteArrayHandle;
@@ -97,9 +101,13 @@ public class ZeissCZIReader extends FormatReader {
   public static final boolean TRIM_DIMENSIONS_DEFAULT = false;
   public static final String RELATIVE_POSITIONS_KEY = "zeissczi.relative_positions";
   public static final boolean RELATIVE_POSITIONS_DEFAULT = false;
+  public static final String USE_DIRECTORY_KEY = "zeissczi.use_directory";
+  public static final boolean USE_DIRECTORY_DEFAULT = true;
 
   private static final int ALIGNMENT = 32;
   private static final int HEADER_SIZE = 32;
+  private static final int DIRECTORY_ENTRY_SIZE = 32;
+  private static final int DIMENSION_ENTRY_SIZE = 20;
   private static final String CZI_MAGIC_STRING = "ZISRAWFILE";
   private static final int BUFFER_SIZE = 512;
 
@@ -134,6 +142,12 @@ public class ZeissCZIReader extends FormatReader {
   private ArrayList<SubBlock> planes;
   private HashMap<Coordinate, ArrayList<Integer>> indexIntoPlanes =
     new HashMap<Coordinate, ArrayList<Integer>>();
+
+  /**
+   * SubBlocks grouped by core index and plane index; built from
+   * <code>planes</code> on the first call to openBytes.
+   */
+  private transient HashMap<Long, PlaneTiles> planeTiles;
   private int rotations = 1;
   private int positions = 1;
   private int illuminations = 1;
@@ -386,20 +400,43 @@ public class ZeissCZIReader extends FormatReader {
       while (baseResolution > 0 && core.get(baseResolution - 1).sizeX > core.get(baseResolution).sizeX) {
         baseResolution--;
       }
-      for (SubBlock plane : planes) {
-        if ((plane.planeIndex == no && ((maxResolution == 0 && plane.coreIndex == currentIndex) ||
-          (maxResolution > 0 && plane.coreIndex == baseResolution))) ||
-          (plane.planeIndex == previousChannel && validScanDim))
-        {
-          if (plane.row < minTileY) {
-            minTileY = plane.row;
-          }
-          if (plane.col < minTileX) {
-            minTileX = plane.col;
+      List<SubBlock> candidates = planes;
+      if (validScanDim) {
+        // every plane for the current channel is needed, regardless of
+        // core index, so the index cannot help here
+        for (SubBlock plane : planes) {
+          if ((plane.planeIndex == no && ((maxResolution == 0 && plane.coreIndex == currentIndex) ||
+            (maxResolution > 0 && plane.coreIndex == baseResolution))) ||
+            (plane.planeIndex == previousChannel && validScanDim))
+          {
+            if (plane.row < minTileY) {
+              minTileY = plane.row;
+            }
+            if (plane.col < minTileX) {
+              minTileX = plane.col;
+            }
           }
         }
       }
-      for (SubBlock plane : planes) {
+      else {
+        PlaneTiles base =
+          getPlaneTiles(maxResolution == 0 ? currentIndex : baseResolution, no);
+        if (base != null) {
+          minTileX = base.minCol;
+          minTileY = base.minRow;
+        }
+        PlaneTiles current = getPlaneTiles(currentIndex, no);
+        if (current == null) {
+          candidates = Collections.emptyList();
+        }
+        else if (prestitched != null && prestitched) {
+          candidates = current.getIntersectingBlocks(image, minTileX, minTileY);
+        }
+        else {
+          candidates = current.blocks;
+        }
+      }
+      for (SubBlock plane : candidates) {
         if ((plane.coreIndex == currentIndex && plane.planeIndex == no) ||
           (plane.planeIndex == previousChannel && validScanDim))
         {
@@ -409,27 +446,16 @@ public class ZeissCZIReader extends FormatReader {
           int realY = plane.y / res;
 
           if ((prestitched != null && prestitched) || validScanDim) {
-            Region tile = new Region(plane.col, plane.row, realX, realY);
+            Region tile =
+              getTileBounds(plane, minTileX, minTileY, validScanDim, no);
             if (validScanDim) {
-              tile.y += (no / getSizeC());
               image.height = scanDim;
             }
-            if (prestitched != null && prestitched && realX == getSizeX() && realY == getSizeY()) {
-              tile.x = 0;
-              tile.y = 0;
-            }
-            else if (prestitched != null && prestitched) {
-              // normalize the coordinates such that minimum row/col values are 0
-              tile.x -= minTileX;
-              tile.y -= minTileY;
-            }
-            tile.x /= res;
-            tile.y /= res;
 
             if (tile.intersects(image)) {
               emptyTile = false;
               compression = plane.directoryEntry.compression;
-              byte[] rawData = new SubBlock(plane).readPixelData();
+              byte[] rawData = copyForReading(plane).readPixelData();
               Region intersection = tile.intersection(image);
               int intersectionX = 0;
 
@@ -470,10 +496,10 @@ public class ZeissCZIReader extends FormatReader {
             // re-use the existing stream if we know there is only one file
             // this saves a little time over opening a new stream for every tile/plane
             if (pixels.size() == 0) {
-              rawData = new SubBlock(plane).readPixelData(in, new Region(x, y, w, h), buf);
+              rawData = copyForReading(plane).readPixelData(in, new Region(x, y, w, h), buf);
             }
             else {
-              rawData = new SubBlock(plane).readPixelData();
+              rawData = copyForReading(plane).readPixelData();
             }
             compression = plane.directoryEntry.compression;
             if (rawData.length > buf.length || pixels.size() > 0) {
@@ -571,6 +597,7 @@ public class ZeissCZIReader extends FormatReader {
       illuminationLabels = null;
       phaseLabels = null;
       indexIntoPlanes.clear();
+      planeTiles = null;
       parser = null;
       extraImages.clear();
       maxResolution = 0;
@@ -628,6 +655,7 @@ public class ZeissCZIReader extends FormatReader {
     optionsList.add(INCLUDE_ATTACHMENTS_KEY);
     optionsList.add(TRIM_DIMENSIONS_KEY);
     optionsList.add(RELATIVE_POSITIONS_KEY);
+    optionsList.add(USE_DIRECTORY_KEY);
     return optionsList;
   }
 
@@ -744,7 +772,7 @@ public class ZeissCZIReader extends FormatReader {
       int compression = planes.get(i).directoryEntry.compression;
       boolean isCompressed = compression == JPEGXR || compression == ZSTD_0 || compression == ZSTD_1;
       if (compression == UNCOMPRESSED || isCompressed) {
-        long size = planes.get(i).dataSize;
+        long size = planes.get(i).getDataSize(bpp);
         if (size < planeSize || planeSize >= Integer.MAX_VALUE || size < 0) {
           // check for reduced resolution in the pyramid
           DimensionEntry[] entries = planes.get(i).directoryEntry.dimensionEntries;
@@ -1355,6 +1383,11 @@ public class ZeissCZIReader extends FormatReader {
 
     store.setInstrumentID(MetadataTools.createLSID("Instrument", 0), 0);
 
+    // stage positions and timestamps are stored in the SubBlock headers
+    if (getMetadataOptions().getMetadataLevel() != MetadataLevel.MINIMUM) {
+      readSubBlockHeaders();
+    }
+
     int indexLength = String.valueOf(getSeriesCount()).length();
     int positionIndex = -1;
     for (int i=0; i<getSeriesCount(); i++) {
@@ -1780,27 +1813,284 @@ public class ZeissCZIReader extends FormatReader {
     return RELATIVE_POSITIONS_DEFAULT;
   }
 
+  public boolean useDirectory() {
+    MetadataOptions options = getMetadataOptions();
+    if (options instanceof DynamicMetadataOptions) {
+      return ((DynamicMetadataOptions) options).getBoolean(
+        USE_DIRECTORY_KEY, USE_DIRECTORY_DEFAULT);
+    }
+    return USE_DIRECTORY_DEFAULT;
+  }
+
   // -- Helper methods --
 
+  /**
+   * Get the SubBlocks for the given core index and plane index, building
+   * the index over all SubBlocks if necessary.
+   *
+   * @return the matching SubBlocks in file order, or null if there are none
+   */
+  private PlaneTiles getPlaneTiles(int coreIndex, int planeIndex) {
+    if (planeTiles == null) {
+      HashMap<Long, PlaneTiles> index = new HashMap<Long, PlaneTiles>();
+      for (SubBlock plane : planes) {
+        Long key = getPlaneKey(plane.coreIndex, plane.planeIndex);
+        PlaneTiles tiles = index.get(key);
+        if (tiles == null) {
+          tiles = new PlaneTiles();
+          index.put(key, tiles);
+        }
+        tiles.add(plane);
+      }
+      LOGGER.debug("indexed {} SubBlocks into {} planes",
+        planes.size(), index.size());
+      planeTiles = index;
+    }
+    return planeTiles.get(getPlaneKey(coreIndex, planeIndex));
+  }
+
+  private static Long getPlaneKey(int coreIndex, int planeIndex) {
+    return ((long) coreIndex << 32) | (planeIndex & 0xffffffffL);
+  }
+
+  /**
+   * Calculate the bounds of the given SubBlock in the current resolution's
+   * coordinate space, for prestitched or line scan data.
+   */
+  private Region getTileBounds(SubBlock plane, int minTileX, int minTileY,
+    boolean validScanDim, int no)
+  {
+    int res = (int) Math.pow(scaleFactor, plane.resolutionIndex);
+    int realX = plane.x / res;
+    int realY = plane.y / res;
+
+    Region tile = new Region(plane.col, plane.row, realX, realY);
+    if (validScanDim) {
+      tile.y += (no / getSizeC());
+    }
+    if (prestitched != null && prestitched && realX == getSizeX() && realY == getSizeY()) {
+      tile.x = 0;
+      tile.y = 0;
+    }
+    else if (prestitched != null && prestitched) {
+      // normalize the coordinates such that minimum row/col values are 0
+      tile.x -= minTileX;
+      tile.y -= minTileY;
+    }
+    tile.x /= res;
+    tile.y /= res;
+    return tile;
+  }
+
   private void readSegments(String id) throws IOException {
     if (in != null) {
       in.close();
     }
     in = new RandomAccessInputStream(id, BUFFER_SIZE);
     in.order(isLittleEndian());
+
+    if (useDirectory()) {
+      List<Segment> indexed = null;
+      try {
+        indexed = readDirectorySegments(id);
+      }
+      catch (IOException e) {
+        LOGGER.debug("Could not read directory in {}", id, e);
+      }
+      if (indexed != null) {
+        for (Segment segment : indexed) {
+          addSegment(segment);
+        }
+        return;
+      }
+      LOGGER.debug("Directory not usable; reading all segments in {}", id);
+      in.seek(0);
+    }
+
     while (in.getFilePointer() < in.length()) {
       Segment segment = readSegment(id);
       if (segment == null) {
         break;
       }
-      segments.add(segment);
+      addSegment(segment);
+    }
+  }
+
+  private void addSegment(Segment segment) throws IOException {
+    segments.add(segment);
+
+    if (segment instanceof SubBlock) {
+      planes.add((SubBlock) segment);
+      LOGGER.trace("plane #{} = {}", planes.size() - 1, segment);
+    }
+    segment.close();
+  }
+
+  /**
+   * Read only the segments referenced by the file header, i.e. the
+   * SubBlock directory, the metadata segment and the attachment directory,
+   * instead of walking every segment in the file.  Deleted and unreferenced
+   * segments are never visited.  SubBlocks are built from their directory
+   * entries, and each SubBlock header is only read when it is needed.
+   *
+   * @return the referenced segments in file order, or null if the header or
+   *         directory is missing or inconsistent, or the header has an
+   *         update pending, and the whole file should be scanned instead
+   */
+  private List<Segment> readDirectorySegments(String id) throws IOException {
+    long length = in.length();
+    in.seek(0);
+    Segment first = readSegment(id);
+    if (!(first instanceof FileHeader)) {
+      return null;
+    }
+    FileHeader header = (FileHeader) first;
+    if (header.updatePending) {
+      // the directory may not reflect the most recent changes to the file
+      LOGGER.debug("Update pending in {}; scanning all segments", id);
+      return null;
+    }
+    List<Segment> rtn = new ArrayList<Segment>();
+    rtn.add(header);
+
+    Segment directory = readSegmentAt(id, header.directoryPosition, length);
+    if (!(directory instanceof Directory)) {
+      return null;
+    }
+    rtn.add(directory);
+    DirectoryEntry[] entries = ((Directory) directory).entries;
+    if (entries == null || entries.length == 0) {
+      return null;
+    }
+
+    // visit SubBlocks in file order, so that planes are ordered
+    // in the same way as a sequential scan would order them
+    entries = entries.clone();
+    Arrays.sort(entries, new Comparator<DirectoryEntry>() {
+      @Override
+      public int compare(DirectoryEntry a, DirectoryEntry b) {
+        return Long.compare(a.filePosition, b.filePosition);
+      }
+    });
+    for (DirectoryEntry entry : entries) {
+      if (entry.filePart != header.filePart ||
+        !isSegmentPosition(entry.filePosition, length))
+      {
+        return null;
+      }
+      rtn.add(new SubBlock(id, entry));
+    }
 
-      if (segment instanceof SubBlock) {
-        planes.add((SubBlock) segment);
-        LOGGER.trace("plane #{} = {}", planes.size() - 1, segment);
+    if (header.metadataPosition > 0) {
+      Segment metadata = readSegmentAt(id, header.metadataPosition, length);
+      if (!(metadata instanceof Metadata)) {
+        return null;
       }
-      segment.close();
+      rtn.add(metadata);
     }
+
+    if (header.attachmentDirectoryPosition > 0) {
+      Segment attachmentDir =
+        readSegmentAt(id, header.attachmentDirectoryPosition, length);
+      if (!(attachmentDir instanceof AttachmentDirectory)) {
+        return null;
+      }
+      rtn.add(attachmentDir);
+      AttachmentEntry[] attachments =
+        ((AttachmentDirectory) attachmentDir).entries;
+      if (attachments != null) {
+        for (AttachmentEntry entry : attachments) {
+          if (entry.filePart != header.filePart) {
+            return null;
+          }
+          Segment attachment = readSegmentAt(id, entry.filePosition, length);
+          if (!(attachment instanceof Attachment)) {
+            return null;
+          }
+          rtn.add(attachment);
+        }
+      }
+    }
+
+    Collections.sort(rtn, new Comparator<Segment>() {
+      @Override
+      public int compare(Segment a, Segment b) {
+        return Long.compare(a.startingPosition, b.startingPosition);
+      }
+    });
+    LOGGER.debug("Read {} SubBlocks via directory", entries.length);
+    return rtn;
+  }
+
+  /**
+   * Read the segment at the given offset, or return null if the offset
+   * is not a valid segment position.
+   */
+  private Segment readSegmentAt(String id, long position, long length)
+    throws IOException
+  {
+    if (!isSegmentPosition(position, length)) {
+      return null;
+    }
+    in.seek(position);
+    return readSegment(id);
+  }
+
+  private boolean isSegmentPosition(long position, long length) {
+    return position > 0 && position < length && (position % ALIGNMENT) == 0;
+  }
+
+  /**
+   * Read the headers of SubBlocks that were found via the directory,
+   * in file order, so that their stage positions and timestamps are known.
+   */
+  private void readSubBlockHeaders() throws IOException {
+    List<SubBlock> unread = new ArrayList<SubBlock>();
+    for (SubBlock plane : planes) {
+      if (!plane.headerRead) {
+        unread.add(plane);
+      }
+    }
+    Collections.sort(unread, new Comparator<SubBlock>() {
+      @Override
+      public int compare(SubBlock a, SubBlock b) {
+        int file = a.filename.compareTo(b.filename);
+        if (file != 0) {
+          return file;
+        }
+        return Long.compare(a.startingPosition, b.startingPosition);
+      }
+    });
+
+    RandomAccessInputStream s = null;
+    String file = null;
+    try {
+      for (SubBlock plane : unread) {
+        if (!plane.filename.equals(file)) {
+          if (s != null) {
+            s.close();
+          }
+          file = plane.filename;
+          s = new RandomAccessInputStream(file, BUFFER_SIZE);
+        }
+        plane.readHeader(s);
+      }
+    }
+    finally {
+      if (s != null) {
+        s.close();
+      }
+    }
+  }
+
+  /**
+   * Copy the given SubBlock so that its pixels can be read, reading its
+   * header first if it was found via the directory.
+   */
+  private SubBlock copyForReading(SubBlock plane) throws IOException {
+    // re-use the existing stream if we know there is only one file
+    plane.readHeader(pixels.size() == 0 ? in : null);
+    return new SubBlock(plane);
   }
 
   private void readAttachments() throws FormatException, IOException {
@@ -3949,7 +4239,9 @@ public class ZeissCZIReader extends FormatReader {
         s.skipBytes(4); // reserved 1
         s.skipBytes(4); // reserved 2
         primaryFileGUID = s.readLong(); // 16
+        s.skipBytes(8);
         fileGUID = s.readLong(); // 16
+        s.skipBytes(8);
         filePart = s.readInt();
 
         directoryPosition = s.readLong();
@@ -4018,6 +4310,12 @@ public class ZeissCZIReader extends FormatReader {
 
     private long dataOffset;
 
+    /**
+     * False for a SubBlock built from the directory, until its header has
+     * been read by {@link #readHeader(RandomAccessInputStream)}.
+     */
+    private boolean headerRead = true;
+
     private Length stageX, stageY, stageZ;
     private Double timestamp, exposureTime;
 
@@ -4028,6 +4326,15 @@ public class ZeissCZIReader extends FormatReader {
       super();
     }
 
+    /** Builds a SubBlock from its directory entry, without reading it. */
+    public SubBlock(String filename, DirectoryEntry entry) {
+      super(filename);
+      this.startingPosition = entry.filePosition;
+      this.id = "ZISRAWSUBBLOCK";
+      this.directoryEntry = entry;
+      this.headerRead = false;
+    }
+
     public SubBlock(SubBlock model) {
       super(model);
       this.metadataSize = model.metadataSize;
@@ -4038,6 +4345,7 @@ public class ZeissCZIReader extends FormatReader {
       this.coreIndex = model.coreIndex;
       this.planeIndex = model.planeIndex;
       this.dataOffset = model.dataOffset;
+      this.headerRead = model.headerRead;
       this.stageX = model.stageX;
       this.stageY = model.stageY;
       this.timestamp = model.timestamp;
@@ -4067,7 +4375,14 @@ public class ZeissCZIReader extends FormatReader {
         metadataSize = s.readInt();
         attachmentSize = s.readInt();
         dataSize = s.readLong();
-        directoryEntry = new DirectoryEntry(s);
+        if (directoryEntry == null) {
+          directoryEntry = new DirectoryEntry(s);
+        }
+        else {
+          // already read from the directory
+          s.skipBytes(DIRECTORY_ENTRY_SIZE +
+            directoryEntry.dimensionCount * DIMENSION_ENTRY_SIZE);
+        }
         s.skipBytes((int) Math.max(256 - (s.getFilePointer() - fp), 0));
 
         metadata = s.readString(metadataSize).trim();
@@ -4087,7 +4402,52 @@ public class ZeissCZIReader extends FormatReader {
 
     // -- SubBlock API methods --
 
+    /**
+     * Reads the header of a SubBlock that was built from the directory,
+     * using the given stream, or a new stream if it is null.
+     */
+    public synchronized void readHeader(RandomAccessInputStream s)
+      throws IOException
+    {
+      if (headerRead) {
+        return;
+      }
+      stream = s;
+      try {
+        fillInData();
+      }
+      finally {
+        stream = null;
+      }
+      headerRead = true;
+    }
+
+    /**
+     * Returns the number of bytes of pixel data.  If the header has not
+     * been read, the size of uncompressed data is calculated from the
+     * stored dimensions in the directory entry, and compressed data is
+     * assumed to be smaller than a plane, so 0 is returned.
+     *
+     * @param bpp the number of bytes per pixel, including RGB channels
+     */
+    public long getDataSize(int bpp) {
+      if (headerRead) {
+        return dataSize;
+      }
+      if (directoryEntry.compression != UNCOMPRESSED) {
+        return 0;
+      }
+      long size = bpp;
+      for (DimensionEntry dimension : directoryEntry.dimensionEntries) {
+        if (dimension != null) {
+          size *= Math.max(dimension.storedSize, 1);
+        }
+      }
+      return size;
+    }
+
     public byte[] readPixelData() throws FormatException, IOException {
+      readHeader(null);
       try (RandomAccessInputStream s = new RandomAccessInputStream(filename, (int) dataSize)) {
         return readPixelData(s);
       }
@@ -4098,6 +4458,7 @@ public class ZeissCZIReader extends FormatReader {
     }
 
     public byte[] readPixelData(RandomAccessInputStream s, Region tile, byte[] buf) throws FormatException, IOException {
+      readHeader(s);
       s.order(isLittleEndian());
       s.seek(dataOffset);
 
@@ -4607,6 +4968,99 @@ public class ZeissCZIReader extends FormatReader {
     public String filterSetRef;
   }
 
+  /**
+   * All SubBlocks with the same core index and plane index, in file order,
+   * along with a uniform grid over their bounds for fast region lookups.
+   */
+  class PlaneTiles {
+    public final ArrayList<SubBlock> blocks = new ArrayList<SubBlock>();
+    public int minRow = Integer.MAX_VALUE;
+    public int minCol = Integer.MAX_VALUE;
+
+    private HashMap<Long, ArrayList<Integer>> grid;
+    private int gridMinX, gridMinY;
+    private int cellWidth, cellHeight;
+
+    public void add(SubBlock plane) {
+      blocks.add(plane);
+      minRow = Math.min(minRow, plane.row);
+      minCol = Math.min(minCol, plane.col);
+      grid = null;
+    }
+
+    /**
+     * Get the SubBlocks whose bounds may intersect the given region,
+     * preserving file order so that overlapping tiles are drawn in the
+     * same order as a full scan.
+     */
+    public List<SubBlock> getIntersectingBlocks(Region region,
+      int minTileX, int minTileY)
+    {
+      if (grid == null || gridMinX != minTileX || gridMinY != minTileY) {
+        buildGrid(minTileX, minTileY);
+      }
+      BitSet matches = new BitSet(blocks.size());
+      int firstCol = Math.floorDiv(region.x, cellWidth);
+      int lastCol = Math.floorDiv(region.x + region.width - 1, cellWidth);
+      int firstRow = Math.floorDiv(region.y, cellHeight);
+      int lastRow = Math.floorDiv(region.y + region.height - 1, cellHeight);
+      for (int row=firstRow; row<=lastRow; row++) {
+        for (int col=firstCol; col<=lastCol; col++) {
+          ArrayList<Integer> cell = grid.get(getCellKey(row, col));
+          if (cell != null) {
+            for (Integer index : cell) {
+              matches.set(index);
+            }
+          }
+        }
+      }
+      List<SubBlock> rtn = new ArrayList<SubBlock>(matches.cardinality());
+      for (int i=matches.nextSetBit(0); i>=0; i=matches.nextSetBit(i + 1)) {
+        rtn.add(blocks.get(i));
+      }
+      return rtn;
+    }
+
+    private void buildGrid(int minTileX, int minTileY) {
+      Region[] bounds = new Region[blocks.size()];
+      cellWidth = 1;
+      cellHeight = 1;
+      for (int i=0; i<bounds.length; i++) {
+        bounds[i] = getTileBounds(blocks.get(i), minTileX, minTileY, false, 0);
+        cellWidth = Math.max(cellWidth, bounds[i].width);
+        cellHeight = Math.max(cellHeight, bounds[i].height);
+      }
+
+      grid = new HashMap<Long, ArrayList<Integer>>();
+      for (int i=0; i<bounds.length; i++) {
+        Region b = bounds[i];
+        if (b.width <= 0 || b.height <= 0) {
+          // cannot intersect anything
+          continue;
+        }
+        int lastRow = Math.floorDiv(b.y + b.height - 1, cellHeight);
+        int lastCol = Math.floorDiv(b.x + b.width - 1, cellWidth);
+        for (int row=Math.floorDiv(b.y, cellHeight); row<=lastRow; row++) {
+          for (int col=Math.floorDiv(b.x, cellWidth); col<=lastCol; col++) {
+            Long key = getCellKey(row, col);
+            ArrayList<Integer> cell = grid.get(key);
+            if (cell == null) {
+              cell = new ArrayList<Integer>();
+              grid.put(key, cell);
+            }
+            cell.add(i);
+          }
+        }
+      }
+      gridMinX = minTileX;
+      gridMinY = minTileY;
+    }
+
+    private Long getCellKey(int row, int col) {
+      return ((long) row << 32) | (col & 0xffffffffL);
+    }
+  }
+
   static class Coordinate {
     public int series;
     public int plane;
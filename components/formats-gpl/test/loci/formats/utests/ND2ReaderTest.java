@@ -0,0 +1,305 @@
+/*
+ * #%L
+ * OME Bio-Formats package for reading and converting biological file formats.
+ * %%
+ * Copyright (C) 2005 - 2017 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.formats.utests;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.zip.DeflaterOutputStream;
+
+import loci.common.Constants;
+import loci.formats.FormatTools;
+import loci.formats.in.ND2Reader;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Tests reading channels out of synthetic ND2 files in which the channels
+ * of each plane are interleaved in a single block.
+ */
+public class ND2ReaderTest {
+
+  private static final int SIZE_X = 24;
+  private static final int SIZE_Y = 16;
+  private static final int SIZE_C = 2;
+  private static final int PLANES = 6;
+
+  private static final byte[] BLOCK_SIGNATURE = {-38, -50, -66, 10};
+
+  private File dir;
+
+  @BeforeMethod
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory(
+      ND2ReaderTest.class.getName() + ".").toFile();
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    for (File f : dir.listFiles()) {
+      f.delete();
+    }
+    dir.delete();
+  }
+
+  @DataProvider(name = "compression")
+  public Object[][] createCompression() {
+    return new Object[][] {{true}, {false}};
+  }
+
+  @Test(dataProvider = "compression")
+  public void testChannelsOutOfOrder(boolean compressed) throws Exception {
+    String id = createFile("test.nd2", compressed, false, 0);
+    try (ND2Reader reader = open(id)) {
+      assertEquals(reader.getSeriesCount(), 1);
+      assertEquals(reader.getSizeX(), SIZE_X);
+      assertEquals(reader.getSizeY(), SIZE_Y);
+      assertEquals(reader.getSizeC(), SIZE_C);
+      assertEquals(reader.getSizeT(), PLANES);
+      assertEquals(reader.getPixelType(), FormatTools.UINT16);
+      assertEquals(reader.isRGB(), false);
+
+      // last channel first, last plane first
+      for (int t=PLANES-1; t>=0; t--) {
+        for (int c=SIZE_C-1; c>=0; c--) {
+          assertEquals(reader.openBytes(reader.getIndex(0, c, t)),
+            getPlane(0, t, c, 0, 0, SIZE_X, SIZE_Y));
+        }
+      }
+
+      // channels of different planes in turn, and sub-regions
+      int[][] reads = {{3, 1}, {0, 0}, {3, 0}, {5, 1}, {0, 1}, {5, 0}};
+      for (int[] read : reads) {
+        int no = reader.getIndex(0, read[1], read[0]);
+        assertEquals(reader.openBytes(no, 5, 3, 11, 7),
+          getPlane(0, read[0], read[1], 5, 3, 11, 7));
+        assertEquals(reader.openBytes(no),
+          getPlane(0, read[0], read[1], 0, 0, SIZE_X, SIZE_Y));
+      }
+    }
+  }
+
+  @Test(dataProvider = "compression")
+  public void testSwitchingSeries(boolean compressed) throws Exception {
+    String id = createFile("test.nd2", compressed, true, 0);
+    try (ND2Reader reader = open(id)) {
+      // the stage positions place each plane in its own series
+      assertEquals(reader.getSeriesCount(), PLANES);
+      assertEquals(reader.getImageCount(), SIZE_C);
+
+      // every series has the same plane index
+      int[] series = {0, 3, 1, 5, 0, 2, 4, 3};
+      for (int c=SIZE_C-1; c>=0; c--) {
+        for (int s : series) {
+          reader.setSeries(s);
+          assertEquals(reader.openBytes(c),
+            getPlane(0, s, c, 0, 0, SIZE_X, SIZE_Y));
+          reader.setSeries((s + 1) % PLANES);
+          assertEquals(reader.openBytes(c, 2, 9, 8, 4),
+            getPlane(0, (s + 1) % PLANES, c, 2, 9, 8, 4));
+        }
+      }
+    }
+  }
+
+  @Test(dataProvider = "compression")
+  public void testSwitchingFiles(boolean compressed) throws Exception {
+    String first = createFile("first.nd2", compressed, false, 0);
+    String second = createFile("second.nd2", compressed, false, 1);
+    try (ND2Reader reader = new ND2Reader()) {
+      for (int i=0; i<2; i++) {
+        reader.setId(first);
+        assertEquals(reader.openBytes(reader.getIndex(0, 1, 2)),
+          getPlane(0, 2, 1, 0, 0, SIZE_X, SIZE_Y));
+        // the same plane of another file
+        reader.setId(second);
+        assertEquals(reader.openBytes(reader.getIndex(0, 1, 2)),
+          getPlane(1, 2, 1, 0, 0, SIZE_X, SIZE_Y));
+        assertEquals(reader.openBytes(reader.getIndex(0, 0, 2)),
+          getPlane(1, 2, 0, 0, 0, SIZE_X, SIZE_Y));
+        reader.close();
+      }
+    }
+  }
+
+  @Test
+  public void testPartialInflate() throws Exception {
+    String id = createFile("test.nd2", true, false, 0);
+    try (ND2Reader partial = open(id); ND2Reader full = open(id)) {
+      int no = partial.getIndex(0, 1, 4);
+      byte[] plane = full.openBytes(no);
+      assertEquals(plane, getPlane(0, 4, 1, 0, 0, SIZE_X, SIZE_Y));
+
+      // only the first rows are decoded, then more rows are needed
+      int[][] regions = {
+        {3, 0, 10, 4}, {0, 2, SIZE_X, 2}, {3, 10, 10, 6}, {7, 1, 9, 5},
+        {0, 0, SIZE_X, SIZE_Y}
+      };
+      for (int[] r : regions) {
+        byte[] region = partial.openBytes(no, r[0], r[1], r[2], r[3]);
+        assertEquals(region, full.openBytes(no, r[0], r[1], r[2], r[3]));
+        assertEquals(region, getPlane(0, 4, 1, r[0], r[1], r[2], r[3]));
+      }
+
+      // the other channel of a partially decoded plane
+      int other = partial.getIndex(0, 0, 5);
+      assertEquals(partial.openBytes(other, 0, 0, 6, 2),
+        getPlane(0, 5, 0, 0, 0, 6, 2));
+      assertEquals(partial.openBytes(partial.getIndex(0, 1, 5)),
+        getPlane(0, 5, 1, 0, 0, SIZE_X, SIZE_Y));
+      assertEquals(partial.openBytes(other),
+        full.openBytes(other));
+    }
+  }
+
+  // -- Helper methods --
+
+  private ND2Reader open(String id) throws Exception {
+    ND2Reader reader = new ND2Reader();
+    reader.setId(id);
+    return reader;
+  }
+
+  /** Gets the value of a pixel in a file written by {@link #createFile}. */
+  private static int getValue(int seed, int plane, int c, int x, int y) {
+    return seed * 8192 + (plane * SIZE_C + c) * 512 + y * SIZE_X + x;
+  }
+
+  /** Gets the expected little-endian bytes of a region of one channel. */
+  private static byte[] getPlane(int seed, int plane, int c,
+    int x, int y, int w, int h)
+  {
+    ByteBuffer pixels =
+      ByteBuffer.allocate(w * h * 2).order(ByteOrder.LITTLE_ENDIAN);
+    for (int row=y; row<y+h; row++) {
+      for (int col=x; col<x+w; col++) {
+        pixels.putShort((short) getValue(seed, plane, c, col, row));
+      }
+    }
+    return pixels.array();
+  }
+
+  /**
+   * Writes an ND2 file with an attributes block and one image block per
+   * plane, in which the channels are interleaved.  If requested, the file
+   * also stores a different stage position for each plane, which makes
+   * each plane a separate series.
+   */
+  private String createFile(String name, boolean compressed,
+    boolean positions, int seed)
+    throws IOException
+  {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ByteArrayOutputStream attributes = new ByteArrayOutputStream();
+    writeAttribute(attributes, "uiWidth", SIZE_X);
+    writeAttribute(attributes, "uiHeight", SIZE_Y);
+    writeAttribute(attributes, "uiComp", SIZE_C);
+    writeAttribute(attributes, "uiBpcInMemory", 16);
+    writeAttribute(attributes, "uiBpcSignificant", 16);
+    writeBlock(out, "ImageAttributesLV!", attributes.toByteArray());
+
+    for (int plane=0; plane<PLANES; plane++) {
+      ByteBuffer pixels = ByteBuffer.allocate(SIZE_X * SIZE_Y * SIZE_C * 2);
+      pixels.order(ByteOrder.LITTLE_ENDIAN);
+      for (int y=0; y<SIZE_Y; y++) {
+        for (int x=0; x<SIZE_X; x++) {
+          for (int c=0; c<SIZE_C; c++) {
+            pixels.putShort((short) getValue(seed, plane, c, x, y));
+          }
+        }
+      }
+      byte[] data = pixels.array();
+      if (compressed) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DeflaterOutputStream zlib = new DeflaterOutputStream(bytes)) {
+          zlib.write(data);
+        }
+        data = bytes.toByteArray();
+      }
+      // each plane starts with an 8 byte timestamp
+      ByteArrayOutputStream image = new ByteArrayOutputStream();
+      image.write(new byte[8]);
+      image.write(data);
+      writeBlock(out, "ImageDataSeq|" + plane + "!", image.toByteArray());
+    }
+
+    if (positions) {
+      for (String axis : new String[] {"X", "Y"}) {
+        // the positions are read from the end of the block, in 8 byte
+        // steps from the start of the block name
+        String blockName = "CustomData|" + axis + "!";
+        int pad = (8 - blockName.length() % 8) % 8;
+        ByteBuffer data = ByteBuffer.allocate(pad + PLANES * 8);
+        data.order(ByteOrder.LITTLE_ENDIAN);
+        data.position(pad);
+        for (int plane=0; plane<PLANES; plane++) {
+          data.putDouble(plane * 10.0 + (axis.equals("Y") ? 1 : 0));
+        }
+        writeBlock(out, blockName, data.array());
+      }
+    }
+
+    File file = new File(dir, name);
+    Files.write(file.toPath(), out.toByteArray());
+    return file.getAbsolutePath();
+  }
+
+  private static void writeBlock(ByteArrayOutputStream out, String name,
+    byte[] data)
+    throws IOException
+  {
+    byte[] nameBytes = name.getBytes(Constants.ENCODING);
+    ByteBuffer header = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+    header.put(BLOCK_SIGNATURE);
+    header.putInt(nameBytes.length);
+    header.putLong(data.length);
+    out.write(header.array());
+    out.write(nameBytes);
+    out.write(data);
+  }
+
+  /** Writes a 32-bit unsigned attribute in the ND2 "light variant" form. */
+  private static void writeAttribute(ByteArrayOutputStream out, String name,
+    int value)
+    throws IOException
+  {
+    out.write(3);
+    out.write(name.length() + 1);
+    out.write((name + "\0").getBytes("UTF-16LE"));
+    ByteBuffer bytes = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+    bytes.putInt(value);
+    out.write(bytes.array());
+  }
+
+}
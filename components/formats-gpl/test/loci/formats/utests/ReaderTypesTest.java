@@ -0,0 +1,92 @@
+/*
+ * #%L
+ * OME Bio-Formats package for reading and converting biological file formats.
+ * %%
+ * Copyright (C) 2005 - 2017 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.formats.utests;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import loci.common.Constants;
+import loci.formats.ClassList;
+import loci.formats.IFormatReader;
+import loci.formats.ImageReader;
+
+import org.testng.annotations.Test;
+
+/**
+ * Checks that reader-types.txt, which lets ImageReader skip readers without
+ * instantiating them, matches the readers listed in readers.txt.
+ */
+public class ReaderTypesTest {
+
+  private static final String MESSAGE = "reader-types.txt is out of date; " +
+    "regenerate it with 'java loci.formats.ImageReader <file>'";
+
+  @Test
+  public void testReaderTypesUpToDate() throws IOException {
+    Map<String, String> declared = readDeclaredTypes();
+    ClassList<IFormatReader> classes = ImageReader.getDefaultReaderClasses();
+
+    Set<String> current = new HashSet<String>();
+    for (String line : ImageReader.getReaderTypes(classes)) {
+      String name = line.substring(0, line.indexOf(' '));
+      current.add(name);
+      assertEquals(declared.get(name), line, MESSAGE);
+    }
+    for (Class<? extends IFormatReader> c : classes.getClasses()) {
+      if (declared.containsKey(c.getName())) {
+        assertTrue(current.contains(c.getName()), MESSAGE);
+      }
+    }
+  }
+
+  private Map<String, String> readDeclaredTypes() throws IOException {
+    InputStream stream =
+      ImageReader.class.getResourceAsStream("reader-types.txt");
+    assertNotNull(stream);
+    Map<String, String> types = new HashMap<String, String>();
+    try (BufferedReader in = new BufferedReader(
+      new InputStreamReader(stream, Constants.ENCODING)))
+    {
+      String line;
+      while ((line = in.readLine()) != null) {
+        if (line.startsWith("#") || line.trim().isEmpty()) continue;
+        types.put(line.substring(0, line.indexOf(' ')), line);
+      }
+    }
+    return types;
+  }
+
+}
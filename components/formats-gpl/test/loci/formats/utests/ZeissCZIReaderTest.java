@@ -0,0 +1,292 @@
+/*
+ * #%L
+ * OME Bio-Formats package for reading and converting biological file formats.
+ * %%
+ * Copyright (C) 2005 - 2017 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.formats.utests;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import loci.common.ByteArrayHandle;
+import loci.common.Constants;
+import loci.common.Location;
+import loci.formats.FormatTools;
+import loci.formats.MetadataTools;
+import loci.formats.in.DynamicMetadataOptions;
+import loci.formats.in.MetadataLevel;
+import loci.formats.in.ZeissCZIReader;
+import loci.formats.meta.IMetadata;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests reading a synthetic CZI file via the SubBlock directory and via a
+ * scan of all segments.
+ */
+public class ZeissCZIReaderTest {
+
+  private static final int SIZE_X = 32;
+  private static final int SIZE_Y = 16;
+  private static final int SIZE_C = 2;
+  private static final int SIZE_Z = 2;
+  private static final int PLANE_SIZE = SIZE_X * SIZE_Y * 2;
+
+  /** Positions of the SubBlock segments in the synthetic file. */
+  private final List<Long> subBlocks = new ArrayList<Long>();
+
+  private File dir;
+  private String id;
+  private SeekRecorder handle;
+
+  @BeforeMethod
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory(
+      ZeissCZIReaderTest.class.getName() + ".").toFile();
+    File file = new File(dir, "test.czi");
+    byte[] bytes = createFile();
+    Files.write(file.toPath(), bytes);
+    id = file.getAbsolutePath();
+    handle = new SeekRecorder(bytes);
+    Location.mapFile(id, handle);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    Location.mapFile(id, null);
+    for (File f : dir.listFiles()) {
+      f.delete();
+    }
+    dir.delete();
+  }
+
+  @Test
+  public void testDirectoryMatchesScan() throws Exception {
+    try (ZeissCZIReader scanned = open(false, MetadataLevel.ALL);
+      ZeissCZIReader indexed = open(true, MetadataLevel.ALL))
+    {
+      for (ZeissCZIReader reader : new ZeissCZIReader[] {scanned, indexed}) {
+        assertEquals(reader.getSeriesCount(), 1);
+        assertEquals(reader.getSizeX(), SIZE_X);
+        assertEquals(reader.getSizeY(), SIZE_Y);
+        assertEquals(reader.getSizeC(), SIZE_C);
+        assertEquals(reader.getSizeZ(), SIZE_Z);
+        assertEquals(reader.getPixelType(), FormatTools.UINT16);
+
+        IMetadata store = (IMetadata) reader.getMetadataStore();
+        for (int no=0; no<reader.getImageCount(); no++) {
+          int[] zct = reader.getZCTCoords(no);
+          int block = zct[0] * SIZE_C + zct[1];
+          assertTrue(Arrays.equals(reader.openBytes(no), getPlane(block)));
+          // stage positions are only stored in the SubBlock headers
+          assertEquals(
+            store.getPlanePositionX(0, no).value().doubleValue(),
+            10.0 + block);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testHeadersReadLazily() throws Exception {
+    try (ZeissCZIReader reader = open(true, MetadataLevel.MINIMUM)) {
+      for (long position : subBlocks) {
+        assertFalse(handle.seeks.contains(position + 16),
+          "SubBlock header at " + position + " read during setId");
+      }
+
+      int no = reader.getIndex(1, 1, 0);
+      assertTrue(Arrays.equals(reader.openBytes(no), getPlane(3)));
+      assertTrue(handle.seeks.contains(subBlocks.get(3) + 16));
+      assertFalse(handle.seeks.contains(subBlocks.get(0) + 16));
+    }
+  }
+
+  @Test
+  public void testSubRegion() throws Exception {
+    try (ZeissCZIReader reader = open(true, MetadataLevel.MINIMUM)) {
+      byte[] region = reader.openBytes(1, 4, 2, 8, 3);
+      byte[] plane = getPlane(1);
+      for (int y=0; y<3; y++) {
+        for (int x=0; x<16; x++) {
+          assertEquals(region[y * 16 + x], plane[(y + 2) * SIZE_X * 2 + 8 + x]);
+        }
+      }
+    }
+  }
+
+  // -- Helper methods --
+
+  private ZeissCZIReader open(boolean useDirectory, MetadataLevel level)
+    throws Exception
+  {
+    DynamicMetadataOptions options = new DynamicMetadataOptions();
+    options.setMetadataLevel(level);
+    options.setBoolean(ZeissCZIReader.USE_DIRECTORY_KEY, useDirectory);
+    ZeissCZIReader reader = new ZeissCZIReader();
+    reader.setMetadataOptions(options);
+    reader.setMetadataStore(MetadataTools.createOMEXMLMetadata());
+    handle.seeks.clear();
+    reader.setId(id);
+    return reader;
+  }
+
+  /** Returns the little-endian uint16 pixels of the given SubBlock. */
+  private static byte[] getPlane(int block) {
+    ByteBuffer plane =
+      ByteBuffer.allocate(PLANE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    for (int i=0; i<SIZE_X * SIZE_Y; i++) {
+      plane.putShort((short) (block * 1000 + i));
+    }
+    return plane.array();
+  }
+
+  /**
+   * Creates a file with a file header, one uncompressed SubBlock per
+   * channel and Z section, and the SubBlock directory.
+   */
+  private byte[] createFile() throws IOException {
+    ByteBuffer b = ByteBuffer.allocate(65536).order(ByteOrder.LITTLE_ENDIAN);
+    int headerPosition = 0;
+    int directoryPositionOffset = 0;
+    startSegment(b, "ZISRAWFILE", 512);
+    b.putInt(1).putInt(0).putInt(0).putInt(0);
+    b.put(new byte[32]); // primary and file GUIDs
+    b.putInt(0); // file part
+    directoryPositionOffset = b.position();
+    b.putLong(0).putLong(0).putInt(0).putLong(0);
+    b.position(headerPosition + 32 + 512);
+
+    List<byte[]> entries = new ArrayList<byte[]>();
+    subBlocks.clear();
+    for (int z=0; z<SIZE_Z; z++) {
+      for (int c=0; c<SIZE_C; c++) {
+        int block = z * SIZE_C + c;
+        long position = b.position();
+        subBlocks.add(position);
+        byte[] metadata = ("<METADATA><Tags><StageXPosition>" +
+          (10 + block) + "</StageXPosition></Tags></METADATA>")
+          .getBytes(Constants.ENCODING);
+        byte[] entry = createEntry(position, c, z);
+        entries.add(entry);
+
+        startSegment(b, "ZISRAWSUBBLOCK",
+          align(256 + metadata.length + PLANE_SIZE));
+        int start = b.position();
+        b.putInt(metadata.length).putInt(0).putLong(PLANE_SIZE);
+        b.put(entry);
+        b.position(start + 256);
+        b.put(metadata);
+        b.put(getPlane(block));
+        b.position((int) position + 32 +
+          align(256 + metadata.length + PLANE_SIZE));
+      }
+    }
+
+    long directoryPosition = b.position();
+    int entryBytes = 0;
+    for (byte[] entry : entries) {
+      entryBytes += entry.length;
+    }
+    startSegment(b, "ZISRAWDIRECTORY", align(128 + entryBytes));
+    b.putInt(entries.size());
+    b.put(new byte[124]);
+    for (byte[] entry : entries) {
+      b.put(entry);
+    }
+    b.position((int) directoryPosition + 32 + align(128 + entryBytes));
+    b.putLong(directoryPositionOffset, directoryPosition);
+    return Arrays.copyOf(b.array(), b.position());
+  }
+
+  /** Creates a directory entry for a SubBlock. */
+  private static byte[] createEntry(long position, int c, int z) {
+    ByteBuffer b = ByteBuffer.allocate(32 + 4 * 20)
+      .order(ByteOrder.LITTLE_ENDIAN);
+    b.put((byte) 'D').put((byte) 'V');
+    b.putInt(1); // GRAY16
+    b.putLong(position);
+    b.putInt(0); // file part
+    b.putInt(0); // uncompressed
+    b.put((byte) 0); // pyramid type
+    b.put(new byte[5]);
+    b.putInt(4);
+    putDimension(b, "X", 0, SIZE_X);
+    putDimension(b, "Y", 0, SIZE_Y);
+    putDimension(b, "C", c, 1);
+    putDimension(b, "Z", z, 1);
+    return b.array();
+  }
+
+  private static void putDimension(ByteBuffer b, String dimension,
+    int start, int size)
+  {
+    byte[] name = new byte[4];
+    name[0] = (byte) dimension.charAt(0);
+    b.put(name);
+    b.putInt(start).putInt(size).putFloat(0).putInt(size);
+  }
+
+  private static void startSegment(ByteBuffer b, String id, int size) {
+    byte[] name = new byte[16];
+    for (int i=0; i<id.length(); i++) {
+      name[i] = (byte) id.charAt(i);
+    }
+    b.put(name);
+    b.putLong(size).putLong(size);
+  }
+
+  private static int align(int size) {
+    return (size + 31) / 32 * 32;
+  }
+
+  // -- Helper classes --
+
+  /** Records the position of every seek. */
+  private static class SeekRecorder extends ByteArrayHandle {
+    public final List<Long> seeks = new ArrayList<Long>();
+
+    public SeekRecorder(byte[] bytes) {
+      super(bytes);
+    }
+
+    @Override
+    public void seek(long pos) throws IOException {
+      seeks.add(pos);
+      super.seek(pos);
+    }
+  }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * #%L
+ * OME Bio-Formats manual and automated test suite.
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.tests.testng;
+
+import java.io.File;
+
+import loci.formats.IFormatReader;
+import loci.formats.ImageReader;
+
+import org.perf4j.StopWatch;
+import org.perf4j.slf4j.Slf4JStopWatch;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Parameters;
+import org.testng.annotations.Test;
+
+/**
+ * Measures how long it takes to get from a new {@link ImageReader} to the
+ * first pixel of a file, as a short-lived command line tool would.
+ * The first reader created in the JVM includes class loading, so run
+ * this class on its own (one target per JVM) to track startup time.
+ */
+public class ReaderStartupPerformanceTest
+{
+  private String id;
+
+  private String filename;
+
+  private IFormatReader reader;
+
+  @Parameters({"id"})
+  @BeforeClass
+  public void init(String id) throws Exception {
+    this.id = id;
+    filename = new File(id).getName();
+  }
+
+  @AfterClass
+  public void tearDown() throws Exception {
+    if (reader != null) {
+      reader.close();
+    }
+  }
+
+  @Test
+  public void testFirstPixel() throws Exception {
+    StopWatch total = new Slf4JStopWatch();
+    StopWatch stopWatch = new Slf4JStopWatch();
+    ImageReader imageReader = new ImageReader();
+    stopWatch.stop(String.format("ImageReader.constructor.%s", filename));
+
+    stopWatch = new Slf4JStopWatch();
+    reader = imageReader.getReader(id);
+    String readerName = reader.getClass().getName();
+    stopWatch.stop(String.format("%s.getReader.%s", readerName, filename));
+
+    stopWatch = new Slf4JStopWatch();
+    imageReader.setId(id);
+    stopWatch.stop(String.format("%s.setId.%s", readerName, filename));
+
+    stopWatch = new Slf4JStopWatch();
+    imageReader.openBytes(0, 0, 0, 1, 1);
+    stopWatch.stop(String.format("%s.openBytes.%s", readerName, filename));
+    total.stop(String.format("%s.firstPixel.%s", readerName, filename));
+    reader = imageReader;
+  }
+
+  @Test(dependsOnMethods={"testFirstPixel"})
+  public void testRepeatedFirstPixel() throws Exception {
+    // classes are loaded now, so this is the cost per new ImageReader,
+    // e.g. for a server creating a reader per request
+    StopWatch stopWatch = new Slf4JStopWatch();
+    try (ImageReader imageReader = new ImageReader()) {
+      imageReader.setId(id);
+      imageReader.openBytes(0, 0, 0, 1, 1);
+      stopWatch.stop(String.format("%s.repeatedFirstPixel.%s",
+        imageReader.getReader().getClass().getName(), filename));
+    }
+  }
+
+}